@@ -0,0 +1,68 @@
+package cat.santi.ttfe;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the {@link BitBoard} operations, the 4 x 4 counterpart of the
+ * {@link EngineBenchmark}, over fixed seed positions taken from random games.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BitBoardBenchmark {
+
+    private static final int POSITIONS = 1024;
+
+    private long[] mPositions;
+    private Random mRandom;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+
+        mPositions = Fixtures.createBitBoards(POSITIONS, Fixtures.SEED);
+        mRandom = new SplitRandom(Fixtures.SEED);
+        mIndex = 0;
+    }
+
+    @Benchmark
+    public long move() {
+
+        return BitBoard.move(next(), Fixtures.DIRECTIONS[mIndex & 3]);
+    }
+
+    @Benchmark
+    public int legalMoves() {
+
+        return BitBoard.legalMoves(next());
+    }
+
+    @Benchmark
+    public long spawn() {
+
+        return BitBoard.spawn(next(), mRandom);
+    }
+
+    @Benchmark
+    public int getMaxExponent() {
+
+        return BitBoard.getMaxExponent(next());
+    }
+
+    /**
+     * Get the next position, cycling through all of them.
+     */
+    private long next() {
+
+        return mPositions[mIndex++ & (POSITIONS - 1)];
+    }
+}
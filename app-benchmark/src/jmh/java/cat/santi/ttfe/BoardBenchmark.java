@@ -0,0 +1,74 @@
+package cat.santi.ttfe;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cat.santi.ttfe.Engine.Board;
+
+/**
+ * Benchmarks of the {@link Board} operations behind every play, on fixed seed boards of several
+ * sizes, about half full.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    @Param({"4", "8", "32"})
+    public int size;
+
+    private Board mBoard;
+    private Board mTarget;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() {
+
+        mBoard = Fixtures.createBoard(size, Fixtures.SEED);
+        mTarget = Board.clone(mBoard);
+        mRandom = new SplitRandom(Fixtures.SEED);
+    }
+
+    @Benchmark
+    public Board cloneBoard() {
+
+        return Board.clone(mBoard);
+    }
+
+    /**
+     * The copy onto the reused scratch board, done by every simulated play.
+     */
+    @Benchmark
+    public Board copyBoard() {
+
+        mTarget.copy(mBoard);
+        return mTarget;
+    }
+
+    /**
+     * The same lookup than <code>Engine.findRandomAvailableSquare</code>.
+     */
+    @Benchmark
+    public int findRandomAvailableSquare() {
+
+        return mBoard.findEmpty(mRandom.nextInt(mBoard.getEmptyCount()));
+    }
+
+    /**
+     * The same lookup than <code>Engine.findGreatestTile</code>.
+     */
+    @Benchmark
+    public int findGreatestTile() {
+
+        return mBoard.getGreatestValue();
+    }
+}
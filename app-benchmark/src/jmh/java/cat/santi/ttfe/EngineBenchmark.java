@@ -0,0 +1,128 @@
+package cat.santi.ttfe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cat.santi.ttfe.Engine.Backend;
+
+/**
+ * Benchmarks of the public {@link Engine} hot paths, on fixed seed {@link Backend#TILES} games
+ * of several sizes. Every benchmark starts from a position in the middle of a game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    @Param({"4", "8", "32"})
+    public int size;
+
+    private Engine mEngine;
+    private int mTurn;
+
+    @Setup
+    public void setUp() {
+
+        mEngine = Fixtures.createEngine(size);
+        mTurn = 0;
+    }
+
+    /**
+     * A real play, cycling through all the directions. Finished games are restarted by
+     * {@link Game#restartIfFinished()}, out of the measured time.
+     */
+    @Benchmark
+    public boolean play(Game game) {
+
+        return game.engine.play(Fixtures.DIRECTIONS[game.turn++ & 3], false);
+    }
+
+    /**
+     * A simulated play, cycling through all the directions.
+     */
+    @Benchmark
+    public boolean playSimulate() {
+
+        return mEngine.play(Fixtures.DIRECTIONS[mTurn++ & 3], true);
+    }
+
+    /**
+     * The legal moves check, as done by every play (<code>canPlay</code>).
+     */
+    @Benchmark
+    public int legalMoves() {
+
+        return mEngine.legalMoves();
+    }
+
+    /**
+     * The greatest tile lookup, as done by every play (<code>findGreatestTile</code>).
+     */
+    @Benchmark
+    public int getGreatestTile() {
+
+        return mEngine.getGreatestTile();
+    }
+
+    @Benchmark
+    public String toStringBoard() {
+
+        return mEngine.toString();
+    }
+
+    @Benchmark
+    public Engine.Tile[][] getTiles() {
+
+        return mEngine.getTiles();
+    }
+
+    @Benchmark
+    public void reset() {
+
+        mEngine.reset(size, size, Fixtures.TILE_VALUE_TO_WIN, Backend.TILES, Fixtures.SEED);
+    }
+
+    /**
+     * The game of {@link #play(Game)}, kept apart from the one of the other benchmarks because it
+     * advances and has to be restarted when it finishes, which happens often on small boards.
+     */
+    @State(Scope.Thread)
+    public static class Game {
+
+        Engine engine;
+        int size;
+        int turn;
+
+        @Setup
+        public void setUp(EngineBenchmark benchmark) {
+
+            size = benchmark.size;
+            engine = Fixtures.createEngine(size);
+            turn = 0;
+        }
+
+        /**
+         * Restart the game if it's finished. A restart is a reset plus up to
+         * <i>size</i><sup>2</sup> plays, so it must not be part of the measured time nor of the
+         * measured allocations.
+         * <p/>
+         * Being run before every invocation, <i>JMH</i> timestamps every single play, which adds
+         * a small constant overhead to the score of {@link #play(Game)}.
+         */
+        @Setup(Level.Invocation)
+        public void restartIfFinished() {
+
+            if (engine.getState() != Engine.State.IDLE)
+                Fixtures.restart(engine, size);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cat.santi.ttfe;
+
+import java.util.Random;
+
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Board;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+
+/**
+ * Fixed seed positions shared by the benchmarks.
+ */
+final class Fixtures {
+
+    /**
+     * The seed of every fixture.
+     */
+    static final long SEED = 2048;
+    /**
+     * The value to win the benchmarked games, high enough to never be reached.
+     */
+    static final int TILE_VALUE_TO_WIN = 1 << 30;
+    /**
+     * The directions, in the order the benchmarks cycle through them.
+     */
+    static final Direction[] DIRECTIONS = Direction.values();
+
+    private Fixtures() {
+        // Private constructor to thwart instantiation
+    }
+
+    /**
+     * Create a board with about half of it's squares filled, with values from 2 to 1024.
+     *
+     * @param size The board width and height.
+     * @param seed The seed of the contents.
+     * @return The new {@link Board}.
+     */
+    static Board createBoard(int size, long seed) {
+
+        final Random random = new SplitRandom(seed);
+        final Board result = new Board(size, size);
+        for (int indexR = 0; indexR < size; indexR++)
+            for (int indexC = 0; indexC < size; indexC++)
+                if (random.nextBoolean())
+                    result.setValue(1 << (1 + random.nextInt(10)), indexR, indexC);
+        return result;
+    }
+
+    /**
+     * Create an {@link Engine} playing a fixed seed {@link Backend#TILES} game, advanced to the
+     * middle of the game by cycling through all the directions.
+     *
+     * @param size The board width and height.
+     * @return The new {@link Engine}.
+     */
+    static Engine createEngine(int size) {
+
+        final Engine result = Engine.create();
+        restart(result, size);
+        return result;
+    }
+
+    /**
+     * Start a new fixed seed game on the given <i>engine</i>, advanced to the middle of the game.
+     *
+     * @param engine The {@link Engine} to restart.
+     * @param size   The board width and height.
+     */
+    static void restart(Engine engine, int size) {
+
+        engine.reset(size, size, TILE_VALUE_TO_WIN, Backend.TILES, SEED);
+        for (int turn = 0; turn < size * size && engine.getState() == State.IDLE; turn++)
+            engine.play(DIRECTIONS[turn % DIRECTIONS.length], false);
+
+        if (engine.getState() != State.IDLE)
+            engine.reset(size, size, TILE_VALUE_TO_WIN, Backend.TILES, SEED);
+    }
+
+    /**
+     * Create packed 4 x 4 positions, taken from random games.
+     *
+     * @param count The amount of positions.
+     * @param seed  The seed of the games.
+     * @return The packed positions.
+     */
+    static long[] createBitBoards(int count, long seed) {
+
+        final Random random = new SplitRandom(seed);
+        final long[] result = new long[count];
+        long board = BitBoard.spawn(BitBoard.spawn(BitBoard.EMPTY, random), random);
+        for (int index = 0; index < count; index++) {
+
+            final int legal = BitBoard.legalMoves(board);
+            if (legal == 0) {
+
+                board = BitBoard.spawn(BitBoard.spawn(BitBoard.EMPTY, random), random);
+            } else {
+
+                int mask = legal;
+                for (int pick = random.nextInt(Integer.bitCount(legal)); pick > 0; pick--)
+                    mask &= mask - 1;
+                final Direction direction = DIRECTIONS[Integer.numberOfTrailingZeros(mask)];
+                board = BitBoard.spawn(BitBoard.move(board, direction), random);
+            }
+            result[index] = board;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,357 @@
+package cat.santi.ttfe;
+
+import java.util.Random;
+
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * Compact representation of a 4 x 4 board, packed on a single <code>long</code>.
+ * <p/>
+ * Every square takes 4 bits (a <i>nibble</i>), holding the <i>exponent</i> of the tile value
+ * (the power of 2 that creates it), or 0 for a void square. Squares are stored row by row, being
+ * the square at <code>(0, 0)</code> the least significant nibble:
+ * <pre>
+ *        col.0  col.1  col.2  col.3
+ * row.0  [ 0 ]  [ 1 ]  [ 2 ]  [ 3 ]
+ * row.1  [ 4 ]  [ 5 ]  [ 6 ]  [ 7 ]
+ * row.2  [ 8 ]  [ 9 ]  [10 ]  [11 ]
+ * row.3  [12 ]  [13 ]  [14 ]  [15 ]
+ * </pre>
+ * <i>Figure - Nibble index of every square</i>
+ * <p/>
+ * Moves, merges and spawns follow exactly the same rules as {@link Engine#play(Direction,
+ * boolean)}, with the only exception that two tiles of the greatest representable value
+ * ({@link #MAX_EXPONENT}) are never merged.
+ * <p/>
+ * Moves are resolved by looking up every row on the {@link MoveTables}.
+ */
+public final class BitBoard {
+
+    /**
+     * The board width and height.
+     */
+    public static final int SIZE = 4;
+    /**
+     * The total amount of squares on the board.
+     */
+    public static final int CELLS = SIZE * SIZE;
+    /**
+     * The greatest exponent that fits on a square.
+     */
+    public static final int MAX_EXPONENT = 15;
+    /**
+     * A board without any <i>tile</i>.
+     */
+    public static final long EMPTY = 0L;
+
+    /**
+     * Mask with the lowest bit of every nibble set.
+     */
+    private static final long LOW_BITS = 0x1111111111111111L;
+
+    private BitBoard() {
+        // Private constructor to thwart instantiation
+    }
+
+    /**
+     * Get the exponent stored at the given <i>row</i> and <i>column</i>.
+     *
+     * @param board  The packed board.
+     * @param row    The row to read.
+     * @param column The column to read.
+     * @return The exponent at the given square, or 0 if void.
+     */
+    public static int getExponent(long board, int row, int column) {
+
+        return (int) (board >>> ((row * SIZE + column) * 4)) & 0xF;
+    }
+
+    /**
+     * Get the <i>tile</i> value stored at the given <i>row</i> and <i>column</i>.
+     *
+     * @param board  The packed board.
+     * @param row    The row to read.
+     * @param column The column to read.
+     * @return The value at the given square, or {@link Engine#VOID_VALUE} if void.
+     */
+    public static int getValue(long board, int row, int column) {
+
+        return toValue(getExponent(board, row, column));
+    }
+
+    /**
+     * Return a copy of the <i>board</i> with the given <i>value</i> at <i>row</i> and
+     * <i>column</i>.
+     *
+     * @param board  The packed board.
+     * @param row    The row to write.
+     * @param column The column to write.
+     * @param value  The value to settle, or {@link Engine#VOID_VALUE}.
+     * @return The resulting packed board.
+     */
+    public static long setValue(long board, int row, int column, int value) {
+
+        final int shift = (row * SIZE + column) * 4;
+        return (board & ~(0xFL << shift)) | ((long) toExponent(value) << shift);
+    }
+
+    /**
+     * Convert a <i>tile</i> value into it's exponent.
+     *
+     * @param value The value to convert. Must be a power of 2, or {@link Engine#VOID_VALUE}.
+     * @return The exponent, or 0 for {@link Engine#VOID_VALUE}.
+     */
+    public static int toExponent(int value) {
+
+        return value == Engine.VOID_VALUE ? 0 : Integer.numberOfTrailingZeros(value);
+    }
+
+    /**
+     * Convert an exponent into it's <i>tile</i> value.
+     *
+     * @param exponent The exponent to convert.
+     * @return The value, or {@link Engine#VOID_VALUE} for 0.
+     */
+    public static int toValue(int exponent) {
+
+        return exponent == 0 ? Engine.VOID_VALUE : 1 << exponent;
+    }
+
+    /**
+     * Apply a move towards the given <i>direction</i>.
+     *
+     * @param board     The packed board.
+     * @param direction The {@link Direction} to move to.
+     * @return The resulting packed board. Will be equal to <i>board</i> if nothing moved.
+     */
+    public static long move(long board, Direction direction) {
+
+        switch (direction) {
+
+            case LEFT:
+                return MoveTables.moveLeft(board);
+            case RIGHT:
+                return MoveTables.moveRight(board);
+            case UP:
+                return transpose(MoveTables.moveLeft(transpose(board)));
+            case DOWN:
+                return transpose(MoveTables.moveRight(transpose(board)));
+        }
+
+        // note: will never get here (switch - default compiler ambiguous case)
+        return board;
+    }
+
+    /**
+     * Get the score that a move towards the given <i>direction</i> would earn.
+     *
+     * @param board     The packed board.
+     * @param direction The {@link Direction} to move to.
+     * @return The sum of all the values created by merges.
+     */
+    public static int score(long board, Direction direction) {
+
+        if (direction == Direction.UP || direction == Direction.DOWN)
+            board = transpose(board);
+
+        return MoveTables.score(board);
+    }
+
+    /**
+     * Find out which {@link Direction}s change the <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return A mask with the bit {@link Engine#directionMask(Direction)} set for every
+     * {@link Direction} that can be played.
+     */
+    public static int legalMoves(long board) {
+
+        final int rows = MoveTables.moved(board);
+        final int columns = MoveTables.moved(transpose(board));
+
+        int result = 0;
+        if ((rows & MoveTables.MOVED_LEFT) != 0)
+            result |= Engine.directionMask(Direction.LEFT);
+        if ((rows & MoveTables.MOVED_RIGHT) != 0)
+            result |= Engine.directionMask(Direction.RIGHT);
+        if ((columns & MoveTables.MOVED_LEFT) != 0)
+            result |= Engine.directionMask(Direction.UP);
+        if ((columns & MoveTables.MOVED_RIGHT) != 0)
+            result |= Engine.directionMask(Direction.DOWN);
+        return result;
+    }
+
+    /**
+     * Swap rows and columns, so the square at <code>(row, column)</code> moves to
+     * <code>(column, row)</code>.
+     *
+     * @param board The packed board.
+     * @return The transposed packed board.
+     */
+    public static long transpose(long board) {
+
+        final long a1 = board & 0xF0F00F0FF0F00F0FL;
+        final long a2 = board & 0x0000F0F00000F0F0L;
+        final long a3 = board & 0x0F0F00000F0F0000L;
+        final long a = a1 | (a2 << 12) | (a3 >>> 12);
+        final long b1 = a & 0xFF00FF0000FF00FFL;
+        final long b2 = a & 0x00FF00FF00000000L;
+        final long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    /**
+     * Count the void squares of the <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return The amount of void squares.
+     */
+    public static int countEmpty(long board) {
+
+        return Long.bitCount(emptyMask(board));
+    }
+
+    /**
+     * Find the nibble index of the <i>nth</i> void square, counting row by row from the top-left
+     * most square.
+     *
+     * @param board The packed board.
+     * @param nth   The zero based position of the void square to find.
+     * @return The nibble index (<code>row * 4 + column</code>) of the square, or <code>-1</code>
+     * if there are not so many void squares.
+     */
+    public static int findEmpty(long board, int nth) {
+
+        long mask = emptyMask(board);
+        for (int index = 0; index < nth && mask != 0; index++)
+            mask &= mask - 1;
+
+        return mask == 0 ? -1 : Long.numberOfTrailingZeros(mask) / 4;
+    }
+
+    /**
+     * Count the void squares before the given one, row by row from the top-left most square.
+     * It's the opposite of {@link #findEmpty(long, int)}.
+     *
+     * @param board The packed board.
+     * @param cell  The nibble index (<code>row * 4 + column</code>) of the square.
+     * @return The amount of void squares with a lower nibble index.
+     */
+    public static int countEmptyBefore(long board, int cell) {
+
+        return Long.bitCount(emptyMask(board) & ((1L << (cell * 4)) - 1));
+    }
+
+    /**
+     * Create a <i>tile</i> at a random void square, with a random value from
+     * {@link Engine#DEFAULT_ALLOWED_VALUES}.
+     * <p/>
+     * The <i>random</i> is consumed in the same order than {@link Engine} does, so both will
+     * place the same tiles when fed with equally seeded generators.
+     *
+     * @param board  The packed board.
+     * @param random The {@link Random} generator to use.
+     * @return The resulting packed board, or the same <i>board</i> if it was full.
+     */
+    public static long spawn(long board, Random random) {
+
+        final int value = Engine.DEFAULT_ALLOWED_VALUES[
+                random.nextInt(Engine.DEFAULT_ALLOWED_VALUES.length)];
+        final int empty = countEmpty(board);
+        if (empty == 0)
+            return board;
+
+        final int cell = findEmpty(board, random.nextInt(empty));
+        return board | ((long) toExponent(value) << (cell * 4));
+    }
+
+    /**
+     * Find out the greatest exponent on the <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return The greatest exponent, or 0 for an empty board.
+     */
+    public static int getMaxExponent(long board) {
+
+        int result = 0;
+        for (; board != 0; board >>>= 4)
+            result = Math.max(result, (int) board & 0xF);
+        return result;
+    }
+
+    /**
+     * Get a mask with the lowest bit of every void square's nibble set.
+     */
+    private static long emptyMask(long board) {
+
+        board |= (board >>> 2) & 0x3333333333333333L;
+        board |= board >>> 1;
+        return ~board & LOW_BITS;
+    }
+
+    /**
+     * Reverse the nibble order of a packed row.
+     */
+    static int reverseRow(int row) {
+
+        return ((row >>> 12) & 0xF) | ((row >>> 4) & 0xF0)
+                | ((row << 4) & 0xF00) | ((row << 12) & 0xF000);
+    }
+
+    /**
+     * Slide and merge a packed row towards column 0. A merged tile is not merged again on the
+     * same move, and tiles closest to the wall are merged first.
+     * <p/>
+     * Only meant to build the {@link MoveTables}.
+     */
+    static int slideRowLeft(int row) {
+
+        int result = 0;
+        int target = 0;
+        int last = 0;
+        for (int indexC = 0; indexC < SIZE; indexC++) {
+
+            final int exponent = (row >>> (indexC * 4)) & 0xF;
+            if (exponent == 0)
+                continue;
+
+            if (exponent == last && exponent < MAX_EXPONENT) {
+
+                // Same value than the previous tile, so merge (only once)
+                result += 1 << ((target - 1) * 4);
+                last = 0;
+            } else {
+
+                result |= exponent << (target * 4);
+                last = exponent;
+                target++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the score earned by sliding a packed row. It's the same for both row directions.
+     */
+    static int scoreRow(int row) {
+
+        int result = 0;
+        int last = 0;
+        for (int indexC = 0; indexC < SIZE; indexC++) {
+
+            final int exponent = (row >>> (indexC * 4)) & 0xF;
+            if (exponent == 0)
+                continue;
+
+            if (exponent == last && exponent < MAX_EXPONENT) {
+
+                result += 1 << (exponent + 1);
+                last = 0;
+            } else {
+
+                last = exponent;
+            }
+        }
+        return result;
+    }
+}
@@ -1,8 +1,10 @@
 package cat.santi.ttfe;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import cat.santi.ttfe.exception.BoardFullException;
 import cat.santi.ttfe.exception.ExceptionFactory;
@@ -16,9 +18,6 @@ public class Engine {
      * Features still TODO:
 	 * - More game modes (normal, infinite, time attack...).
 	 * - Keep a registry of movements done, to be able to undo them.
-	 * - Save and load games.
-	 * - Create some kind of AI for auto-play | auto-suggest.
-	 * - Improve performance. (non-fatal issue atm)
 	 */
 
     /**
@@ -46,41 +45,111 @@ public class Engine {
      */
     public static final int[] DEFAULT_ALLOWED_VALUES = {2, 4};
 
+    /**
+     * All the {@link Direction}s, to iterate without copying {@link Direction#values()}.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /**
+     * Value returned by {@link #moveTile(Board, int, int, int, int)} when there's no <i>tile</i>
+     * to move.
+     */
+    private static final int NO_TILE = -1;
+
+    /**
+     * Source of the seeds of the games started without one. Every call gets a different seed.
+     */
+    private static final AtomicLong sSeeds = new AtomicLong(System.currentTimeMillis());
+
     /**
      * This <i>singleton</i>'s sInstance.
      */
     private static Engine sInstance = null;
     /**
-     * The {@link Random} generator engine.
+     * The {@link Random} generator engine. Seeded at the start of every game.
      */
     private Random mRandom = null;
+    /**
+     * The seed of the current game.
+     */
+    private long mSeed = 0;
     /**
      * The playing board.
      */
     private Board mBoard = null;
+    /**
+     * Reusable copy of {@link #mBoard}, where simulated plays are done.
+     */
+    private Board mScratchBoard = null;
     /**
      * The accumulated score.
      */
-    private int mScore = -1;
+    private volatile int mScore = -1;
     /**
      * The count of elapsed turns.
      */
-    private int mMovements = -1;
+    private volatile int mMovements = -1;
     /**
      * The value of the greatest tile needed to win
      */
     private int mTileValueToWin = -1;
     /**
-     * The game's current state.
+     * The game's current state. A play is only done by the thread that moves it from
+     * {@link State#IDLE} to a <i>playing</i> state.
+     */
+    private final AtomicReference<State> mState = new AtomicReference<>(State.NOT_PREPARED);
+    /**
+     * Sequence number of the publications of {@link #mPublished}. It's odd while one is in
+     * progress, and even otherwise.
+     *
+     * @see #readSnapshot(Snapshot)
+     */
+    private final AtomicInteger mSequence = new AtomicInteger();
+    /**
+     * The thread changing the game contents, if any.
+     */
+    private volatile Thread mWriter = null;
+    /**
+     * The game contents as of the end of the last change, read by {@link #readSnapshot(Snapshot)}.
+     * It's {@link State} is never a <i>playing</i> one.
+     */
+    private final Published mPublished = new Published();
+    /**
+     * The {@link Board} whose squares are all on {@link #mPublished}, so only it's changes have
+     * to be published. Only used by the thread changing the game contents.
      */
-    private State mState = State.NOT_PREPARED;
+    private Board mPublishedBoard = null;
     /**
      * Listener to notify about game state changes.
      */
     private Listener mListener = null;
+    /**
+     * The {@link Backend} actually used by the current game.
+     */
+    private Backend mBackend = Backend.TILES;
+    /**
+     * The playing board, packed as a {@link BitBoard}. Only used by {@link Backend#BIT_BOARD}.
+     */
+    private long mBits = BitBoard.EMPTY;
+    /**
+     * Mask of the squares created this turn on {@link #mBits}, one bit per square.
+     */
+    private int mBitsCreated = 0;
+    /**
+     * Square of the next <i>tile</i> to create, when given by
+     * {@link #play(Direction, int, int)}, or <code>-1</code> to pick a random one.
+     */
+    private int mForcedSquare = -1;
+    /**
+     * Value of the next <i>tile</i> to create, when {@link #mForcedSquare} is given.
+     */
+    private int mForcedValue = VOID_VALUE;
+    /**
+     * Flag indicating {@link #mBoard} is outdated with respect of {@link #mBits}.
+     */
+    private boolean mBitsDirty = false;
 
     /**
-     * Empty constructor to thwart instantiation.
+     * Empty constructor. Use {@link #create()} or {@link #getInstance()} instead.
      */
     private Engine() {
     }
@@ -91,6 +160,9 @@ public class Engine {
      * Please note: this method will not create and initialize a <i>game</i> by it's own. Instead,
      * you should call {@link #reset()} in order to do this. Please, refer to that method
      * documentation to learn more.
+     * <p/>
+     * The <i>singleton</i> is just one more {@link Engine}, shared by the whole process. To play
+     * several games at once, use {@link #create()} or an {@link EnginePool} instead.
      *
      * @return This <i>singleton</i>'s sInstance.
      * @see #reset()
@@ -98,10 +170,25 @@ public class Engine {
     public static synchronized Engine getInstance() {
 
         if (sInstance == null)
-            sInstance = new Engine();
+            sInstance = create();
         return sInstance;
     }
 
+    /**
+     * Create a new {@link Engine}, independent from any other one: it has it's own board,
+     * {@link Random} generator and {@link Listener}.
+     * <p/>
+     * As with {@link #getInstance()}, call {@link #reset()} to create and initialize a
+     * <i>game</i> before playing.
+     *
+     * @return A new {@link Engine}.
+     * @see EnginePool
+     */
+    public static Engine create() {
+
+        return new Engine();
+    }
+
     /**
      * Get the current listener for game state changes.
      *
@@ -155,47 +242,226 @@ public class Engine {
      */
     public void reset(int rows, int columns, int tileValueToWin) {
 
-        init(rows, columns, tileValueToWin);
+        reset(rows, columns, tileValueToWin, Backend.TILES);
     }
 
     /**
+     * Prepare this singleton for a new game, discarding any current changes, they exist, of the
+     * given <i>rows</i> and <i>columns</i> size, and played by the given {@link Backend}.
+     * <p/>
+     * The {@link Backend#BIT_BOARD} can only play 4 x 4 games, with a <i>tileValueToWin</i> not
+     * greater than <code>2^</code>{@link BitBoard#MAX_EXPONENT}. Any other game will be played by
+     * {@link Backend#TILES} instead.
      *
+     * @param rows           The amount of rows height.
+     * @param columns        The amount of columns width.
+     * @param tileValueToWin The amount needed on any <i>tile</i> to win the game.
+     * @param backend        The preferred {@link Backend} to play the game.
+     * @see #getBackend()
      */
-    public boolean play(Direction direction, boolean simulate) {
+    public void reset(int rows, int columns, int tileValueToWin, Backend backend) {
+
+        reset(rows, columns, tileValueToWin, backend, createSeed());
+    }
+
+    /**
+     * Prepare this singleton for a new game, as {@link #reset(int, int, int, Backend)} does, with
+     * it's {@link Random} generator seeded with the given <i>seed</i>.
+     * <p/>
+     * Two games started with the same arguments create the same <i>tiles</i> for the same moves,
+     * so a game can be replayed from it's seed and moves only.
+     *
+     * @param rows           The amount of rows height.
+     * @param columns        The amount of columns width.
+     * @param tileValueToWin The amount needed on any <i>tile</i> to win the game.
+     * @param backend        The preferred {@link Backend} to play the game.
+     * @param seed           The seed of the game.
+     * @see #getSeed()
+     * @see #replay(int, int, int, Backend, long, Direction[])
+     */
+    public void reset(int rows, int columns, int tileValueToWin, Backend backend, long seed) {
+
+        init(rows, columns, tileValueToWin, backend, seed);
+    }
+
+    /**
+     * Replay a game from it's seed and moves, without triggering any {@link Listener} event.
+     * <p/>
+     * The game is reset with the given <i>seed</i>, and all the <i>moves</i> are played in order,
+     * until the game finishes. Moves that do not change the board are skipped, as they do not
+     * consume the {@link Random} generator either.
+     *
+     * @param rows           The amount of rows height.
+     * @param columns        The amount of columns width.
+     * @param tileValueToWin The amount needed on any <i>tile</i> to win the game.
+     * @param backend        The preferred {@link Backend} to play the game.
+     * @param seed           The seed of the game.
+     * @param moves          The {@link Direction}s played, in order.
+     * @return The amount of <i>moves</i> that changed the board.
+     */
+    public int replay(int rows, int columns, int tileValueToWin, Backend backend, long seed,
+                      Direction[] moves) {
+
+        final Listener listener = mListener;
+        mListener = null;
+        try {
+
+            init(rows, columns, tileValueToWin, backend, seed);
+
+            int result = 0;
+            for (int index = 0; index < moves.length && getState() == State.IDLE; index++)
+                if (play(moves[index], false))
+                    result++;
+            return result;
+        } finally {
+
+            mListener = listener;
+        }
+    }
+
+    /**
+     * Resume the game held by the given <i>snapshot</i>, discarding the current one, as if it was
+     * never interrupted: same board, <i>tile</i> flags, score, turns, {@link State},
+     * {@link Backend} and seed.
+     * <p/>
+     * If the <i>snapshot</i> holds the state of a {@link SplitRandom} (the default generator)
+     * and this engine uses one too, the following <i>tiles</i> will also be the same ones.
+     * Otherwise the {@link Random} generator is seeded again with the game seed.
+     *
+     * @param snapshot The {@link Snapshot} to restore, taken by {@link #readSnapshot(Snapshot)}
+     *                 between turns.
+     * @throws IllegalArgumentException If the <i>snapshot</i> is not a valid game, or was taken
+     *                                  in the middle of a play.
+     */
+    public void restore(Snapshot snapshot) {
+
+        final int rows = snapshot.rows;
+        final int columns = snapshot.columns;
+        if (rows < MIN_BORDER_SIZE || columns < MIN_BORDER_SIZE)
+            throw new IllegalArgumentException("Invalid board size: " + rows + " x " + columns);
+        if (snapshot.state != State.IDLE && snapshot.state != State.VICTORY
+                && snapshot.state != State.DEFEAT)
+            throw new IllegalArgumentException("Can't restore a game on " + snapshot.state);
+        for (int square = 0; square < rows * columns; square++)
+            if (snapshot.values[square] != VOID_VALUE && (snapshot.values[square] < 2
+                    || Integer.bitCount(snapshot.values[square]) != 1))
+                throw new IllegalArgumentException("Invalid tile value: "
+                        + snapshot.values[square]);
+
+        beginChanges();
+        setState(State.PREPARING);
+
+        // Continue the same sequence of tiles, if possible
+        if (this.mRandom == null)
+            this.mRandom = new SplitRandom(snapshot.seed);
+        if (snapshot.randomSaved && this.mRandom instanceof SplitRandom)
+            ((SplitRandom) this.mRandom).setState(snapshot.randomState);
+        else
+            this.mRandom.setSeed(snapshot.seed);
+        this.mSeed = snapshot.seed;
+
+        // The bit board can't hold greater tiles than it's win value
+        Backend backend = snapshot.backend;
+        for (int square = 0; square < rows * columns; square++)
+            if (snapshot.values[square] > 1 << BitBoard.MAX_EXPONENT)
+                backend = Backend.TILES;
+        prepareBoard(rows, columns, snapshot.tileValueToWin, backend);
+
+        for (int indexR = 0; indexR < rows; indexR++)
+            for (int indexC = 0; indexC < columns; indexC++) {
+
+                final int square = indexR * columns + indexC;
+                final int value = snapshot.values[square];
+                final boolean justCreated =
+                        (snapshot.flags[square] & Snapshot.FLAG_JUST_CREATED) != 0;
+                mBoard.setValue(value, indexR, indexC,
+                        (snapshot.flags[square] & Snapshot.FLAG_NOT_MERGE_THIS_TURN) != 0,
+                        justCreated);
+                if (mBackend == Backend.BIT_BOARD) {
+
+                    mBits = BitBoard.setValue(mBits, indexR, indexC, value);
+                    if (justCreated)
+                        mBitsCreated |= 1 << square;
+                }
+            }
+
+        this.mScore = snapshot.score;
+        this.mMovements = snapshot.movements;
+        this.mTileValueToWin = snapshot.tileValueToWin;
+
+        endChanges(snapshot.state);
+    }
+
+    /**
+     * Discard the current game, leaving this engine on {@link State#NOT_PREPARED} (i.e. before
+     * giving it back to an {@link EnginePool}).
+     *
+     * @throws IllegalStateException If a game is being played or prepared by another thread.
+     */
+    void discard() {
+
+        // Claim the game as a play does, so no turn is in progress
+        final State state = mState.get();
+        final boolean settled = state == State.NOT_PREPARED || state == State.IDLE
+                || state == State.VICTORY || state == State.DEFEAT;
+        if (!settled || !mState.compareAndSet(state, State.PREPARING))
+            throw new IllegalStateException("Can't discard a game on " + mState.get());
+
+        beginChanges();
+        if (mListener != null)
+            mListener.onStateChange(State.PREPARING);
+        endChanges(State.NOT_PREPARED);
+    }
 
-        Board board = !simulate ? this.mBoard : Board.clone(this.mBoard);
+    /**
+     * Play a move towards the given <i>direction</i>.
+     * <p/>
+     * A real play is only accepted on {@link State#IDLE}: the calling thread atomically moves the
+     * game to the <i>playing</i> state of the <i>direction</i>, so any other concurrent play gets
+     * a {@link Listener#onNotReady()} instead.
+     * <p/>
+     * A simulated play only finds out if the move is possible, without changing the game nor
+     * triggering any {@link Listener} event. It must be called from the playing thread.
+     *
+     * @param direction The {@link Direction} to play.
+     * @param simulate  Give <code>true</code> to only simulate the play.
+     * @return Whether any <i>tile</i> moved or not.
+     */
+    public boolean play(Direction direction, boolean simulate) {
 
         if (!simulate) {
 
-            if (!mState.equals(State.IDLE)) {
+            final State playing = getPlayingState(direction);
+            if (!mState.compareAndSet(State.IDLE, playing)) {
 
                 if (mListener != null)
                     mListener.onNotReady();
                 return false;
             } else if (!canPlay(direction)) {
 
+                // Give the turn back, as nothing changed
+                mState.set(State.IDLE);
                 if (mListener != null)
                     mListener.onDisallowedMove();
                 return false;
             }
 
-            switch (direction) {
-
-                case DOWN:
-                    setState(State.PLAYING_DOWN);
-                    break;
-                case LEFT:
-                    setState(State.PLAYING_LEFT);
-                    break;
-                case RIGHT:
-                    setState(State.PLAYING_RIGHT);
-                    break;
-                case UP:
-                    setState(State.PLAYING_UP);
-                    break;
-            }
+            // The playing state only claims the turn: snapshots keep the settled one until it ends
+            beginChanges();
+            if (mListener != null)
+                mListener.onStateChange(playing);
         }
 
+        if (mBackend == Backend.BIT_BOARD) {
+
+            final boolean moveDone = playBits(direction, simulate);
+            if (!simulate)
+                endTurn(moveDone);
+            return moveDone;
+        }
+
+        Board board = !simulate ? this.mBoard : copyToScratchBoard();
+
         boolean moveDone = false;
         switch (direction) {
 
@@ -230,6 +496,121 @@ public class Engine {
         return moveDone;
     }
 
+    /**
+     * Play a move towards the given <i>direction</i>, creating the given <i>tile</i> instead of a
+     * random one (i.e. to replay a turn read from a journal).
+     * <p/>
+     * The {@link Random} generator is consumed exactly as a normal play does, so the following
+     * <i>tiles</i> are the same ones. If the square is not void after the move, the <i>tile</i>
+     * is created at random instead. Meant to be called from a single thread.
+     *
+     * @param direction The {@link Direction} to play.
+     * @param square    The index (<code>row * columns + column</code>) of the <i>tile</i> to
+     *                  create.
+     * @param value     The value of the <i>tile</i> to create, one of
+     *                  {@link #DEFAULT_ALLOWED_VALUES}.
+     * @return Whether any <i>tile</i> moved or not.
+     * @throws IllegalArgumentException If the <i>square</i> or the <i>value</i> are not valid.
+     */
+    public boolean play(Direction direction, int square, int value) {
+
+        if (square < 0 || square >= getBoardSize())
+            throw new IllegalArgumentException("Invalid square: " + square);
+        boolean allowed = false;
+        for (int allowedValue : DEFAULT_ALLOWED_VALUES)
+            allowed |= allowedValue == value;
+        if (!allowed)
+            throw new IllegalArgumentException("Invalid tile value: " + value);
+
+        mForcedSquare = square;
+        mForcedValue = value;
+        try {
+
+            return play(direction, false);
+        } finally {
+
+            mForcedSquare = -1;
+            mForcedValue = VOID_VALUE;
+        }
+    }
+
+    /**
+     * Simulate the four {@link Direction}s at once, on a single pass, without changing the game
+     * nor triggering any {@link Listener} event.
+     *
+     * @return A new {@link Simulation} with the results of every {@link Direction}.
+     * @see #simulateAll(Simulation)
+     */
+    public Simulation simulateAll() {
+
+        return simulateAll(null);
+    }
+
+    /**
+     * Simulate the four {@link Direction}s at once, on a single pass, without changing the game
+     * nor triggering any {@link Listener} event.
+     * <p/>
+     * The board is read once, and every {@link Direction} is resolved on plain value buffers. As
+     * with {@link #play(Direction, boolean)} simulations, it must be called from the playing
+     * thread.
+     *
+     * @param simulation The {@link Simulation} to fill, reusing it's buffers. Can be
+     *                   <code>null</code>.
+     * @return The given <i>simulation</i>, or a new one if <code>null</code>. Empty if the game
+     * was not yet initialized.
+     */
+    public Simulation simulateAll(Simulation simulation) {
+
+        if (simulation == null)
+            simulation = new Simulation();
+
+        if (mBoard == null) {
+
+            simulation.resize(0, 0);
+            return simulation;
+        }
+
+        final int rows = mBoard.getRows();
+        final int columns = mBoard.getColumns();
+        simulation.resize(rows, columns);
+
+        if (mBackend == Backend.BIT_BOARD) {
+
+            final int tiles = BitBoard.CELLS - BitBoard.countEmpty(mBits);
+            for (Direction direction : DIRECTIONS) {
+
+                final int index = direction.ordinal();
+                final long result = BitBoard.move(mBits, direction);
+                for (int square = 0; square < BitBoard.CELLS; square++)
+                    simulation.values[index][square] = BitBoard.toValue(
+                            (int) (result >>> (square * 4)) & 0xF);
+                simulation.scores[index] = BitBoard.score(mBits, direction);
+                simulation.merges[index] = tiles - (BitBoard.CELLS - BitBoard.countEmpty(result));
+                simulation.moved[index] = result != mBits;
+            }
+            return simulation;
+        }
+
+        // Read the board once
+        final int[] source = simulation.source;
+        for (int indexR = 0; indexR < rows; indexR++)
+            for (int indexC = 0; indexC < columns; indexC++)
+                source[indexR * columns + indexC] = mBoard.getTile(indexR, indexC).getValue();
+
+        // Resolve every direction line by line
+        for (int indexR = 0; indexR < rows; indexR++) {
+
+            simulation.slide(Direction.LEFT, indexR * columns, 1, columns);
+            simulation.slide(Direction.RIGHT, indexR * columns + columns - 1, -1, columns);
+        }
+        for (int indexC = 0; indexC < columns; indexC++) {
+
+            simulation.slide(Direction.UP, indexC, columns, rows);
+            simulation.slide(Direction.DOWN, (rows - 1) * columns + indexC, -columns, rows);
+        }
+        return simulation;
+    }
+
     /**
      * Get a matrix [row][column] (being [0][0] the top-left most square, and [height-1][width-1]
      * the bottom-left most square), of {@link Tile}s representing the board contents.
@@ -242,12 +623,76 @@ public class Engine {
      */
     public Tile[][] getTiles() {
 
-        if (mState.equals(State.NOT_PREPARED))
+        if (getState().equals(State.NOT_PREPARED))
             return null;
 
+        syncBoard();
         return mBoard.getTiles();
     }
 
+    /**
+     * Get the value of the greatest tile needed to win the current game.
+     *
+     * @return The value to win, or <code>-1</code> if the game was not yet initialized.
+     */
+    public int getTileValueToWin() {
+
+        return mTileValueToWin;
+    }
+
+    /**
+     * Get the seed of the current game.
+     *
+     * @return The seed given to {@link #reset(int, int, int, Backend, long)}, or the one picked
+     * by any other <code>reset</code>.
+     */
+    public long getSeed() {
+
+        return mSeed;
+    }
+
+    /**
+     * Settle the {@link Random} generator creating the <i>tiles</i>, instead of the default
+     * {@link SplitRandom}. It's seeded by {@link Random#setSeed(long)} at the start of every
+     * game, so it only takes effect on the next <code>reset</code>, and must honor that method
+     * for games to be replayable.
+     *
+     * @param random The {@link Random} generator to use.
+     */
+    public void setRandom(Random random) {
+
+        if (random == null)
+            throw new IllegalArgumentException("A random generator is required");
+
+        mRandom = random;
+    }
+
+    /**
+     * Get the {@link Random} generator creating the <i>tiles</i>.
+     *
+     * @return The {@link Random} generator, or <code>null</code> if no game was ever started.
+     */
+    Random getRandom() {
+
+        return mRandom;
+    }
+
+    /**
+     * Count the void squares before the given one, row by row from the top-left most square.
+     * <p/>
+     * That's the value the {@link Random} generator must give to create a <i>tile</i> on that
+     * square.
+     *
+     * @param square The index (<code>row * columns + column</code>) of the square.
+     * @return The amount of void squares with a lower index.
+     */
+    int countEmptyBefore(int square) {
+
+        if (mBackend == Backend.BIT_BOARD)
+            return BitBoard.countEmptyBefore(mBits, square);
+        return mBoard.countEmptyBefore(square);
+    }
+
     /**
      * Get the count of elapsed turns.
      *
@@ -276,22 +721,150 @@ public class Engine {
      */
     public State getState() {
 
-        return mState;
+        return mState.get();
     }
 
     /**
-     * Set the {@link State} of the game.
+     * Set the {@link State} of the game, while changing it's contents. The published one is
+     * settled when the changes end.
      *
      * @param state The new {@link State} of the game.
      */
-    public void setState(State state) {
+    private void setState(State state) {
 
-        this.mState = state;
+        this.mState.set(state);
 
         if (mListener != null)
             mListener.onStateChange(state);
     }
 
+    /**
+     * Take a consistent copy of the game contents (board, <i>tile</i> flags, score, turns,
+     * {@link State}, {@link Backend} and {@link Random} generator state), without locking.
+     * <p/>
+     * This method can be called from any thread, even while a play is being done on another one:
+     * if so, the copy holds the game as it was before the turn, so it's never taken on a
+     * <i>playing</i> {@link State}. Neither the copy nor the play wait for each other; the copy
+     * is only retried if a turn ended in the meantime. A {@link Listener} can call it too, getting
+     * the changes done so far on the turn.
+     *
+     * @param snapshot The {@link Snapshot} to fill, reusing it's buffers. Can be
+     *                 <code>null</code>.
+     * @return The given <i>snapshot</i>, or a new one if <code>null</code>.
+     */
+    public Snapshot readSnapshot(Snapshot snapshot) {
+
+        if (snapshot == null)
+            snapshot = new Snapshot();
+
+        // The thread doing the changes (i.e. from a listener) sees them as they are
+        if (mWriter == Thread.currentThread()) {
+
+            copyTo(snapshot);
+            return snapshot;
+        }
+
+        // Every read of the published contents is volatile, so none is done after the last check
+        while (true) {
+
+            final int sequence = mSequence.get();
+            if ((sequence & 1) == 0) {
+
+                mPublished.copyTo(snapshot);
+                if (mSequence.get() == sequence)
+                    return snapshot;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Copy the game contents onto the given <i>snapshot</i>, as they are right now. Must be
+     * called from the thread changing them.
+     *
+     * @param snapshot The {@link Snapshot} to fill.
+     */
+    private void copyTo(Snapshot snapshot) {
+
+        final Board board = mBoard;
+        final int rows = board == null ? 0 : board.getRows();
+        final int columns = board == null ? 0 : board.getColumns();
+        snapshot.setSize(rows, columns);
+
+        if (board != null && mBackend == Backend.BIT_BOARD) {
+
+            final long bits = mBits;
+            final int created = mBitsCreated;
+            for (int indexR = 0; indexR < rows; indexR++)
+                for (int indexC = 0; indexC < columns; indexC++) {
+
+                    final int square = indexR * columns + indexC;
+                    snapshot.values[square] = BitBoard.getValue(bits, indexR, indexC);
+                    snapshot.flags[square] = (created & (1 << square)) != 0
+                            ? Snapshot.FLAG_JUST_CREATED : 0;
+                }
+        } else {
+
+            for (int indexR = 0; indexR < rows; indexR++)
+                for (int indexC = 0; indexC < columns; indexC++) {
+
+                    final Tile tile = board.getTile(indexR, indexC);
+                    final int square = indexR * columns + indexC;
+                    snapshot.values[square] = tile.getValue();
+                    snapshot.flags[square] = (byte) ((tile.isJustCreated()
+                            ? Snapshot.FLAG_JUST_CREATED : 0)
+                            | (tile.shouldNotMergeThisTurn()
+                            ? Snapshot.FLAG_NOT_MERGE_THIS_TURN : 0));
+                }
+        }
+
+        snapshot.score = mScore;
+        snapshot.movements = mMovements;
+        snapshot.state = mPublished.state;
+        snapshot.tileValueToWin = mTileValueToWin;
+        snapshot.backend = mBackend;
+        snapshot.seed = mSeed;
+        snapshot.randomSaved = mRandom instanceof SplitRandom;
+        snapshot.randomState = snapshot.randomSaved ? ((SplitRandom) mRandom).getState() : 0;
+    }
+
+    /**
+     * Get the board packed as a {@link BitBoard}, whatever the {@link Backend} playing it.
+     *
+     * @return The packed board.
+     * @throws IllegalStateException If the game was not yet initialized, or the board is not
+     *                               4 x 4, or any <i>tile</i> doesn't fit on a {@link BitBoard}.
+     */
+    public long toBitBoard() {
+
+        if (mBoard == null || mBoard.getRows() != BitBoard.SIZE
+                || mBoard.getColumns() != BitBoard.SIZE)
+            throw new IllegalStateException("Only 4 x 4 games can be packed");
+
+        if (mBackend == Backend.BIT_BOARD)
+            return mBits;
+
+        if (mBoard.getGreatestValue() > 1 << BitBoard.MAX_EXPONENT)
+            throw new IllegalStateException("Tile too big to be packed");
+
+        long result = BitBoard.EMPTY;
+        for (int indexR = 0; indexR < BitBoard.SIZE; indexR++)
+            for (int indexC = 0; indexC < BitBoard.SIZE; indexC++)
+                result = BitBoard.setValue(result, indexR, indexC,
+                        mBoard.getTile(indexR, indexC).getValue());
+        return result;
+    }
+
+    /**
+     * Get the {@link Backend} playing the current game.
+     *
+     * @return The {@link Backend} playing the current game.
+     */
+    public Backend getBackend() {
+
+        return mBackend;
+    }
+
     /**
      * Get the number of rows (height) that the board have, filled or empty.
      *
@@ -322,6 +895,50 @@ public class Engine {
         return getBoardRows() * getBoardColumns();
     }
 
+    /**
+     * Get the value of the greatest <i>tile</i> on the board.
+     *
+     * @return The greatest value on the board, or {@link #VOID_VALUE} if the game was not yet
+     * initialized.
+     */
+    public int getGreatestTile() {
+
+        if (mBoard == null)
+            return VOID_VALUE;
+
+        return findGreatestTile();
+    }
+
+    /**
+     * Get the amount of <i>tiles</i> on the board.
+     *
+     * @return The amount of <i>tiles</i> on the board, or 0 if the game was not yet initialized.
+     */
+    public int getTileCount() {
+
+        if (mBoard == null)
+            return 0;
+
+        syncBoard();
+        return mBoard.getTileCount();
+    }
+
+    /**
+     * Get the amount of <i>tiles</i> on the board with the given <i>value</i>.
+     *
+     * @param value The value to count. Must be a power of 2.
+     * @return The amount of <i>tiles</i> with the given value, or 0 if the game was not yet
+     * initialized.
+     */
+    public int getTileCount(int value) {
+
+        if (mBoard == null)
+            return 0;
+
+        syncBoard();
+        return mBoard.getTileCount(value);
+    }
+
     /**
      * Return A COPY of the {@link Tile}s that form a row at the given index.
      * <p/>
@@ -333,6 +950,7 @@ public class Engine {
     public Tile[] getBoardRow(int row) {
 
         Tile[] result = new Tile[getBoardColumns()];
+        syncBoard();
 
         for (int indexC = 0; indexC < getBoardColumns(); indexC++)
             result[indexC] = Tile.clone(mBoard.getTiles()[row][indexC]);
@@ -351,6 +969,7 @@ public class Engine {
     public Tile[] getBoardColumn(int column) {
 
         Tile[] result = new Tile[getBoardRows()];
+        syncBoard();
 
         for (int indexR = 0; indexR < getBoardRows(); indexR++)
             result[indexR] = Tile.clone(mBoard.getTiles()[indexR][column]);
@@ -377,9 +996,10 @@ public class Engine {
     @Override
     public String toString() {
 
-        if (mState.equals(State.NOT_PREPARED))
+        if (getState().equals(State.NOT_PREPARED))
             return "Game not prepared";
 
+        syncBoard();
         StringBuilder builder = new StringBuilder();
         builder.append(String.format("========== TURN : %4d | SCORE : %6d ==========\n\n",
                 getMovements() + 1, mScore));
@@ -408,106 +1028,132 @@ public class Engine {
         return builder.toString();
     }
 
-    private boolean canPlay() {
-        return canPlay(Direction.UP) || canPlay(Direction.DOWN)
-                || canPlay(Direction.LEFT) || canPlay(Direction.RIGHT);
+    /**
+     * Find out which {@link Direction}s can be played on the current board, without simulating
+     * them.
+     * <p/>
+     * A {@link Direction} can be played if any <i>tile</i> has a void square, or another
+     * <i>tile</i> with the same value, next to it on that {@link Direction}.
+     *
+     * @return A mask with the bit <code>1 &lt;&lt; direction.ordinal()</code> set for every
+     * {@link Direction} that can be played, or 0 if the game was not yet initialized.
+     * @see #directionMask(Direction)
+     */
+    public int legalMoves() {
+
+        if (mBoard == null)
+            return 0;
+
+        if (mBackend == Backend.BIT_BOARD)
+            return BitBoard.legalMoves(mBits);
+        return mBoard.legalMoves();
+    }
+
+    /**
+     * Get the bit representing the given <i>direction</i> on {@link #legalMoves()}.
+     *
+     * @param direction The {@link Direction} to get the bit from.
+     * @return The bit of the given <i>direction</i>.
+     */
+    public static int directionMask(Direction direction) {
+
+        return 1 << direction.ordinal();
+    }
+
+    private boolean canPlay() {
+        return legalMoves() != 0;
     }
 
     private boolean canPlay(Direction direction) {
-        return play(direction, true);
+        return (legalMoves() & directionMask(direction)) != 0;
     }
 
     /**
      * Try to move the <i>tile</i> contained at <code>(srcRow, srcColumn)</code> to the position at
-     * <code>(dstRow, dstColumn)</code>.
+     * <code>(dstRow, dstColumn)</code>, and keep sliding it the same way while void squares are
+     * found, until hitting a wall or another <i>tile</i>.
      *
      * @param board     The board to apply changed onto.
      * @param srcRow    The <i>tile</i>'s source row to be moved from.
      * @param srcColumn The <i>tile</i>'s source column to be moved from.
      * @param dstRow    The <i>tile</i>'s destiny row to be moved to.
      * @param dstColumn The <i>tile</i>'s destiny column to be moved to.
-     * @return The {@link PlayResult} of the move.
+     * @return The result of the move, packed by {@link #packMoveResult(Board, int, int,
+     * boolean)}, or {@link #NO_TILE} if there's no <i>tile</i> at the source position.
      */
-    private PlayResult moveTile(Board board, int srcRow, int srcColumn, int dstRow, int dstColumn) {
-
-        Tile fromSquare;
-        Tile toSquare;
-        try {
+    private int moveTile(Board board, int srcRow, int srcColumn, int dstRow, int dstColumn) {
 
-            // Get involved items
-            fromSquare = board.getTile(srcRow, srcColumn);
-            toSquare = board.getTile(dstRow, dstColumn);
-        } catch (ArrayIndexOutOfBoundsException ex) {
-
-            // Wall hit, so do nothing more
-            // Return the PlayResult
-            return new PlayResult(srcRow, srcColumn, false);
-        }
-
-        // Calculate direction (in case recursive call is needed)
-        Direction direction;
-        if (srcRow < dstRow)
-            direction = Direction.DOWN;
-        else if (srcRow > dstRow)
-            direction = Direction.UP;
-        else if (srcColumn < dstColumn)
-            direction = Direction.RIGHT;
-        else if (srcColumn > dstColumn)
-            direction = Direction.LEFT;
-        else
-            direction = null;
+        // Calculate the step to slide with
+        final int rowStep = dstRow - srcRow;
+        final int columnStep = dstColumn - srcColumn;
 
-        if (fromSquare.getValue() == VOID_VALUE) {
+        while (true) {
 
-            // No value on 'from', so do nothing
-            return null;
-        } else if (toSquare.isVoid()) {
+            if (dstRow < 0 || dstRow >= board.getRows()
+                    || dstColumn < 0 || dstColumn >= board.getColumns()) {
 
-            // No value on 'to', so move (and try to move again)
-            board.setValue(fromSquare.getValue(), dstRow, dstColumn);
-            board.setValue(VOID_VALUE, srcRow, srcColumn);
+                // Wall hit, so do nothing more
+                // Return the result
+                return packMoveResult(board, srcRow, srcColumn, false);
+            }
 
-            if (direction != null)
-                switch (direction) {
+            // Get involved items
+            final Tile fromSquare = board.getTile(srcRow, srcColumn);
+            final Tile toSquare = board.getTile(dstRow, dstColumn);
 
-                    case DOWN:
+            if (fromSquare.getValue() == VOID_VALUE) {
 
-                        return moveTile(board, srcRow + 1, srcColumn, dstRow + 1, dstColumn);
-                    case LEFT:
+                // No value on 'from', so do nothing
+                return NO_TILE;
+            } else if (toSquare.isVoid()) {
 
-                        return moveTile(board, srcRow, srcColumn - 1, dstRow, dstColumn - 1);
-                    case RIGHT:
+                // No value on 'to', so move (and try to move again)
+                board.setValue(fromSquare.getValue(), dstRow, dstColumn);
+                board.setValue(VOID_VALUE, srcRow, srcColumn);
 
-                        return moveTile(board, srcRow, srcColumn + 1, dstRow, dstColumn + 1);
-                    case UP:
+                srcRow = dstRow;
+                srcColumn = dstColumn;
+                dstRow += rowStep;
+                dstColumn += columnStep;
+            } else if (toSquare.shouldNotMergeThisTurn()) {
 
-                        return moveTile(board, srcRow - 1, srcColumn, dstRow - 1, dstColumn);
-                }
+                // The 'to' square was already merged, so do nothing
+                // Return the result
+                return packMoveResult(board, srcRow, srcColumn, false);
+            } else if (fromSquare.getValue() == toSquare.getValue()) {
 
-            // note: will never get here (switch - default compiler ambiguous case)
-            return null;
-        } else if (toSquare.shouldNotMergeThisTurn()) {
+                // Same value on 'from' and 'to', so move (and sum)
+                board.setValue(toSquare.getValue() * 2, dstRow, dstColumn, true);
+                board.setValue(VOID_VALUE, srcRow, srcColumn);
 
-            // The 'to' square was already merged, so do nothing
-            // Return the PlayResult
-            return new PlayResult(srcRow, srcColumn, false);
-        } else if (fromSquare.getValue() == toSquare.getValue()) {
+                // Add the new value as score (but not while simulating on a copy)
+                if (board == mBoard)
+                    addScore(board.getTile(dstRow, dstColumn).value);
 
-            // Same value on 'from' and 'to', so move (and sum)
-            board.setValue(toSquare.getValue() * 2, dstRow, dstColumn, true);
-            board.setValue(VOID_VALUE, srcRow, srcColumn);
+                // Return the result
+                return packMoveResult(board, dstRow, dstColumn, true);
+            } else {
 
-            // Add the new value as score
-            addScore(board.getTile(dstRow, dstColumn).value);
+                // Different values on 'from' and 'to', so do nothing
+                // Return the result
+                return packMoveResult(board, srcRow, srcColumn, false);
+            }
+        }
+    }
 
-            // Return the PlayResult
-            return new PlayResult(dstRow, dstColumn, true);
-        } else {
+    /**
+     * Pack the result of a move on a single integer, being the lowest bit the <i>merged</i> flag,
+     * and the remaining ones the square index (<code>row * columns + column</code>).
+     *
+     * @param board  The board the move was done onto.
+     * @param row    The ending row.
+     * @param column The ending column.
+     * @param merged Set to <code>true</code> if the move ended with a merge.
+     * @return The packed result.
+     */
+    private static int packMoveResult(Board board, int row, int column, boolean merged) {
 
-            // Different values on 'from' and 'to', so do nothing
-            // Return the PlayResult
-            return new PlayResult(srcRow, srcColumn, false);
-        }
+        return ((row * board.getColumns() + column) << 1) | (merged ? 1 : 0);
     }
 
     /**
@@ -524,8 +1170,9 @@ public class Engine {
      * Initialize a new game, with the given <i>rows</i> height and <i>columns</i>
      * width:
      * <ul>
-     * <li>Create a new {@link Random} object.</li>
-     * <li>Create a new {@link Board} object.</li>
+     * <li>Seed the {@link Random} generator (creating it, if needed).</li>
+     * <li>Create a new {@link Board} object (or clean the current one, if reusable).</li>
+     * <li>Pick the {@link Backend} to play with.</li>
      * <li>Settle the <i>score</i> and <i>turns</i> to 0.</li>
      * <li>Create two <i>tiles</i> with value of 2 at random places.</li>
      * </ul>
@@ -533,17 +1180,22 @@ public class Engine {
      * @param rows           The amount of rows height.
      * @param columns        The amount of columns width.
      * @param tileValueToWin The amount needed on any <i>tile</i> to win the game.
+     * @param backend        The preferred {@link Backend} to play the game.
+     * @param seed           The seed of the game.
      */
-    private void init(int rows, int columns, int tileValueToWin) {
+    private void init(int rows, int columns, int tileValueToWin, Backend backend, long seed) {
 
+        beginChanges();
         setState(State.PREPARING);
 
-        // Initialize the random if needed
+        // Seed the random (creating it, if needed), so the game can be replayed
         if (this.mRandom == null)
-            this.mRandom = new Random(System.currentTimeMillis());
+            this.mRandom = new SplitRandom(seed);
+        else
+            this.mRandom.setSeed(seed);
+        this.mSeed = seed;
 
-        // Create a new board
-        this.mBoard = new Board(rows, columns);
+        prepareBoard(rows, columns, tileValueToWin, backend);
 
         // Clean state variables
         this.mScore = 0;
@@ -554,12 +1206,43 @@ public class Engine {
         createTile(createRandomValue());
         createTile(createRandomValue());
 
-        setState(State.IDLE);
+        endChanges(State.IDLE);
+    }
+
+    /**
+     * Settle an empty board of the given size, and pick the {@link Backend} to play it.
+     *
+     * @param rows           The amount of rows height.
+     * @param columns        The amount of columns width.
+     * @param tileValueToWin The amount needed on any <i>tile</i> to win the game.
+     * @param backend        The preferred {@link Backend} to play the game.
+     */
+    private void prepareBoard(int rows, int columns, int tileValueToWin, Backend backend) {
+
+        // Create a new board, or clean the previous one if it has the same size
+        if (this.mBoard != null && this.mBoard.getRows() == Math.max(rows, MIN_BORDER_SIZE)
+                && this.mBoard.getColumns() == Math.max(columns, MIN_BORDER_SIZE))
+            this.mBoard.clear();
+        else
+            this.mBoard = new Board(rows, columns);
+
+        // Pick the backend, falling back to tiles if the bit board can't hold this game
+        if (backend == Backend.BIT_BOARD
+                && mBoard.getRows() == BitBoard.SIZE && mBoard.getColumns() == BitBoard.SIZE
+                && tileValueToWin <= 1 << BitBoard.MAX_EXPONENT)
+            this.mBackend = Backend.BIT_BOARD;
+        else
+            this.mBackend = Backend.TILES;
+        this.mBits = BitBoard.EMPTY;
+        this.mBitsCreated = 0;
+        this.mBitsDirty = false;
+        // Every square is published again
+        this.mPublishedBoard = null;
     }
 
     private boolean resolvePlay(Direction direction, Board board, int indexR, int indexC,
                                 boolean simulate) {
-        PlayResult result = null;
+        int result = NO_TILE;
         switch (direction) {
 
             case DOWN:
@@ -576,13 +1259,23 @@ public class Engine {
                 break;
         }
 
-        if (result != null && (indexR != result.row || indexC != result.column)) {
+        if (result == NO_TILE)
+            return false;
 
-            if (!simulate)
+        final int square = result >>> 1;
+        final int row = square / board.getColumns();
+        final int column = square % board.getColumns();
+        if (indexR != row || indexC != column) {
+
+            if (!simulate) {
+
+                // Only the ends of the slide change, the squares between stay void
+                board.markChanged(indexR * board.getColumns() + indexC);
+                board.markChanged(square);
                 if (mListener != null)
-                    mListener.onTileMoved(indexR, indexC,
-                            result.row, result.column,
-                            direction, result.merged);
+                    mListener.onTileMoved(indexR, indexC, row, column, direction,
+                            (result & 1) != 0);
+            }
             return true;
         }
 
@@ -604,12 +1297,13 @@ public class Engine {
 
             if (mListener != null)
                 mListener.onGameFinished(true, getMovements(), mScore);
-            setState(State.VICTORY);
+            endChanges(State.VICTORY);
         } else if (turnDone) {
             // The turn was completed successfully
 
             // Call (required) Board's endTurn() and create a new tile
             mBoard.endTurn();
+            mBitsCreated = 0;
             createTile(createRandomValue());
 
             if (!canPlay()) {
@@ -617,21 +1311,128 @@ public class Engine {
 
                 if (mListener != null)
                     mListener.onGameFinished(false, getMovements(), mScore);
-                setState(State.DEFEAT);
+                endChanges(State.DEFEAT);
             } else {
                 // Game is not over yet
 
                 // Add one more turn
                 mMovements++;
-                setState(State.IDLE);
+                endChanges(State.IDLE);
             }
         } else {
             // Couldn't perform the play this turn
 
             if (mListener != null)
                 mListener.onDisallowedMove();
-            setState(State.IDLE);
+            endChanges(State.IDLE);
+        }
+    }
+
+    /**
+     * Get the <i>playing</i> {@link State} of the given <i>direction</i>.
+     *
+     * @param direction The {@link Direction} being played.
+     * @return The <i>playing</i> {@link State}.
+     */
+    private static State getPlayingState(Direction direction) {
+
+        switch (direction) {
+
+            case DOWN:
+                return State.PLAYING_DOWN;
+            case LEFT:
+                return State.PLAYING_LEFT;
+            case RIGHT:
+                return State.PLAYING_RIGHT;
+            case UP:
+                return State.PLAYING_UP;
+        }
+
+        // note: will never get here (switch - default compiler ambiguous case)
+        return null;
+    }
+
+    /**
+     * Mark the game contents as being changed by the current thread. Until the changes end,
+     * {@link #readSnapshot(Snapshot)} readers on other threads keep getting the published ones.
+     */
+    private void beginChanges() {
+
+        mWriter = Thread.currentThread();
+    }
+
+    /**
+     * Publish the changes on the game contents started by {@link #beginChanges()} along with the
+     * given <i>state</i>, then settle and notify it.
+     *
+     * @param state The {@link State} to settle.
+     */
+    private void endChanges(State state) {
+
+        mSequence.incrementAndGet();
+        publish(state);
+        mSequence.incrementAndGet();
+        mWriter = null;
+
+        this.mState.set(state);
+        if (mListener != null)
+            mListener.onStateChange(state);
+    }
+
+    /**
+     * Copy the game contents onto {@link #mPublished}, along with the given <i>state</i>. Must be
+     * called while {@link #mSequence} is odd.
+     *
+     * @param state The {@link State} to publish.
+     */
+    private void publish(State state) {
+
+        final Published published = mPublished;
+        final Board board = mBoard;
+        final int rows = board == null ? 0 : board.getRows();
+        final int columns = board == null ? 0 : board.getColumns();
+
+        if (board != null && mBackend == Backend.BIT_BOARD) {
+
+            // The whole board is a single word
+            published.bits = mBits;
+            published.bitsCreated = mBitsCreated;
+        } else if (board != null) {
+
+            AtomicLongArray squares = published.squares;
+            if (squares == null || squares.length() < rows * columns) {
+
+                squares = new AtomicLongArray(rows * columns);
+                published.squares = squares;
+            }
+
+            if (board != mPublishedBoard || published.backend != Backend.TILES) {
+
+                for (int square = 0; square < rows * columns; square++)
+                    squares.lazySet(square, Published.pack(board.getTile(square)));
+                mPublishedBoard = board;
+            } else {
+
+                // Just the squares changed since the last publication
+                for (int index = 0; index < board.getChangeCount(); index++) {
+
+                    final int square = board.getChange(index);
+                    squares.lazySet(square, Published.pack(board.getTile(square)));
+                }
+            }
+            board.clearChanges();
         }
+
+        published.rows = rows;
+        published.columns = columns;
+        published.score = mScore;
+        published.movements = mMovements;
+        published.state = state;
+        published.tileValueToWin = mTileValueToWin;
+        published.backend = mBackend;
+        published.seed = mSeed;
+        published.randomSaved = mRandom instanceof SplitRandom;
+        published.randomState = published.randomSaved ? ((SplitRandom) mRandom).getState() : 0;
     }
 
     /**
@@ -641,20 +1442,91 @@ public class Engine {
      */
     private void createTile(int value) {
 
-        createTileAtPosition(value, findRandomAvailableSquare());
+        if (mBackend == Backend.BIT_BOARD) {
+
+            createBitsTile(value);
+        } else {
+
+            final int square = findRandomAvailableSquare();
+            createTileAtPosition(value, square / mBoard.getColumns(),
+                    square % mBoard.getColumns());
+        }
     }
 
     /**
-     * Create a <i>tile</i> with the given <i>value</i> at the given
-     * <i>point</i>.
+     * Create a <i>tile</i> with the given <i>value</i> at a random position of {@link #mBits}.
+     * <p/>
+     * The random position is picked the same way {@link #findRandomAvailableSquare()} does.
      *
      * @param value The integer value of the <i>tile</i>.
-     * @param point The {@link Point} in which to create the <i>tile</i>.
-     * @see #createTileAtPosition(int, int, int)
+     * @throws BoardFullException If there are no available space on the board.
+     */
+    private void createBitsTile(int value) throws BoardFullException {
+
+        final int empty = BitBoard.countEmpty(mBits);
+        if (empty == 0)
+            throw ExceptionFactory.createBoardFullException(null);
+
+        int cell = BitBoard.findEmpty(mBits, mRandom.nextInt(empty));
+        if (mForcedSquare >= 0 && ((mBits >>> (mForcedSquare * 4)) & 0xF) == 0)
+            cell = mForcedSquare;
+        final int row = cell / BitBoard.SIZE;
+        final int column = cell % BitBoard.SIZE;
+        mBits = BitBoard.setValue(mBits, row, column, value);
+        mBitsCreated |= 1 << cell;
+        mBitsDirty = true;
+
+        if (mListener != null)
+            mListener.onTileCreated(row, column, value);
+    }
+
+    /**
+     * Play a move on {@link #mBits}.
+     * <p/>
+     * No {@link Listener#onTileMoved(int, int, int, int, Direction, boolean)} is triggered by
+     * this backend.
+     *
+     * @param direction The {@link Direction} to move to.
+     * @param simulate  Give <code>true</code> to only find out if the move is possible.
+     * @return Whether any <i>tile</i> moved or not.
+     */
+    private boolean playBits(Direction direction, boolean simulate) {
+
+        final long result = BitBoard.move(mBits, direction);
+        if (result == mBits)
+            return false;
+
+        if (!simulate) {
+
+            addScore(BitBoard.score(mBits, direction));
+
+            // Squares changed by the move lose their created mark, as moved tiles do
+            final long changed = mBits ^ result;
+            for (int created = mBitsCreated; created != 0; created &= created - 1) {
+
+                final int cell = Integer.numberOfTrailingZeros(created);
+                if (((changed >>> (cell * 4)) & 0xF) != 0)
+                    mBitsCreated &= ~(1 << cell);
+            }
+            mBits = result;
+            mBitsDirty = true;
+        }
+        return true;
+    }
+
+    /**
+     * Copy the contents of {@link #mBits} onto {@link #mBoard}, if outdated.
      */
-    private void createTileAtPosition(int value, Point point) {
+    private void syncBoard() {
 
-        createTileAtPosition(value, point.row, point.column);
+        if (!mBitsDirty)
+            return;
+
+        for (int indexR = 0; indexR < BitBoard.SIZE; indexR++)
+            for (int indexC = 0; indexC < BitBoard.SIZE; indexC++)
+                mBoard.setValue(BitBoard.getValue(mBits, indexR, indexC), indexR, indexC, false,
+                        (mBitsCreated & (1 << (indexR * BitBoard.SIZE + indexC))) != 0);
+        mBitsDirty = false;
     }
 
     /**
@@ -664,11 +1536,11 @@ public class Engine {
      * @param value  The integer value of the <i>tile</i>.
      * @param row    The row in which to create the <i>tile</i>.
      * @param column The column in which to create the <i>tile</i>.
-     * @see #createTileAtPosition(int, Point)
      */
     private void createTileAtPosition(int value, int row, int column) {
 
         mBoard.setValue(value, row, column, false, true);
+        mBoard.markChanged(row * mBoard.getColumns() + column);
 
         if (mListener != null)
             mListener.onTileCreated(row, column, value);
@@ -681,29 +1553,56 @@ public class Engine {
      */
     private int createRandomValue() {
 
-        return DEFAULT_ALLOWED_VALUES[mRandom.nextInt(DEFAULT_ALLOWED_VALUES.length)];
+        final int value = DEFAULT_ALLOWED_VALUES[mRandom.nextInt(DEFAULT_ALLOWED_VALUES.length)];
+        return mForcedSquare < 0 ? value : mForcedValue;
     }
 
     /**
      * Find a random square, with value {@link #VOID_VALUE} from the board.
+     * <p/>
+     * Every void square has the same chance to be picked.
      *
-     * @return The {@link Point} of a random board square with value
+     * @return The index (<code>row * columns + column</code>) of a random board square with value
      * {@link #VOID_VALUE}.
      * @throws BoardFullException If there are no available space on the board.
      */
-    private Point findRandomAvailableSquare() throws BoardFullException {
+    private int findRandomAvailableSquare() throws BoardFullException {
 
-        List<Point> candidates = new ArrayList<>();
+        final int candidates = mBoard.getEmptyCount();
+        if (candidates == 0)
+            throw ExceptionFactory.createBoardFullException(null);
 
-        for (int indexR = 0; indexR < mBoard.getRows(); indexR++)
-            for (int indexC = 0; indexC < mBoard.getColumns(); indexC++)
-                if (mBoard.getTile(indexR, indexC).isVoid())
-                    candidates.add(new Point(indexR, indexC));
+        final int nth = mRandom.nextInt(candidates);
+        if (mForcedSquare >= 0 && mBoard.getTile(mForcedSquare / mBoard.getColumns(),
+                mForcedSquare % mBoard.getColumns()).isVoid())
+            return mForcedSquare;
+        return mBoard.findEmpty(nth);
+    }
 
-        if (candidates.size() == 0)
-            throw ExceptionFactory.createBoardFullException(null);
+    /**
+     * Copy {@link #mBoard} onto {@link #mScratchBoard}, creating it only if needed.
+     *
+     * @return The {@link #mScratchBoard}.
+     */
+    private Board copyToScratchBoard() {
+
+        if (mScratchBoard == null || mScratchBoard.getRows() != mBoard.getRows()
+                || mScratchBoard.getColumns() != mBoard.getColumns())
+            mScratchBoard = Board.clone(mBoard);
+        else
+            mScratchBoard.copy(mBoard);
+
+        return mScratchBoard;
+    }
+
+    /**
+     * Create a seed for a game started without one.
+     *
+     * @return A seed, different on every call.
+     */
+    private static long createSeed() {
 
-        return candidates.get(mRandom.nextInt(candidates.size()));
+        return sSeeds.getAndAdd(0x9E3779B97F4A7C15L) ^ System.nanoTime();
     }
 
     /**
@@ -739,14 +1638,10 @@ public class Engine {
      */
     private int findGreatestTile() {
 
-        int result = 0;
+        if (mBackend == Backend.BIT_BOARD)
+            return BitBoard.toValue(BitBoard.getMaxExponent(mBits));
 
-        for (int indexR = 0; indexR < mBoard.getRows(); indexR++)
-            for (int indexC = 0; indexC < mBoard.getColumns(); indexC++)
-                if (mBoard.getTile(indexR, indexC).getValue() > result)
-                    result = mBoard.getTile(indexR, indexC).getValue();
-
-        return result;
+        return mBoard.getGreatestValue();
     }
 
     /**
@@ -818,6 +1713,21 @@ public class Engine {
         UP,
     }
 
+    /**
+     * Enumeration for the available board implementations.
+     */
+    public enum Backend {
+
+        /**
+         * Play on a matrix of {@link Tile}s. Allows any board size.
+         */
+        TILES,
+        /**
+         * Play on a {@link BitBoard}. Only allows 4 x 4 boards, but moves are way cheaper.
+         */
+        BIT_BOARD,
+    }
+
     /**
      * Listener to notify whenever a change on the <i>game state</i> occurred.
      */
@@ -875,145 +1785,111 @@ public class Engine {
     }
 
     /**
-     * Convenience class to reference a 2D point.
+     * Results of simulating every {@link Direction}, filled by {@link #simulateAll(Simulation)}.
+     * <p/>
+     * A {@link Simulation} can be reused for several calls, to avoid creating new buffers.
      */
-    public static class Point {
+    public static class Simulation {
 
         /**
-         * The row.
+         * The board rows.
          */
-        int row;
+        int rows;
         /**
-         * The column.
+         * The board columns.
          */
-        int column;
-
+        int columns;
         /**
-         * Constructor for {@link Point}. Create a new {@link Point} with the given <i>row</i> and
-         * <i>column</i>.
-         *
-         * @param row    The row to settle.
-         * @param column The column to settle.
+         * The board values before any move, row by row.
          */
-        public Point(int row, int column) {
-
-            this.row = row;
-            this.column = column;
-        }
-    }
-
-    /**
-     * Convenience class wrapping a movement play result.
-     * <p/>
-     * A {@link PlayResult} is conformed from a destiny row and column, as well as a flag
-     * indicating if the move ended as a merge.
-     */
-    public static class PlayResult {
-
+        int[] source = new int[0];
         /**
-         * The ending row for the play.
+         * The board values after every move, row by row, by {@link Direction} ordinal.
          */
-        int row;
+        int[][] values = new int[DIRECTIONS.length][0];
         /**
-         * The ending column for the play.
+         * The score earned by every move, by {@link Direction} ordinal.
          */
-        int column;
+        final int[] scores = new int[DIRECTIONS.length];
         /**
-         * Flag indicating if the play ended with a merge.
+         * The amount of merges done by every move, by {@link Direction} ordinal.
          */
-        boolean merged;
-
+        final int[] merges = new int[DIRECTIONS.length];
         /**
-         * Constructor for {@link PlayResult}.
-         *
-         * @param row    The ending row.
-         * @param column The ending column.
-         * @param merged Set to <code>true</code> if the play ended with a merge.
+         * Whether anything moved on every move, by {@link Direction} ordinal.
          */
-        public PlayResult(int row, int column, boolean merged) {
-
-            this.row = row;
-            this.column = column;
-            this.merged = merged;
-        }
-    }
-
-    /**
-     * Convenience class to reference a playing board.
-     * <p/>
-     * A board is a 4 x 4 chess style game field. From left to right are the columns, which goes
-     * from positions 0 to 3. From top to bottom are the rows, also going from 0 to 3. Something
-     * like so:
-     * <pre>
-     *        col.0  col.1  col.2  col.3
-     * row.1  [   ]  [   ]  [   ]  [   ]
-     * row.2  [   ]  [   ]  [   ]  [   ]
-     * row.3  [   ]  [   ]  [   ]  [   ]
-     * row.4  [   ]  [   ]  [   ]  [   ]
-     * </pre>
-     * <i>Figure - Board diagram</i>
-     */
-    public static class Board {
-
-        private int rows;
-        private int columns;
-        private Tile[][] tiles;
+        final boolean[] moved = new boolean[DIRECTIONS.length];
 
         /**
-         * Constructor for {@link Board}.
-         * <p/>
-         * Will create an empty board, with <i>rows</i> and <i>columns</i> size.
-         *
-         * @param rows    The height size (number of rows).
-         * @param columns The width size (number of columns).
+         * Prepare the buffers for a board of the given size, and clean the results.
          */
-        Board(int rows, int columns) {
-
-            // Check that rows and columns are, at least, MIN_BORDER_SIZE
-            if (rows < MIN_BORDER_SIZE)
-                rows = MIN_BORDER_SIZE;
-            if (columns < MIN_BORDER_SIZE)
-                columns = MIN_BORDER_SIZE;
+        void resize(int rows, int columns) {
 
-            // Initialize this object's attributes
             this.rows = rows;
             this.columns = columns;
-            this.tiles = new Tile[getRows()][getColumns()];
+            if (source.length < rows * columns) {
 
-            // Create an empty board
-            for (int indexR = 0; indexR < getRows(); indexR++)
-                for (int indexC = 0; indexC < getColumns(); indexC++)
-                    tiles[indexR][indexC] = new Tile();
+                source = new int[rows * columns];
+                for (int index = 0; index < values.length; index++)
+                    values[index] = new int[rows * columns];
+            }
+
+            for (int index = 0; index < values.length; index++) {
+
+                scores[index] = 0;
+                merges[index] = 0;
+                moved[index] = false;
+            }
         }
 
         /**
-         * Constructor for {@link Board}.
+         * Slide and merge one line of {@link #source} towards it's first square, the same way
+         * {@link Engine#play(Direction, boolean)} does, and accumulate the results.
          *
-         * @param source Will create a copy of the given {@link Board}.
+         * @param direction The {@link Direction} being resolved.
+         * @param start     The index of the first square of the line (the one next to the wall).
+         * @param step      The index increment between squares of the line.
+         * @param length    The amount of squares of the line.
          */
-        Board(Board source) {
+        void slide(Direction direction, int start, int step, int length) {
 
-            this.rows = source.rows;
-            this.columns = source.columns;
+            final int index = direction.ordinal();
+            final int[] target = values[index];
 
-            this.tiles = new Tile[getRows()][getColumns()];
-            for (int indexR = 0; indexR < getRows(); indexR++)
-                for (int indexC = 0; indexC < getColumns(); indexC++)
-                    tiles[indexR][indexC] = Tile.clone(source.getTile(indexR, indexC));
-        }
+            int write = start;
+            int last = VOID_VALUE;
+            for (int count = 0, square = start; count < length; count++, square += step) {
 
-        /**
-         * Return a copy of this {@link Board}.
-         */
-        public static Board clone(Board board) {
+                final int value = source[square];
+                if (value == VOID_VALUE)
+                    continue;
 
-            return new Board(board);
+                if (value == last) {
+
+                    // Same value than the previous tile, so merge (only once)
+                    target[write - step] = value * 2;
+                    scores[index] += value * 2;
+                    merges[index]++;
+                    moved[index] = true;
+                    last = VOID_VALUE;
+                } else {
+
+                    target[write] = value;
+                    moved[index] |= write != square;
+                    last = value;
+                    write += step;
+                }
+            }
+
+            // Void the rest of the line
+            for (final int end = start + length * step; write != end; write += step)
+                target[write] = VOID_VALUE;
         }
 
         /**
-         * Get this {@link Board}'s rows.
+         * Get the number of rows of the board.
          *
-         * @return This {@link Board}'s rows.
+         * @return The number of rows, or 0 if the game was not yet initialized.
          */
         public int getRows() {
 
@@ -1021,9 +1897,9 @@ public class Engine {
         }
 
         /**
-         * Get this {@link Board}'s columns.
+         * Get the number of columns of the board.
          *
-         * @return This {@link Board}'s columns.
+         * @return The number of columns, or 0 if the game was not yet initialized.
          */
         public int getColumns() {
 
@@ -1031,46 +1907,813 @@ public class Engine {
         }
 
         /**
-         * Get this {@link Board}'s {@link Tile}, at the given <i>row</i> and <i>column</i>.
+         * Get the value at the given <i>row</i> and <i>column</i> after moving towards the
+         * given <i>direction</i>.
          *
-         * @param row    The row to get the {@link Tile} from.
-         * @param column The column to get the {@link Tile} from.
-         * @return The {@link Tile} at the given position.
+         * @param direction The {@link Direction} moved to.
+         * @param row       The row to read.
+         * @param column    The column to read.
+         * @return The value at the given square, or {@link #VOID_VALUE} if void.
          */
-        public Tile getTile(int row, int column) {
+        public int getValue(Direction direction, int row, int column) {
 
-            return tiles[row][column];
+            return values[direction.ordinal()][row * columns + column];
         }
 
         /**
-         * Return a clone of this objet's {@link Tile} matrix.
+         * Get the score earned by moving towards the given <i>direction</i>.
          *
-         * @return A clone of this {@link Tile} matrix.
+         * @param direction The {@link Direction} moved to.
+         * @return The sum of all the values created by merges.
          */
-        public Tile[][] getTiles() {
+        public int getScore(Direction direction) {
 
-            return tiles.clone();
+            return scores[direction.ordinal()];
         }
 
         /**
-         * Set the given <i>value</i> on the {@link Tile} at the given <i>row</i> and <i>column</i>.
-         * <p/>
-         * The {@link Tile} attributes {@link Tile#notMergeThisTurn} and
-         * {@link Tile#justCreated} will be both <code>false</code>.
+         * Get the amount of merges done by moving towards the given <i>direction</i>.
          *
-         * @param value  The value to settle.
-         * @param row    The target {@link Tile}'s row.
-         * @param column The target {@link Tile}'s column.
+         * @param direction The {@link Direction} moved to.
+         * @return The amount of merges.
          */
-        public void setValue(int value, int row, int column) {
+        public int getMerges(Direction direction) {
 
-            setValue(value, row, column, false);
+            return merges[direction.ordinal()];
         }
 
         /**
-         * Set the given <i>value</i> on the {@link Tile} at the given <i>row</i> and
-         * <i>column</i>, and also apply it's {@link Tile#notMergeThisTurn} property.
-         * <p/>
+         * Get whether anything moved by moving towards the given <i>direction</i>.
+         *
+         * @param direction The {@link Direction} moved to.
+         * @return <code>true</code> if the move is allowed, <code>false</code> otherwise.
+         */
+        public boolean isMoved(Direction direction) {
+
+            return moved[direction.ordinal()];
+        }
+    }
+
+    /**
+     * The game contents published at the end of every change, for {@link #readSnapshot(Snapshot)}
+     * readers on other threads. Every field is volatile (or an atomic array), so it's reads are
+     * never reordered with the ones of {@link #mSequence} validating them.
+     */
+    private static final class Published {
+
+        /**
+         * The board squares of {@link Backend#TILES} games, row by row, packed by
+         * {@link #pack(Tile)}. Only grows.
+         */
+        volatile AtomicLongArray squares;
+        /**
+         * The board of {@link Backend#BIT_BOARD} games, and the mask of it's squares created
+         * this turn.
+         */
+        volatile long bits;
+        volatile int bitsCreated;
+        volatile int rows;
+        volatile int columns;
+        volatile int score;
+        volatile int movements;
+        volatile State state = State.NOT_PREPARED;
+        volatile int tileValueToWin;
+        volatile Backend backend = Backend.TILES;
+        volatile long seed;
+        volatile boolean randomSaved;
+        volatile long randomState;
+
+        /**
+         * Pack the value and {@link Snapshot} flags of the given <i>tile</i> on a single entry.
+         *
+         * @param tile The {@link Tile} to pack.
+         * @return The packed entry.
+         */
+        static long pack(Tile tile) {
+
+            return (long) tile.getValue() << 8
+                    | (tile.isJustCreated() ? Snapshot.FLAG_JUST_CREATED : 0)
+                    | (tile.shouldNotMergeThisTurn() ? Snapshot.FLAG_NOT_MERGE_THIS_TURN : 0);
+        }
+
+        /**
+         * Copy the published contents onto the given <i>snapshot</i>, without any consistency
+         * check.
+         *
+         * @param snapshot The {@link Snapshot} to fill.
+         */
+        void copyTo(Snapshot snapshot) {
+
+            final int rows = this.rows;
+            final int columns = this.columns;
+            snapshot.setSize(rows, columns);
+            if (backend == Backend.BIT_BOARD) {
+
+                // A size from another publication may not fit the bit board: the check will fail
+                final long bits = this.bits;
+                final int created = bitsCreated;
+                final int count = Math.min(rows * columns, BitBoard.SIZE * BitBoard.SIZE);
+                for (int square = 0; square < count; square++) {
+
+                    snapshot.values[square] = BitBoard.getValue(bits, square / BitBoard.SIZE,
+                            square % BitBoard.SIZE);
+                    snapshot.flags[square] =
+                            (created & (1 << square)) != 0 ? Snapshot.FLAG_JUST_CREATED : 0;
+                }
+            } else {
+
+                // A size from a newer publication may not fit the older squares: the check
+                // will fail
+                final AtomicLongArray squares = this.squares;
+                final int count = squares == null ? 0 : Math.min(rows * columns, squares.length());
+                for (int square = 0; square < count; square++) {
+
+                    final long entry = squares.get(square);
+                    snapshot.values[square] = (int) (entry >> 8);
+                    snapshot.flags[square] = (byte) entry;
+                }
+            }
+
+            snapshot.score = score;
+            snapshot.movements = movements;
+            snapshot.state = state;
+            snapshot.tileValueToWin = tileValueToWin;
+            snapshot.backend = backend;
+            snapshot.seed = seed;
+            snapshot.randomSaved = randomSaved;
+            snapshot.randomState = randomState;
+        }
+    }
+
+    /**
+     * Consistent copy of the game contents, taken by {@link #readSnapshot(Snapshot)} and given
+     * back by {@link #restore(Snapshot)}.
+     * <p/>
+     * A {@link Snapshot} can be reused for several reads, to avoid creating new buffers. It can
+     * also be filled by hand (i.e. when read from storage) through it's setters.
+     */
+    public static class Snapshot {
+
+        /**
+         * <i>Tile</i> flag set when it was created this turn.
+         *
+         * @see Tile#isJustCreated()
+         */
+        public static final byte FLAG_JUST_CREATED = 1;
+        /**
+         * <i>Tile</i> flag set when it must not be merged again this turn.
+         *
+         * @see Tile#shouldNotMergeThisTurn()
+         */
+        public static final byte FLAG_NOT_MERGE_THIS_TURN = 1 << 1;
+
+        /**
+         * The board rows.
+         */
+        int rows;
+        /**
+         * The board columns.
+         */
+        int columns;
+        /**
+         * The board values, row by row.
+         */
+        int[] values;
+        /**
+         * The {@link #FLAG_JUST_CREATED} and {@link #FLAG_NOT_MERGE_THIS_TURN} flags of every
+         * square, row by row.
+         */
+        byte[] flags;
+        /**
+         * The accumulated score.
+         */
+        int score;
+        /**
+         * The count of elapsed turns.
+         */
+        int movements;
+        /**
+         * The game's state.
+         */
+        State state;
+        /**
+         * The value of the greatest tile needed to win.
+         */
+        int tileValueToWin;
+        /**
+         * The {@link Backend} playing the game.
+         */
+        Backend backend = Backend.TILES;
+        /**
+         * The seed of the game.
+         */
+        long seed;
+        /**
+         * Flag indicating {@link #randomState} holds the state of a {@link SplitRandom}.
+         */
+        boolean randomSaved;
+        /**
+         * The state of the {@link SplitRandom} generator, if {@link #randomSaved}.
+         */
+        long randomState;
+
+        /**
+         * Settle the board size, growing the buffers if needed. Values and flags are left as
+         * they are.
+         *
+         * @param rows    The number of rows.
+         * @param columns The number of columns.
+         */
+        public void setSize(int rows, int columns) {
+
+            if (values == null || values.length < rows * columns) {
+
+                values = new int[rows * columns];
+                flags = new byte[rows * columns];
+            }
+            this.rows = rows;
+            this.columns = columns;
+        }
+
+        /**
+         * Get the number of rows of the board.
+         *
+         * @return The number of rows, or 0 if the game was not yet initialized.
+         */
+        public int getRows() {
+
+            return rows;
+        }
+
+        /**
+         * Get the number of columns of the board.
+         *
+         * @return The number of columns, or 0 if the game was not yet initialized.
+         */
+        public int getColumns() {
+
+            return columns;
+        }
+
+        /**
+         * Get the value at the given <i>row</i> and <i>column</i>.
+         *
+         * @param row    The row to read.
+         * @param column The column to read.
+         * @return The value at the given square, or {@link #VOID_VALUE} if void.
+         */
+        public int getValue(int row, int column) {
+
+            return values[row * columns + column];
+        }
+
+        /**
+         * Set the value at the given <i>row</i> and <i>column</i>.
+         *
+         * @param row    The row to write.
+         * @param column The column to write.
+         * @param value  The value to settle, or {@link #VOID_VALUE}.
+         */
+        public void setValue(int row, int column, int value) {
+
+            values[row * columns + column] = value;
+        }
+
+        /**
+         * Get the <i>tile</i> flags at the given <i>row</i> and <i>column</i>.
+         *
+         * @param row    The row to read.
+         * @param column The column to read.
+         * @return The {@link #FLAG_JUST_CREATED} and {@link #FLAG_NOT_MERGE_THIS_TURN} flags.
+         */
+        public byte getFlags(int row, int column) {
+
+            return flags[row * columns + column];
+        }
+
+        /**
+         * Set the <i>tile</i> flags at the given <i>row</i> and <i>column</i>.
+         *
+         * @param row    The row to write.
+         * @param column The column to write.
+         * @param flags  The {@link #FLAG_JUST_CREATED} and {@link #FLAG_NOT_MERGE_THIS_TURN}
+         *               flags.
+         */
+        public void setFlags(int row, int column, byte flags) {
+
+            this.flags[row * columns + column] = flags;
+        }
+
+        /**
+         * Get the accumulated score.
+         *
+         * @return The score.
+         */
+        public int getScore() {
+
+            return score;
+        }
+
+        /**
+         * Get the count of elapsed turns.
+         *
+         * @return The number of turns.
+         */
+        public int getMovements() {
+
+            return movements;
+        }
+
+        /**
+         * Get the game {@link State}.
+         *
+         * @return The game {@link State}.
+         */
+        public State getState() {
+
+            return state;
+        }
+
+        /**
+         * Set the accumulated score.
+         *
+         * @param score The score.
+         */
+        public void setScore(int score) {
+
+            this.score = score;
+        }
+
+        /**
+         * Set the count of elapsed turns.
+         *
+         * @param movements The number of turns.
+         */
+        public void setMovements(int movements) {
+
+            this.movements = movements;
+        }
+
+        /**
+         * Set the game {@link State}.
+         *
+         * @param state The game {@link State}.
+         */
+        public void setState(State state) {
+
+            this.state = state;
+        }
+
+        /**
+         * Get the value of the greatest tile needed to win.
+         *
+         * @return The value to win.
+         */
+        public int getTileValueToWin() {
+
+            return tileValueToWin;
+        }
+
+        /**
+         * Set the value of the greatest tile needed to win.
+         *
+         * @param tileValueToWin The value to win.
+         */
+        public void setTileValueToWin(int tileValueToWin) {
+
+            this.tileValueToWin = tileValueToWin;
+        }
+
+        /**
+         * Get the {@link Backend} playing the game.
+         *
+         * @return The {@link Backend}.
+         */
+        public Backend getBackend() {
+
+            return backend;
+        }
+
+        /**
+         * Set the {@link Backend} playing the game.
+         *
+         * @param backend The {@link Backend}.
+         */
+        public void setBackend(Backend backend) {
+
+            this.backend = backend;
+        }
+
+        /**
+         * Get the seed of the game.
+         *
+         * @return The seed.
+         */
+        public long getSeed() {
+
+            return seed;
+        }
+
+        /**
+         * Set the seed of the game.
+         *
+         * @param seed The seed.
+         */
+        public void setSeed(long seed) {
+
+            this.seed = seed;
+        }
+
+        /**
+         * Get whether the state of a {@link SplitRandom} generator was saved or not.
+         *
+         * @return Whether {@link #getRandomState()} is valid or not.
+         */
+        public boolean isRandomSaved() {
+
+            return randomSaved;
+        }
+
+        /**
+         * Get the state of the {@link SplitRandom} generator.
+         *
+         * @return The generator state, only valid if {@link #isRandomSaved()}.
+         */
+        public long getRandomState() {
+
+            return randomState;
+        }
+
+        /**
+         * Set the state of the {@link SplitRandom} generator.
+         *
+         * @param randomState The generator state.
+         * @see SplitRandom#getState()
+         */
+        public void setRandomState(long randomState) {
+
+            this.randomState = randomState;
+            this.randomSaved = true;
+        }
+
+        /**
+         * Forget the state of the {@link SplitRandom} generator, so the game will be seeded again
+         * when restored.
+         */
+        public void clearRandomState() {
+
+            this.randomState = 0;
+            this.randomSaved = false;
+        }
+    }
+
+    /**
+     * Convenience class to reference a playing board.
+     * <p/>
+     * A board is a 4 x 4 chess style game field. From left to right are the columns, which goes
+     * from positions 0 to 3. From top to bottom are the rows, also going from 0 to 3. Something
+     * like so:
+     * <pre>
+     *        col.0  col.1  col.2  col.3
+     * row.1  [   ]  [   ]  [   ]  [   ]
+     * row.2  [   ]  [   ]  [   ]  [   ]
+     * row.3  [   ]  [   ]  [   ]  [   ]
+     * row.4  [   ]  [   ]  [   ]  [   ]
+     * </pre>
+     * <i>Figure - Board diagram</i>
+     */
+    public static class Board {
+
+        private int rows;
+        private int columns;
+        private Tile[][] tiles;
+        /**
+         * Set of void squares, one bit per square index (<code>row * columns + column</code>).
+         */
+        private long[] empty;
+        /**
+         * The amount of bits set on {@link #empty}.
+         */
+        private int emptyCount;
+        /**
+         * The amount of <i>tiles</i> on the board for every exponent (the power of 2 that creates
+         * the value).
+         */
+        private int[] histogram;
+        /**
+         * The greatest exponent with any <i>tile</i> on {@link #histogram}, or 0 if none.
+         */
+        private int maxExponent;
+        /**
+         * The squares marked as changed since the last {@link #clearChanges()}, without repeats,
+         * and the set of them (one bit per square index). Moved and created <i>tiles</i> are
+         * marked by the {@link Engine}, and the flags reset by {@link #endTurn()} here.
+         */
+        private int[] changes;
+        private int changeCount;
+        private long[] changed;
+
+        /**
+         * Constructor for {@link Board}.
+         * <p/>
+         * Will create an empty board, with <i>rows</i> and <i>columns</i> size.
+         *
+         * @param rows    The height size (number of rows).
+         * @param columns The width size (number of columns).
+         */
+        Board(int rows, int columns) {
+
+            // Check that rows and columns are, at least, MIN_BORDER_SIZE
+            if (rows < MIN_BORDER_SIZE)
+                rows = MIN_BORDER_SIZE;
+            if (columns < MIN_BORDER_SIZE)
+                columns = MIN_BORDER_SIZE;
+
+            // Initialize this object's attributes
+            this.rows = rows;
+            this.columns = columns;
+            this.tiles = new Tile[getRows()][getColumns()];
+
+            // Create an empty board
+            for (int indexR = 0; indexR < getRows(); indexR++)
+                for (int indexC = 0; indexC < getColumns(); indexC++)
+                    tiles[indexR][indexC] = new Tile();
+
+            // Mark every square as void
+            this.empty = new long[(rows * columns + 63) / 64];
+            for (int square = 0; square < rows * columns; square++)
+                empty[square >>> 6] |= 1L << square;
+            this.emptyCount = rows * columns;
+            this.histogram = new int[Integer.SIZE];
+            this.maxExponent = 0;
+            this.changes = new int[rows * columns];
+            this.changed = new long[empty.length];
+        }
+
+        /**
+         * Constructor for {@link Board}.
+         *
+         * @param source Will create a copy of the given {@link Board}.
+         */
+        Board(Board source) {
+
+            this.rows = source.rows;
+            this.columns = source.columns;
+
+            this.tiles = new Tile[getRows()][getColumns()];
+            for (int indexR = 0; indexR < getRows(); indexR++)
+                for (int indexC = 0; indexC < getColumns(); indexC++)
+                    tiles[indexR][indexC] = Tile.clone(source.getTile(indexR, indexC));
+
+            this.empty = source.empty.clone();
+            this.emptyCount = source.emptyCount;
+            this.histogram = source.histogram.clone();
+            this.maxExponent = source.maxExponent;
+            this.changes = new int[rows * columns];
+            this.changed = new long[empty.length];
+        }
+
+        /**
+         * Void every square of this {@link Board}, without creating any new {@link Tile}.
+         */
+        void clear() {
+
+            for (int indexR = 0; indexR < getRows(); indexR++)
+                for (int indexC = 0; indexC < getColumns(); indexC++)
+                    setValue(VOID_VALUE, indexR, indexC);
+        }
+
+        /**
+         * Return a copy of this {@link Board}.
+         */
+        public static Board clone(Board board) {
+
+            return new Board(board);
+        }
+
+        /**
+         * Copy the contents of the given <i>source</i> onto this {@link Board}, without creating
+         * any new {@link Tile}.
+         *
+         * @param source The {@link Board} to copy. Must have the same size as this one.
+         */
+        void copy(Board source) {
+
+            for (int indexR = 0; indexR < getRows(); indexR++)
+                for (int indexC = 0; indexC < getColumns(); indexC++)
+                    tiles[indexR][indexC].copy(source.getTile(indexR, indexC));
+
+            System.arraycopy(source.empty, 0, empty, 0, empty.length);
+            this.emptyCount = source.emptyCount;
+            System.arraycopy(source.histogram, 0, histogram, 0, histogram.length);
+            this.maxExponent = source.maxExponent;
+        }
+
+        /**
+         * Get this {@link Board}'s rows.
+         *
+         * @return This {@link Board}'s rows.
+         */
+        public int getRows() {
+
+            return rows;
+        }
+
+        /**
+         * Get this {@link Board}'s columns.
+         *
+         * @return This {@link Board}'s columns.
+         */
+        public int getColumns() {
+
+            return columns;
+        }
+
+        /**
+         * Get this {@link Board}'s {@link Tile}, at the given <i>row</i> and <i>column</i>.
+         *
+         * @param row    The row to get the {@link Tile} from.
+         * @param column The column to get the {@link Tile} from.
+         * @return The {@link Tile} at the given position.
+         */
+        public Tile getTile(int row, int column) {
+
+            return tiles[row][column];
+        }
+
+        /**
+         * Get this {@link Board}'s {@link Tile} at the given <i>square</i>.
+         *
+         * @param square The index (<code>row * columns + column</code>) of the square.
+         * @return The {@link Tile} at the given square.
+         */
+        Tile getTile(int square) {
+
+            return tiles[square / columns][square % columns];
+        }
+
+        /**
+         * Get the amount of squares marked as changed since the last {@link #clearChanges()}.
+         *
+         * @return The amount of changed squares.
+         */
+        int getChangeCount() {
+
+            return changeCount;
+        }
+
+        /**
+         * Get a square changed since the last {@link #clearChanges()}.
+         *
+         * @param index The index of the change, from 0 to {@link #getChangeCount()}.
+         * @return The index (<code>row * columns + column</code>) of the square.
+         */
+        int getChange(int index) {
+
+            return changes[index];
+        }
+
+        /**
+         * Forget the changed squares.
+         */
+        void clearChanges() {
+
+            for (int index = 0; index < changeCount; index++)
+                changed[changes[index] >>> 6] = 0;
+            changeCount = 0;
+        }
+
+        /**
+         * Add the given <i>square</i> to the changed ones.
+         *
+         * @param square The index (<code>row * columns + column</code>) of the square.
+         */
+        void markChanged(int square) {
+
+            if ((changed[square >>> 6] & (1L << square)) == 0) {
+
+                changed[square >>> 6] |= 1L << square;
+                changes[changeCount++] = square;
+            }
+        }
+
+        /**
+         * Return a clone of this objet's {@link Tile} matrix.
+         *
+         * @return A clone of this {@link Tile} matrix.
+         */
+        public Tile[][] getTiles() {
+
+            return tiles.clone();
+        }
+
+        /**
+         * Get the amount of void squares on this {@link Board}.
+         *
+         * @return The amount of squares with value {@link #VOID_VALUE}.
+         */
+        public int getEmptyCount() {
+
+            return emptyCount;
+        }
+
+        /**
+         * Get the amount of <i>tiles</i> on this {@link Board}.
+         *
+         * @return The amount of squares with any value.
+         */
+        public int getTileCount() {
+
+            return rows * columns - emptyCount;
+        }
+
+        /**
+         * Get the amount of <i>tiles</i> on this {@link Board} with the given <i>value</i>.
+         *
+         * @param value The value to count. Must be a power of 2.
+         * @return The amount of squares with the given value.
+         */
+        public int getTileCount(int value) {
+
+            return value == VOID_VALUE ? 0 : histogram[Integer.numberOfTrailingZeros(value)];
+        }
+
+        /**
+         * Get the value of the greatest <i>tile</i> on this {@link Board}.
+         *
+         * @return The greatest value, or {@link #VOID_VALUE} if the board is empty.
+         */
+        public int getGreatestValue() {
+
+            return maxExponent == 0 ? VOID_VALUE : 1 << maxExponent;
+        }
+
+        /**
+         * Find the <i>nth</i> void square, counting row by row from the top-left most square.
+         *
+         * @param nth The zero based position of the void square to find.
+         * @return The index (<code>row * columns + column</code>) of the square, or
+         * <code>-1</code> if there are not so many void squares.
+         */
+        public int findEmpty(int nth) {
+
+            for (int index = 0; index < empty.length; index++) {
+
+                long word = empty[index];
+                final int count = Long.bitCount(word);
+                if (nth >= count) {
+
+                    nth -= count;
+                    continue;
+                }
+
+                // The square is on this word, so drop the lower void squares
+                for (; nth > 0; nth--)
+                    word &= word - 1;
+                return index * 64 + Long.numberOfTrailingZeros(word);
+            }
+            return -1;
+        }
+
+        /**
+         * Count the void squares before the given one, row by row from the top-left most square.
+         * It's the opposite of {@link #findEmpty(int)}.
+         *
+         * @param square The index (<code>row * columns + column</code>) of the square.
+         * @return The amount of void squares with a lower index.
+         */
+        public int countEmptyBefore(int square) {
+
+            final int words = square / 64;
+            int result = 0;
+            for (int index = 0; index < words; index++)
+                result += Long.bitCount(empty[index]);
+
+            final int bits = square % 64;
+            if (bits > 0)
+                result += Long.bitCount(empty[words] & (-1L >>> (64 - bits)));
+            return result;
+        }
+
+        /**
+         * Set the given <i>value</i> on the {@link Tile} at the given <i>row</i> and <i>column</i>.
+         * <p/>
+         * The {@link Tile} attributes {@link Tile#notMergeThisTurn} and
+         * {@link Tile#justCreated} will be both <code>false</code>.
+         *
+         * @param value  The value to settle.
+         * @param row    The target {@link Tile}'s row.
+         * @param column The target {@link Tile}'s column.
+         */
+        public void setValue(int value, int row, int column) {
+
+            setValue(value, row, column, false);
+        }
+
+        /**
+         * Set the given <i>value</i> on the {@link Tile} at the given <i>row</i> and
+         * <i>column</i>, and also apply it's {@link Tile#notMergeThisTurn} property.
+         * <p/>
          * The {@link Tile} attribute {@link Tile#justCreated} will be <code>false</code>.
          *
          * @param value          The value to settle.
@@ -1102,11 +2745,88 @@ public class Engine {
         public void setValue(int value, int row, int column, boolean shouldNotMerge,
                              boolean justCreated) {
 
+            // Keep the void squares set up to date
+            final int previous = tiles[row][column].getValue();
+            if ((previous == VOID_VALUE) != (value == VOID_VALUE)) {
+
+                final int square = row * columns + column;
+                empty[square >>> 6] ^= 1L << square;
+                emptyCount += value == VOID_VALUE ? 1 : -1;
+            }
+
+            // Keep the histogram and the greatest exponent up to date
+            if (previous != value) {
+
+                if (previous != VOID_VALUE) {
+
+                    final int exponent = Integer.numberOfTrailingZeros(previous);
+                    histogram[exponent]--;
+                    while (maxExponent > 0 && histogram[maxExponent] == 0)
+                        maxExponent--;
+                }
+                if (value != VOID_VALUE) {
+
+                    final int exponent = Integer.numberOfTrailingZeros(value);
+                    histogram[exponent]++;
+                    if (exponent > maxExponent)
+                        maxExponent = exponent;
+                }
+            }
+
             tiles[row][column].setValue(value);
             tiles[row][column].setNotMergeThisTurn(shouldNotMerge);
             tiles[row][column].setJustCreated(justCreated);
         }
 
+        /**
+         * Find out which {@link Direction}s can be played on this {@link Board}, by scanning it
+         * for any <i>tile</i> having a void square, or a mergeable <i>tile</i> with the same
+         * value, next to it.
+         *
+         * @return A mask with the bit <code>1 &lt;&lt; direction.ordinal()</code> set for every
+         * {@link Direction} that can be played.
+         */
+        int legalMoves() {
+
+            final int all = directionMask(Direction.DOWN) | directionMask(Direction.LEFT)
+                    | directionMask(Direction.RIGHT) | directionMask(Direction.UP);
+
+            int result = 0;
+            for (int indexR = 0; indexR < getRows(); indexR++) {
+
+                for (int indexC = 0; indexC < getColumns(); indexC++) {
+
+                    final Tile tile = tiles[indexR][indexC];
+                    if (tile.isVoid())
+                        continue;
+
+                    if (indexR > 0 && canMoveOnto(tile, tiles[indexR - 1][indexC]))
+                        result |= directionMask(Direction.UP);
+                    if (indexR < getRows() - 1 && canMoveOnto(tile, tiles[indexR + 1][indexC]))
+                        result |= directionMask(Direction.DOWN);
+                    if (indexC > 0 && canMoveOnto(tile, tiles[indexR][indexC - 1]))
+                        result |= directionMask(Direction.LEFT);
+                    if (indexC < getColumns() - 1
+                            && canMoveOnto(tile, tiles[indexR][indexC + 1]))
+                        result |= directionMask(Direction.RIGHT);
+
+                    if (result == all)
+                        return result;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Find out if the <i>from</i> {@link Tile} can be moved onto the square of the <i>to</i>
+         * {@link Tile}, next to it.
+         */
+        private static boolean canMoveOnto(Tile from, Tile to) {
+
+            return to.isVoid()
+                    || (to.getValue() == from.getValue() && !to.shouldNotMergeThisTurn());
+        }
+
         /**
          * <b>Important:</b> Remember to call this method when the turn finishes, as it will reset
          * the flags of all <i>tiles</i>.
@@ -1120,8 +2840,11 @@ public class Engine {
 
                 for (int indexC = 0; indexC < getColumns(); indexC++) {
 
-                    tiles[indexR][indexC].setNotMergeThisTurn(false);
-                    tiles[indexR][indexC].setJustCreated(false);
+                    final Tile tile = tiles[indexR][indexC];
+                    if (tile.shouldNotMergeThisTurn() || tile.isJustCreated())
+                        markChanged(indexR * columns + indexC);
+                    tile.setNotMergeThisTurn(false);
+                    tile.setJustCreated(false);
                 }
             }
         }
@@ -1175,6 +2898,18 @@ public class Engine {
             return new Tile(tile);
         }
 
+        /**
+         * Copy the attributes of the given <i>source</i> onto this {@link Tile}.
+         *
+         * @param source The {@link Tile} to copy.
+         */
+        void copy(Tile source) {
+
+            this.value = source.value;
+            this.justCreated = source.justCreated;
+            this.notMergeThisTurn = source.notMergeThisTurn;
+        }
+
         /**
          * Get the integer value of this {@link Tile}.
          *
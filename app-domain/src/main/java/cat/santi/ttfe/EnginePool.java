@@ -0,0 +1,96 @@
+package cat.santi.ttfe;
+
+/**
+ * Bounded pool of {@link Engine}s, so a process hosting many games can recycle their boards and
+ * buffers, instead of creating new ones for every game.
+ * <p/>
+ * An acquired {@link Engine} must be prepared with {@link Engine#reset()} before playing, and
+ * should not be used anymore after releasing it. This class is thread safe.
+ */
+public class EnginePool {
+
+    /**
+     * The idle {@link Engine}s, from index 0 to {@link #mIdleCount}.
+     */
+    private final Engine[] mIdle;
+    /**
+     * The amount of idle {@link Engine}s.
+     */
+    private int mIdleCount = 0;
+
+    /**
+     * Constructor for {@link EnginePool}.
+     *
+     * @param capacity The maximum amount of idle {@link Engine}s to keep.
+     */
+    public EnginePool(int capacity) {
+
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+
+        mIdle = new Engine[capacity];
+    }
+
+    /**
+     * Get an idle {@link Engine}, or create a new one if there's none.
+     *
+     * @return An {@link Engine}, not being used by anybody else.
+     */
+    public Engine acquire() {
+
+        synchronized (mIdle) {
+
+            if (mIdleCount > 0) {
+
+                final Engine engine = mIdle[--mIdleCount];
+                mIdle[mIdleCount] = null;
+                return engine;
+            }
+        }
+        return Engine.create();
+    }
+
+    /**
+     * Give back an {@link Engine} to this pool. It's {@link Engine.Listener} is removed, and it's
+     * game is discarded.
+     * <p/>
+     * If the pool is already full, the {@link Engine} is just dropped.
+     *
+     * @param engine The {@link Engine} to give back.
+     * @throws IllegalStateException If it's game is still being played.
+     */
+    public void release(Engine engine) {
+
+        engine.removeListener();
+        engine.discard();
+
+        synchronized (mIdle) {
+
+            if (mIdleCount < mIdle.length)
+                mIdle[mIdleCount++] = engine;
+        }
+    }
+
+    /**
+     * Get the maximum amount of idle {@link Engine}s this pool keeps.
+     *
+     * @return The capacity of this pool.
+     */
+    public int getCapacity() {
+
+        return mIdle.length;
+    }
+
+    /**
+     * Get the amount of idle {@link Engine}s currently on this pool.
+     *
+     * @return The amount of idle {@link Engine}s.
+     */
+    public int getIdleCount() {
+
+        synchronized (mIdle) {
+
+            return mIdleCount;
+        }
+    }
+}
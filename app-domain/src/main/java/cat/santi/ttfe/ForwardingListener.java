@@ -0,0 +1,90 @@
+package cat.santi.ttfe;
+
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Listener;
+import cat.santi.ttfe.Engine.State;
+
+/**
+ * {@link Listener} passing every event on to another one, the <i>delegate</i>.
+ * <p/>
+ * Meant to be extended by listeners that observe an {@link Engine} without replacing the
+ * {@link Listener} already settled on it: override the wanted events, and call the
+ * <code>super</code> method to keep them reaching the delegate.
+ */
+public class ForwardingListener implements Listener {
+
+    private Listener mDelegate;
+
+    /**
+     * Constructor for {@link ForwardingListener}.
+     *
+     * @param delegate The {@link Listener} to pass the events on to. Can be <code>null</code>.
+     */
+    public ForwardingListener(Listener delegate) {
+
+        mDelegate = delegate;
+    }
+
+    /**
+     * Get the {@link Listener} the events are passed on to.
+     *
+     * @return The delegate, or <code>null</code> if none.
+     */
+    public Listener getDelegate() {
+
+        return mDelegate;
+    }
+
+    /**
+     * Settle the {@link Listener} the events are passed on to.
+     *
+     * @param delegate The delegate. Can be <code>null</code>.
+     */
+    public void setDelegate(Listener delegate) {
+
+        mDelegate = delegate;
+    }
+
+    @Override
+    public void onStateChange(State state) {
+
+        if (mDelegate != null)
+            mDelegate.onStateChange(state);
+    }
+
+    @Override
+    public void onGameFinished(boolean victory, int turns, int score) {
+
+        if (mDelegate != null)
+            mDelegate.onGameFinished(victory, turns, score);
+    }
+
+    @Override
+    public void onTileCreated(int row, int column, int value) {
+
+        if (mDelegate != null)
+            mDelegate.onTileCreated(row, column, value);
+    }
+
+    @Override
+    public void onTileMoved(int srcRow, int srcColumn, int dstRow, int dstColumn,
+                            Direction direction, boolean merged) {
+
+        if (mDelegate != null)
+            mDelegate.onTileMoved(srcRow, srcColumn, dstRow, dstColumn, direction, merged);
+    }
+
+    @Override
+    public void onNotReady() {
+
+        if (mDelegate != null)
+            mDelegate.onNotReady();
+    }
+
+    @Override
+    public void onDisallowedMove() {
+
+        if (mDelegate != null)
+            mDelegate.onDisallowedMove();
+    }
+}
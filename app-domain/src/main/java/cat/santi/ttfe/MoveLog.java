@@ -0,0 +1,86 @@
+package cat.santi.ttfe;
+
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * Compact binary format of the moves of a single game, written by {@link MoveLogWriter} and read
+ * by {@link MoveLogReader}.
+ * <p/>
+ * A log starts with a fixed header (big endian):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * byte   version ({@link #VERSION})
+ * byte   flags ({@link #FLAG_SPAWNS})
+ * short  rows
+ * short  columns
+ * int    tile value to win
+ * long   seed
+ * </pre>
+ * <i>Figure - Header of a move log</i>
+ * <p/>
+ * Then follows a bit stream, least significant bit first, with every played {@link Direction}
+ * as it's 2 bit ordinal. When {@link #FLAG_SPAWNS} is set, every created <i>tile</i> follows as
+ * it's square index (<code>row * columns + column</code>, with just enough bits for the board)
+ * and the index of it's value on {@link Engine#DEFAULT_ALLOWED_VALUES} (1 bit): the two
+ * starting <i>tiles</i> first, and then the one created after every move. Otherwise, the
+ * <i>tiles</i> are created again from the seed, so a 1000 moves game takes 273 bytes.
+ * <p/>
+ * The last byte tells how many bits of the byte before it are used (0 if there are no moves).
+ */
+public final class MoveLog {
+
+    /**
+     * The first 4 bytes of every move log (<i>TTFL</i>).
+     */
+    public static final int MAGIC = 0x5454464C;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Flag set when the created <i>tiles</i> are stored, instead of being created from the seed.
+     */
+    public static final int FLAG_SPAWNS = 1;
+    /**
+     * The size of the header, in bytes.
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 1 + 2 + 2 + 4 + 8;
+    /**
+     * The bits taken by every {@link Direction}.
+     */
+    static final int DIRECTION_BITS = 2;
+    /**
+     * The bits taken by every <i>tile</i> value.
+     */
+    static final int VALUE_BITS = bitsFor(Engine.DEFAULT_ALLOWED_VALUES.length);
+
+    private MoveLog() {
+        // Private constructor to thwart instantiation
+    }
+
+    /**
+     * Get the bits needed to store any value from 0 to <i>count</i> - 1.
+     *
+     * @param count The amount of different values.
+     * @return The amount of bits.
+     */
+    static int bitsFor(int count) {
+
+        return count <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(count - 1);
+    }
+
+    /**
+     * Get the index of a <i>tile</i> value on {@link Engine#DEFAULT_ALLOWED_VALUES}.
+     *
+     * @param value The <i>tile</i> value.
+     * @return The index of the value.
+     * @throws IllegalArgumentException If the value is not allowed for new <i>tiles</i>.
+     */
+    static int valueIndex(int value) {
+
+        for (int index = 0; index < Engine.DEFAULT_ALLOWED_VALUES.length; index++)
+            if (Engine.DEFAULT_ALLOWED_VALUES[index] == value)
+                return index;
+        throw new IllegalArgumentException("Not a created tile value: " + value);
+    }
+}
@@ -0,0 +1,782 @@
+package cat.santi.ttfe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Listener;
+
+/**
+ * Streaming reader of a {@link MoveLog}.
+ * <p/>
+ * The log is read turn by turn with {@link #nextTurn()}, being the first turn the creation of the
+ * starting <i>tiles</i>, with no {@link Direction}. The game can also be reconstructed on an
+ * {@link Engine}, by calling {@link #start(Engine)} and then {@link #playNext()} for every turn,
+ * so it's {@link Engine.Listener} gets the events of every turn as they were played.
+ */
+public class MoveLogReader implements Closeable {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /**
+     * The 4 {@link Direction}s packed on every byte of a seeded log, at <code>byte * 4 + n</code>
+     * for the <i>n</i>th one.
+     */
+    private static final Direction[] BYTE_MOVES = new Direction[256 * 4];
+
+    static {
+
+        for (int data = 0; data < 256; data++)
+            for (int move = 0; move < 4; move++)
+                BYTE_MOVES[data * 4 + move] =
+                        DIRECTIONS[data >>> (move * MoveLog.DIRECTION_BITS) & 3];
+    }
+
+    private final InputStream mInput;
+    private final boolean mSpawns;
+    private final int mRows;
+    private final int mColumns;
+    private final int mTileValueToWin;
+    private final long mSeed;
+    private final int mSquareBits;
+    /**
+     * The bits of a turn with it's created <i>tile</i>.
+     */
+    private final int mTurnBits;
+
+    private final byte[] mBuffer;
+    private int mPosition = 0;
+    private int mLimit = 0;
+    /**
+     * The next two bytes of the stream, or <code>-1</code>. The last byte is held back, as it
+     * tells how many bits of the byte before it are used.
+     */
+    private int mNext;
+    private int mAfter;
+    /**
+     * Bits read from the stream, not yet consumed.
+     */
+    private long mBits = 0;
+    private int mBitCount = 0;
+    /**
+     * The byte of a seeded log being read, times 4 (see {@link #BYTE_MOVES}), and it's moves
+     * read and held.
+     */
+    private int mMoveByte = 0;
+    private int mMoveIndex = 0;
+    private int mMoveCount = 0;
+
+    private int mTurn = -1;
+    /**
+     * The ordinal of the {@link Direction} played on the current turn, or <code>-1</code>. Kept
+     * as a number, as storing a reference on every turn is slower.
+     */
+    private int mDirection = -1;
+    private int mSpawnCount = 0;
+    private final int[] mSpawnSquares = new int[2];
+    private final int[] mSpawnValues = new int[2];
+
+    private Engine mEngine = null;
+    private Random mPreviousRandom = null;
+    private int mScripted = 0;
+    private TileCheck mCheck = null;
+
+    /**
+     * Constructor for {@link MoveLogReader}. Reads the header.
+     *
+     * @param input The {@link InputStream} to read from.
+     * @throws IOException If the header could not be read, or is not valid.
+     */
+    public MoveLogReader(InputStream input) throws IOException {
+
+        mInput = input;
+        // Small logs (i.e. on memory) are read faster without a whole 4 KiB buffer
+        final int available = input.available();
+        mBuffer = new byte[available > 0 ? Math.max(64, Math.min(4096, available)) : 4096];
+
+        if (readInt() != MoveLog.MAGIC)
+            throw new IOException("Not a move log");
+        final int version = readByte();
+        if (version != MoveLog.VERSION)
+            throw new IOException("Unsupported move log version: " + version);
+        mSpawns = (readByte() & MoveLog.FLAG_SPAWNS) != 0;
+        mRows = readByte() << 8 | readByte();
+        mColumns = readByte() << 8 | readByte();
+        mTileValueToWin = readInt();
+        mSeed = (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL);
+        mSquareBits = MoveLog.bitsFor(mRows * mColumns);
+        mTurnBits = MoveLog.DIRECTION_BITS + mSquareBits + MoveLog.VALUE_BITS;
+
+        mNext = readRaw();
+        mAfter = readRaw();
+        if (mNext < 0)
+            throw new IOException("Truncated move log");
+        if (mAfter < 0) {
+
+            // There are no moves, just the last byte
+            if (mNext != 0)
+                throw new IOException("Corrupt move log: bad last byte " + mNext);
+            mNext = -1;
+        }
+    }
+
+    /**
+     * Read the next turn.
+     *
+     * @return <code>true</code> if there was another turn, <code>false</code> if the log ended.
+     * @throws IOException If the turn could not be read, or is not valid.
+     */
+    public boolean nextTurn() throws IOException {
+
+        mSpawnCount = 0;
+
+        // The moves of a seeded log are read a byte at a time, and held until played
+        if (mMoveIndex < mMoveCount) {
+
+            mTurn++;
+            mDirection = BYTE_MOVES[mMoveByte + mMoveIndex++].ordinal();
+            return true;
+        }
+
+        if (mTurn < 0) {
+
+            // The starting tiles
+            mTurn = 0;
+            mDirection = -1;
+            if (mSpawns && (!readSpawn() || !readSpawn()))
+                throw new IOException("Corrupt move log: missing starting tiles");
+            return true;
+        }
+
+        if (!mSpawns) {
+
+            if (!loadMoves())
+                return false;
+            mTurn++;
+            mDirection = BYTE_MOVES[mMoveByte + mMoveIndex++].ordinal();
+            return true;
+        }
+        return nextSpawnTurn();
+    }
+
+    /**
+     * Read the next turns at once, keeping just their played {@link Direction}s, as
+     * {@link #getDirection()} would give them after every {@link #nextTurn()}. The starting
+     * <i>tiles</i> are skipped, and the created ones are checked but not kept.
+     * <p/>
+     * Moves of seeded logs are decoded a byte (4 moves) at a time, and the turns of logs with
+     * <i>tiles</i> a word at a time, so whole logs are read much faster than turn by turn.
+     *
+     * @param moves  The array to fill.
+     * @param offset The index of <i>moves</i> to fill from.
+     * @param count  The greatest amount of turns to read.
+     * @return The amount of turns read, less than <i>count</i> only if the log ended.
+     * @throws IOException If a turn could not be read, or is not valid.
+     */
+    public int nextMoves(Direction[] moves, int offset, int count) throws IOException {
+
+        if (mTurn < 0)
+            nextTurn();
+
+        int read = 0;
+        while (read < count) {
+
+            if (!mSpawns)
+                read = nextByteMoves(moves, offset, read, count);
+            else
+                read = nextWordMoves(moves, offset, read, count);
+
+            // Near the end of the buffer or the log, a turn at a time
+            if (read < count) {
+
+                if (!nextTurn())
+                    break;
+                moves[offset + read++] = DIRECTIONS[mDirection];
+            }
+        }
+
+        if (read > 0)
+            mDirection = moves[offset + read - 1].ordinal();
+        mSpawnCount = 0;
+        return read;
+    }
+
+    /**
+     * Read the moves of a seeded log into <i>moves</i>, a byte at a time, while the buffer holds
+     * full bytes.
+     *
+     * @return The amount of turns read so far.
+     */
+    private int nextByteMoves(Direction[] moves, int offset, int read, int count) {
+
+        final int start = read;
+
+        // The moves held from the last byte
+        while (read < count && mMoveIndex < mMoveCount)
+            moves[offset + read++] = BYTE_MOVES[mMoveByte + mMoveIndex++];
+
+        // While a byte is followed by 2 more it's a full one, with 4 moves
+        final byte[] buffer = mBuffer;
+        final int limit = mLimit;
+        int position = mPosition;
+        int next = mNext;
+        int after = mAfter;
+        while (count - read >= 4 && position < limit) {
+
+            final int data = next << 2;
+            next = after;
+            after = buffer[position++] & 0xFF;
+            moves[offset + read] = BYTE_MOVES[data];
+            moves[offset + read + 1] = BYTE_MOVES[data + 1];
+            moves[offset + read + 2] = BYTE_MOVES[data + 2];
+            moves[offset + read + 3] = BYTE_MOVES[data + 3];
+            read += 4;
+        }
+        mPosition = position;
+        mNext = next;
+        mAfter = after;
+
+        mTurn += read - start;
+        return read;
+    }
+
+    /**
+     * Read the moves of a log holding the created <i>tiles</i> into <i>moves</i>, a word at a
+     * time, while the buffer holds whole turns.
+     *
+     * @return The amount of turns read so far.
+     * @throws IOException If a created <i>tile</i> is not valid.
+     */
+    private int nextWordMoves(Direction[] moves, int offset, int read, int count)
+            throws IOException {
+
+        final int squareBits = mSquareBits;
+        final int turnBits = mTurnBits;
+        final int squares = mRows * mColumns;
+        while (read < count) {
+
+            fillBits();
+            if (mBitCount < turnBits)
+                break;
+
+            // Take every whole turn already read
+            long bits = mBits;
+            int bitCount = mBitCount;
+            final int start = read;
+            while (bitCount >= turnBits && read < count) {
+
+                final int square = (int) (bits >>> MoveLog.DIRECTION_BITS)
+                        & ((1 << squareBits) - 1);
+                final int value = (int) (bits >>> (MoveLog.DIRECTION_BITS + squareBits))
+                        & ((1 << MoveLog.VALUE_BITS) - 1);
+                if (square >= squares || value >= Engine.DEFAULT_ALLOWED_VALUES.length)
+                    throw new IOException("Corrupt move log: bad tile on turn "
+                            + (mTurn + read - start + 1));
+                moves[offset + read++] = DIRECTIONS[(int) bits & 3];
+                bits >>>= turnBits;
+                bitCount -= turnBits;
+            }
+            mBits = bits;
+            mBitCount = bitCount;
+            mTurn += read - start;
+        }
+        return read;
+    }
+
+    /**
+     * Read the next turn of a log holding the created <i>tiles</i>.
+     *
+     * @return <code>true</code> if there was another turn, <code>false</code> if the log ended.
+     */
+    private boolean nextSpawnTurn() throws IOException {
+
+        if (mBitCount < mTurnBits)
+            fillBits();
+        if (mBitCount < mTurnBits) {
+
+            // Near the end of the buffer or the log (where a turn may lack it's tile), bit by bit
+            final int direction = readBits(MoveLog.DIRECTION_BITS);
+            if (direction < 0)
+                return false;
+
+            mTurn++;
+            mDirection = direction;
+            readSpawn();
+            return true;
+        }
+
+        // The whole turn is already read, so take it at once
+        final long bits = mBits;
+        final int square = (int) (bits >>> MoveLog.DIRECTION_BITS) & ((1 << mSquareBits) - 1);
+        final int value = (int) (bits >>> (MoveLog.DIRECTION_BITS + mSquareBits))
+                & ((1 << MoveLog.VALUE_BITS) - 1);
+        mBits = bits >>> mTurnBits;
+        mBitCount -= mTurnBits;
+
+        mTurn++;
+        mDirection = (int) bits & 3;
+        addSpawn(square, value);
+        return true;
+    }
+
+    /**
+     * Start the logged game on the given <i>engine</i>, played by {@link Backend#TILES} so every
+     * {@link Engine.Listener} event is triggered.
+     *
+     * @param engine The {@link Engine} to play the game on.
+     * @throws IOException If the first turn could not be read, or is not valid.
+     * @see #start(Engine, Backend)
+     */
+    public void start(Engine engine) throws IOException {
+
+        start(engine, Backend.TILES);
+    }
+
+    /**
+     * Start the logged game on the given <i>engine</i>: reads the first turn and resets the
+     * <i>engine</i> with it. If the log holds the created <i>tiles</i>, the <i>engine</i>
+     * {@link Random} generator is replaced while creating the starting ones, and the following
+     * ones are created by {@link Engine#play(Direction, int, int)}.
+     *
+     * @param engine  The {@link Engine} to play the game on.
+     * @param backend The preferred {@link Backend} to play the game.
+     * @throws IOException If the first turn could not be read, or is not valid.
+     */
+    public void start(Engine engine, Backend backend) throws IOException {
+
+        if (mTurn >= 0)
+            throw new IllegalStateException("Already started");
+
+        nextTurn();
+        mEngine = engine;
+        if (!mSpawns) {
+
+            engine.reset(mRows, mColumns, mTileValueToWin, backend, mSeed);
+            return;
+        }
+
+        // Checked here, as the engine would move a tile on a taken square to the next void one
+        if (mSpawnSquares[0] == mSpawnSquares[1])
+            throw new IOException("Corrupt move log: starting tiles on the same square");
+        mCheck = new TileCheck(mColumns);
+        mPreviousRandom = engine.getRandom();
+        engine.setRandom(new ScriptedRandom());
+        mScripted = 0;
+        try {
+
+            engine.reset(mRows, mColumns, mTileValueToWin, backend, mSeed);
+        } finally {
+
+            restoreRandom();
+        }
+    }
+
+    /**
+     * Read the next turn and play it on the {@link Engine} given to {@link #start(Engine)}.
+     * <p/>
+     * If the log holds the created <i>tiles</i>, every move must create the logged one (or none,
+     * if it wins the game). Otherwise the turn is still played, with the <i>tile</i> created by
+     * the <i>engine</i>, so the game is left on a valid (though different) position.
+     *
+     * @return <code>true</code> if there was another turn, <code>false</code> if the log ended.
+     * @throws IOException If the turn could not be read, or is not valid for the game.
+     */
+    public boolean playNext() throws IOException {
+
+        if (mEngine == null)
+            throw new IllegalStateException("Not started");
+
+        if (!nextTurn())
+            return false;
+
+        final Direction direction = DIRECTIONS[mDirection];
+        final boolean moved = mSpawns ? playSpawnTurn(direction) : mEngine.play(direction, false);
+        if (!moved)
+            throw new IOException("Corrupt move log: " + direction + " can't be played on turn "
+                    + mTurn);
+        return true;
+    }
+
+    /**
+     * Play the current turn of a log holding the created <i>tiles</i>, checking that the
+     * {@link Engine} creates the logged one.
+     *
+     * @return Whether any <i>tile</i> moved or not.
+     */
+    private boolean playSpawnTurn(Direction direction) throws IOException {
+
+        // Listen to the created tile, still passing every event on
+        final Listener listener = mEngine.getListener();
+        mCheck.setDelegate(listener);
+        mCheck.square = -1;
+        mEngine.setListener(mCheck);
+        final boolean moved;
+        try {
+
+            if (mSpawnCount > 0)
+                moved = mEngine.play(direction, mSpawnSquares[0], mSpawnValues[0]);
+            else
+                moved = mEngine.play(direction, false);
+        } finally {
+
+            mEngine.setListener(listener);
+            mCheck.setDelegate(null);
+        }
+
+        if (moved && mSpawnCount == 0 && mCheck.square >= 0)
+            throw new IOException("Corrupt move log: missing tile on turn " + mTurn);
+        if (moved && mSpawnCount > 0 && (mCheck.square != mSpawnSquares[0]
+                || mCheck.value != mSpawnValues[0]))
+            throw new IOException("Corrupt move log: bad tile on turn " + mTurn);
+        return moved;
+    }
+
+    /**
+     * Get the current turn, being 0 the creation of the starting <i>tiles</i>.
+     *
+     * @return The turn, or <code>-1</code> if none was yet read.
+     */
+    public int getTurn() {
+
+        return mTurn;
+    }
+
+    /**
+     * Get the {@link Direction} played on the current turn.
+     *
+     * @return The played {@link Direction}, or <code>null</code> on the first turn.
+     */
+    public Direction getDirection() {
+
+        return mDirection < 0 ? null : DIRECTIONS[mDirection];
+    }
+
+    /**
+     * Get the amount of <i>tiles</i> created on the current turn. Always 0 if the log does not
+     * hold them.
+     *
+     * @return The amount of created <i>tiles</i>.
+     */
+    public int getSpawnCount() {
+
+        return mSpawnCount;
+    }
+
+    /**
+     * Get the square of a <i>tile</i> created on the current turn.
+     *
+     * @param index The index of the created <i>tile</i>, from 0 to {@link #getSpawnCount()}.
+     * @return The index (<code>row * columns + column</code>) of the square.
+     */
+    public int getSpawnSquare(int index) {
+
+        return mSpawnSquares[index];
+    }
+
+    /**
+     * Get the value of a <i>tile</i> created on the current turn.
+     *
+     * @param index The index of the created <i>tile</i>, from 0 to {@link #getSpawnCount()}.
+     * @return The value of the <i>tile</i>.
+     */
+    public int getSpawnValue(int index) {
+
+        return mSpawnValues[index];
+    }
+
+    /**
+     * Find out whether the log holds the created <i>tiles</i>.
+     *
+     * @return <code>true</code> if it does, <code>false</code> if they are created from the
+     * seed.
+     */
+    public boolean hasSpawns() {
+
+        return mSpawns;
+    }
+
+    /**
+     * Get the board rows.
+     *
+     * @return The amount of rows height.
+     */
+    public int getRows() {
+
+        return mRows;
+    }
+
+    /**
+     * Get the board columns.
+     *
+     * @return The amount of columns width.
+     */
+    public int getColumns() {
+
+        return mColumns;
+    }
+
+    /**
+     * Get the value of the greatest tile needed to win the game.
+     *
+     * @return The value to win.
+     */
+    public int getTileValueToWin() {
+
+        return mTileValueToWin;
+    }
+
+    /**
+     * Get the seed of the game.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+
+        return mSeed;
+    }
+
+    /**
+     * Close the {@link InputStream}.
+     *
+     * @throws IOException If the stream could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        mInput.close();
+    }
+
+    /**
+     * Read a created <i>tile</i> into the current turn.
+     *
+     * @return <code>true</code> if read, <code>false</code> if the log ended.
+     */
+    private boolean readSpawn() throws IOException {
+
+        final int square = readBits(mSquareBits);
+        if (square < 0)
+            return false;
+
+        final int value = readBits(MoveLog.VALUE_BITS);
+        if (value < 0)
+            throw new IOException("Corrupt move log: bad tile on turn " + mTurn);
+        addSpawn(square, value);
+        return true;
+    }
+
+    /**
+     * Add a created <i>tile</i> to the current turn.
+     *
+     * @param square The square index.
+     * @param value  The index of the value.
+     */
+    private void addSpawn(int square, int value) throws IOException {
+
+        if (value >= Engine.DEFAULT_ALLOWED_VALUES.length || square >= mRows * mColumns)
+            throw new IOException("Corrupt move log: bad tile on turn " + mTurn);
+
+        mSpawnSquares[mSpawnCount] = square;
+        mSpawnValues[mSpawnCount] = Engine.DEFAULT_ALLOWED_VALUES[value];
+        mSpawnCount++;
+    }
+
+    /**
+     * Read the next byte of a seeded log into {@link #mMoveByte}.
+     *
+     * @return <code>false</code> if there are no more moves.
+     */
+    private boolean loadMoves() throws IOException {
+
+        // While a byte is followed by 2 more it's a full one
+        if (mPosition < mLimit) {
+
+            mMoveByte = mNext << 2;
+            mMoveCount = 4;
+            mNext = mAfter;
+            mAfter = mBuffer[mPosition++] & 0xFF;
+        } else {
+
+            if (!loadByte())
+                return false;
+            mMoveByte = (int) mBits << 2;
+            mMoveCount = mBitCount / MoveLog.DIRECTION_BITS;
+            mBits = 0;
+            mBitCount = 0;
+        }
+        mMoveIndex = 0;
+        return mMoveCount > 0;
+    }
+
+    /**
+     * Give the {@link Engine} back it's {@link Random} generator, if replaced.
+     */
+    private void restoreRandom() {
+
+        if (mEngine != null && mEngine.getRandom() instanceof ScriptedRandom)
+            mEngine.setRandom(mPreviousRandom != null ? mPreviousRandom : new SplitRandom(mSeed));
+    }
+
+    /**
+     * Consume the next <i>count</i> bits of the stream.
+     *
+     * @return The bits, or <code>-1</code> if there are not so many left.
+     */
+    private int readBits(int count) throws IOException {
+
+        if (mBitCount < count) {
+
+            fillBits();
+            while (mBitCount < count)
+                if (!loadByte())
+                    return -1;
+        }
+
+        final int result = (int) (mBits & ((1L << count) - 1));
+        mBits >>>= count;
+        mBitCount -= count;
+        return result;
+    }
+
+    /**
+     * Move the bytes of the buffer to {@link #mBits}, as long as they are full ones and fit.
+     */
+    private void fillBits() {
+
+        // While a byte is followed by 2 more it's a full one, so take a few at once
+        long bits = mBits;
+        int count = mBitCount;
+        while (count <= 56 && mPosition < mLimit) {
+
+            bits |= (long) mNext << count;
+            count += 8;
+            mNext = mAfter;
+            mAfter = mBuffer[mPosition++] & 0xFF;
+        }
+        mBits = bits;
+        mBitCount = count;
+    }
+
+    /**
+     * Move the next byte of the stream to {@link #mBits}, only with it's used bits.
+     *
+     * @return <code>false</code> if there are no more bytes.
+     */
+    private boolean loadByte() throws IOException {
+
+        if (mNext < 0)
+            return false;
+
+        final int data = mNext;
+        mNext = mAfter;
+        mAfter = readRaw();
+
+        int used = 8;
+        if (mAfter < 0) {
+
+            // The next byte is the last one
+            used = mNext;
+            mNext = -1;
+            if (used < 1 || used > 8)
+                throw new IOException("Corrupt move log: bad last byte " + used);
+        }
+
+        mBits |= (long) (data & ((1 << used) - 1)) << mBitCount;
+        mBitCount += used;
+        return true;
+    }
+
+    private int readInt() throws IOException {
+
+        return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    /**
+     * Read a header byte.
+     */
+    private int readByte() throws IOException {
+
+        final int result = readRaw();
+        if (result < 0)
+            throw new IOException("Truncated move log");
+        return result;
+    }
+
+    /**
+     * Read the next byte through {@link #mBuffer}.
+     *
+     * @return The byte, or <code>-1</code> at the end of the stream.
+     */
+    private int readRaw() throws IOException {
+
+        if (mPosition == mLimit) {
+
+            mPosition = 0;
+            mLimit = Math.max(0, mInput.read(mBuffer));
+            if (mLimit == 0)
+                return -1;
+        }
+        return mBuffer[mPosition++] & 0xFF;
+    }
+
+    /**
+     * {@link Random} generator creating the starting <i>tiles</i>, by giving the {@link Engine}
+     * the values it draws them from.
+     */
+    private final class ScriptedRandom extends Random {
+
+        @Override
+        public void setSeed(long seed) {
+            // note: the tiles come from the log, not from any seed
+        }
+
+        @Override
+        public int nextInt(int bound) {
+
+            final int spawn = mScripted / 2;
+            if (spawn >= mSpawnCount)
+                throw new IllegalStateException("Corrupt move log: unexpected tile on turn "
+                        + mTurn);
+
+            // The engine draws the value first, and then the square among the void ones
+            if (mScripted++ % 2 == 0)
+                return MoveLog.valueIndex(mSpawnValues[spawn]);
+
+            final int rank = mEngine.countEmptyBefore(mSpawnSquares[spawn]);
+            if (rank >= bound)
+                throw new IllegalStateException("Corrupt move log: bad tile on turn " + mTurn);
+            return rank;
+        }
+
+        @Override
+        protected int next(int bits) {
+
+            throw new UnsupportedOperationException("Only tiles can be drawn");
+        }
+    }
+
+    /**
+     * {@link ForwardingListener} keeping the last created <i>tile</i>, to check replayed turns.
+     */
+    private static final class TileCheck extends ForwardingListener {
+
+        private final int mColumns;
+        int square = -1;
+        int value;
+
+        TileCheck(int columns) {
+
+            super(null);
+            mColumns = columns;
+        }
+
+        @Override
+        public void onTileCreated(int row, int column, int value) {
+
+            this.square = row * mColumns + column;
+            this.value = value;
+            super.onTileCreated(row, column, value);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package cat.santi.ttfe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+
+/**
+ * Streaming writer of a {@link MoveLog}.
+ * <p/>
+ * It can be fed by hand, or {@link #attach(Engine) attached} to an {@link Engine} as it's
+ * {@link Engine.Listener}: then it logs the game started by the next <code>reset</code>, taking
+ * the moves from the <i>playing</i> states and the created <i>tiles</i> from
+ * {@link #onTileCreated(int, int, int)}, while still passing every event on to the previous
+ * {@link Engine.Listener}. The log is finished when the game is.
+ * <p/>
+ * Logs without created <i>tiles</i> can only be replayed if the {@link Engine} creates
+ * <i>tiles</i> from the seed, as it does by default.
+ */
+public class MoveLogWriter extends ForwardingListener implements Closeable {
+
+    private final OutputStream mOutput;
+    private final boolean mSpawns;
+    /**
+     * Bytes not yet written to {@link #mOutput}. It starts small, so short logs are written
+     * faster, and grows up to 4 KiB.
+     */
+    private byte[] mBuffer = new byte[256];
+    private int mBufferSize = 0;
+    /**
+     * Pending bits, not yet written to {@link #mBuffer}.
+     */
+    private long mBits = 0;
+    private int mBitCount = 0;
+    private boolean mData = false;
+    private int mSquareBits = 0;
+
+    private Engine mEngine = null;
+    private boolean mStarted = false;
+    private boolean mFinished = false;
+    private IOException mError = null;
+
+    /**
+     * Constructor for {@link MoveLogWriter}.
+     *
+     * @param output The {@link OutputStream} to write to.
+     * @param spawns Whether to log the created <i>tiles</i> too (see
+     *               {@link MoveLog#FLAG_SPAWNS}).
+     */
+    public MoveLogWriter(OutputStream output, boolean spawns) {
+
+        super(null);
+
+        mOutput = output;
+        mSpawns = spawns;
+    }
+
+    /**
+     * Settle this writer as the {@link Engine.Listener} of the given <i>engine</i>, wrapping the
+     * current one, to log the game started by it's next <code>reset</code>.
+     *
+     * @param engine The {@link Engine} to log.
+     */
+    public void attach(Engine engine) {
+
+        mEngine = engine;
+        setDelegate(engine.getListener());
+        engine.setListener(this);
+    }
+
+    /**
+     * Write the header. Must be the first call when feeding the writer by hand.
+     *
+     * @param rows           The amount of rows height.
+     * @param columns        The amount of columns width.
+     * @param tileValueToWin The amount needed on any <i>tile</i> to win the game.
+     * @param seed           The seed of the game.
+     * @throws IOException If the header could not be written.
+     */
+    public void writeHeader(int rows, int columns, int tileValueToWin, long seed)
+            throws IOException {
+
+        if (mStarted)
+            throw new IllegalStateException("Header already written");
+        mStarted = true;
+        mSquareBits = MoveLog.bitsFor(rows * columns);
+
+        writeInt(MoveLog.MAGIC);
+        put(MoveLog.VERSION);
+        put(mSpawns ? MoveLog.FLAG_SPAWNS : 0);
+        put(rows >>> 8);
+        put(rows);
+        put(columns >>> 8);
+        put(columns);
+        writeInt(tileValueToWin);
+        writeInt((int) (seed >>> 32));
+        writeInt((int) seed);
+    }
+
+    /**
+     * Write a played move.
+     *
+     * @param direction The played {@link Direction}.
+     * @throws IOException If the move could not be written.
+     */
+    public void writeMove(Direction direction) throws IOException {
+
+        writeBits(direction.ordinal(), MoveLog.DIRECTION_BITS);
+    }
+
+    /**
+     * Write the given played moves at once, which is much faster than one by one. Only for logs
+     * without created <i>tiles</i>, as they would go after every move.
+     *
+     * @param moves  The played {@link Direction}s.
+     * @param offset The index of the first move to write.
+     * @param count  The amount of moves to write.
+     * @throws IOException If the moves could not be written.
+     * @throws IllegalStateException If this writer logs the created <i>tiles</i>.
+     */
+    public void writeMoves(Direction[] moves, int offset, int count) throws IOException {
+
+        if (mSpawns)
+            throw new IllegalStateException("Every move needs it's created tile");
+
+        long bits = mBits;
+        int bitCount = mBitCount;
+        for (int index = offset; index < offset + count; index++) {
+
+            bits |= (long) moves[index].ordinal() << bitCount;
+            bitCount += MoveLog.DIRECTION_BITS;
+            if (bitCount >= 32) {
+
+                putWord((int) bits);
+                bits >>>= 32;
+                bitCount -= 32;
+            }
+        }
+        mBits = bits;
+        mBitCount = bitCount;
+    }
+
+    /**
+     * Write a created <i>tile</i>. Ignored if this writer does not log them.
+     *
+     * @param square The index (<code>row * columns + column</code>) of the <i>tile</i>.
+     * @param value  The value of the <i>tile</i>.
+     * @throws IOException If the <i>tile</i> could not be written.
+     */
+    public void writeSpawn(int square, int value) throws IOException {
+
+        if (!mSpawns)
+            return;
+
+        if (mSquareBits + MoveLog.VALUE_BITS <= 32) {
+
+            writeBits(square | MoveLog.valueIndex(value) << mSquareBits,
+                    mSquareBits + MoveLog.VALUE_BITS);
+        } else {
+
+            writeBits(square, mSquareBits);
+            writeBits(MoveLog.valueIndex(value), MoveLog.VALUE_BITS);
+        }
+    }
+
+    /**
+     * Write the pending bits and the last byte, and flush. Nothing else is written after this.
+     *
+     * @throws IOException If the log could not be written, now or on any previous event.
+     */
+    public void finish() throws IOException {
+
+        if (mError != null)
+            throw mError;
+        if (mFinished)
+            return;
+        mFinished = true;
+
+        while (mBitCount >= 8) {
+
+            put((int) mBits);
+            mData = true;
+            mBits >>>= 8;
+            mBitCount -= 8;
+        }
+
+        int used = mData ? 8 : 0;
+        if (mBitCount > 0) {
+
+            put((int) mBits);
+            used = mBitCount;
+            mBitCount = 0;
+        }
+        put(used);
+        mOutput.write(mBuffer, 0, mBufferSize);
+        mBufferSize = 0;
+        mOutput.flush();
+    }
+
+    /**
+     * Finish the log, give the {@link Engine} back it's previous {@link Engine.Listener} (if
+     * attached) and close the {@link OutputStream}.
+     *
+     * @throws IOException If the log could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        try {
+
+            finish();
+        } finally {
+
+            if (mEngine != null && mEngine.getListener() == this)
+                mEngine.setListener(getDelegate());
+            mOutput.close();
+        }
+    }
+
+    @Override
+    public void onStateChange(State state) {
+
+        if (mEngine != null && mStarted && !mFinished) {
+
+            try {
+
+                switch (state) {
+
+                    case PLAYING_DOWN:
+                        writeMove(Direction.DOWN);
+                        break;
+                    case PLAYING_LEFT:
+                        writeMove(Direction.LEFT);
+                        break;
+                    case PLAYING_RIGHT:
+                        writeMove(Direction.RIGHT);
+                        break;
+                    case PLAYING_UP:
+                        writeMove(Direction.UP);
+                        break;
+                    case PREPARING:
+                    case VICTORY:
+                    case DEFEAT:
+                        // The game is over (or a new one started), so is the log
+                        finish();
+                        break;
+                }
+            } catch (IOException e) {
+
+                mError = e;
+                mFinished = true;
+            }
+        }
+
+        super.onStateChange(state);
+    }
+
+    @Override
+    public void onTileCreated(int row, int column, int value) {
+
+        if (mEngine != null && !mFinished) {
+
+            try {
+
+                // The board and seed are ready by the first tile of the game
+                if (!mStarted)
+                    writeHeader(mEngine.getBoardRows(), mEngine.getBoardColumns(),
+                            mEngine.getTileValueToWin(), mEngine.getSeed());
+                writeSpawn(row * mEngine.getBoardColumns() + column, value);
+            } catch (IOException e) {
+
+                mError = e;
+                mFinished = true;
+            }
+        }
+
+        super.onTileCreated(row, column, value);
+    }
+
+    /**
+     * Add the lowest <i>count</i> bits (up to 32) of <i>value</i> to the bit stream. They are
+     * written 32 at a time.
+     */
+    private void writeBits(int value, int count) throws IOException {
+
+        mBits |= (value & 0xFFFFFFFFL) << mBitCount;
+        mBitCount += count;
+        if (mBitCount >= 32) {
+
+            putWord((int) mBits);
+            mBits >>>= 32;
+            mBitCount -= 32;
+        }
+    }
+
+    /**
+     * Add the 4 bytes of <i>value</i> to {@link #mBuffer}, lowest first, writing it when full.
+     */
+    private void putWord(int value) throws IOException {
+
+        if (mBufferSize + 4 > mBuffer.length)
+            flushBuffer();
+        final byte[] buffer = mBuffer;
+        final int size = mBufferSize;
+        buffer[size] = (byte) value;
+        buffer[size + 1] = (byte) (value >>> 8);
+        buffer[size + 2] = (byte) (value >>> 16);
+        buffer[size + 3] = (byte) (value >>> 24);
+        mBufferSize = size + 4;
+        mData = true;
+    }
+
+    private void writeInt(int value) throws IOException {
+
+        put(value >>> 24);
+        put(value >>> 16);
+        put(value >>> 8);
+        put(value);
+    }
+
+    /**
+     * Add the lowest 8 bits of <i>value</i> to {@link #mBuffer}, writing it when full.
+     */
+    private void put(int value) throws IOException {
+
+        if (mBufferSize == mBuffer.length)
+            flushBuffer();
+        mBuffer[mBufferSize++] = (byte) value;
+    }
+
+    /**
+     * Write {@link #mBuffer} to {@link #mOutput}, and grow it if it's still small.
+     */
+    private void flushBuffer() throws IOException {
+
+        mOutput.write(mBuffer, 0, mBufferSize);
+        mBufferSize = 0;
+        if (mBuffer.length < 4096)
+            mBuffer = new byte[mBuffer.length * 2];
+    }
+}
@@ -0,0 +1,148 @@
+package cat.santi.ttfe;
+
+/**
+ * Precomputed move results for every possible packed {@link BitBoard} row.
+ * <p/>
+ * A row is 4 nibbles, so there are only <code>2^16</code> of them. For each one, this class holds
+ * the row resulting from moving it towards column 0 (<i>left</i>) and towards column 3
+ * (<i>right</i>), the score earned by the move (which is the same for both) and whether anything
+ * moved at all. Up and down moves are applied through {@link BitBoard#transpose(long)}.
+ * <p/>
+ * Tables are built once, the first time this class is used.
+ */
+public final class MoveTables {
+
+    /**
+     * The amount of entries on every table.
+     */
+    public static final int ROWS = 1 << 16;
+
+    /**
+     * Flag on {@link #MOVED} set when moving the row to the left changes it.
+     */
+    static final int MOVED_LEFT = 1;
+    /**
+     * Flag on {@link #MOVED} set when moving the row to the right changes it.
+     */
+    static final int MOVED_RIGHT = 1 << 1;
+
+    /**
+     * The resulting row after moving to the left.
+     */
+    static final char[] LEFT = new char[ROWS];
+    /**
+     * The resulting row after moving to the right.
+     */
+    static final char[] RIGHT = new char[ROWS];
+    /**
+     * The score earned by moving the row.
+     */
+    static final int[] SCORE = new int[ROWS];
+    /**
+     * The {@link #MOVED_LEFT} and {@link #MOVED_RIGHT} flags of the row.
+     */
+    static final byte[] MOVED = new byte[ROWS];
+
+    /**
+     * The time spent building the tables, in nanoseconds.
+     */
+    private static final long sBuildNanos;
+
+    static {
+
+        final long start = System.nanoTime();
+        for (int row = 0; row < ROWS; row++) {
+
+            final int left = BitBoard.slideRowLeft(row);
+            final int right = BitBoard.reverseRow(
+                    BitBoard.slideRowLeft(BitBoard.reverseRow(row)));
+
+            LEFT[row] = (char) left;
+            RIGHT[row] = (char) right;
+            SCORE[row] = BitBoard.scoreRow(row);
+            MOVED[row] = (byte) ((left != row ? MOVED_LEFT : 0)
+                    | (right != row ? MOVED_RIGHT : 0));
+        }
+        sBuildNanos = System.nanoTime() - start;
+    }
+
+    private MoveTables() {
+        // Private constructor to thwart instantiation
+    }
+
+    /**
+     * Get the time spent building the tables.
+     *
+     * @return The build time, in nanoseconds.
+     */
+    public static long getBuildNanos() {
+
+        return sBuildNanos;
+    }
+
+    /**
+     * Get the memory held by the tables, not counting the array headers.
+     *
+     * @return The tables size, in bytes.
+     */
+    public static long getMemoryBytes() {
+
+        return (long) ROWS * (2 + 2 + 4 + 1);
+    }
+
+    /**
+     * Apply a move to the left on every row of the <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return The resulting packed board.
+     */
+    static long moveLeft(long board) {
+
+        return LEFT[(int) board & 0xFFFF]
+                | (long) LEFT[(int) (board >>> 16) & 0xFFFF] << 16
+                | (long) LEFT[(int) (board >>> 32) & 0xFFFF] << 32
+                | (long) LEFT[(int) (board >>> 48) & 0xFFFF] << 48;
+    }
+
+    /**
+     * Apply a move to the right on every row of the <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return The resulting packed board.
+     */
+    static long moveRight(long board) {
+
+        return RIGHT[(int) board & 0xFFFF]
+                | (long) RIGHT[(int) (board >>> 16) & 0xFFFF] << 16
+                | (long) RIGHT[(int) (board >>> 32) & 0xFFFF] << 32
+                | (long) RIGHT[(int) (board >>> 48) & 0xFFFF] << 48;
+    }
+
+    /**
+     * Get the score earned by moving every row of the <i>board</i>, either left or right.
+     *
+     * @param board The packed board.
+     * @return The score earned.
+     */
+    static int score(long board) {
+
+        return SCORE[(int) board & 0xFFFF]
+                + SCORE[(int) (board >>> 16) & 0xFFFF]
+                + SCORE[(int) (board >>> 32) & 0xFFFF]
+                + SCORE[(int) (board >>> 48) & 0xFFFF];
+    }
+
+    /**
+     * Get the {@link #MOVED_LEFT} and {@link #MOVED_RIGHT} flags of any row of the <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return The flags of all rows, or'ed.
+     */
+    static int moved(long board) {
+
+        return MOVED[(int) board & 0xFFFF]
+                | MOVED[(int) (board >>> 16) & 0xFFFF]
+                | MOVED[(int) (board >>> 32) & 0xFFFF]
+                | MOVED[(int) (board >>> 48) & 0xFFFF];
+    }
+}
@@ -0,0 +1,91 @@
+package cat.santi.ttfe;
+
+import java.util.Random;
+
+/**
+ * Fast, splittable {@link Random}, based on the <i>SplitMix64</i> generator (the same one behind
+ * <code>java.util.SplittableRandom</code>, not available on every platform this module runs on).
+ * <p/>
+ * It's whole state is a single <code>long</code>, that can be read and restored. Unlike
+ * {@link Random}, instances are not thread safe: use {@link #split()} to get an independent
+ * generator for every thread or task.
+ */
+public class SplitRandom extends Random {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The generator state. Not initialized on declaration, as {@link Random}'s constructor
+     * settles it through {@link #setSeed(long)}.
+     */
+    private long mState;
+
+    /**
+     * Constructor for {@link SplitRandom}.
+     *
+     * @param seed The initial seed.
+     */
+    public SplitRandom(long seed) {
+
+        super(seed);
+    }
+
+    /**
+     * Create a new generator, statistically independent from this one, and advance this one.
+     *
+     * @return A new {@link SplitRandom}.
+     */
+    public SplitRandom split() {
+
+        return new SplitRandom(mix(nextLong()) ^ GOLDEN_GAMMA);
+    }
+
+    /**
+     * Get the current state, to later restore it with {@link #setState(long)}.
+     *
+     * @return The generator state.
+     */
+    public long getState() {
+
+        return mState;
+    }
+
+    /**
+     * Restore a state given by {@link #getState()}.
+     *
+     * @param state The generator state.
+     */
+    public void setState(long state) {
+
+        mState = state;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+
+        mState = seed;
+    }
+
+    @Override
+    public long nextLong() {
+
+        mState += GOLDEN_GAMMA;
+        return mix(mState);
+    }
+
+    @Override
+    protected int next(int bits) {
+
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * Scramble the bits of the given value (<i>SplitMix64</i>'s finalizer).
+     */
+    private static long mix(long value) {
+
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
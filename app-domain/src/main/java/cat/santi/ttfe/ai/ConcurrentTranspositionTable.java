@@ -0,0 +1,80 @@
+package cat.santi.ttfe.ai;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe, lock free version of {@link TranspositionTable}.
+ * <p/>
+ * Every slot holds two words: the entry data (value, depth and generation) and the board xor'ed
+ * with that data. A reader only accepts an entry whose words match, so an entry being written
+ * concurrently is just seen as a miss.
+ */
+public class ConcurrentTranspositionTable {
+
+    /**
+     * Value returned by {@link #get(long, int)} on a miss.
+     */
+    public static final float MISSING = Float.NaN;
+
+    private final AtomicLongArray mSlots;
+    private final int mMask;
+    private final AtomicInteger mGeneration = new AtomicInteger(1);
+
+    /**
+     * Constructor for {@link ConcurrentTranspositionTable}.
+     *
+     * @param bits The table holds <code>2^bits</code> entries.
+     */
+    public ConcurrentTranspositionTable(int bits) {
+
+        mSlots = new AtomicLongArray(2 << bits);
+        mMask = (1 << bits) - 1;
+    }
+
+    /**
+     * Invalidate every entry of the table.
+     */
+    public void nextGeneration() {
+
+        // Generations are kept in 24 bits, and 0 is never used
+        int generation = mGeneration.incrementAndGet() & 0xFFFFFF;
+        if (generation == 0)
+            mGeneration.set(generation = 1);
+    }
+
+    /**
+     * Get the value of the given <i>board</i>, searched at least as deep as the given
+     * <i>depth</i>.
+     *
+     * @param board The packed board.
+     * @param depth The minimum search depth.
+     * @return The stored value, or {@link #MISSING} if not found.
+     */
+    public float get(long board, int depth) {
+
+        final int index = TranspositionTable.index(board, mMask) * 2;
+        final long data = mSlots.get(index + 1);
+        if ((mSlots.get(index) ^ data) != board
+                || ((int) (data >>> 8) & 0xFFFFFF) != (mGeneration.get() & 0xFFFFFF)
+                || (int) (data & 0xFF) < depth)
+            return MISSING;
+        return Float.intBitsToFloat((int) (data >>> 32));
+    }
+
+    /**
+     * Store the <i>value</i> of the given <i>board</i>, searched with the given <i>depth</i>.
+     *
+     * @param board The packed board.
+     * @param depth The search depth.
+     * @param value The value.
+     */
+    public void put(long board, int depth, float value) {
+
+        final int index = TranspositionTable.index(board, mMask) * 2;
+        final long data = (long) Float.floatToRawIntBits(value) << 32
+                | (long) (mGeneration.get() & 0xFFFFFF) << 8 | (depth & 0xFF);
+        mSlots.lazySet(index, board ^ data);
+        mSlots.lazySet(index + 1, data);
+    }
+}
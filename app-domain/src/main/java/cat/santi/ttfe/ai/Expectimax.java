@@ -0,0 +1,235 @@
+package cat.santi.ttfe.ai;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * Depth limited <i>expectimax</i> search over {@link BitBoard} positions.
+ * <p/>
+ * Max nodes try every {@link Direction}; chance nodes average every void square with every value
+ * of {@link Engine#DEFAULT_ALLOWED_VALUES}, weighted as {@link Engine} spawns them. Leaves are
+ * scored by a {@link Heuristic}. Chance nodes are cached on a {@link TranspositionTable}, and
+ * branches whose probability falls below {@link #DEFAULT_PROBABILITY_CUTOFF} are not expanded.
+ * <p/>
+ * An instance is not thread safe; use one per thread.
+ */
+public class Expectimax {
+
+    /**
+     * The default minimum probability for a branch to be expanded.
+     */
+    public static final float DEFAULT_PROBABILITY_CUTOFF = 0.0001f;
+    /**
+     * The default size of the {@link TranspositionTable}, in bits.
+     */
+    public static final int DEFAULT_TABLE_BITS = 20;
+    /**
+     * The greatest depth searched by {@link #bestMove(long, long)}.
+     */
+    public static final int MAX_DEPTH = 16;
+
+    /**
+     * All the {@link Direction}s, to iterate without copying {@link Direction#values()}.
+     */
+    static final Direction[] DIRECTIONS = Direction.values();
+    /**
+     * The exponent of every allowed spawn value.
+     */
+    static final int[] SPAWN_EXPONENTS = new int[Engine.DEFAULT_ALLOWED_VALUES.length];
+    /**
+     * The probability of every allowed spawn value.
+     */
+    static final float SPAWN_PROBABILITY = 1f / Engine.DEFAULT_ALLOWED_VALUES.length;
+
+    static {
+
+        for (int index = 0; index < SPAWN_EXPONENTS.length; index++)
+            SPAWN_EXPONENTS[index] = BitBoard.toExponent(Engine.DEFAULT_ALLOWED_VALUES[index]);
+    }
+
+    private final TranspositionTable mTable;
+    private final Recursion mRecursion;
+
+    private long mDeadline = Long.MAX_VALUE;
+    private boolean mAborted = false;
+    private int mCompletedDepth = 0;
+
+    /**
+     * Constructor for {@link Expectimax}, with a {@link MonotonicityHeuristic} and the default
+     * settings.
+     */
+    public Expectimax() {
+
+        this(new MonotonicityHeuristic(), DEFAULT_TABLE_BITS, DEFAULT_PROBABILITY_CUTOFF);
+    }
+
+    /**
+     * Constructor for {@link Expectimax}.
+     *
+     * @param heuristic         The {@link Heuristic} scoring the leaves.
+     * @param tableBits         The {@link TranspositionTable} holds <code>2^tableBits</code>
+     *                          entries.
+     * @param probabilityCutoff The minimum probability for a branch to be expanded.
+     */
+    public Expectimax(Heuristic heuristic, int tableBits, float probabilityCutoff) {
+
+        mTable = new TranspositionTable(tableBits);
+        mRecursion = new Recursion(heuristic, probabilityCutoff);
+    }
+
+    /**
+     * Find the best move for the current game of the given {@link Engine}.
+     *
+     * @param engine     The {@link Engine} playing a 4 x 4 game.
+     * @param timeBudget The time to search, in milliseconds.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     * @see Engine#toBitBoard()
+     */
+    public Direction bestMove(Engine engine, long timeBudget) {
+
+        return bestMove(engine.toBitBoard(), timeBudget);
+    }
+
+    /**
+     * Find the best move for the given <i>board</i>, searching deeper and deeper until the
+     * <i>timeBudget</i> is spent. The move found by the deepest completed search is returned.
+     *
+     * @param board      The packed board.
+     * @param timeBudget The time to search, in milliseconds.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     */
+    public Direction bestMove(long board, long timeBudget) {
+
+        mDeadline = System.nanoTime() + timeBudget * 1000000L;
+        mCompletedDepth = 0;
+
+        Direction result = null;
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+
+            final Direction move = search(board, depth);
+            if (mAborted)
+                break;
+
+            result = move;
+            mCompletedDepth = depth;
+            if (move == null || System.nanoTime() >= mDeadline)
+                break;
+        }
+
+        // Always answer something, even if not even depth 1 fitted on the budget
+        if (mCompletedDepth == 0)
+            result = bestMoveAtDepth(board, 1);
+
+        mDeadline = Long.MAX_VALUE;
+        return result;
+    }
+
+    /**
+     * Find the best move for the given <i>board</i>, searching exactly <i>depth</i> moves ahead.
+     *
+     * @param board The packed board.
+     * @param depth The amount of moves to search ahead. At least 1.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     */
+    public Direction bestMoveAtDepth(long board, int depth) {
+
+        final long deadline = mDeadline;
+        mDeadline = Long.MAX_VALUE;
+        final Direction result = search(board, depth);
+        mDeadline = deadline;
+        mCompletedDepth = depth;
+        return result;
+    }
+
+    /**
+     * Get the depth of the last completed search.
+     *
+     * @return The depth reached by the last {@link #bestMove(long, long)}.
+     */
+    public int getCompletedDepth() {
+
+        return mCompletedDepth;
+    }
+
+    /**
+     * Get the amount of nodes evaluated by this instance so far.
+     *
+     * @return The amount of max and chance nodes visited.
+     */
+    public long getNodes() {
+
+        return mRecursion.mNodes;
+    }
+
+    /**
+     * Run a whole search of the given <i>depth</i>.
+     */
+    private Direction search(long board, int depth) {
+
+        mTable.nextGeneration();
+        mAborted = false;
+
+        Direction result = null;
+        float best = Float.NEGATIVE_INFINITY;
+        for (Direction direction : DIRECTIONS) {
+
+            final long next = BitBoard.move(board, direction);
+            if (next == board)
+                continue;
+
+            final float value = mRecursion.chance(next, depth - 1, 1f);
+            if (mAborted)
+                return null;
+
+            if (value > best) {
+
+                best = value;
+                result = direction;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The recursion of this instance, over it's {@link TranspositionTable}.
+     */
+    private final class Recursion extends ExpectimaxRecursion {
+
+        Recursion(Heuristic heuristic, float probabilityCutoff) {
+
+            super(heuristic, probabilityCutoff);
+        }
+
+        @Override
+        float getCached(long board, int depth) {
+
+            final int entry = mTable.find(board, depth);
+            return entry >= 0 ? mTable.getValue(entry) : Float.NaN;
+        }
+
+        @Override
+        void putCached(long board, int depth, float value) {
+
+            mTable.put(board, depth, value);
+        }
+
+        @Override
+        long getDeadline() {
+
+            return mDeadline;
+        }
+
+        @Override
+        void abort() {
+
+            mAborted = true;
+        }
+
+        @Override
+        boolean isAborted() {
+
+            return mAborted;
+        }
+    }
+}
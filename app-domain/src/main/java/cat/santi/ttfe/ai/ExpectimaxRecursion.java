@@ -0,0 +1,146 @@
+package cat.santi.ttfe.ai;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * The serial recursion of an expectimax search, shared by {@link Expectimax} and the tasks of
+ * {@link ParallelExpectimax}.
+ * <p/>
+ * Max nodes try every {@link Direction}; chance nodes average every void square with every
+ * spawn value, and evaluate the branches whose probability falls below the cutoff with the
+ * {@link Heuristic}. Subclasses provide the transposition table, the deadline, and may search
+ * the spawns of a chance node some other way (see {@link #spawns(long, int, float, float)}).
+ * <p/>
+ * An instance is not thread safe; use one per thread.
+ */
+abstract class ExpectimaxRecursion {
+
+    /**
+     * Amount of nodes between deadline checks.
+     */
+    private static final int DEADLINE_CHECK_NODES = 1 << 12;
+
+    private final Heuristic mHeuristic;
+    private final float mProbabilityCutoff;
+
+    /**
+     * The amount of max and chance nodes visited.
+     */
+    long mNodes = 0;
+
+    /**
+     * Constructor for {@link ExpectimaxRecursion}.
+     *
+     * @param heuristic         The {@link Heuristic} scoring the leaves.
+     * @param probabilityCutoff The minimum probability for a branch to be expanded.
+     */
+    ExpectimaxRecursion(Heuristic heuristic, float probabilityCutoff) {
+
+        mHeuristic = heuristic;
+        mProbabilityCutoff = probabilityCutoff;
+    }
+
+    /**
+     * Evaluate a max node: the best value among every possible move.
+     */
+    final float max(long board, int depth, float probability) {
+
+        mNodes++;
+
+        float best = 0;
+        for (Direction direction : Expectimax.DIRECTIONS) {
+
+            final long next = BitBoard.move(board, direction);
+            if (next != board)
+                best = Math.max(best, chance(next, depth - 1, probability));
+        }
+        return best;
+    }
+
+    /**
+     * Evaluate a chance node: the weighted average among every possible spawn.
+     */
+    final float chance(long board, int depth, float probability) {
+
+        if (depth <= 0 || probability < mProbabilityCutoff)
+            return mHeuristic.evaluate(board);
+
+        mNodes++;
+        if ((mNodes & (DEADLINE_CHECK_NODES - 1)) == 0 && System.nanoTime() >= getDeadline())
+            abort();
+        if (isAborted())
+            return 0;
+
+        final float cached = getCached(board, depth);
+        if (!Float.isNaN(cached))
+            return cached;
+
+        final int empty = BitBoard.countEmpty(board);
+        final float branch = probability / empty * Expectimax.SPAWN_PROBABILITY;
+        final float result = spawns(board, depth, probability, branch) / empty;
+
+        // Do not cache values of an interrupted search
+        if (isAborted())
+            return 0;
+
+        putCached(board, depth, result);
+        return result;
+    }
+
+    /**
+     * Sum the values of every spawn of a chance node, each weighted by the probability of it's
+     * value. The spawns are searched one after another on this thread.
+     *
+     * @param board       The packed board of the chance node.
+     * @param depth       The remaining depth of the chance node.
+     * @param probability The probability of the chance node.
+     * @param branch      The probability of every spawn.
+     * @return The weighted sum, to be divided by the amount of void squares.
+     */
+    float spawns(long board, int depth, float probability, float branch) {
+
+        float result = 0;
+        for (int square = 0; square < BitBoard.CELLS; square++) {
+
+            if (((board >>> (square * 4)) & 0xF) != 0)
+                continue;
+
+            for (int exponent : Expectimax.SPAWN_EXPONENTS)
+                result += max(board | ((long) exponent << (square * 4)), depth, branch)
+                        * Expectimax.SPAWN_PROBABILITY;
+        }
+        return result;
+    }
+
+    /**
+     * Get the cached value of a chance node.
+     *
+     * @return The value, or {@link Float#NaN} if not cached.
+     */
+    abstract float getCached(long board, int depth);
+
+    /**
+     * Cache the value of a chance node.
+     */
+    abstract void putCached(long board, int depth, float value);
+
+    /**
+     * Get the time the search must stop at.
+     *
+     * @return The deadline, as given by {@link System#nanoTime()}.
+     */
+    abstract long getDeadline();
+
+    /**
+     * Stop the search, once past the deadline.
+     */
+    abstract void abort();
+
+    /**
+     * Get whether the search was stopped.
+     *
+     * @return <code>true</code> if the search was stopped.
+     */
+    abstract boolean isAborted();
+}
@@ -0,0 +1,19 @@
+package cat.santi.ttfe.ai;
+
+import cat.santi.ttfe.BitBoard;
+
+/**
+ * Static evaluation of a {@link BitBoard} position, used by the searches at their leaves.
+ * <p/>
+ * Greater values mean better positions. Implementations must be thread safe.
+ */
+public interface Heuristic {
+
+    /**
+     * Evaluate the given position.
+     *
+     * @param board The packed board.
+     * @return The value of the position.
+     */
+    float evaluate(long board);
+}
@@ -0,0 +1,161 @@
+package cat.santi.ttfe.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cat.santi.ttfe.SplitRandom;
+
+/**
+ * Multi-threaded trainer of a {@link NTupleNetwork}, <i>Hogwild</i> style.
+ * <p/>
+ * Every thread plays it's own games with it's own {@link TDTrainer}, and all of them update the
+ * shared weights without any synchronization. Lost updates are rare, as every move only touches a
+ * few of the millions of weights, and do not harm the convergence.
+ * <p/>
+ * Only one {@link #train(long)} can run at a time on an instance.
+ */
+public class HogwildTrainer {
+
+    private final ExecutorService mExecutor;
+    private final TDTrainer[] mTrainers;
+
+    /**
+     * Constructor for {@link HogwildTrainer}.
+     *
+     * @param network The {@link NTupleNetwork} to train.
+     * @param rate    The learning rate.
+     * @param threads The amount of threads to train with.
+     * @param seed    The seed of the games. Each thread plays with it's own split of it.
+     */
+    public HogwildTrainer(NTupleNetwork network, float rate, int threads, long seed) {
+
+        mExecutor = Executors.newFixedThreadPool(threads);
+        mTrainers = new TDTrainer[threads];
+
+        final SplitRandom random = new SplitRandom(seed);
+        for (int index = 0; index < threads; index++)
+            mTrainers[index] = new TDTrainer(network, rate, random.split());
+    }
+
+    /**
+     * Play the given amount of games between all the threads, and wait for them.
+     *
+     * @param games The amount of games to play.
+     */
+    public void train(long games) {
+
+        final AtomicLong remaining = new AtomicLong(games);
+        final List<Callable<Void>> workers = new ArrayList<>(mTrainers.length);
+        for (final TDTrainer trainer : mTrainers) {
+
+            workers.add(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+
+                    while (remaining.getAndDecrement() > 0)
+                        trainer.playGame();
+                    return null;
+                }
+            });
+        }
+
+        try {
+
+            for (Future<Void> future : mExecutor.invokeAll(workers))
+                future.get();
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training", e);
+        } catch (ExecutionException e) {
+
+            throw new IllegalStateException("Training failed", e.getCause());
+        }
+    }
+
+    /**
+     * Get the amount of threads.
+     *
+     * @return The amount of threads.
+     */
+    public int getThreads() {
+
+        return mTrainers.length;
+    }
+
+    /**
+     * Get the amount of games played by all threads since the last {@link #resetStats()}.
+     *
+     * @return The amount of games.
+     */
+    public long getGames() {
+
+        long result = 0;
+        for (TDTrainer trainer : mTrainers)
+            result += trainer.getGames();
+        return result;
+    }
+
+    /**
+     * Get the amount of moves played by all threads since the last {@link #resetStats()}.
+     *
+     * @return The amount of moves.
+     */
+    public long getMoves() {
+
+        long result = 0;
+        for (TDTrainer trainer : mTrainers)
+            result += trainer.getMoves();
+        return result;
+    }
+
+    /**
+     * Get the sum of the final scores of all threads since the last {@link #resetStats()}.
+     *
+     * @return The total score.
+     */
+    public long getTotalScore() {
+
+        long result = 0;
+        for (TDTrainer trainer : mTrainers)
+            result += trainer.getTotalScore();
+        return result;
+    }
+
+    /**
+     * Get the greatest tile reached by any thread since the last {@link #resetStats()}.
+     *
+     * @return The greatest tile value.
+     */
+    public int getGreatestTile() {
+
+        int result = 0;
+        for (TDTrainer trainer : mTrainers)
+            result = Math.max(result, trainer.getGreatestTile());
+        return result;
+    }
+
+    /**
+     * Reset the statistics of all threads.
+     */
+    public void resetStats() {
+
+        for (TDTrainer trainer : mTrainers)
+            trainer.resetStats();
+    }
+
+    /**
+     * Stop the threads of this instance. No more training can be done after this.
+     */
+    public void shutdown() {
+
+        mExecutor.shutdown();
+    }
+}
@@ -0,0 +1,107 @@
+package cat.santi.ttfe.ai;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Read-only n-tuple network {@link Heuristic}, evaluating straight from the weights of a
+ * memory-mapped {@link WeightFile}, either <code>float</code>s or quantized <code>short</code>s.
+ * <p/>
+ * Evaluates exactly like a {@link NTupleNetwork} with the same weights (or the dequantized
+ * ones). The mapping is released once this instance is garbage collected.
+ */
+public class MappedNTupleNetwork implements Heuristic {
+
+    private final NTupleLayout mLayout;
+    private final FloatBuffer mFloats;
+    private final ShortBuffer mShorts;
+    private final float mScale;
+
+    /**
+     * Constructor for {@link MappedNTupleNetwork}. Only one of <i>floats</i> and <i>shorts</i>
+     * is expected.
+     */
+    MappedNTupleNetwork(NTupleLayout layout, FloatBuffer floats, ShortBuffer shorts,
+                        float scale) {
+
+        mLayout = layout;
+        mFloats = floats;
+        mShorts = shorts;
+        mScale = scale;
+    }
+
+    @Override
+    public float evaluate(long board) {
+
+        final NTupleLayout layout = mLayout;
+        final int features = layout.getFeatureCount();
+        if (mShorts != null) {
+
+            // Add up the quantized weights, and scale them once
+            final ShortBuffer shorts = mShorts;
+            int result = 0;
+            for (int feature = 0; feature < features; feature++)
+                result += shorts.get(layout.weightIndex(board, feature));
+            return result * mScale;
+        }
+
+        final FloatBuffer floats = mFloats;
+        float result = 0;
+        for (int feature = 0; feature < features; feature++)
+            result += floats.get(layout.weightIndex(board, feature));
+        return result;
+    }
+
+    /**
+     * Find out whether the weights are quantized.
+     *
+     * @return <code>true</code> if the weights are 16-bit integers, <code>false</code> otherwise.
+     */
+    public boolean isQuantized() {
+
+        return mShorts != null;
+    }
+
+    /**
+     * Get the scale of the quantized weights.
+     *
+     * @return The value of a quantized 1, or 1 if not quantized.
+     */
+    public float getScale() {
+
+        return mScale;
+    }
+
+    /**
+     * Get the nibble indexes of the squares of every tuple.
+     *
+     * @return A copy of the tuples.
+     */
+    public int[][] getTuples() {
+
+        return mLayout.getTuples();
+    }
+
+    /**
+     * Get the weight layout.
+     */
+    NTupleLayout getLayout() {
+
+        return mLayout;
+    }
+
+    /**
+     * Copy all the weights to the given array, dequantized if needed.
+     */
+    void copyWeights(float[] weights) {
+
+        if (mShorts == null) {
+
+            mFloats.duplicate().get(weights);
+            return;
+        }
+
+        for (int index = 0; index < weights.length; index++)
+            weights[index] = mShorts.get(index) * mScale;
+    }
+}
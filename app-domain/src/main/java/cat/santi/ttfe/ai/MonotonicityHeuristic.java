@@ -0,0 +1,96 @@
+package cat.santi.ttfe.ai;
+
+import cat.santi.ttfe.BitBoard;
+
+/**
+ * Default {@link Heuristic}, rewarding void squares, possible merges and monotonic rows and
+ * columns, and penalizing big scattered tiles.
+ * <p/>
+ * Every row is scored once for all the 2^16 possible packed rows, so a board is evaluated with 8
+ * table lookups (4 rows and 4 columns).
+ */
+public class MonotonicityHeuristic implements Heuristic {
+
+    private static final float LOST_PENALTY = 200000f;
+    private static final float MONOTONICITY_POWER = 4f;
+    private static final float MONOTONICITY_WEIGHT = 47f;
+    private static final float SUM_POWER = 3.5f;
+    private static final float SUM_WEIGHT = 11f;
+    private static final float MERGES_WEIGHT = 700f;
+    private static final float EMPTY_WEIGHT = 270f;
+
+    /**
+     * The score of every packed row.
+     */
+    private final float[] mRows = new float[1 << 16];
+
+    /**
+     * Constructor for {@link MonotonicityHeuristic}. Builds the row table.
+     */
+    public MonotonicityHeuristic() {
+
+        final int[] line = new int[BitBoard.SIZE];
+        for (int row = 0; row < mRows.length; row++) {
+
+            for (int index = 0; index < line.length; index++)
+                line[index] = (row >>> (index * 4)) & 0xF;
+
+            float sum = 0;
+            int empty = 0;
+            int merges = 0;
+            int previous = 0;
+            int counter = 0;
+            for (int rank : line) {
+
+                sum += Math.pow(rank, SUM_POWER);
+                if (rank == 0) {
+
+                    empty++;
+                } else {
+
+                    if (previous == rank) {
+
+                        counter++;
+                    } else if (counter > 0) {
+
+                        merges += 1 + counter;
+                        counter = 0;
+                    }
+                    previous = rank;
+                }
+            }
+            if (counter > 0)
+                merges += 1 + counter;
+
+            float monotonicityLeft = 0;
+            float monotonicityRight = 0;
+            for (int index = 1; index < line.length; index++) {
+
+                final double previousPow = Math.pow(line[index - 1], MONOTONICITY_POWER);
+                final double currentPow = Math.pow(line[index], MONOTONICITY_POWER);
+                if (line[index - 1] > line[index])
+                    monotonicityLeft += previousPow - currentPow;
+                else
+                    monotonicityRight += currentPow - previousPow;
+            }
+
+            mRows[row] = LOST_PENALTY + EMPTY_WEIGHT * empty + MERGES_WEIGHT * merges
+                    - MONOTONICITY_WEIGHT * Math.min(monotonicityLeft, monotonicityRight)
+                    - SUM_WEIGHT * sum;
+        }
+    }
+
+    @Override
+    public float evaluate(long board) {
+
+        final long transposed = BitBoard.transpose(board);
+        return mRows[(int) board & 0xFFFF]
+                + mRows[(int) (board >>> 16) & 0xFFFF]
+                + mRows[(int) (board >>> 32) & 0xFFFF]
+                + mRows[(int) (board >>> 48) & 0xFFFF]
+                + mRows[(int) transposed & 0xFFFF]
+                + mRows[(int) (transposed >>> 16) & 0xFFFF]
+                + mRows[(int) (transposed >>> 32) & 0xFFFF]
+                + mRows[(int) (transposed >>> 48) & 0xFFFF];
+    }
+}
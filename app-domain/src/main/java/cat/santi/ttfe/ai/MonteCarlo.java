@@ -0,0 +1,216 @@
+package cat.santi.ttfe.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.SplitRandom;
+
+/**
+ * Pure Monte Carlo move chooser over {@link BitBoard} positions.
+ * <p/>
+ * For every legal {@link Direction}, plays many random games (<i>rollouts</i>) until no move is
+ * possible, and picks the {@link Direction} with the best mean {@link Objective}. Rollouts are
+ * split on a {@link ForkJoinPool}, every task with it's own {@link SplitRandom}, so results only
+ * depend on the seed.
+ * <p/>
+ * Only one search can run at a time on an instance.
+ */
+public class MonteCarlo {
+
+    /**
+     * What the rollouts are compared by.
+     */
+    public enum Objective {
+
+        /**
+         * The mean final score.
+         */
+        SCORE,
+        /**
+         * The mean exponent of the final greatest tile.
+         */
+        MAX_TILE,
+    }
+
+    /**
+     * The amount of rollouts played by every task.
+     */
+    private static final int ROLLOUTS_PER_TASK = 32;
+
+    private final ForkJoinPool mPool;
+    private final int mRollouts;
+    private final Objective mObjective;
+    private final SplitRandom mRandom;
+    private final AtomicLong mMoves = new AtomicLong();
+
+    /**
+     * Constructor for {@link MonteCarlo}.
+     *
+     * @param threads   The amount of threads to play rollouts with.
+     * @param rollouts  The amount of rollouts for every {@link Direction}.
+     * @param objective The {@link Objective} to compare rollouts by.
+     * @param seed      The seed of the rollouts.
+     */
+    public MonteCarlo(int threads, int rollouts, Objective objective, long seed) {
+
+        mPool = new ForkJoinPool(threads);
+        mRollouts = rollouts;
+        mObjective = objective;
+        mRandom = new SplitRandom(seed);
+    }
+
+    /**
+     * Find the best move for the current game of the given {@link Engine}.
+     *
+     * @param engine The {@link Engine} playing a 4 x 4 game.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     * @see Engine#toBitBoard()
+     */
+    public Direction bestMove(Engine engine) {
+
+        return bestMove(engine.toBitBoard());
+    }
+
+    /**
+     * Find the best move for the given <i>board</i>.
+     *
+     * @param board The packed board.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     */
+    public Direction bestMove(long board) {
+
+        // Split the rollouts of every legal direction on tasks
+        final List<RolloutTask> tasks = new ArrayList<>();
+        for (Direction direction : Expectimax.DIRECTIONS) {
+
+            final long next = BitBoard.move(board, direction);
+            if (next == board)
+                continue;
+
+            final int score = BitBoard.score(board, direction);
+            for (int done = 0; done < mRollouts; done += ROLLOUTS_PER_TASK)
+                tasks.add(new RolloutTask(direction, next, score,
+                        Math.min(ROLLOUTS_PER_TASK, mRollouts - done), mRandom.split()));
+        }
+        if (tasks.isEmpty())
+            return null;
+
+        mPool.invoke(new RecursiveAction() {
+
+            @Override
+            protected void compute() {
+
+                invokeAll(tasks);
+            }
+        });
+
+        // Sum up the results of every direction
+        final double[] totals = new double[Expectimax.DIRECTIONS.length];
+        for (RolloutTask task : tasks)
+            totals[task.mDirection.ordinal()] += task.mTotal;
+
+        Direction result = null;
+        double best = Double.NEGATIVE_INFINITY;
+        for (RolloutTask task : tasks) {
+
+            if (totals[task.mDirection.ordinal()] > best) {
+
+                best = totals[task.mDirection.ordinal()];
+                result = task.mDirection;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the amount of moves played by all the rollouts so far.
+     *
+     * @return The amount of rollout moves.
+     */
+    public long getRolloutMoves() {
+
+        return mMoves.get();
+    }
+
+    /**
+     * Stop the threads of this instance. No more searches can be done after this.
+     */
+    public void shutdown() {
+
+        mPool.shutdown();
+    }
+
+    /**
+     * Play a random game from the given <i>board</i> until no move is possible.
+     *
+     * @param board  The packed board, right after a move (before it's spawn).
+     * @param random The {@link SplitRandom} to play with.
+     * @param result Array where the final score earned (index 0) and the amount of moves played
+     *               (index 1) are added.
+     * @return The final packed board.
+     */
+    static long rollout(long board, SplitRandom random, long[] result) {
+
+        board = BitBoard.spawn(board, random);
+        while (true) {
+
+            final int legal = BitBoard.legalMoves(board);
+            if (legal == 0)
+                return board;
+
+            // Pick a random legal direction
+            int pick = random.nextInt(Integer.bitCount(legal));
+            int mask = legal;
+            for (; pick > 0; pick--)
+                mask &= mask - 1;
+            final Direction direction =
+                    Expectimax.DIRECTIONS[Integer.numberOfTrailingZeros(mask)];
+
+            result[0] += BitBoard.score(board, direction);
+            result[1]++;
+            board = BitBoard.spawn(BitBoard.move(board, direction), random);
+        }
+    }
+
+    /**
+     * Task playing some rollouts after a root move.
+     */
+    private final class RolloutTask extends RecursiveAction {
+
+        private final Direction mDirection;
+        private final long mBoard;
+        private final int mScore;
+        private final int mCount;
+        private final SplitRandom mTaskRandom;
+        private double mTotal;
+
+        RolloutTask(Direction direction, long board, int score, int count, SplitRandom random) {
+
+            mDirection = direction;
+            mBoard = board;
+            mScore = score;
+            mCount = count;
+            mTaskRandom = random;
+        }
+
+        @Override
+        protected void compute() {
+
+            final long[] result = new long[2];
+            for (int index = 0; index < mCount; index++) {
+
+                result[0] = mScore;
+                final long end = rollout(mBoard, mTaskRandom, result);
+                mTotal += mObjective == Objective.SCORE ? result[0]
+                        : BitBoard.getMaxExponent(end);
+            }
+            mMoves.addAndGet(result[1]);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package cat.santi.ttfe.ai;
+
+import cat.santi.ttfe.BitBoard;
+
+/**
+ * Where every <i>feature</i> of an n-tuple network (a tuple on one of the board symmetries) finds
+ * it's weight, on a single table holding the weights of all the tuples one after the other.
+ * <p/>
+ * Shared by {@link NTupleNetwork} and {@link MappedNTupleNetwork}, so both index the weights in
+ * the same way.
+ */
+final class NTupleLayout {
+
+    /**
+     * The amount of symmetries of a board.
+     */
+    static final int SYMMETRIES = 8;
+
+    private final int[][] mTuples;
+    private final long mWeightCount;
+    /**
+     * The first weight of the tuple of every feature.
+     */
+    private final int[] mFeatureOffsets;
+    /**
+     * The first entry at {@link #mShifts} of every feature, plus a last one for the end.
+     */
+    private final int[] mFeatureStarts;
+    /**
+     * The bit shift of the squares of every feature, all features one after the other.
+     */
+    private final int[] mShifts;
+
+    /**
+     * Constructor for {@link NTupleLayout}.
+     *
+     * @param tuples The nibble indexes of the squares of every tuple. Copied.
+     */
+    NTupleLayout(int[][] tuples) {
+
+        mTuples = new int[tuples.length][];
+        long weights = 0;
+        int shifts = 0;
+        for (int indexT = 0; indexT < tuples.length; indexT++) {
+
+            for (int square : tuples[indexT])
+                if (square < 0 || square >= BitBoard.CELLS)
+                    throw new IllegalArgumentException("Invalid square: " + square);
+
+            mTuples[indexT] = tuples[indexT].clone();
+            weights += 1L << (tuples[indexT].length * 4);
+            shifts += tuples[indexT].length * SYMMETRIES;
+        }
+        if (weights > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many weights: " + weights);
+        mWeightCount = weights;
+
+        final int features = tuples.length * SYMMETRIES;
+        mFeatureOffsets = new int[features];
+        mFeatureStarts = new int[features + 1];
+        mShifts = new int[shifts];
+
+        int offset = 0;
+        int position = 0;
+        for (int indexT = 0; indexT < tuples.length; indexT++) {
+
+            for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+
+                final int feature = indexT * SYMMETRIES + symmetry;
+                mFeatureOffsets[feature] = offset;
+                mFeatureStarts[feature] = position;
+                for (int square : tuples[indexT])
+                    mShifts[position++] = transform(square, symmetry) * 4;
+            }
+            offset += 1 << (tuples[indexT].length * 4);
+        }
+        mFeatureStarts[features] = position;
+    }
+
+    /**
+     * Get the amount of features (tuples times symmetries).
+     *
+     * @return The amount of features.
+     */
+    int getFeatureCount() {
+
+        return mFeatureOffsets.length;
+    }
+
+    /**
+     * Get the amount of weights of all the tuples.
+     *
+     * @return The amount of weights.
+     */
+    int getWeightCount() {
+
+        return (int) mWeightCount;
+    }
+
+    /**
+     * Get the tuples.
+     *
+     * @return A copy of the nibble indexes of the squares of every tuple.
+     */
+    int[][] getTuples() {
+
+        final int[][] result = new int[mTuples.length][];
+        for (int indexT = 0; indexT < mTuples.length; indexT++)
+            result[indexT] = mTuples[indexT].clone();
+        return result;
+    }
+
+    /**
+     * Get the position of the weight selected by a feature on the given <i>board</i>.
+     *
+     * @param board   The packed board.
+     * @param feature The feature, from 0 to {@link #getFeatureCount()}.
+     * @return The position of the weight, on the table of all the tuples.
+     */
+    int weightIndex(long board, int feature) {
+
+        final int[] shifts = mShifts;
+        int result = 0;
+        for (int position = mFeatureStarts[feature]; position < mFeatureStarts[feature + 1];
+             position++)
+            result = (result << 4) | ((int) (board >>> shifts[position]) & 0xF);
+        return mFeatureOffsets[feature] + result;
+    }
+
+    /**
+     * Apply a symmetry to a nibble index. Symmetries 0 to 3 are clockwise rotations, and
+     * 4 to 7 the same rotations of the mirrored board.
+     */
+    private static int transform(int square, int symmetry) {
+
+        int row = square / BitBoard.SIZE;
+        int column = square % BitBoard.SIZE;
+        if (symmetry >= SYMMETRIES / 2)
+            column = BitBoard.SIZE - 1 - column;
+
+        for (int rotation = 0; rotation < symmetry % (SYMMETRIES / 2); rotation++) {
+
+            final int previous = row;
+            row = column;
+            column = BitBoard.SIZE - 1 - previous;
+        }
+        return row * BitBoard.SIZE + column;
+    }
+}
@@ -0,0 +1,155 @@
+package cat.santi.ttfe.ai;
+
+import java.io.File;
+import java.io.IOException;
+
+import cat.santi.ttfe.BitBoard;
+
+/**
+ * Learned {@link Heuristic}: an <i>n-tuple network</i> over {@link BitBoard} positions.
+ * <p/>
+ * Every <i>tuple</i> is a fixed set of squares. The exponents found on those squares form an
+ * index into the tuple's own weight table, and the value of a board is the sum of the weights
+ * selected by every tuple on each of the 8 symmetries (rotations and reflections) of the board.
+ * Symmetric <i>features</i> share the weights of their tuple.
+ * <p/>
+ * All the weights live on a single <code>float[]</code>, and evaluations and updates are plain
+ * array indexing. Updates are not synchronized: concurrent updates may lose some increments,
+ * which is fine for training purposes.
+ */
+public class NTupleNetwork implements Heuristic {
+
+    /**
+     * The default tuples: four 6-tuples, given as nibble indexes. The first two are a whole row
+     * plus the first two squares of the next row, and the last two are 2x3 rectangles. Their
+     * weights take 256 MB.
+     */
+    public static final int[][] DEFAULT_TUPLES = {
+            {0, 1, 2, 3, 4, 5},
+            {4, 5, 6, 7, 8, 9},
+            {0, 1, 2, 4, 5, 6},
+            {4, 5, 6, 8, 9, 10},
+    };
+    /**
+     * The amount of symmetries of a board.
+     */
+    public static final int SYMMETRIES = NTupleLayout.SYMMETRIES;
+
+    private final NTupleLayout mLayout;
+    private final float[] mWeights;
+
+    /**
+     * Constructor for {@link NTupleNetwork}, with the {@link #DEFAULT_TUPLES} and all weights
+     * set to 0.
+     */
+    public NTupleNetwork() {
+
+        this(DEFAULT_TUPLES);
+    }
+
+    /**
+     * Constructor for {@link NTupleNetwork}, with all weights set to 0.
+     *
+     * @param tuples The nibble indexes of the squares of every tuple.
+     */
+    public NTupleNetwork(int[][] tuples) {
+
+        this(tuples, new float[weightCount(tuples)]);
+    }
+
+    /**
+     * Constructor for {@link NTupleNetwork}.
+     *
+     * @param tuples  The nibble indexes of the squares of every tuple.
+     * @param weights The weights of all the tuples, one table after the other. Not copied.
+     */
+    public NTupleNetwork(int[][] tuples, float[] weights) {
+
+        mLayout = new NTupleLayout(tuples);
+        if (weights.length != mLayout.getWeightCount())
+            throw new IllegalArgumentException("Expected " + mLayout.getWeightCount()
+                    + " weights, got " + weights.length);
+        mWeights = weights;
+    }
+
+    @Override
+    public float evaluate(long board) {
+
+        final NTupleLayout layout = mLayout;
+        final float[] weights = mWeights;
+        float result = 0;
+        for (int feature = 0; feature < layout.getFeatureCount(); feature++)
+            result += weights[layout.weightIndex(board, feature)];
+        return result;
+    }
+
+    /**
+     * Add <i>delta</i> to every weight selected by the given <i>board</i>.
+     *
+     * @param board The packed board.
+     * @param delta The amount to add to every weight.
+     */
+    public void update(long board, float delta) {
+
+        final NTupleLayout layout = mLayout;
+        final float[] weights = mWeights;
+        for (int feature = 0; feature < layout.getFeatureCount(); feature++)
+            weights[layout.weightIndex(board, feature)] += delta;
+    }
+
+    /**
+     * Get the nibble indexes of the squares of every tuple.
+     *
+     * @return A copy of the tuples.
+     */
+    public int[][] getTuples() {
+
+        return mLayout.getTuples();
+    }
+
+    /**
+     * Get the weights of all the tuples. Changes on the returned array are seen by this network.
+     *
+     * @return The weights, one table after the other.
+     */
+    public float[] getWeights() {
+
+        return mWeights;
+    }
+
+    /**
+     * Get the amount of weights needed by the given tuples.
+     *
+     * @param tuples The nibble indexes of the squares of every tuple.
+     * @return The amount of weights.
+     */
+    public static int weightCount(int[][] tuples) {
+
+        return new NTupleLayout(tuples).getWeightCount();
+    }
+
+    /**
+     * Write the tuples and weights to the given <i>file</i>, replacing it, as a not quantized
+     * {@link WeightFile}. The new weights are written to a temporary file and renamed over it, so
+     * an interrupted save keeps the previous ones.
+     *
+     * @param file The destination file.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(File file) throws IOException {
+
+        WeightFile.write(this, file, false);
+    }
+
+    /**
+     * Read a network from a {@link WeightFile}, like the ones written by {@link #save(File)}.
+     *
+     * @param file The source file.
+     * @return The read {@link NTupleNetwork}.
+     * @throws IOException If the file could not be read, or is not valid.
+     */
+    public static NTupleNetwork load(File file) throws IOException {
+
+        return WeightFile.load(file);
+    }
+}
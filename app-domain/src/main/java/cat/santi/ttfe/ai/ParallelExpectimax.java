@@ -0,0 +1,306 @@
+package cat.santi.ttfe.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * Multi-threaded version of {@link Expectimax}, running on a {@link ForkJoinPool}.
+ * <p/>
+ * Every root {@link Direction} is searched on it's own task, and so is every spawn of a chance
+ * node whose probability is at least {@link #DEFAULT_SPLIT_PROBABILITY}. Smaller subtrees are
+ * searched sequentially by the task reaching them, and idle threads steal pending tasks from
+ * the busy ones. All the tasks share a {@link ConcurrentTranspositionTable}.
+ * <p/>
+ * Only one search can run at a time on an instance.
+ */
+public class ParallelExpectimax {
+
+    /**
+     * The default minimum probability of a chance node to split it's spawns on several tasks.
+     */
+    public static final float DEFAULT_SPLIT_PROBABILITY = 0.02f;
+
+    private final ForkJoinPool mPool;
+    private final Heuristic mHeuristic;
+    private final ConcurrentTranspositionTable mTable;
+    private final float mProbabilityCutoff;
+    private final float mSplitProbability;
+    private final AtomicLong mNodes = new AtomicLong();
+
+    private volatile long mDeadline = Long.MAX_VALUE;
+    private volatile boolean mAborted = false;
+    private int mCompletedDepth = 0;
+
+    /**
+     * Constructor for {@link ParallelExpectimax}, with a {@link MonotonicityHeuristic} and the
+     * default settings.
+     *
+     * @param threads The amount of threads to search with.
+     */
+    public ParallelExpectimax(int threads) {
+
+        this(threads, new MonotonicityHeuristic(), Expectimax.DEFAULT_TABLE_BITS,
+                Expectimax.DEFAULT_PROBABILITY_CUTOFF, DEFAULT_SPLIT_PROBABILITY);
+    }
+
+    /**
+     * Constructor for {@link ParallelExpectimax}.
+     *
+     * @param threads           The amount of threads to search with.
+     * @param heuristic         The {@link Heuristic} scoring the leaves. Must be thread safe.
+     * @param tableBits         The {@link ConcurrentTranspositionTable} holds
+     *                          <code>2^tableBits</code> entries.
+     * @param probabilityCutoff The minimum probability for a branch to be expanded.
+     * @param splitProbability  The minimum probability for a chance node to be split on tasks.
+     */
+    public ParallelExpectimax(int threads, Heuristic heuristic, int tableBits,
+                              float probabilityCutoff, float splitProbability) {
+
+        mPool = new ForkJoinPool(threads);
+        mHeuristic = heuristic;
+        mTable = new ConcurrentTranspositionTable(tableBits);
+        mProbabilityCutoff = probabilityCutoff;
+        mSplitProbability = splitProbability;
+    }
+
+    /**
+     * Find the best move for the current game of the given {@link Engine}.
+     *
+     * @param engine     The {@link Engine} playing a 4 x 4 game.
+     * @param timeBudget The time to search, in milliseconds.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     * @see Engine#toBitBoard()
+     */
+    public Direction bestMove(Engine engine, long timeBudget) {
+
+        return bestMove(engine.toBitBoard(), timeBudget);
+    }
+
+    /**
+     * Find the best move for the given <i>board</i>, searching deeper and deeper until the
+     * <i>timeBudget</i> is spent. The move found by the deepest completed search is returned.
+     *
+     * @param board      The packed board.
+     * @param timeBudget The time to search, in milliseconds.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     */
+    public Direction bestMove(long board, long timeBudget) {
+
+        mDeadline = System.nanoTime() + timeBudget * 1000000L;
+        mCompletedDepth = 0;
+
+        Direction result = null;
+        for (int depth = 1; depth <= Expectimax.MAX_DEPTH; depth++) {
+
+            final Direction move = search(board, depth);
+            if (mAborted)
+                break;
+
+            result = move;
+            mCompletedDepth = depth;
+            if (move == null || System.nanoTime() >= mDeadline)
+                break;
+        }
+
+        mDeadline = Long.MAX_VALUE;
+
+        // Always answer something, even if not even depth 1 fitted on the budget
+        if (mCompletedDepth == 0)
+            result = bestMoveAtDepth(board, 1);
+        return result;
+    }
+
+    /**
+     * Find the best move for the given <i>board</i>, searching exactly <i>depth</i> moves ahead.
+     *
+     * @param board The packed board.
+     * @param depth The amount of moves to search ahead. At least 1.
+     * @return The best {@link Direction}, or <code>null</code> if none can be played.
+     */
+    public Direction bestMoveAtDepth(long board, int depth) {
+
+        final long deadline = mDeadline;
+        mDeadline = Long.MAX_VALUE;
+        final Direction result = search(board, depth);
+        mDeadline = deadline;
+        mCompletedDepth = depth;
+        return result;
+    }
+
+    /**
+     * Get the depth of the last completed search.
+     *
+     * @return The depth reached by the last {@link #bestMove(long, long)}.
+     */
+    public int getCompletedDepth() {
+
+        return mCompletedDepth;
+    }
+
+    /**
+     * Get the amount of nodes evaluated by this instance so far, by all threads.
+     *
+     * @return The amount of max and chance nodes visited.
+     */
+    public long getNodes() {
+
+        return mNodes.get();
+    }
+
+    /**
+     * Stop the threads of this instance. No more searches can be done after this.
+     */
+    public void shutdown() {
+
+        mPool.shutdown();
+    }
+
+    /**
+     * Run a whole search of the given <i>depth</i>.
+     */
+    private Direction search(final long board, int depth) {
+
+        mTable.nextGeneration();
+        mAborted = false;
+
+        // Search every root move on it's own task
+        final SearchTask[] tasks = new SearchTask[Expectimax.DIRECTIONS.length];
+        final List<SearchTask> legal = new ArrayList<>(tasks.length);
+        for (Direction direction : Expectimax.DIRECTIONS) {
+
+            final long next = BitBoard.move(board, direction);
+            if (next != board) {
+
+                tasks[direction.ordinal()] = new SearchTask(next, depth - 1, 1f, true);
+                legal.add(tasks[direction.ordinal()]);
+            }
+        }
+
+        mPool.invoke(new RecursiveAction() {
+
+            @Override
+            protected void compute() {
+
+                invokeAll(legal);
+            }
+        });
+        if (mAborted)
+            return null;
+
+        Direction result = null;
+        float best = Float.NEGATIVE_INFINITY;
+        for (Direction direction : Expectimax.DIRECTIONS) {
+
+            final SearchTask task = tasks[direction.ordinal()];
+            if (task != null && task.mValue > best) {
+
+                best = task.mValue;
+                result = direction;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Task searching a max or a chance node, and the subtree below it.
+     */
+    private final class SearchTask extends RecursiveAction {
+
+        private final long mBoard;
+        private final int mDepth;
+        private final float mProbability;
+        private final boolean mChance;
+        private float mValue;
+
+        SearchTask(long board, int depth, float probability, boolean chance) {
+
+            mBoard = board;
+            mDepth = depth;
+            mProbability = probability;
+            mChance = chance;
+        }
+
+        @Override
+        protected void compute() {
+
+            final TaskRecursion recursion = new TaskRecursion();
+            mValue = mChance ? recursion.chance(mBoard, mDepth, mProbability)
+                    : recursion.max(mBoard, mDepth, mProbability);
+            mNodes.addAndGet(recursion.mNodes);
+        }
+    }
+
+    /**
+     * The recursion of a {@link SearchTask}, over the shared
+     * {@link ConcurrentTranspositionTable}. It forks the spawns of the chance nodes big enough
+     * to split, and searches everything else serially.
+     */
+    private final class TaskRecursion extends ExpectimaxRecursion {
+
+        TaskRecursion() {
+
+            super(mHeuristic, mProbabilityCutoff);
+        }
+
+        @Override
+        float spawns(long board, int depth, float probability, float branch) {
+
+            if (probability < mSplitProbability || depth <= 1)
+                return super.spawns(board, depth, probability, branch);
+
+            // Big enough subtree, so search every spawn on it's own task
+            final SearchTask[] children =
+                    new SearchTask[BitBoard.countEmpty(board) * Expectimax.SPAWN_EXPONENTS.length];
+            int count = 0;
+            for (int square = 0; square < BitBoard.CELLS; square++)
+                if (((board >>> (square * 4)) & 0xF) == 0)
+                    for (int exponent : Expectimax.SPAWN_EXPONENTS)
+                        children[count++] = new SearchTask(
+                                board | ((long) exponent << (square * 4)), depth, branch, false);
+
+            ForkJoinTask.invokeAll(children);
+            float result = 0;
+            for (SearchTask child : children)
+                result += child.mValue * Expectimax.SPAWN_PROBABILITY;
+            return result;
+        }
+
+        @Override
+        float getCached(long board, int depth) {
+
+            return mTable.get(board, depth);
+        }
+
+        @Override
+        void putCached(long board, int depth, float value) {
+
+            mTable.put(board, depth, value);
+        }
+
+        @Override
+        long getDeadline() {
+
+            return mDeadline;
+        }
+
+        @Override
+        void abort() {
+
+            mAborted = true;
+        }
+
+        @Override
+        boolean isAborted() {
+
+            return mAborted;
+        }
+    }
+}
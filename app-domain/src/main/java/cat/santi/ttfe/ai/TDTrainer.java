@@ -0,0 +1,166 @@
+package cat.santi.ttfe.ai;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.SplitRandom;
+
+/**
+ * Self-play trainer of a {@link NTupleNetwork}, by <i>TD(0)</i> learning over <i>afterstates</i>
+ * (the board right after a move, before it's spawn).
+ * <p/>
+ * Games are played greedily on {@link BitBoard}s, which follow the same rules than the
+ * {@link cat.santi.ttfe.Engine}: every turn takes the move with the best score earned plus
+ * value of the resulting afterstate, and the value of the previous afterstate is moved towards
+ * that same amount. Weights are updated after every move.
+ * <p/>
+ * Instances are not thread safe, but many of them can train the same {@link NTupleNetwork}.
+ */
+public class TDTrainer {
+
+    /**
+     * The default learning rate, suited to the {@link NTupleNetwork#DEFAULT_TUPLES}.
+     */
+    public static final float DEFAULT_LEARNING_RATE = 0.0025f;
+
+    private final NTupleNetwork mNetwork;
+    private final float mRate;
+    private final SplitRandom mRandom;
+
+    private long mGames;
+    private long mMoves;
+    private long mScore;
+    private int mMaxExponent;
+
+    /**
+     * Constructor for {@link TDTrainer}.
+     *
+     * @param network The {@link NTupleNetwork} to train.
+     * @param rate    The learning rate. Every weight selected by an afterstate moves by this
+     *                fraction of the error.
+     * @param random  The {@link SplitRandom} to spawn tiles with.
+     */
+    public TDTrainer(NTupleNetwork network, float rate, SplitRandom random) {
+
+        mNetwork = network;
+        mRate = rate;
+        mRandom = random;
+    }
+
+    /**
+     * Play a full game, updating the weights after every move.
+     *
+     * @return The final score of the game.
+     */
+    public int playGame() {
+
+        long board = BitBoard.spawn(BitBoard.spawn(BitBoard.EMPTY, mRandom), mRandom);
+        long afterstate = 0;
+        boolean first = true;
+        int score = 0;
+        while (true) {
+
+            // Find the move with the best reward plus afterstate value
+            Direction best = null;
+            long bestAfterstate = 0;
+            float bestValue = Float.NEGATIVE_INFINITY;
+            int bestReward = 0;
+            for (Direction direction : Expectimax.DIRECTIONS) {
+
+                final long next = BitBoard.move(board, direction);
+                if (next == board)
+                    continue;
+
+                final int reward = BitBoard.score(board, direction);
+                final float value = reward + mNetwork.evaluate(next);
+                if (value > bestValue) {
+
+                    best = direction;
+                    bestAfterstate = next;
+                    bestValue = value;
+                    bestReward = reward;
+                }
+            }
+
+            // Learn from the previous afterstate. It's worth nothing once the game is over
+            if (!first) {
+
+                final float target = best == null ? 0 : bestValue;
+                mNetwork.update(afterstate, mRate * (target - mNetwork.evaluate(afterstate)));
+            }
+            if (best == null)
+                break;
+
+            score += bestReward;
+            afterstate = bestAfterstate;
+            first = false;
+            board = BitBoard.spawn(afterstate, mRandom);
+            mMoves++;
+        }
+
+        mGames++;
+        mScore += score;
+        mMaxExponent = Math.max(mMaxExponent, BitBoard.getMaxExponent(board));
+        return score;
+    }
+
+    /**
+     * Get the {@link NTupleNetwork} being trained.
+     *
+     * @return The {@link NTupleNetwork}.
+     */
+    public NTupleNetwork getNetwork() {
+
+        return mNetwork;
+    }
+
+    /**
+     * Get the amount of games played since the last {@link #resetStats()}.
+     *
+     * @return The amount of games.
+     */
+    public long getGames() {
+
+        return mGames;
+    }
+
+    /**
+     * Get the amount of moves played since the last {@link #resetStats()}.
+     *
+     * @return The amount of moves.
+     */
+    public long getMoves() {
+
+        return mMoves;
+    }
+
+    /**
+     * Get the sum of the final scores of the games played since the last {@link #resetStats()}.
+     *
+     * @return The total score.
+     */
+    public long getTotalScore() {
+
+        return mScore;
+    }
+
+    /**
+     * Get the greatest tile reached since the last {@link #resetStats()}.
+     *
+     * @return The greatest tile value.
+     */
+    public int getGreatestTile() {
+
+        return BitBoard.toValue(mMaxExponent);
+    }
+
+    /**
+     * Reset the amount of games, moves, total score and greatest tile.
+     */
+    public void resetStats() {
+
+        mGames = 0;
+        mMoves = 0;
+        mScore = 0;
+        mMaxExponent = 0;
+    }
+}
@@ -0,0 +1,109 @@
+package cat.santi.ttfe.ai;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size cache of already evaluated search positions, keyed by packed board.
+ * <p/>
+ * Every board hashes to a single slot, and a newer entry simply replaces the older one. Entries
+ * are tagged with a <i>generation</i>, so the whole table is invalidated by
+ * {@link #nextGeneration()} without clearing it. This class is not thread safe.
+ */
+public class TranspositionTable {
+
+    private final long[] mBoards;
+    private final float[] mValues;
+    private final byte[] mDepths;
+    private final byte[] mGenerations;
+    private final int mMask;
+    private byte mGeneration = 1;
+
+    /**
+     * Constructor for {@link TranspositionTable}.
+     *
+     * @param bits The table holds <code>2^bits</code> entries.
+     */
+    public TranspositionTable(int bits) {
+
+        mBoards = new long[1 << bits];
+        mValues = new float[1 << bits];
+        mDepths = new byte[1 << bits];
+        mGenerations = new byte[1 << bits];
+        mMask = (1 << bits) - 1;
+    }
+
+    /**
+     * Invalidate every entry of the table.
+     */
+    public void nextGeneration() {
+
+        mGeneration++;
+        if (mGeneration == 0) {
+
+            // Wrapped around, so old tags could match again
+            Arrays.fill(mGenerations, (byte) 0);
+            mGeneration = 1;
+        }
+    }
+
+    /**
+     * Find the index of the entry for the given <i>board</i>, searched at least as deep as the
+     * given <i>depth</i>.
+     *
+     * @param board The packed board.
+     * @param depth The minimum search depth.
+     * @return The index of the entry, or <code>-1</code> if not found.
+     */
+    public int find(long board, int depth) {
+
+        final int index = index(board, mMask);
+        if (mGenerations[index] == mGeneration && mBoards[index] == board
+                && mDepths[index] >= depth)
+            return index;
+        return -1;
+    }
+
+    /**
+     * Get the value of the entry at the given <i>index</i>.
+     *
+     * @param index The index returned by {@link #find(long, int)}.
+     * @return The stored value.
+     */
+    public float getValue(int index) {
+
+        return mValues[index];
+    }
+
+    /**
+     * Store the <i>value</i> of the given <i>board</i>, searched with the given <i>depth</i>.
+     *
+     * @param board The packed board.
+     * @param depth The search depth.
+     * @param value The value.
+     */
+    public void put(long board, int depth, float value) {
+
+        final int index = index(board, mMask);
+        mBoards[index] = board;
+        mValues[index] = value;
+        mDepths[index] = (byte) depth;
+        mGenerations[index] = mGeneration;
+    }
+
+    /**
+     * Get the slot index of the given <i>board</i>.
+     *
+     * @param board The packed board.
+     * @param mask  The table size minus one.
+     * @return The slot index.
+     */
+    static int index(long board, int mask) {
+
+        // Mix the bits (from MurmurHash3's finalizer) so similar boards spread
+        long hash = board;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,265 @@
+package cat.santi.ttfe.ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import cat.santi.ttfe.BitBoard;
+
+/**
+ * Versioned binary file format of the n-tuple network weights.
+ * <p/>
+ * All fields are little endian:
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * int    version ({@link #VERSION})
+ * int    flags ({@link #FLAG_QUANTIZED})
+ * int    tuple count, then for every tuple: int length, int square x length
+ * float  scale (1 if not quantized)
+ * int    weight count
+ * ...    padding up to a multiple of 8 bytes
+ * weights: float x count, or short x count if quantized (weight = short x scale)
+ * </pre>
+ * <i>Figure - Layout of a weight file</i>
+ * <p/>
+ * Files can be read into the heap with {@link #load(File)}, or mapped with {@link #map(File)},
+ * which only reads the header and leaves the weights on the page cache, shared by every process
+ * mapping the same file.
+ */
+public final class WeightFile {
+
+    /**
+     * The first 4 bytes of every weight file (<i>TTFW</i>).
+     */
+    public static final int MAGIC = 0x54544657;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Flag set when the weights are stored as 16-bit integers.
+     */
+    public static final int FLAG_QUANTIZED = 1;
+
+    /**
+     * The greatest absolute quantized value.
+     */
+    private static final int QUANTIZED_MAX = Short.MAX_VALUE;
+
+    private WeightFile() {
+        // Private constructor to thwart instantiation
+    }
+
+    /**
+     * Write the given <i>network</i> to <i>file</i>, replacing it.
+     * <p/>
+     * The weights are written and synced to a temporary file first, which is then renamed over
+     * <i>file</i>: processes that have it mapped keep the previous weights, and a failed write
+     * leaves it untouched.
+     *
+     * @param network  The {@link NTupleNetwork} to write.
+     * @param file     The destination file.
+     * @param quantize Whether to store the weights as 16-bit integers, which halves the file size
+     *                 at the cost of some precision.
+     * @throws IOException If the file could not be written.
+     */
+    public static void write(NTupleNetwork network, File file, boolean quantize)
+            throws IOException {
+
+        final int[][] tuples = network.getTuples();
+        final float[] weights = network.getWeights();
+
+        float scale = 1;
+        if (quantize) {
+
+            float max = 0;
+            for (float weight : weights)
+                max = Math.max(max, Math.abs(weight));
+            if (max > 0)
+                scale = max / QUANTIZED_MAX;
+        }
+
+        final File temporary = new File(file.getPath() + ".tmp");
+        final RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+        try {
+
+            final FileChannel channel = output.getChannel();
+            channel.truncate(0);
+
+            final ByteBuffer header = ByteBuffer.allocate(headerSize(tuples))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(quantize ? FLAG_QUANTIZED : 0);
+            header.putInt(tuples.length);
+            for (int[] tuple : tuples) {
+
+                header.putInt(tuple.length);
+                for (int square : tuple)
+                    header.putInt(square);
+            }
+            header.putFloat(scale);
+            header.putInt(weights.length);
+            header.position(header.capacity());
+            header.flip();
+            writeFully(channel, header);
+
+            // Write the weights in chunks, to not duplicate them on memory
+            final ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            final int size = quantize ? 2 : 4;
+            for (int index = 0; index < weights.length; ) {
+
+                chunk.clear();
+                final int count = Math.min(chunk.capacity() / size, weights.length - index);
+                if (quantize) {
+
+                    for (int offset = 0; offset < count; offset++) {
+
+                        final int value = Math.round(weights[index + offset] / scale);
+                        chunk.putShort((short) Math.max(-QUANTIZED_MAX,
+                                Math.min(QUANTIZED_MAX, value)));
+                    }
+                } else {
+
+                    chunk.asFloatBuffer().put(weights, index, count);
+                    chunk.position(count * size);
+                }
+                chunk.flip();
+                writeFully(channel, chunk);
+                index += count;
+            }
+            channel.force(true);
+        } finally {
+
+            output.close();
+        }
+        if (!temporary.renameTo(file))
+            throw new IOException("Could not replace " + file);
+    }
+
+    /**
+     * Map the given <i>file</i> into memory. Only the header is read.
+     *
+     * @param file The source file.
+     * @return A read-only {@link MappedNTupleNetwork}, backed by the file.
+     * @throws IOException If the file could not be read, or is not valid.
+     */
+    public static MappedNTupleNetwork map(File file) throws IOException {
+
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+
+            final FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File too big to map: " + file);
+
+            // note: the mapping stays valid after closing the channel
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return read(buffer, file);
+        } finally {
+
+            input.close();
+        }
+    }
+
+    /**
+     * Read the given <i>file</i> into the heap, restoring the original weights if quantized.
+     *
+     * @param file The source file.
+     * @return The read {@link NTupleNetwork}, ready to be trained.
+     * @throws IOException If the file could not be read, or is not valid.
+     */
+    public static NTupleNetwork load(File file) throws IOException {
+
+        final MappedNTupleNetwork mapped = map(file);
+        final float[] weights = new float[mapped.getLayout().getWeightCount()];
+        mapped.copyWeights(weights);
+        return new NTupleNetwork(mapped.getTuples(), weights);
+    }
+
+    /**
+     * Parse the header of a mapped file, and wrap it's weights.
+     */
+    private static MappedNTupleNetwork read(ByteBuffer buffer, File file) throws IOException {
+
+        try {
+
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a weight file: " + file);
+            final int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported weight file version " + version + ": " + file);
+            final int flags = buffer.getInt();
+
+            final int count = buffer.getInt();
+            if (count <= 0 || count > BitBoard.CELLS * NTupleLayout.SYMMETRIES)
+                throw new IOException("Invalid tuple count " + count + ": " + file);
+
+            final int[][] tuples = new int[count][];
+            for (int indexT = 0; indexT < count; indexT++) {
+
+                final int length = buffer.getInt();
+                if (length <= 0 || length > BitBoard.CELLS / 2)
+                    throw new IOException("Invalid tuple length " + length + ": " + file);
+
+                tuples[indexT] = new int[length];
+                for (int index = 0; index < length; index++)
+                    tuples[indexT][index] = buffer.getInt();
+            }
+            final NTupleLayout layout = new NTupleLayout(tuples);
+
+            final float scale = buffer.getFloat();
+            final int weights = buffer.getInt();
+            if (weights != layout.getWeightCount())
+                throw new IOException("Expected " + layout.getWeightCount() + " weights, got "
+                        + weights + ": " + file);
+
+            final boolean quantized = (flags & FLAG_QUANTIZED) != 0;
+            buffer.position(headerSize(tuples));
+            if (buffer.remaining() < (long) weights * (quantized ? 2 : 4))
+                throw new IOException("Truncated weight file: " + file);
+
+            final ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            if (quantized) {
+
+                final ShortBuffer shorts = data.asShortBuffer();
+                return new MappedNTupleNetwork(layout, null, shorts, scale);
+            }
+            final FloatBuffer floats = data.asFloatBuffer();
+            return new MappedNTupleNetwork(layout, floats, null, scale);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+
+            throw new IOException("Corrupt weight file: " + file, e);
+        }
+    }
+
+    /**
+     * Get the bytes taken by the header, padding included.
+     */
+    private static int headerSize(int[][] tuples) {
+
+        int result = 4 * 4;
+        for (int[] tuple : tuples)
+            result += 4 + tuple.length * 4;
+        result += 4 + 4;
+        return (result + 7) & ~7;
+    }
+
+    /**
+     * Write all the remaining bytes of the <i>buffer</i>.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
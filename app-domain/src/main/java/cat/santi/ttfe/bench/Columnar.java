@@ -0,0 +1,334 @@
+package cat.santi.ttfe.bench;
+
+/**
+ * Columnar format of self-played results, written by {@link ColumnarWriter} and read by
+ * {@link ColumnarReader}.
+ * <p/>
+ * Every {@link Column} is stored on it's own blocks of up to {@link #BLOCK_ROWS} values, so an
+ * aggregation reads only the blocks of the columns it needs. Every block is encoded on it's own,
+ * as the smallest of:
+ * <ul>
+ * <li>{@link #ENCODING_CONSTANT}: no data, all the values being the block minimum.</li>
+ * <li>{@link #ENCODING_PACKED}: every value minus the block minimum, on a fixed amount of
+ * bits.</li>
+ * <li>{@link #ENCODING_DELTA}: the first value, and then the difference with the previous value
+ * (zig-zag encoded) on a fixed amount of bits. Fits sequences, like seeds or game numbers.</li>
+ * </ul>
+ * The blocks are compressed by that frame of reference (or delta) bit packing alone, with no
+ * general purpose compressor (like <code>Deflater</code>) on top: it takes no dependency nor
+ * buffers of it's own, and a block is decoded with plain shifts, as fast as it's read. The
+ * game columns take a few bits per value anyway, while a compressor would barely shrink the
+ * random bits of the seeds.
+ * <p/>
+ * The file is laid out as follows (big endian, bits from the lowest):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * byte   version ({@link #VERSION})
+ * byte   flags ({@link #FLAG_TURNS})
+ * short  reserved
+ * block  every block, in the order they were filled:
+ *        byte   bits per value (not for {@link #ENCODING_CONSTANT})
+ *        long   first value (only for {@link #ENCODING_DELTA})
+ *        bits   the values
+ * footer int    amount of blocks
+ *        entry  every block:
+ *               byte   column
+ *               byte   encoding
+ *               int    rows
+ *               long   minimum value
+ *               long   maximum value
+ *               long   offset
+ *               int    length
+ *        int    CRC-32 of the footer
+ * long   footer offset
+ * int    magic ({@link #MAGIC})
+ * </pre>
+ * <i>Figure - Layout of a columnar file</i>
+ * <p/>
+ * The footer is written by {@link ColumnarWriter#close()}, so a file not closed can not be read.
+ */
+public final class Columnar {
+
+    /**
+     * The first (and last) 4 bytes of every columnar file (<i>TTFC</i>).
+     */
+    public static final int MAGIC = 0x54544643;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Flag set when the file has the turn columns.
+     */
+    public static final int FLAG_TURNS = 1;
+    /**
+     * The size of the file header.
+     */
+    public static final int HEADER_SIZE = 8;
+    /**
+     * The size of the file trailer.
+     */
+    public static final int TRAILER_SIZE = 12;
+    /**
+     * The size of every footer entry.
+     */
+    public static final int ENTRY_SIZE = 1 + 1 + 4 + 8 + 8 + 8 + 4;
+    /**
+     * The maximum amount of values on every block.
+     */
+    public static final int BLOCK_ROWS = 16384;
+    /**
+     * Block encoding with every value equal.
+     */
+    public static final int ENCODING_CONSTANT = 0;
+    /**
+     * Block encoding with every value as the offset to the minimum.
+     */
+    public static final int ENCODING_PACKED = 1;
+    /**
+     * Block encoding with every value as the difference to the previous one.
+     */
+    public static final int ENCODING_DELTA = 2;
+
+    /**
+     * The columns of a file. The game columns have a row per finished game, and the turn columns
+     * (only if written) a row per played turn.
+     */
+    public enum Column {
+
+        /**
+         * The seed of the game.
+         */
+        SEED(false),
+        /**
+         * The final score.
+         */
+        SCORE(false),
+        /**
+         * The amount of moves, as counted by the engine.
+         */
+        MOVES(false),
+        /**
+         * The greatest <i>tile</i> value.
+         */
+        MAX_TILE(false),
+        /**
+         * The time taken to play the game, in nanoseconds.
+         */
+        DURATION(false),
+        /**
+         * The identifier of the policy that played the game.
+         */
+        POLICY(false),
+        /**
+         * <code>1</code> for a won game, <code>0</code> otherwise.
+         */
+        VICTORY(false),
+        /**
+         * The game of the turn, as the row of the game columns.
+         */
+        TURN_GAME(true),
+        /**
+         * The number of the turn on it's game, from 0.
+         */
+        TURN_NUMBER(true),
+        /**
+         * The ordinal of the played direction.
+         */
+        TURN_DIRECTION(true),
+        /**
+         * The score earned on the turn.
+         */
+        TURN_SCORE(true);
+
+        private final boolean mTurn;
+
+        Column(boolean turn) {
+
+            mTurn = turn;
+        }
+
+        /**
+         * Get whether this is a turn column or a game one.
+         *
+         * @return <code>true</code> for a turn column.
+         */
+        public boolean isTurn() {
+
+            return mTurn;
+        }
+    }
+
+    private Columnar() {
+    }
+
+    /**
+     * Get the amount of bits needed by the given unsigned <i>value</i>.
+     *
+     * @param value The value, as unsigned.
+     * @return The bits, from 0 to 64.
+     */
+    static int getBits(long value) {
+
+        return 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Encode a block of <i>values</i> on <i>output</i>.
+     *
+     * @param values The values. Overwritten.
+     * @param count  The amount of values.
+     * @param min    The minimum value.
+     * @param max    The maximum value.
+     * @param output The output buffer, of at least <code>9 + 8 * count + 8</code> bytes.
+     * @return The encoding on the lowest byte, and the encoded length on the highest ones.
+     */
+    static long encode(long[] values, int count, long min, long max, byte[] output) {
+
+        if (min == max)
+            return ENCODING_CONSTANT;
+
+        // Compare both sizes, without encoding them
+        long deltas = 0;
+        for (int index = 1; index < count; index++)
+            deltas |= zigZag(values[index] - values[index - 1]);
+        final int packedBits = getBits(max - min);
+        final int deltaBits = getBits(deltas);
+        final long packedLength = 1 + ((long) count * packedBits + 7) / 8;
+        final long deltaLength = 1 + 8 + ((long) (count - 1) * deltaBits + 7) / 8;
+
+        final int length;
+        final int encoding;
+        if (deltaLength < packedLength) {
+
+            encoding = ENCODING_DELTA;
+            output[0] = (byte) deltaBits;
+            final long first = values[0];
+            for (int shift = 0; shift < 8; shift++)
+                output[1 + shift] = (byte) (first >>> (56 - shift * 8));
+            for (int index = count - 1; index > 0; index--)
+                values[index] = zigZag(values[index] - values[index - 1]);
+            length = 9 + pack(values, 1, count, deltaBits, output, 9);
+        } else {
+
+            encoding = ENCODING_PACKED;
+            output[0] = (byte) packedBits;
+            for (int index = 0; index < count; index++)
+                values[index] -= min;
+            length = 1 + pack(values, 0, count, packedBits, output, 1);
+        }
+        return (long) length << 8 | encoding;
+    }
+
+    /**
+     * Decode a block from <i>input</i>, as encoded by
+     * {@link #encode(long[], int, long, long, byte[])}.
+     *
+     * @param input    The encoded block.
+     * @param encoding The encoding.
+     * @param count    The amount of values.
+     * @param min      The minimum value.
+     * @param values   The decoded values.
+     */
+    static void decode(byte[] input, int encoding, int count, long min, long[] values) {
+
+        switch (encoding) {
+
+            case ENCODING_CONSTANT:
+                for (int index = 0; index < count; index++)
+                    values[index] = min;
+                break;
+            case ENCODING_PACKED:
+                unpack(input, 1, input[0], values, 0, count);
+                for (int index = 0; index < count; index++)
+                    values[index] += min;
+                break;
+            case ENCODING_DELTA:
+                long previous = 0;
+                for (int shift = 0; shift < 8; shift++)
+                    previous = previous << 8 | input[1 + shift] & 0xFF;
+                values[0] = previous;
+                unpack(input, 9, input[0], values, 1, count);
+                for (int index = 1; index < count; index++) {
+
+                    final long delta = values[index];
+                    previous += delta >>> 1 ^ -(delta & 1);
+                    values[index] = previous;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown encoding: " + encoding);
+        }
+    }
+
+    private static long zigZag(long value) {
+
+        return value << 1 ^ value >> 63;
+    }
+
+    /**
+     * Write the lowest <i>bits</i> of the values from <i>from</i> to <i>to</i>.
+     *
+     * @return The written bytes.
+     */
+    private static int pack(long[] values, int from, int to, int bits, byte[] output,
+                            int offset) {
+
+        int position = offset;
+        long buffer = 0;
+        int buffered = 0;
+        for (int index = from; index < to; index++) {
+
+            // At most 32 bits at once, so they fit with the pending ones
+            long value = values[index];
+            int remaining = bits;
+            while (remaining > 0) {
+
+                final int taken = Math.min(remaining, 32);
+                buffer |= (value & (-1L >>> (64 - taken))) << buffered;
+                buffered += taken;
+                value >>>= taken;
+                remaining -= taken;
+                while (buffered >= 8) {
+
+                    output[position++] = (byte) buffer;
+                    buffer >>>= 8;
+                    buffered -= 8;
+                }
+            }
+        }
+        if (buffered > 0)
+            output[position++] = (byte) buffer;
+        return position - offset;
+    }
+
+    /**
+     * Read the values from <i>from</i> to <i>to</i>, of <i>bits</i> each.
+     */
+    private static void unpack(byte[] input, int offset, int bits, long[] values, int from,
+                               int to) {
+
+        int position = offset;
+        long buffer = 0;
+        int buffered = 0;
+        for (int index = from; index < to; index++) {
+
+            long value = 0;
+            int done = 0;
+            while (done < bits) {
+
+                final int taken = Math.min(bits - done, 32);
+                while (buffered < taken) {
+
+                    buffer |= (long) (input[position++] & 0xFF) << buffered;
+                    buffered += 8;
+                }
+                value |= (buffer & (-1L >>> (64 - taken))) << done;
+                buffer >>>= taken;
+                buffered -= taken;
+                done += taken;
+            }
+            values[index] = value;
+        }
+    }
+}
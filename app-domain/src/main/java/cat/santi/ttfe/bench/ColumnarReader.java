@@ -0,0 +1,360 @@
+package cat.santi.ttfe.bench;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import cat.santi.ttfe.bench.Columnar.Column;
+
+/**
+ * Reader of {@link Columnar} files, reading only the blocks of the asked columns.
+ * <p/>
+ * The footer is read once, when opened, so the statistics of every block are known without
+ * reading it: {@link #count(Column, long, long)} only decodes the blocks partially on the range,
+ * and {@link #getMin(Column)} or {@link #getMax(Column)} read none.
+ * <p/>
+ * A {@link ColumnarReader} is not thread safe.
+ */
+public class ColumnarReader implements Closeable {
+
+    private static final Column[] COLUMNS = Column.values();
+
+    private final RandomAccessFile mFile;
+    private final boolean mTurns;
+    private final int[][] mBlocks = new int[COLUMNS.length][];
+    private final byte[] mEncodings;
+    private final int[] mRows;
+    private final long[] mMins;
+    private final long[] mMaxs;
+    private final long[] mOffsets;
+    private final int[] mLengths;
+    private byte[] mBuffer = new byte[0];
+
+    /**
+     * Constructor for {@link ColumnarReader}. Reads the footer.
+     *
+     * @param file The file to read.
+     * @throws IOException If the file could not be read, or is not valid.
+     */
+    public ColumnarReader(File file) throws IOException {
+
+        mFile = new RandomAccessFile(file, "r");
+        try {
+
+            final byte[] header = new byte[Columnar.HEADER_SIZE];
+            final byte[] trailer = new byte[Columnar.TRAILER_SIZE];
+            final long length = mFile.length();
+            if (length < Columnar.HEADER_SIZE + 8 + Columnar.TRAILER_SIZE)
+                throw new IOException("Corrupt columnar file: " + file);
+            mFile.readFully(header);
+            mFile.seek(length - Columnar.TRAILER_SIZE);
+            mFile.readFully(trailer);
+            if (getInt(header, 0) != Columnar.MAGIC)
+                throw new IOException("Not a columnar file: " + file);
+            if (header[4] != Columnar.VERSION)
+                throw new IOException("Unsupported columnar version: " + header[4]);
+            if (getInt(trailer, 8) != Columnar.MAGIC)
+                throw new IOException("Columnar file not closed: " + file);
+            mTurns = (header[5] & Columnar.FLAG_TURNS) != 0;
+
+            // The footer, with the statistics of every block
+            final long offset = getLong(trailer, 0);
+            if (offset < Columnar.HEADER_SIZE || offset > length - Columnar.TRAILER_SIZE - 8)
+                throw new IOException("Corrupt columnar file: " + file);
+            final byte[] footer = new byte[(int) (length - Columnar.TRAILER_SIZE - offset)];
+            mFile.seek(offset);
+            mFile.readFully(footer);
+            final int blocks = getInt(footer, 0);
+            final int footerLength = 4 + blocks * Columnar.ENTRY_SIZE;
+            final CRC32 crc = new CRC32();
+            if (blocks < 0 || footerLength + 4 != footer.length)
+                throw new IOException("Corrupt columnar file: " + file);
+            crc.update(footer, 0, footerLength);
+            if (getInt(footer, footerLength) != (int) crc.getValue())
+                throw new IOException("Corrupt columnar footer: " + file);
+
+            mEncodings = new byte[blocks];
+            mRows = new int[blocks];
+            mMins = new long[blocks];
+            mMaxs = new long[blocks];
+            mOffsets = new long[blocks];
+            mLengths = new int[blocks];
+            final int[] counts = new int[COLUMNS.length];
+            for (int block = 0; block < blocks; block++) {
+
+                final int entry = 4 + block * Columnar.ENTRY_SIZE;
+                final int column = footer[entry];
+                mEncodings[block] = footer[entry + 1];
+                mRows[block] = getInt(footer, entry + 2);
+                mMins[block] = getLong(footer, entry + 6);
+                mMaxs[block] = getLong(footer, entry + 14);
+                mOffsets[block] = getLong(footer, entry + 22);
+                mLengths[block] = getInt(footer, entry + 30);
+                if (column < 0 || column >= COLUMNS.length
+                        || mRows[block] < 1 || mRows[block] > Columnar.BLOCK_ROWS
+                        || mLengths[block] < 0 || mOffsets[block] < Columnar.HEADER_SIZE
+                        || mOffsets[block] + mLengths[block] > offset)
+                    throw new IOException("Corrupt columnar block: " + block);
+                counts[column]++;
+            }
+
+            // The blocks of every column, in order
+            for (Column column : COLUMNS)
+                mBlocks[column.ordinal()] = new int[counts[column.ordinal()]];
+            final int[] filled = new int[COLUMNS.length];
+            for (int block = 0; block < blocks; block++) {
+
+                final int column = footer[4 + block * Columnar.ENTRY_SIZE];
+                mBlocks[column][filled[column]++] = block;
+            }
+        } catch (IOException e) {
+
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get whether the file has the turn columns.
+     *
+     * @return <code>true</code> if the turns were written.
+     */
+    public boolean hasTurns() {
+
+        return mTurns;
+    }
+
+    /**
+     * Get the amount of rows of a column.
+     *
+     * @param column The {@link Column}.
+     * @return The rows, the same for all the game columns (and for all the turn ones).
+     */
+    public long getRows(Column column) {
+
+        long result = 0;
+        for (int block : mBlocks[column.ordinal()])
+            result += mRows[block];
+        return result;
+    }
+
+    /**
+     * Get the amount of blocks of a column.
+     *
+     * @param column The {@link Column}.
+     * @return The blocks.
+     */
+    public int getBlockCount(Column column) {
+
+        return mBlocks[column.ordinal()].length;
+    }
+
+    /**
+     * Get the amount of rows of a block.
+     *
+     * @param column The {@link Column}.
+     * @param block  The block of the column, from 0.
+     * @return The rows, up to {@link Columnar#BLOCK_ROWS}.
+     */
+    public int getBlockRows(Column column, int block) {
+
+        return mRows[mBlocks[column.ordinal()][block]];
+    }
+
+    /**
+     * Get the minimum value of a block.
+     *
+     * @param column The {@link Column}.
+     * @param block  The block of the column, from 0.
+     * @return The minimum value.
+     */
+    public long getBlockMin(Column column, int block) {
+
+        return mMins[mBlocks[column.ordinal()][block]];
+    }
+
+    /**
+     * Get the maximum value of a block.
+     *
+     * @param column The {@link Column}.
+     * @param block  The block of the column, from 0.
+     * @return The maximum value.
+     */
+    public long getBlockMax(Column column, int block) {
+
+        return mMaxs[mBlocks[column.ordinal()][block]];
+    }
+
+    /**
+     * Get the minimum value of a column, from the block statistics.
+     *
+     * @param column The {@link Column}.
+     * @return The minimum value, or {@link Long#MAX_VALUE} if there are no rows.
+     */
+    public long getMin(Column column) {
+
+        long result = Long.MAX_VALUE;
+        for (int block : mBlocks[column.ordinal()])
+            result = Math.min(result, mMins[block]);
+        return result;
+    }
+
+    /**
+     * Get the maximum value of a column, from the block statistics.
+     *
+     * @param column The {@link Column}.
+     * @return The maximum value, or {@link Long#MIN_VALUE} if there are no rows.
+     */
+    public long getMax(Column column) {
+
+        long result = Long.MIN_VALUE;
+        for (int block : mBlocks[column.ordinal()])
+            result = Math.max(result, mMaxs[block]);
+        return result;
+    }
+
+    /**
+     * Read and decode a block.
+     *
+     * @param column The {@link Column}.
+     * @param block  The block of the column, from 0.
+     * @param values The decoded values, with room for {@link Columnar#BLOCK_ROWS} of them.
+     * @return The amount of values.
+     * @throws IOException If the block could not be read.
+     */
+    public int readBlock(Column column, int block, long[] values) throws IOException {
+
+        final int index = mBlocks[column.ordinal()][block];
+        final int length = mLengths[index];
+        if (mBuffer.length < length)
+            mBuffer = new byte[length];
+        mFile.seek(mOffsets[index]);
+        mFile.readFully(mBuffer, 0, length);
+        Columnar.decode(mBuffer, mEncodings[index], mRows[index], mMins[index], values);
+        return mRows[index];
+    }
+
+    /**
+     * Count the rows of a column in the given range. Blocks wholly in or out of the range are not
+     * read.
+     *
+     * @param column The {@link Column}.
+     * @param min    The minimum value, inclusive.
+     * @param max    The maximum value, inclusive.
+     * @return The amount of rows.
+     * @throws IOException If the file could not be read.
+     */
+    public long count(Column column, long min, long max) throws IOException {
+
+        final long[] values = new long[Columnar.BLOCK_ROWS];
+        long result = 0;
+        for (int block = 0; block < getBlockCount(column); block++) {
+
+            final long blockMin = getBlockMin(column, block);
+            final long blockMax = getBlockMax(column, block);
+            if (blockMax < min || blockMin > max)
+                continue;
+            if (blockMin >= min && blockMax <= max) {
+
+                result += getBlockRows(column, block);
+                continue;
+            }
+
+            final int rows = readBlock(column, block, values);
+            for (int index = 0; index < rows; index++)
+                if (values[index] >= min && values[index] <= max)
+                    result++;
+        }
+        return result;
+    }
+
+    /**
+     * Sum the values of a column.
+     *
+     * @param column The {@link Column}.
+     * @return The sum.
+     * @throws IOException If the file could not be read.
+     */
+    public long sum(Column column) throws IOException {
+
+        final long[] values = new long[Columnar.BLOCK_ROWS];
+        long result = 0;
+        for (int block = 0; block < getBlockCount(column); block++) {
+
+            // A constant block needs no reading
+            if (getBlockMin(column, block) == getBlockMax(column, block)) {
+
+                result += getBlockMin(column, block) * getBlockRows(column, block);
+                continue;
+            }
+
+            final int rows = readBlock(column, block, values);
+            for (int index = 0; index < rows; index++)
+                result += values[index];
+        }
+        return result;
+    }
+
+    /**
+     * Build the histogram of a column, on buckets of the same <i>width</i>. The values out of
+     * the buckets are not counted.
+     *
+     * @param column  The {@link Column}.
+     * @param origin  The lowest value of the first bucket.
+     * @param width   The width of every bucket.
+     * @param buckets The amount of buckets.
+     * @return The amount of rows on every bucket.
+     * @throws IOException If the file could not be read.
+     */
+    public long[] histogram(Column column, long origin, long width, int buckets)
+            throws IOException {
+
+        if (width < 1 || buckets < 0)
+            throw new IllegalArgumentException("Invalid buckets: " + buckets + " of " + width);
+
+        final long[] result = new long[buckets];
+        final long[] values = new long[Columnar.BLOCK_ROWS];
+        for (int block = 0; block < getBlockCount(column); block++) {
+
+            // A constant block needs no reading
+            final int rows;
+            if (getBlockMin(column, block) == getBlockMax(column, block)) {
+
+                rows = 1;
+                values[0] = getBlockMin(column, block);
+            } else {
+
+                rows = readBlock(column, block, values);
+            }
+            final int weight = rows == 1 ? getBlockRows(column, block) : 1;
+            for (int index = 0; index < rows; index++) {
+
+                if (values[index] < origin)
+                    continue;
+                final long bucket = (values[index] - origin) / width;
+                if (bucket < buckets)
+                    result[(int) bucket] += weight;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        mFile.close();
+    }
+
+    private static int getInt(byte[] buffer, int position) {
+
+        return (buffer[position] & 0xFF) << 24 | (buffer[position + 1] & 0xFF) << 16
+                | (buffer[position + 2] & 0xFF) << 8 | buffer[position + 3] & 0xFF;
+    }
+
+    private static long getLong(byte[] buffer, int position) {
+
+        return (long) getInt(buffer, position) << 32 | getInt(buffer, position + 4) & 0xFFFFFFFFL;
+    }
+}
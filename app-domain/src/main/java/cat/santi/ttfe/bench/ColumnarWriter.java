@@ -0,0 +1,385 @@
+package cat.santi.ttfe.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Listener;
+import cat.santi.ttfe.Engine.State;
+import cat.santi.ttfe.ForwardingListener;
+import cat.santi.ttfe.bench.Columnar.Column;
+
+/**
+ * {@link Listener} streaming the results of every game finished on an {@link Engine} on the
+ * {@link Columnar} format, passing every event on to it's delegate.
+ * <p/>
+ * Every column is buffered up to a block ({@link Columnar#BLOCK_ROWS} values), which is then
+ * encoded and written, so the memory taken does not depend on the amount of games. The turn
+ * columns are only written if asked to, as they take most of the file.
+ * <p/>
+ * The turns of a game are kept until it finishes, and written along with it: a game reset before
+ * finishing leaves nothing on the file.
+ * <p/>
+ * Any error writing the output is kept, and thrown by {@link #close()}.
+ */
+public class ColumnarWriter extends ForwardingListener implements Closeable {
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final OutputStream mOutput;
+    private final boolean mTurns;
+    private final long[][] mValues = new long[COLUMNS.length][];
+    private final int[] mCounts = new int[COLUMNS.length];
+    private final long[] mMins = new long[COLUMNS.length];
+    private final long[] mMaxs = new long[COLUMNS.length];
+    private final byte[] mBlock = new byte[9 + 8 * Columnar.BLOCK_ROWS + 8];
+    private byte[] mFooter = new byte[64 * Columnar.ENTRY_SIZE];
+    private int mBlockCount = 0;
+    private long mPosition = 0;
+    private Engine mEngine = null;
+    private int mPolicy = 0;
+    private long mGames = 0;
+    private boolean mPreparing = false;
+    private boolean mPlaying = false;
+    private long mGameStart;
+    private long mGameSeed;
+    private int mTurn;
+    private Direction mDirection = null;
+    private int mTurnScore;
+    private byte[] mTurnDirections = new byte[256];
+    private int[] mTurnScores = new int[256];
+    private IOException mError = null;
+    private boolean mClosed = false;
+
+    /**
+     * Constructor for {@link ColumnarWriter}. Writes the file header.
+     *
+     * @param output The output to write to.
+     * @param turns  Whether to write the turn columns, or just the game ones.
+     * @throws IOException If the header could not be written.
+     */
+    public ColumnarWriter(OutputStream output, boolean turns) throws IOException {
+
+        super(null);
+        mOutput = output;
+        mTurns = turns;
+        for (Column column : COLUMNS)
+            if (turns || !column.isTurn())
+                mValues[column.ordinal()] = new long[Columnar.BLOCK_ROWS];
+
+        final byte[] header = new byte[Columnar.HEADER_SIZE];
+        putInt(header, 0, Columnar.MAGIC);
+        header[4] = (byte) Columnar.VERSION;
+        header[5] = (byte) (turns ? Columnar.FLAG_TURNS : 0);
+        write(header, Columnar.HEADER_SIZE);
+    }
+
+    /**
+     * Write every game finished on the given <i>engine</i> from now on, by settling this writer as
+     * it's {@link Listener}. The {@link Listener} it had is kept as the delegate.
+     *
+     * @param engine The {@link Engine} to listen to.
+     */
+    public void attach(Engine engine) {
+
+        setDelegate(engine.getListener());
+        mEngine = engine;
+        engine.setListener(this);
+    }
+
+    /**
+     * Set the identifier of the policy playing the next games.
+     *
+     * @param policy The policy identifier.
+     */
+    public void setPolicy(int policy) {
+
+        mPolicy = policy;
+    }
+
+    /**
+     * Get the amount of games written so far.
+     *
+     * @return The games.
+     */
+    public long getGames() {
+
+        return mGames;
+    }
+
+    /**
+     * Add a finished game.
+     *
+     * @param seed     The seed of the game.
+     * @param score    The final score.
+     * @param moves    The amount of moves.
+     * @param maxTile  The greatest <i>tile</i> value.
+     * @param duration The time taken to play it, in nanoseconds.
+     * @param policy   The identifier of the policy that played it.
+     * @param victory  Whether the game was won or not.
+     * @throws IOException If a block could not be written.
+     */
+    public void writeGame(long seed, int score, int moves, int maxTile, long duration, int policy,
+                          boolean victory) throws IOException {
+
+        add(Column.SEED, seed);
+        add(Column.SCORE, score);
+        add(Column.MOVES, moves);
+        add(Column.MAX_TILE, maxTile);
+        add(Column.DURATION, duration);
+        add(Column.POLICY, policy);
+        add(Column.VICTORY, victory ? 1 : 0);
+        mGames++;
+    }
+
+    /**
+     * Add a played turn, of the game being played (the one to be added next). Ignored if the turn
+     * columns are not written.
+     *
+     * @param turn      The number of the turn on it's game.
+     * @param direction The played {@link Direction}.
+     * @param score     The score earned on the turn.
+     * @throws IOException If a block could not be written.
+     */
+    public void writeTurn(int turn, Direction direction, int score) throws IOException {
+
+        if (!mTurns)
+            return;
+
+        add(Column.TURN_GAME, mGames);
+        add(Column.TURN_NUMBER, turn);
+        add(Column.TURN_DIRECTION, direction.ordinal());
+        add(Column.TURN_SCORE, score);
+    }
+
+    /**
+     * Write the pending blocks and the footer, give the {@link Engine} back it's previous
+     * {@link Listener} (if attached), and close the output.
+     *
+     * @throws IOException If the file could not be written, or any previous game could not be.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (mEngine != null && mEngine.getListener() == this)
+            mEngine.setListener(getDelegate());
+        if (mClosed)
+            return;
+        mClosed = true;
+        try {
+
+            finish();
+        } finally {
+
+            mOutput.close();
+        }
+    }
+
+    /**
+     * Write the pending blocks and the footer.
+     */
+    private void finish() throws IOException {
+
+        if (mError != null)
+            throw mError;
+
+        for (Column column : COLUMNS)
+            if (mCounts[column.ordinal()] > 0)
+                writeBlock(column);
+
+        // The footer, and where to find it
+        final int length = 4 + mBlockCount * Columnar.ENTRY_SIZE;
+        final byte[] footer = new byte[length + 4 + Columnar.TRAILER_SIZE];
+        putInt(footer, 0, mBlockCount);
+        System.arraycopy(mFooter, 0, footer, 4, mBlockCount * Columnar.ENTRY_SIZE);
+        final CRC32 crc = new CRC32();
+        crc.update(footer, 0, length);
+        putInt(footer, length, (int) crc.getValue());
+        putLong(footer, length + 4, mPosition);
+        putInt(footer, length + 12, Columnar.MAGIC);
+        write(footer, footer.length);
+        mOutput.flush();
+    }
+
+    @Override
+    public void onStateChange(State state) {
+
+        if (mEngine != null && mError == null && !mClosed) {
+
+            switch (state) {
+
+                case PREPARING:
+                    // Any unfinished game is dropped, along with it's turns
+                    mPreparing = true;
+                    mPlaying = false;
+                    mDirection = null;
+                    break;
+                case PLAYING_DOWN:
+                    startTurn(Direction.DOWN);
+                    break;
+                case PLAYING_LEFT:
+                    startTurn(Direction.LEFT);
+                    break;
+                case PLAYING_RIGHT:
+                    startTurn(Direction.RIGHT);
+                    break;
+                case PLAYING_UP:
+                    startTurn(Direction.UP);
+                    break;
+                case IDLE:
+                    if (mPreparing) {
+
+                        // A new game starts
+                        mPreparing = false;
+                        mPlaying = true;
+                        mGameStart = System.nanoTime();
+                        mGameSeed = mEngine.getSeed();
+                        mTurn = 0;
+                    }
+                    endTurn();
+                    break;
+            }
+        }
+
+        super.onStateChange(state);
+    }
+
+    @Override
+    public void onDisallowedMove() {
+
+        // Nothing changed, so there is no turn to write
+        mDirection = null;
+
+        super.onDisallowedMove();
+    }
+
+    @Override
+    public void onGameFinished(boolean victory, int turns, int score) {
+
+        if (mEngine != null && mError == null && !mClosed && mPlaying) {
+
+            try {
+
+                // The last turn ends with the game, before the state changes
+                endTurn();
+                mPlaying = false;
+                for (int turn = 0; turn < mTurn; turn++)
+                    writeTurn(turn, DIRECTIONS[mTurnDirections[turn]], mTurnScores[turn]);
+                writeGame(mGameSeed, score, turns, mEngine.getGreatestTile(),
+                        System.nanoTime() - mGameStart, mPolicy, victory);
+            } catch (IOException e) {
+
+                mError = e;
+            }
+        }
+
+        super.onGameFinished(victory, turns, score);
+    }
+
+    private void startTurn(Direction direction) {
+
+        mDirection = direction;
+        mTurnScore = mEngine.getScore();
+    }
+
+    /**
+     * Keep the turn being played, if any, until it's game finishes.
+     */
+    private void endTurn() {
+
+        if (mDirection == null || !mPlaying)
+            return;
+
+        if (mTurns) {
+
+            if (mTurn == mTurnScores.length) {
+
+                mTurnDirections = Arrays.copyOf(mTurnDirections, mTurn * 2);
+                mTurnScores = Arrays.copyOf(mTurnScores, mTurn * 2);
+            }
+            mTurnDirections[mTurn] = (byte) mDirection.ordinal();
+            mTurnScores[mTurn] = mEngine.getScore() - mTurnScore;
+        }
+        mTurn++;
+        mDirection = null;
+    }
+
+    /**
+     * Add a value to a column, writing it's block when full.
+     */
+    private void add(Column column, long value) throws IOException {
+
+        final int index = column.ordinal();
+        final int count = mCounts[index];
+        if (count == 0) {
+
+            mMins[index] = value;
+            mMaxs[index] = value;
+        } else if (value < mMins[index]) {
+
+            mMins[index] = value;
+        } else if (value > mMaxs[index]) {
+
+            mMaxs[index] = value;
+        }
+        mValues[index][count] = value;
+        mCounts[index] = count + 1;
+        if (count + 1 == Columnar.BLOCK_ROWS)
+            writeBlock(column);
+    }
+
+    /**
+     * Encode and write the block of a column, and add it to the footer.
+     */
+    private void writeBlock(Column column) throws IOException {
+
+        final int index = column.ordinal();
+        final int count = mCounts[index];
+        final long encoded = Columnar.encode(mValues[index], count, mMins[index], mMaxs[index],
+                mBlock);
+        final int length = (int) (encoded >>> 8);
+
+        if ((mBlockCount + 1) * Columnar.ENTRY_SIZE > mFooter.length) {
+
+            final byte[] footer = new byte[mFooter.length * 2];
+            System.arraycopy(mFooter, 0, footer, 0, mFooter.length);
+            mFooter = footer;
+        }
+        final int entry = mBlockCount++ * Columnar.ENTRY_SIZE;
+        mFooter[entry] = (byte) index;
+        mFooter[entry + 1] = (byte) encoded;
+        putInt(mFooter, entry + 2, count);
+        putLong(mFooter, entry + 6, mMins[index]);
+        putLong(mFooter, entry + 14, mMaxs[index]);
+        putLong(mFooter, entry + 22, mPosition);
+        putInt(mFooter, entry + 30, length);
+
+        write(mBlock, length);
+        mCounts[index] = 0;
+    }
+
+    private void write(byte[] buffer, int length) throws IOException {
+
+        mOutput.write(buffer, 0, length);
+        mPosition += length;
+    }
+
+    static void putInt(byte[] buffer, int position, int value) {
+
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+    }
+
+    static void putLong(byte[] buffer, int position, long value) {
+
+        putInt(buffer, position, (int) (value >>> 32));
+        putInt(buffer, position + 4, (int) value);
+    }
+}
@@ -0,0 +1,24 @@
+package cat.santi.ttfe.bench;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * {@link MovePolicy} piling tiles on the bottom-left corner: plays down if possible, then left,
+ * then right, and up only as the last resort.
+ */
+public class CornerPolicy implements MovePolicy {
+
+    private static final Direction[] PRIORITY = {
+            Direction.DOWN, Direction.LEFT, Direction.RIGHT, Direction.UP};
+
+    @Override
+    public Direction choose(Engine engine) {
+
+        final int legal = engine.legalMoves();
+        for (Direction direction : PRIORITY)
+            if ((legal & Engine.directionMask(direction)) != 0)
+                return direction;
+        return null;
+    }
+}
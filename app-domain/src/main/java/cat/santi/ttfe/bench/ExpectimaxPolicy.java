@@ -0,0 +1,31 @@
+package cat.santi.ttfe.bench;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.ai.Expectimax;
+
+/**
+ * {@link MovePolicy} playing the {@link Expectimax} best move at a fixed depth, so every run
+ * costs the same whatever the machine. Only for 4 x 4 games.
+ */
+public class ExpectimaxPolicy implements MovePolicy {
+
+    private final Expectimax mExpectimax = new Expectimax();
+    private final int mDepth;
+
+    /**
+     * Constructor for {@link ExpectimaxPolicy}.
+     *
+     * @param depth The search depth, in moves.
+     */
+    public ExpectimaxPolicy(int depth) {
+
+        mDepth = depth;
+    }
+
+    @Override
+    public Direction choose(Engine engine) {
+
+        return mExpectimax.bestMoveAtDepth(engine.toBitBoard(), mDepth);
+    }
+}
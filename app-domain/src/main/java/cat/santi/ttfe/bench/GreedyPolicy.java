@@ -0,0 +1,39 @@
+package cat.santi.ttfe.bench;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Simulation;
+
+/**
+ * {@link MovePolicy} playing the move that earns the most score right now, or the one with the
+ * most merges on a tie. Moves are simulated at once with {@link Engine#simulateAll(Simulation)}.
+ */
+public class GreedyPolicy implements MovePolicy {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Reused {@link Simulation}, to not allocate on every move.
+     */
+    private final Simulation mSimulation = new Simulation();
+
+    @Override
+    public Direction choose(Engine engine) {
+
+        final Simulation simulation = engine.simulateAll(mSimulation);
+
+        Direction result = null;
+        for (Direction direction : DIRECTIONS) {
+
+            if (!simulation.isMoved(direction))
+                continue;
+
+            if (result == null
+                    || simulation.getScore(direction) > simulation.getScore(result)
+                    || simulation.getScore(direction) == simulation.getScore(result)
+                    && simulation.getMerges(direction) > simulation.getMerges(result))
+                result = direction;
+        }
+        return result;
+    }
+}
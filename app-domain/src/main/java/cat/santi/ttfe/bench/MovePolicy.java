@@ -0,0 +1,20 @@
+package cat.santi.ttfe.bench;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * Strategy choosing the next move of a self-played game.
+ * <p/>
+ * Every benchmark thread gets it's own instance, so implementations need not be thread safe.
+ */
+public interface MovePolicy {
+
+    /**
+     * Choose the next move for the current game of the given {@link Engine}.
+     *
+     * @param engine The {@link Engine} playing the game. Must not be changed.
+     * @return A {@link Direction} that can be played, or <code>null</code> if none can.
+     */
+    Direction choose(Engine engine);
+}
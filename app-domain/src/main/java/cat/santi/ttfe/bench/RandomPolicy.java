@@ -0,0 +1,39 @@
+package cat.santi.ttfe.bench;
+
+import java.util.Random;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+
+/**
+ * {@link MovePolicy} playing any legal move, at random.
+ */
+public class RandomPolicy implements MovePolicy {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Random mRandom;
+
+    /**
+     * Constructor for {@link RandomPolicy}.
+     *
+     * @param random The {@link Random} generator to choose with.
+     */
+    public RandomPolicy(Random random) {
+
+        mRandom = random;
+    }
+
+    @Override
+    public Direction choose(Engine engine) {
+
+        final int legal = engine.legalMoves();
+        if (legal == 0)
+            return null;
+
+        int mask = legal;
+        for (int pick = mRandom.nextInt(Integer.bitCount(legal)); pick > 0; pick--)
+            mask &= mask - 1;
+        return DIRECTIONS[Integer.numberOfTrailingZeros(mask)];
+    }
+}
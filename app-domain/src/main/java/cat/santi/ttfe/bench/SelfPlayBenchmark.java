@@ -0,0 +1,519 @@
+package cat.santi.ttfe.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+import cat.santi.ttfe.MoveTables;
+import cat.santi.ttfe.SplitRandom;
+
+/**
+ * Headless batch runner measuring the {@link Engine} throughput on self-played games.
+ * <p/>
+ * Usage: <code>SelfPlayBenchmark [policy] [games] [threads] [size] [tileValueToWin] [seed]
+ * [backend] [export] [turns]</code>, being <i>policy</i> one of <code>random</code>,
+ * <code>greedy</code>, <code>corner</code> or <code>ai</code> (optionally followed by the search
+ * depth, like <code>ai:3</code>, and only for 4 x 4 games), and <i>backend</i> the name of the
+ * preferred {@link Backend} (<code>tiles</code> or <code>bit_board</code>). Every thread plays on
+ * it's own {@link Engine} with it's own {@link MovePolicy}, after a short warm up. Every game is
+ * seeded from it's index, so the same arguments play the same games whatever the amount of
+ * threads.
+ * <p/>
+ * The report is printed as a single JSON object: games/s, moves/s, allocation rate (if the
+ * JVM can measure it), score percentiles and the greatest tile distribution. Games played on
+ * packed boards also report the build time and memory of the {@link MoveTables}.
+ * <p/>
+ * With an <i>export</i> file, the measured games are also written on the {@link Columnar} format
+ * (with the turn columns if followed by <code>turns</code>), a file per thread named after it,
+ * like <code>results.ttfc.0</code>. The writing is measured along with the games.
+ */
+public class SelfPlayBenchmark {
+
+    private static final int DEFAULT_AI_DEPTH = 2;
+
+    private final String mPolicy;
+    private final int mThreads;
+    private final int mSize;
+    private final int mTileValueToWin;
+    private final long mSeed;
+    private final Backend mBackend;
+    private File mExport = null;
+    private boolean mExportTurns = false;
+
+    /**
+     * Constructor for {@link SelfPlayBenchmark}, playing on {@link Backend#TILES}.
+     *
+     * @param policy         The policy name, see
+     *                       {@link #createPolicy(String, SplitRandom, int, int)}.
+     * @param threads        The amount of threads to play with.
+     * @param size           The board width and height.
+     * @param tileValueToWin The value of the <i>tile</i> that wins the game.
+     * @param seed           The seed of the games and policies.
+     */
+    public SelfPlayBenchmark(String policy, int threads, int size, int tileValueToWin,
+                             long seed) {
+
+        this(policy, threads, size, tileValueToWin, seed, Backend.TILES);
+    }
+
+    /**
+     * Constructor for {@link SelfPlayBenchmark}.
+     *
+     * @param policy         The policy name, see
+     *                       {@link #createPolicy(String, SplitRandom, int, int)}.
+     * @param threads        The amount of threads to play with.
+     * @param size           The board width and height.
+     * @param tileValueToWin The value of the <i>tile</i> that wins the game.
+     * @param seed           The seed of the games and policies.
+     * @param backend        The preferred {@link Backend} to play the games, see
+     *                       {@link Engine#reset(int, int, int, Backend, long)}.
+     */
+    public SelfPlayBenchmark(String policy, int threads, int size, int tileValueToWin,
+                             long seed, Backend backend) {
+
+        mPolicy = policy;
+        mThreads = threads;
+        mSize = size;
+        mTileValueToWin = tileValueToWin;
+        mSeed = seed;
+        mBackend = backend;
+    }
+
+    /**
+     * First executed method.
+     *
+     * @param args The command-line arguments: policy, games, threads, size, tile value to win,
+     *             seed, backend, export file and turns, all optional.
+     */
+    public static void main(String[] args) {
+
+        final String policy = args.length > 0 ? args[0] : "random";
+        final int games = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        final int threads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        final int size = args.length > 3 ? Integer.parseInt(args[3]) : Engine.DEFAULT_ROWS;
+        final int win = args.length > 4 ? Integer.parseInt(args[4])
+                : Engine.DEFAULT_TILE_VALUE_TO_WIN;
+        final long seed = args.length > 5 ? Long.parseLong(args[5]) : 2048;
+        final Backend backend = args.length > 6 ?
+                Backend.valueOf(args[6].toUpperCase(Locale.US)) : Backend.TILES;
+
+        final SelfPlayBenchmark benchmark = new SelfPlayBenchmark(policy, threads, size, win,
+                seed, backend);
+        benchmark.run(Math.max(1, games / 10));
+        if (args.length > 7)
+            benchmark.setExport(new File(args[7]), args.length > 8 && args[8].equals("turns"));
+        System.out.println(benchmark.run(games).toJson());
+    }
+
+    /**
+     * Create the {@link MovePolicy} with the given name, for games of the given size.
+     *
+     * @param name    One of <code>random</code>, <code>greedy</code>, <code>corner</code> or
+     *                <code>ai[:depth]</code>.
+     * @param random  The {@link SplitRandom} for the policies that need one.
+     * @param rows    The rows of the games to play.
+     * @param columns The columns of the games to play.
+     * @return A new {@link MovePolicy}.
+     * @throws IllegalArgumentException If the name is unknown, or the policy can't play games of
+     *                                  the given size.
+     */
+    public static MovePolicy createPolicy(String name, SplitRandom random, int rows,
+                                          int columns) {
+
+        // The search only plays packed boards
+        if ((name.equals("ai") || name.startsWith("ai:"))
+                && (rows != BitBoard.SIZE || columns != BitBoard.SIZE))
+            throw new IllegalArgumentException("The " + name + " policy only plays "
+                    + BitBoard.SIZE + " x " + BitBoard.SIZE + " games, not " + rows + " x "
+                    + columns);
+
+        if (name.equals("random"))
+            return new RandomPolicy(random);
+        if (name.equals("greedy"))
+            return new GreedyPolicy();
+        if (name.equals("corner"))
+            return new CornerPolicy();
+        if (name.equals("ai"))
+            return new ExpectimaxPolicy(DEFAULT_AI_DEPTH);
+        if (name.startsWith("ai:"))
+            return new ExpectimaxPolicy(Integer.parseInt(name.substring(3)));
+
+        throw new IllegalArgumentException("Unknown policy: " + name);
+    }
+
+    /**
+     * Get the identifier of the policy with the given name, as exported on the
+     * {@link Columnar.Column#POLICY} column: <code>1</code> for <code>random</code>,
+     * <code>2</code> for <code>greedy</code>, <code>3</code> for <code>corner</code> and
+     * <code>100</code> plus the search depth for <code>ai[:depth]</code>.
+     *
+     * @param name The policy name, see {@link #createPolicy(String, SplitRandom, int, int)}.
+     * @return The policy identifier.
+     * @throws IllegalArgumentException If the name is unknown.
+     */
+    public static int getPolicyId(String name) {
+
+        if (name.equals("random"))
+            return 1;
+        if (name.equals("greedy"))
+            return 2;
+        if (name.equals("corner"))
+            return 3;
+        if (name.equals("ai"))
+            return 100 + DEFAULT_AI_DEPTH;
+        if (name.startsWith("ai:"))
+            return 100 + Integer.parseInt(name.substring(3));
+
+        throw new IllegalArgumentException("Unknown policy: " + name);
+    }
+
+    /**
+     * Export the games of the next runs on the {@link Columnar} format, a file per thread named
+     * after the given one, with the number of the thread appended.
+     *
+     * @param file  The file to export to, or <code>null</code> to stop exporting.
+     * @param turns Whether to export the turn columns too.
+     */
+    public void setExport(File file, boolean turns) {
+
+        mExport = file;
+        mExportTurns = turns;
+    }
+
+    /**
+     * Play the given amount of games between all the threads, and wait for them.
+     *
+     * @param games The amount of games to play.
+     * @return The {@link Report} of the games.
+     */
+    public Report run(final int games) {
+
+        final Report report = new Report(this, games);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicLong moves = new AtomicLong();
+        final AtomicLong allocated = new AtomicLong();
+
+        final List<Callable<Void>> workers = new ArrayList<>(mThreads);
+        for (int index = 0; index < mThreads; index++) {
+
+            final SplitRandom random = new SplitRandom(mSeed);
+            final MovePolicy policy = createPolicy(mPolicy, random, mSize, mSize);
+            final File export = mExport == null ?
+                    null : new File(mExport.getPath() + "." + index);
+            workers.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+
+                    final long allocatedBefore = getAllocatedBytes();
+                    final Engine engine = Engine.create();
+                    final ColumnarWriter writer = export == null ? null : createWriter(engine,
+                            export);
+                    long played = 0;
+                    try {
+
+                        for (int game = next.getAndIncrement(); game < games;
+                             game = next.getAndIncrement()) {
+
+                            playGame(engine, policy, random, mSeed + game);
+                            report.mScores[game] = engine.getScore();
+                            report.mGreatestTiles[game] = engine.getGreatestTile();
+                            if (engine.getState() == State.VICTORY)
+                                report.mVictories.incrementAndGet();
+                            if (engine.getBackend() == Backend.BIT_BOARD)
+                                report.mMoveTablesUsed = true;
+                            played += engine.getMovements();
+                        }
+                    } finally {
+
+                        // Close the export even if a game failed
+                        if (writer != null)
+                            writer.close();
+                    }
+                    moves.addAndGet(played);
+
+                    final long allocatedAfter = getAllocatedBytes();
+                    if (allocatedBefore < 0 || allocatedAfter < 0)
+                        allocated.set(Long.MIN_VALUE);
+                    else
+                        allocated.addAndGet(allocatedAfter - allocatedBefore);
+                    return null;
+                }
+            });
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(mThreads);
+        final long start = System.nanoTime();
+        try {
+
+            for (Future<Void> future : executor.invokeAll(workers))
+                future.get();
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing", e);
+        } catch (ExecutionException e) {
+
+            throw new IllegalStateException("Benchmark failed", e.getCause());
+        } finally {
+
+            executor.shutdown();
+        }
+
+        report.mNanos = System.nanoTime() - start;
+        report.mMoves = moves.get();
+        report.mAllocatedBytes = allocated.get() < 0 ? -1 : allocated.get();
+        return report;
+    }
+
+    /**
+     * Create a {@link ColumnarWriter} exporting the games of the given <i>engine</i>.
+     */
+    private ColumnarWriter createWriter(Engine engine, File file) throws IOException {
+
+        final OutputStream output = new BufferedOutputStream(new FileOutputStream(file),
+                64 * 1024);
+        final ColumnarWriter result;
+        try {
+
+            result = new ColumnarWriter(output, mExportTurns);
+        } catch (IOException e) {
+
+            output.close();
+            throw e;
+        }
+        result.setPolicy(getPolicyId(mPolicy));
+        result.attach(engine);
+        return result;
+    }
+
+    /**
+     * Play a whole game on the given <i>engine</i>, seeding both the game and the <i>random</i>
+     * used by the <i>policy</i>.
+     */
+    private void playGame(Engine engine, MovePolicy policy, SplitRandom random, long seed) {
+
+        random.setSeed(~seed);
+        engine.reset(mSize, mSize, mTileValueToWin, mBackend, seed);
+        while (engine.getState() == State.IDLE) {
+
+            final Direction direction = policy.choose(engine);
+            if (direction == null || !engine.play(direction, false))
+                break;
+        }
+    }
+
+    /**
+     * Get the bytes allocated so far by the current thread.
+     *
+     * @return The allocated bytes, or <code>-1</code> if not supported by the JVM.
+     */
+    private static long getAllocatedBytes() {
+
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()
+                || !sunBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Results of a {@link #run(int)}.
+     */
+    public static class Report {
+
+        private final String mPolicy;
+        private final int mThreads;
+        private final int mSize;
+        private final int mTileValueToWin;
+        private final Backend mBackend;
+        private final int[] mScores;
+        private final int[] mGreatestTiles;
+        private final AtomicInteger mVictories = new AtomicInteger();
+        private long mNanos;
+        private long mMoves;
+        private long mAllocatedBytes;
+        /**
+         * Whether the {@link MoveTables} were used, by the {@link Backend#BIT_BOARD} games or the
+         * <code>ai</code> policy.
+         */
+        private volatile boolean mMoveTablesUsed;
+
+        Report(SelfPlayBenchmark benchmark, int games) {
+
+            mPolicy = benchmark.mPolicy;
+            mThreads = benchmark.mThreads;
+            mSize = benchmark.mSize;
+            mTileValueToWin = benchmark.mTileValueToWin;
+            mBackend = benchmark.mBackend;
+            mScores = new int[games];
+            mGreatestTiles = new int[games];
+            mMoveTablesUsed = mPolicy.equals("ai") || mPolicy.startsWith("ai:");
+        }
+
+        /**
+         * Get the games played per second.
+         *
+         * @return The games per second.
+         */
+        public double getGamesPerSecond() {
+
+            return mScores.length / (mNanos / 1e9);
+        }
+
+        /**
+         * Get the moves played per second.
+         *
+         * @return The moves per second.
+         */
+        public double getMovesPerSecond() {
+
+            return mMoves / (mNanos / 1e9);
+        }
+
+        /**
+         * Get the bytes allocated by all the threads while playing.
+         *
+         * @return The allocated bytes, or <code>-1</code> if not supported by the JVM.
+         */
+        public long getAllocatedBytes() {
+
+            return mAllocatedBytes;
+        }
+
+        /**
+         * Get the given percentile of the final scores.
+         *
+         * @param percentile The percentile, from 0 to 100.
+         * @return The score at that percentile (nearest rank).
+         */
+        public int getScorePercentile(double percentile) {
+
+            final int[] sorted = mScores.clone();
+            Arrays.sort(sorted);
+            final int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+
+        /**
+         * Get how many games ended with every greatest tile value.
+         *
+         * @return The amount of games by greatest tile, sorted by tile.
+         */
+        public Map<Integer, Integer> getGreatestTileDistribution() {
+
+            final Map<Integer, Integer> result = new TreeMap<>();
+            for (int tile : mGreatestTiles) {
+
+                final Integer count = result.get(tile);
+                result.put(tile, count == null ? 1 : count + 1);
+            }
+            return result;
+        }
+
+        /**
+         * Format this report as a JSON object.
+         *
+         * @return The JSON text.
+         */
+        public String toJson() {
+
+            final double seconds = mNanos / 1e9;
+            long total = 0;
+            for (int score : mScores)
+                total += score;
+
+            final StringBuilder builder = new StringBuilder("{");
+            builder.append("\"policy\":\"").append(mPolicy).append('"');
+            builder.append(",\"threads\":").append(mThreads);
+            builder.append(",\"rows\":").append(mSize);
+            builder.append(",\"columns\":").append(mSize);
+            builder.append(",\"tileValueToWin\":").append(mTileValueToWin);
+            builder.append(",\"backend\":\"").append(mBackend).append('"');
+            builder.append(",\"games\":").append(mScores.length);
+            builder.append(",\"moves\":").append(mMoves);
+            builder.append(",\"victories\":").append(mVictories.get());
+            builder.append(",\"seconds\":").append(format(seconds));
+            builder.append(",\"gamesPerSecond\":").append(format(getGamesPerSecond()));
+            builder.append(",\"movesPerSecond\":").append(format(getMovesPerSecond()));
+            if (mAllocatedBytes < 0) {
+
+                builder.append(",\"allocatedBytes\":null");
+                builder.append(",\"allocatedBytesPerSecond\":null");
+                builder.append(",\"allocatedBytesPerMove\":null");
+            } else {
+
+                builder.append(",\"allocatedBytes\":").append(mAllocatedBytes);
+                builder.append(",\"allocatedBytesPerSecond\":")
+                        .append(format(mAllocatedBytes / seconds));
+                builder.append(",\"allocatedBytesPerMove\":")
+                        .append(format(mMoves == 0 ? 0 : (double) mAllocatedBytes / mMoves));
+            }
+            if (mMoveTablesUsed) {
+
+                builder.append(",\"moveTables\":{");
+                builder.append("\"buildMillis\":")
+                        .append(format(MoveTables.getBuildNanos() / 1e6));
+                builder.append(",\"memoryBytes\":").append(MoveTables.getMemoryBytes());
+                builder.append('}');
+            } else {
+
+                builder.append(",\"moveTables\":null");
+            }
+            builder.append(",\"score\":{");
+            builder.append("\"mean\":").append(format((double) total / mScores.length));
+            builder.append(",\"min\":").append(getScorePercentile(0));
+            builder.append(",\"p50\":").append(getScorePercentile(50));
+            builder.append(",\"p90\":").append(getScorePercentile(90));
+            builder.append(",\"p99\":").append(getScorePercentile(99));
+            builder.append(",\"max\":").append(getScorePercentile(100));
+            builder.append('}');
+            builder.append(",\"greatestTile\":{");
+            boolean first = true;
+            for (Map.Entry<Integer, Integer> entry : getGreatestTileDistribution().entrySet()) {
+
+                if (!first)
+                    builder.append(',');
+                builder.append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+                first = false;
+            }
+            builder.append("}}");
+            return builder.toString();
+        }
+
+        /**
+         * Format a decimal number, whatever the default locale.
+         */
+        private static String format(double value) {
+
+            return String.format(Locale.US, "%.3f", value);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package cat.santi.ttfe.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.MoveLogReader;
+import cat.santi.ttfe.MoveLogWriter;
+import cat.santi.ttfe.SplitRandom;
+
+/**
+ * Console report of the {@link MoveLogWriter} and {@link MoveLogReader} speed, on their own
+ * (without playing on an {@link Engine}).
+ * <p/>
+ * Usage: <code>MoveLogThroughput [games] [moves]</code>. Encodes and decodes the given amount of
+ * fixed seed 4 x 4 logs, with and without the created <i>tiles</i>, printing the log size and the
+ * MB/s of every pass: turn by turn, and at once through {@link MoveLogWriter#writeMoves} (seeded
+ * logs only) and {@link MoveLogReader#nextMoves}.
+ */
+public class MoveLogThroughput {
+
+    private static final int ROUNDS = 5;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * First executed method.
+     *
+     * @param args The command-line arguments: games and moves per game, both optional.
+     * @throws IOException Never, as logs are kept on memory.
+     */
+    public static void main(String[] args) throws IOException {
+
+        final int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int moves = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        // Draw the games beforehand, so only the log itself is measured
+        final SplitRandom random = new SplitRandom(2048);
+        final byte[][] scripts = new byte[games][];
+        final Direction[][] directions = new Direction[games][moves];
+        for (int game = 0; game < games; game++) {
+
+            scripts[game] = script(random, moves);
+            for (int move = 0; move < moves; move++)
+                directions[game][move] = DIRECTIONS[scripts[game][2 + move * 3]];
+        }
+        final Direction[] decoded = new Direction[moves];
+
+        for (boolean spawns : new boolean[]{false, true}) {
+
+            for (int round = 1; round <= ROUNDS; round++) {
+
+                final byte[][] logs = new byte[games][];
+                long bytes = 0;
+
+                long start = System.nanoTime();
+                for (int game = 0; game < games; game++) {
+
+                    logs[game] = encode(game, scripts[game], spawns);
+                    bytes += logs[game].length;
+                }
+                final double encode = (System.nanoTime() - start) / 1e9;
+
+                start = System.nanoTime();
+                long turns = 0;
+                for (byte[] log : logs) {
+
+                    final MoveLogReader reader = new MoveLogReader(new ByteArrayInputStream(log));
+                    while (reader.nextTurn())
+                        turns++;
+                }
+                final double decode = (System.nanoTime() - start) / 1e9;
+
+                if (turns != (long) games * (moves + 1))
+                    throw new IllegalStateException("Decoded " + turns + " turns");
+
+                String bulkEncode = "-";
+                if (!spawns) {
+
+                    start = System.nanoTime();
+                    for (int game = 0; game < games; game++)
+                        logs[game] = encode(game, directions[game]);
+                    bulkEncode = String.format("%.1f",
+                            bytes / ((System.nanoTime() - start) / 1e9) / 1e6);
+                }
+
+                start = System.nanoTime();
+                for (int game = 0; game < games; game++) {
+
+                    final MoveLogReader reader = new MoveLogReader(
+                            new ByteArrayInputStream(logs[game]));
+                    if (reader.nextMoves(decoded, 0, moves) != moves
+                            || decoded[moves - 1] != directions[game][moves - 1])
+                        throw new IllegalStateException("Bad moves on game " + game);
+                }
+                final double bulkDecode = (System.nanoTime() - start) / 1e9;
+
+                System.out.println(String.format("%s, round %d: %d bytes per log, "
+                                + "encode %.1f MB/s, decode %.1f MB/s, "
+                                + "bulk encode %s MB/s, bulk decode %.1f MB/s",
+                        spawns ? "with tiles" : "seeded", round, bytes / games,
+                        bytes / encode / 1e6, bytes / decode / 1e6, bulkEncode,
+                        bytes / bulkDecode / 1e6));
+            }
+        }
+    }
+
+    /**
+     * Draw a game of random moves and created <i>tiles</i>: the 2 starting squares, followed by
+     * a direction, a square and a value index for every move.
+     */
+    private static byte[] script(SplitRandom random, int moves) {
+
+        final byte[] result = new byte[2 + moves * 3];
+        result[0] = (byte) random.nextInt(16);
+        result[1] = (byte) random.nextInt(16);
+        for (int index = 2; index < result.length; index += 3) {
+
+            result[index] = (byte) random.nextInt(DIRECTIONS.length);
+            result[index + 1] = (byte) random.nextInt(16);
+            result[index + 2] = (byte) (random.nextInt(10) == 0 ? 1 : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Encode the seeded log of the given <i>moves</i> at once.
+     */
+    private static byte[] encode(long seed, Direction[] moves) throws IOException {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(moves.length / 4 + 32);
+        final MoveLogWriter writer = new MoveLogWriter(output, false);
+        writer.writeHeader(4, 4, Engine.DEFAULT_TILE_VALUE_TO_WIN, seed);
+        writer.writeMoves(moves, 0, moves.length);
+        writer.close();
+        return output.toByteArray();
+    }
+
+    /**
+     * Encode the log of a game drawn by {@link #script(SplitRandom, int)}.
+     */
+    private static byte[] encode(long seed, byte[] script, boolean spawns) throws IOException {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(script.length);
+        final MoveLogWriter writer = new MoveLogWriter(output, spawns);
+        writer.writeHeader(4, 4, Engine.DEFAULT_TILE_VALUE_TO_WIN, seed);
+        writer.writeSpawn(script[0], 2);
+        writer.writeSpawn(script[1], 2);
+        for (int index = 2; index < script.length; index += 3) {
+
+            writer.writeMove(DIRECTIONS[script[index]]);
+            writer.writeSpawn(script[index + 1], Engine.DEFAULT_ALLOWED_VALUES[script[index + 2]]);
+        }
+        writer.close();
+        return output.toByteArray();
+    }
+}
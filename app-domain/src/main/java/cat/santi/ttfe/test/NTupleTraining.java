@@ -0,0 +1,54 @@
+package cat.santi.ttfe.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import cat.santi.ttfe.SplitRandom;
+import cat.santi.ttfe.ai.NTupleNetwork;
+import cat.santi.ttfe.ai.TDTrainer;
+
+/**
+ * Headless console training of a {@link NTupleNetwork} with a {@link TDTrainer}.
+ * <p/>
+ * Usage: <code>NTupleTraining [weightsFile] [epochs] [gamesPerEpoch] [seed]</code>. Training
+ * resumes from <i>weightsFile</i> if it exists, and writes it back after every epoch. Every
+ * checkpoint replaces the previous one through a temporary file, so interrupting the training
+ * keeps the last complete epoch.
+ */
+public class NTupleTraining {
+
+    /**
+     * First executed method.
+     *
+     * @param args The command-line arguments: weights file, epochs, games per epoch and seed,
+     *             all optional.
+     * @throws IOException If the weights could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+
+        final File file = new File(args.length > 0 ? args[0] : "ntuple.weights");
+        final int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        final int games = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        final long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        final NTupleNetwork network = file.exists() ? NTupleNetwork.load(file)
+                : new NTupleNetwork();
+        final TDTrainer trainer = new TDTrainer(network, TDTrainer.DEFAULT_LEARNING_RATE,
+                new SplitRandom(seed));
+
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+
+            trainer.resetStats();
+            final long start = System.nanoTime();
+            for (int game = 0; game < games; game++)
+                trainer.playGame();
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            network.save(file);
+            System.out.println(String.format("epoch %d: %.1f games/s, %.0f moves/s, "
+                            + "average score %.0f, greatest tile %d", epoch, games / seconds,
+                    trainer.getMoves() / seconds, (double) trainer.getTotalScore() / games,
+                    trainer.getGreatestTile()));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package cat.santi.ttfe.test;
+
+import java.util.Random;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.ai.Expectimax;
+import cat.santi.ttfe.ai.ParallelExpectimax;
+
+/**
+ * Console report of the {@link ParallelExpectimax} speedup against the amount of threads.
+ * <p/>
+ * Usage: <code>SearchScaling [depth] [positions] [maxThreads]</code>. Every thread count, doubling
+ * from 1 up to <i>maxThreads</i>, searches the same fixed seed positions at the same depth.
+ */
+public class SearchScaling {
+
+    /**
+     * First executed method.
+     *
+     * @param args The command-line arguments: depth, positions and max threads, all optional.
+     */
+    public static void main(String[] args) {
+
+        final int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        final int count = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        final long[] positions = createPositions(count);
+
+        // Warm up, so the first measures are not spent on compilation
+        final ParallelExpectimax warmUp = new ParallelExpectimax(2);
+        for (long position : positions) {
+
+            new Expectimax().bestMoveAtDepth(position, Math.min(depth, 4));
+            warmUp.bestMoveAtDepth(position, Math.min(depth, 4));
+        }
+        warmUp.shutdown();
+
+        // Sequential baseline
+        final Expectimax sequential = new Expectimax();
+        long start = System.nanoTime();
+        for (long position : positions)
+            sequential.bestMoveAtDepth(position, depth);
+        final long baseline = System.nanoTime() - start;
+        print("sequential", baseline, sequential.getNodes(), baseline);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+
+            final ParallelExpectimax parallel = new ParallelExpectimax(threads);
+            start = System.nanoTime();
+            for (long position : positions)
+                parallel.bestMoveAtDepth(position, depth);
+            final long elapsed = System.nanoTime() - start;
+            parallel.shutdown();
+
+            print(threads + " threads", elapsed, parallel.getNodes(), baseline);
+        }
+    }
+
+    /**
+     * Create the positions to search, by playing a fixed seed game with a shallow search.
+     *
+     * @param count The amount of positions.
+     * @return The packed positions.
+     */
+    private static long[] createPositions(int count) {
+
+        final Random random = new Random(2048);
+        final Expectimax player = new Expectimax();
+        final long[] result = new long[count];
+
+        long board = BitBoard.spawn(BitBoard.spawn(BitBoard.EMPTY, random), random);
+        for (int index = 0; index < count; index++) {
+
+            // Take a position every few moves, starting a new game if this one is over
+            for (int move = 0; move < 10; move++) {
+
+                final Direction direction = player.bestMoveAtDepth(board, 1);
+                if (direction == null) {
+
+                    board = BitBoard.spawn(BitBoard.spawn(BitBoard.EMPTY, random), random);
+                    continue;
+                }
+                board = BitBoard.spawn(BitBoard.move(board, direction), random);
+            }
+            result[index] = board;
+        }
+        return result;
+    }
+
+    private static void print(String label, long elapsed, long nodes, long baseline) {
+
+        System.out.println(String.format("%-12s time: %8.1f ms | nodes/s: %10.0f | speedup: %5.2f",
+                label, elapsed / 1e6, nodes / (elapsed / 1e9), (double) baseline / elapsed));
+    }
+}
@@ -0,0 +1,61 @@
+package cat.santi.ttfe.test;
+
+import cat.santi.ttfe.ai.HogwildTrainer;
+import cat.santi.ttfe.ai.NTupleNetwork;
+import cat.santi.ttfe.ai.TDTrainer;
+
+/**
+ * Console report of the {@link HogwildTrainer} throughput and convergence against the amount of
+ * threads.
+ * <p/>
+ * Usage: <code>TrainingScaling [epochs] [gamesPerEpoch] [maxThreads]</code>. Every thread count,
+ * doubling from 1 up to <i>maxThreads</i>, trains a new network from scratch with the same
+ * amount of games, printing the games/s and average score of every epoch. The single thread run is
+ * the baseline the others converge against.
+ */
+public class TrainingScaling {
+
+    private static final long SEED = 2048;
+
+    /**
+     * First executed method.
+     *
+     * @param args The command-line arguments: epochs, games per epoch and max threads, all
+     *             optional.
+     */
+    public static void main(String[] args) {
+
+        final int epochs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+
+            // Start over for every thread count, so the scores are comparable
+            final HogwildTrainer trainer = new HogwildTrainer(new NTupleNetwork(),
+                    TDTrainer.DEFAULT_LEARNING_RATE, threads, SEED);
+
+            final long start = System.nanoTime();
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+
+                trainer.resetStats();
+                final long epochStart = System.nanoTime();
+                trainer.train(games);
+                final double seconds = (System.nanoTime() - epochStart) / 1e9;
+
+                System.out.println(String.format("%d threads, epoch %d: %.1f games/s, "
+                                + "average score %.0f", threads, epoch, games / seconds,
+                        (double) trainer.getTotalScore() / games));
+            }
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            trainer.shutdown();
+
+            if (threads == 1)
+                baseline = seconds;
+            System.out.println(String.format("%d threads: %.1f games/s overall, speedup %.2fx",
+                    threads, epochs * games / seconds, baseline / seconds));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package cat.santi.ttfe.test;
+
+import java.io.File;
+import java.io.IOException;
+
+import cat.santi.ttfe.BitBoard;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.SplitRandom;
+import cat.santi.ttfe.ai.Heuristic;
+import cat.santi.ttfe.ai.MappedNTupleNetwork;
+import cat.santi.ttfe.ai.NTupleNetwork;
+import cat.santi.ttfe.ai.WeightFile;
+
+/**
+ * Console report of the accuracy lost by quantizing the n-tuple network weights.
+ * <p/>
+ * Usage: <code>WeightQuantization weightsFile [games]</code>. Writes the weights both as
+ * <code>float</code>s and quantized next to <i>weightsFile</i>, maps them, and plays the same
+ * fixed seed games with each one, printing the file sizes, map times and average scores.
+ */
+public class WeightQuantization {
+
+    /**
+     * First executed method.
+     *
+     * @param args The command-line arguments: weights file and amount of games.
+     * @throws IOException If the weights could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 1) {
+
+            System.out.println("Usage: WeightQuantization weightsFile [games]");
+            return;
+        }
+        final File source = new File(args[0]);
+        final int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        final NTupleNetwork network = WeightFile.load(source);
+        final File floats = new File(source.getPath() + ".f32");
+        final File shorts = new File(source.getPath() + ".q16");
+        WeightFile.write(network, floats, false);
+        WeightFile.write(network, shorts, true);
+
+        report("heap", source, network, games);
+        report("mapped float", floats, map(floats), games);
+        report("mapped quantized", shorts, map(shorts), games);
+    }
+
+    /**
+     * Map a weight file, printing the time spent.
+     */
+    private static MappedNTupleNetwork map(File file) throws IOException {
+
+        final long start = System.nanoTime();
+        final MappedNTupleNetwork result = WeightFile.map(file);
+        System.out.println(String.format("%s mapped in %.3f ms", file.getName(),
+                (System.nanoTime() - start) / 1e6));
+        return result;
+    }
+
+    /**
+     * Play the fixed seed games with the given <i>heuristic</i> and print the results.
+     */
+    private static void report(String name, File file, Heuristic heuristic, int games) {
+
+        final long[] total = new long[1];
+        int won = 0;
+        for (int seed = 0; seed < games; seed++) {
+
+            final long board = playGame(heuristic, new SplitRandom(seed), total);
+            if (BitBoard.getMaxExponent(board) >= 11)
+                won++;
+        }
+        System.out.println(String.format("%s (%d bytes): average score %.1f, 2048 reached on "
+                + "%.1f%% of %d games", name, file.length(), (double) total[0] / games,
+                100.0 * won / games, games));
+    }
+
+    /**
+     * Play a game greedily, picking the move with the best score earned plus value of the
+     * resulting board.
+     *
+     * @param result Array where the final score is added (index 0).
+     * @return The final packed board.
+     */
+    private static long playGame(Heuristic heuristic, SplitRandom random, long[] result) {
+
+        long board = BitBoard.spawn(BitBoard.spawn(BitBoard.EMPTY, random), random);
+        while (true) {
+
+            Direction best = null;
+            float bestValue = Float.NEGATIVE_INFINITY;
+            for (Direction direction : Direction.values()) {
+
+                final long next = BitBoard.move(board, direction);
+                if (next == board)
+                    continue;
+
+                final float value = BitBoard.score(board, direction) + heuristic.evaluate(next);
+                if (value > bestValue) {
+
+                    best = direction;
+                    bestValue = value;
+                }
+            }
+            if (best == null)
+                return board;
+
+            result[0] += BitBoard.score(board, best);
+            board = BitBoard.spawn(BitBoard.move(board, best), random);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package cat.santi.ttfe;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Snapshot;
+import cat.santi.ttfe.Engine.State;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check every move of the {@link Engine} against a plain reference of the rules, on 2 million
+ * random positions: slides, single merges per turn, score, spawned <i>tile</i>, turns and game
+ * end. The {@link Engine.Listener#onTileMoved} events are checked against a copy of the original
+ * recursive <code>moveTile</code>.
+ */
+@RunWith(Parameterized.class)
+public class MoveEquivalenceTest {
+
+    private static final int POSITIONS = 250000;
+    private static final int TILE_VALUE_TO_WIN = 1 << BitBoard.MAX_EXPONENT;
+
+    private final int mRows;
+    private final int mColumns;
+    private final Backend mBackend;
+    private final long mSeed;
+
+    public MoveEquivalenceTest(int rows, int columns, Backend backend, long seed) {
+
+        mRows = rows;
+        mColumns = columns;
+        mBackend = backend;
+        mSeed = seed;
+    }
+
+    @Parameters(name = "{0}x{1} {2} seed {3}")
+    public static Collection<Object[]> parameters() {
+
+        return Arrays.asList(new Object[][]{
+                {4, 4, Backend.TILES, 1L},
+                {4, 4, Backend.TILES, 2L},
+                {4, 4, Backend.BIT_BOARD, 1L},
+                {4, 4, Backend.BIT_BOARD, 2L},
+                {5, 5, Backend.TILES, 3L},
+                {4, 6, Backend.TILES, 4L},
+                {6, 4, Backend.TILES, 5L},
+                {8, 8, Backend.TILES, 6L},
+        });
+    }
+
+    /**
+     * Play every {@link Direction} on {@link #POSITIONS} random positions, for 4 moves each.
+     */
+    @Test
+    public void everyMoveMatchesTheReference() {
+
+        final Random random = new Random(mSeed);
+        final Engine engine = Engine.create();
+        final Snapshot position = new Snapshot();
+        final Snapshot result = new Snapshot();
+        final int squares = mRows * mColumns;
+        final int[] before = new int[squares];
+        final int[] expected = new int[squares];
+        final int[] actual = new int[squares];
+        final List<String> events = new ArrayList<>();
+        final List<String> expectedEvents = new ArrayList<>();
+        engine.setListener(new ForwardingListener(null) {
+
+            @Override
+            public void onTileMoved(int srcRow, int srcColumn, int dstRow, int dstColumn,
+                                    Direction direction, boolean merged) {
+
+                events.add(event(srcRow, srcColumn, dstRow, dstColumn, direction, merged));
+            }
+        });
+
+        for (int index = 0; index < POSITIONS; index++) {
+
+            randomPosition(random, before);
+            for (Direction direction : Direction.values()) {
+
+                position.setSize(mRows, mColumns);
+                for (int square = 0; square < squares; square++)
+                    position.setValue(square / mColumns, square % mColumns, before[square]);
+                position.setScore(0);
+                position.setMovements(0);
+                position.setState(State.IDLE);
+                position.setTileValueToWin(TILE_VALUE_TO_WIN);
+                position.setBackend(mBackend);
+                position.setSeed(random.nextLong());
+                position.clearRandomState();
+                engine.restore(position);
+
+                final int gain = slide(before, direction, expected);
+                final boolean moved = !Arrays.equals(before, expected);
+                assertEquals(moved, engine.play(direction, true));
+                events.clear();
+                assertEquals(moved, engine.play(direction, false));
+
+                // The bit board doesn't tell about single tiles
+                expectedEvents.clear();
+                if (moved && mBackend == Backend.TILES)
+                    new RecursiveReference(before, mRows, mColumns).play(direction,
+                            expectedEvents);
+                assertEquals(expectedEvents, events);
+
+                engine.readSnapshot(result);
+                for (int square = 0; square < squares; square++)
+                    actual[square] = result.getValue(square / mColumns, square % mColumns);
+                assertEquals(gain, engine.getScore());
+
+                if (!moved) {
+
+                    assertArrayEquals(before, actual);
+                    assertEquals(State.IDLE, engine.getState());
+                    assertEquals(0, engine.getMovements());
+                } else if (max(expected) >= TILE_VALUE_TO_WIN) {
+
+                    // No tile is created on victory
+                    assertArrayEquals(expected, actual);
+                    assertEquals(State.VICTORY, engine.getState());
+                } else {
+
+                    // A single 2 or 4 on a square left void by the move
+                    int created = -1;
+                    for (int square = 0; square < squares; square++)
+                        if (expected[square] != actual[square]) {
+
+                            assertEquals(-1, created);
+                            assertEquals(0, expected[square]);
+                            assertTrue(actual[square] == 2 || actual[square] == 4);
+                            created = square;
+                        }
+                    assertTrue(created >= 0);
+
+                    final boolean over = !canMove(actual);
+                    assertEquals(over ? State.DEFEAT : State.IDLE, engine.getState());
+                    assertEquals(over ? 0 : 1, engine.getMovements());
+                }
+            }
+        }
+    }
+
+    private static String event(int srcRow, int srcColumn, int dstRow, int dstColumn,
+                                Direction direction, boolean merged) {
+
+        return "(" + srcRow + "," + srcColumn + ")->(" + dstRow + "," + dstColumn + ") "
+                + direction + (merged ? " merged" : "");
+    }
+
+    /**
+     * Fill a random position, mostly with low values so merges are frequent.
+     */
+    private static void randomPosition(Random random, int[] values) {
+
+        final int voids = random.nextInt(4);
+        for (int square = 0; square < values.length; square++)
+            values[square] = random.nextInt(8) < voids * 2 ?
+                    0 : 1 << (1 + random.nextInt(1 + random.nextInt(BitBoard.MAX_EXPONENT - 1)));
+    }
+
+    /**
+     * Slide <i>values</i> towards <i>direction</i> by the reference rules: every line slides
+     * towards the wall, and two equal neighbours merge once, the nearest to the wall first.
+     *
+     * @return The score earned.
+     */
+    private int slide(int[] values, Direction direction, int[] result) {
+
+        final boolean horizontal = direction == Direction.LEFT || direction == Direction.RIGHT;
+        final boolean backwards = direction == Direction.RIGHT || direction == Direction.DOWN;
+        final int lines = horizontal ? mRows : mColumns;
+        final int length = horizontal ? mColumns : mRows;
+
+        int gain = 0;
+        for (int line = 0; line < lines; line++) {
+
+            int filled = 0;
+            int mergeable = 0;
+            for (int position = 0; position < length; position++)
+                result[square(horizontal, backwards, line, position, length)] = 0;
+            for (int position = 0; position < length; position++) {
+
+                final int value = values[square(horizontal, backwards, line, position, length)];
+                if (value == 0)
+                    continue;
+                if (value == mergeable) {
+
+                    result[square(horizontal, backwards, line, filled - 1, length)] = value * 2;
+                    gain += value * 2;
+                    mergeable = 0;
+                } else {
+
+                    result[square(horizontal, backwards, line, filled++, length)] = value;
+                    mergeable = value;
+                }
+            }
+        }
+        return gain;
+    }
+
+    /**
+     * Get the square of the given <i>position</i> of a line, counting from the wall.
+     */
+    private int square(boolean horizontal, boolean backwards, int line, int position,
+                       int length) {
+
+        final int along = backwards ? length - 1 - position : position;
+        return horizontal ? line * mColumns + along : along * mColumns + line;
+    }
+
+    private boolean canMove(int[] values) {
+
+        final int[] result = new int[values.length];
+        for (Direction direction : Direction.values()) {
+
+            slide(values, direction, result);
+            if (!Arrays.equals(values, result))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copy of the original <code>Engine.play</code> loop and recursive <code>moveTile</code>,
+     * which found the walls by catching {@link ArrayIndexOutOfBoundsException}, as the reference
+     * of the {@link Engine.Listener#onTileMoved} events.
+     */
+    private static class RecursiveReference {
+
+        private final int[][] mValues;
+        private final boolean[][] mNotMerge;
+
+        RecursiveReference(int[] values, int rows, int columns) {
+
+            mValues = new int[rows][columns];
+            mNotMerge = new boolean[rows][columns];
+            for (int square = 0; square < values.length; square++)
+                mValues[square / columns][square % columns] = values[square];
+        }
+
+        void play(Direction direction, List<String> events) {
+
+            final int rows = mValues.length;
+            final int columns = mValues[0].length;
+            switch (direction) {
+
+                case DOWN:
+                    for (int indexR = rows - 2; indexR >= 0; indexR--)
+                        for (int indexC = 0; indexC < columns; indexC++)
+                            resolvePlay(direction, indexR, indexC, indexR + 1, indexC, events);
+                    break;
+                case LEFT:
+                    for (int indexC = 1; indexC < columns; indexC++)
+                        for (int indexR = 0; indexR < rows; indexR++)
+                            resolvePlay(direction, indexR, indexC, indexR, indexC - 1, events);
+                    break;
+                case RIGHT:
+                    for (int indexC = columns - 2; indexC >= 0; indexC--)
+                        for (int indexR = 0; indexR < rows; indexR++)
+                            resolvePlay(direction, indexR, indexC, indexR, indexC + 1, events);
+                    break;
+                case UP:
+                    for (int indexR = 1; indexR < rows; indexR++)
+                        for (int indexC = 0; indexC < columns; indexC++)
+                            resolvePlay(direction, indexR, indexC, indexR - 1, indexC, events);
+                    break;
+            }
+        }
+
+        private void resolvePlay(Direction direction, int indexR, int indexC, int dstRow,
+                                 int dstColumn, List<String> events) {
+
+            final int[] result = moveTile(indexR, indexC, dstRow, dstColumn);
+            if (result != null && (indexR != result[0] || indexC != result[1]))
+                events.add(event(indexR, indexC, result[0], result[1], direction,
+                        result[2] != 0));
+        }
+
+        /**
+         * @return The row, column and merged flag (1 or 0) of the move, or <code>null</code> if
+         * there's no <i>tile</i> at the source.
+         */
+        private int[] moveTile(int srcRow, int srcColumn, int dstRow, int dstColumn) {
+
+            int fromSquare;
+            int toSquare;
+            boolean toNotMerge;
+            try {
+
+                fromSquare = mValues[srcRow][srcColumn];
+                toSquare = mValues[dstRow][dstColumn];
+                toNotMerge = mNotMerge[dstRow][dstColumn];
+            } catch (ArrayIndexOutOfBoundsException ex) {
+
+                // Wall hit
+                return new int[]{srcRow, srcColumn, 0};
+            }
+
+            if (fromSquare == Engine.VOID_VALUE) {
+
+                return null;
+            } else if (toSquare == Engine.VOID_VALUE) {
+
+                // Move, and try to move again
+                set(fromSquare, dstRow, dstColumn, false);
+                set(Engine.VOID_VALUE, srcRow, srcColumn, false);
+                return moveTile(dstRow, dstColumn, 2 * dstRow - srcRow, 2 * dstColumn - srcColumn);
+            } else if (toNotMerge) {
+
+                return new int[]{srcRow, srcColumn, 0};
+            } else if (fromSquare == toSquare) {
+
+                set(toSquare * 2, dstRow, dstColumn, true);
+                set(Engine.VOID_VALUE, srcRow, srcColumn, false);
+                return new int[]{dstRow, dstColumn, 1};
+            } else {
+
+                return new int[]{srcRow, srcColumn, 0};
+            }
+        }
+
+        private void set(int value, int row, int column, boolean notMerge) {
+
+            mValues[row][column] = value;
+            mNotMerge[row][column] = notMerge;
+        }
+    }
+
+    private static int max(int[] values) {
+
+        int result = 0;
+        for (int value : values)
+            result = Math.max(result, value);
+        return result;
+    }
+}
@@ -0,0 +1,325 @@
+package cat.santi.ttfe;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Check that games logged by {@link MoveLogWriter} are read back and replayed by
+ * {@link MoveLogReader} exactly as they were played, with and without the created <i>tiles</i>,
+ * turn by turn and at once.
+ */
+public class MoveLogReplayTest {
+
+    private static final int GAMES = 40;
+
+    @Test
+    public void seededLogsReplayTheSameGames() throws IOException {
+
+        for (Backend backend : Backend.values())
+            for (int size = 4; size <= 8; size += backend == Backend.BIT_BOARD ? 8 : 2)
+                for (int game = 0; game < GAMES; game++)
+                    checkReplay(size, backend, game, false, null);
+    }
+
+    @Test
+    public void spawnLogsReplayTheSameGames() throws IOException {
+
+        for (Backend backend : Backend.values())
+            for (int size = 4; size <= 8; size += backend == Backend.BIT_BOARD ? 8 : 2)
+                for (int game = 0; game < GAMES; game++)
+                    checkReplay(size, backend, game, true, new UnseededRandom(game));
+    }
+
+    @Test
+    public void longLogsReadTheSameAtOnce() throws IOException {
+
+        final Random random = new Random(4);
+        final Direction[] directions = Direction.values();
+        for (int moves : new int[]{0, 1, 3, 4, 5, 4095, 20001, 70000}) {
+
+            final List<Direction> played = new ArrayList<>();
+            final Direction[] array = new Direction[moves];
+            for (int move = 0; move < moves; move++) {
+
+                array[move] = directions[random.nextInt(directions.length)];
+                played.add(array[move]);
+            }
+
+            // Seeded logs are the same written move by move or at once
+            final ByteArrayOutputStream single = new ByteArrayOutputStream();
+            final MoveLogWriter singleWriter = new MoveLogWriter(single, false);
+            singleWriter.writeHeader(4, 4, 2048, moves);
+            for (Direction direction : array)
+                singleWriter.writeMove(direction);
+            singleWriter.close();
+            final ByteArrayOutputStream bulk = new ByteArrayOutputStream();
+            final MoveLogWriter bulkWriter = new MoveLogWriter(bulk, false);
+            bulkWriter.writeHeader(4, 4, 2048, moves);
+            bulkWriter.writeMoves(array, 0, moves);
+            bulkWriter.close();
+            assertArrayEquals(single.toByteArray(), bulk.toByteArray());
+            assertEquals(played, readMoves(bulk.toByteArray(), moves));
+
+            // Logs with tiles, on a board with an odd amount of bits per turn
+            final ByteArrayOutputStream spawns = new ByteArrayOutputStream();
+            final MoveLogWriter spawnsWriter = new MoveLogWriter(spawns, true);
+            spawnsWriter.writeHeader(5, 5, 2048, moves);
+            spawnsWriter.writeSpawn(0, 2);
+            spawnsWriter.writeSpawn(24, 4);
+            for (int move = 0; move < moves; move++) {
+
+                spawnsWriter.writeMove(array[move]);
+                // The last turn of a finished game may lack it's tile
+                if (move < moves - 1 || moves % 2 == 0)
+                    spawnsWriter.writeSpawn(random.nextInt(25), random.nextInt(10) == 0 ? 4 : 2);
+            }
+            spawnsWriter.close();
+            assertEquals(played, readMoves(spawns.toByteArray(), moves));
+        }
+    }
+
+    @Test
+    public void seededLogsDoNotReplayUnseededGames() throws IOException {
+
+        // The seed alone can not tell the tiles created by another generator
+        int differences = 0;
+        for (int game = 0; game < GAMES; game++) {
+
+            final Engine engine = Engine.create();
+            engine.setRandom(new UnseededRandom(game));
+            final ByteArrayOutputStream output = record(engine, 4, Backend.TILES, game, false);
+            final Engine replay = Engine.create();
+            final MoveLogReader reader = new MoveLogReader(
+                    new ByteArrayInputStream(output.toByteArray()));
+            reader.start(replay);
+            try {
+
+                while (reader.playNext())
+                    ;
+            } catch (IOException e) {
+
+                // A logged move that can not be played: the replay differs
+            }
+            reader.close();
+            if (!engine.toString().equals(replay.toString()))
+                differences++;
+        }
+        assertNotEquals(0, differences);
+    }
+
+    @Test
+    public void badTilesAreNotReplayed() throws IOException {
+
+        // Both starting tiles on the same square
+        final Engine engine = Engine.create();
+        try {
+
+            new MoveLogReader(new ByteArrayInputStream(spawnLog(0, 0, -1))).start(engine);
+            fail("Two starting tiles were created on the same square");
+        } catch (IOException e) {
+
+            // Expected
+        }
+
+        // A move (2 2 _ _ to _ _ _ 4) missing it's tile, as on a truncated log, and with it's
+        // tile on the square taken by the move
+        for (int square : new int[]{-1, 3}) {
+
+            final MoveLogReader reader = new MoveLogReader(
+                    new ByteArrayInputStream(spawnLog(0, 1, square)));
+            reader.start(engine);
+            try {
+
+                reader.playNext();
+                fail("A bad tile was replayed on square " + square);
+            } catch (IOException e) {
+
+                // Expected
+            }
+            reader.close();
+            assertEquals(State.IDLE, engine.getState());
+            assertTrue(engine.play(Direction.LEFT, false));
+        }
+
+        // The same move, with it's tile on a void square
+        final MoveLogReader reader = new MoveLogReader(
+                new ByteArrayInputStream(spawnLog(0, 1, 0)));
+        reader.start(engine);
+        assertTrue(reader.playNext());
+        assertFalse(reader.playNext());
+        reader.close();
+        assertEquals(2, engine.getTiles()[0][0].getValue());
+        assertEquals(4, engine.getTiles()[0][3].getValue());
+        assertEquals(2, engine.getTileCount());
+    }
+
+    /**
+     * Log by hand a 4 x 4 game with two starting tiles of value 2, and a move to the right
+     * creating a tile on the given <i>square</i>, if any.
+     */
+    private static byte[] spawnLog(int first, int second, int square) throws IOException {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final MoveLogWriter writer = new MoveLogWriter(output, true);
+        writer.writeHeader(4, 4, 2048, 0);
+        writer.writeSpawn(first, 2);
+        writer.writeSpawn(second, 2);
+        writer.writeMove(Direction.RIGHT);
+        if (square >= 0)
+            writer.writeSpawn(square, 2);
+        writer.close();
+        return output.toByteArray();
+    }
+
+    /**
+     * Play a game, log it and check that the log holds every move and replays the same game.
+     */
+    private static void checkReplay(int size, Backend backend, int game, boolean spawns,
+                                    Random random) throws IOException {
+
+        final Engine engine = Engine.create();
+        if (random != null)
+            engine.setRandom(random);
+        final List<Direction> moves = new ArrayList<>();
+        final ByteArrayOutputStream output = record(engine, size, backend, game, spawns, moves);
+
+        // Read it turn by turn
+        final MoveLogReader reader = new MoveLogReader(
+                new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(spawns, reader.hasSpawns());
+        assertEquals(size, reader.getRows());
+        assertEquals(size, reader.getColumns());
+        assertEquals(engine.getSeed(), reader.getSeed());
+        final List<Direction> read = new ArrayList<>();
+        while (reader.nextTurn())
+            if (reader.getDirection() != null)
+                read.add(reader.getDirection());
+        reader.close();
+        assertEquals(moves, read);
+
+        // Read it at once, in uneven chunks
+        assertEquals(moves, readMoves(output.toByteArray(), game));
+
+        // Replay it on a new engine, that gets it's generator back at the end
+        final Engine replay = Engine.create();
+        final Random previous = new SplitRandom(0);
+        replay.setRandom(previous);
+        final MoveLogReader player = new MoveLogReader(
+                new ByteArrayInputStream(output.toByteArray()));
+        player.start(replay, backend);
+        while (player.playNext())
+            ;
+        player.close();
+        assertSame(previous, replay.getRandom());
+        assertEquals(engine.toString(), replay.toString());
+        assertEquals(engine.getScore(), replay.getScore());
+        assertEquals(engine.getMovements(), replay.getMovements());
+        assertEquals(engine.getState(), replay.getState());
+    }
+
+    /**
+     * Read the moves of a log through {@link MoveLogReader#nextMoves}, in chunks of several
+     * sizes, and check them against the ones read turn by turn.
+     */
+    private static List<Direction> readMoves(byte[] log, int seed) throws IOException {
+
+        final MoveLogReader single = new MoveLogReader(new ByteArrayInputStream(log));
+        final MoveLogReader reader = new MoveLogReader(new ByteArrayInputStream(log));
+        final Random random = new Random(seed);
+        final Direction[] chunk = new Direction[300];
+        final List<Direction> result = new ArrayList<>();
+        single.nextTurn();
+        while (true) {
+
+            final int count = random.nextInt(3) == 0 ? random.nextInt(9) : 1 + random.nextInt(300);
+            final int offset = random.nextInt(chunk.length - count + 1);
+            final int read = reader.nextMoves(chunk, offset, count);
+            for (int index = 0; index < read; index++) {
+
+                assertTrue(single.nextTurn());
+                assertSame(single.getDirection(), chunk[offset + index]);
+                result.add(chunk[offset + index]);
+            }
+            assertEquals(single.getTurn(), reader.getTurn());
+            if (read > 0)
+                assertSame(single.getDirection(), reader.getDirection());
+            if (read < count)
+                break;
+        }
+        assertFalse(single.nextTurn());
+        reader.close();
+        single.close();
+        return result;
+    }
+
+    private static ByteArrayOutputStream record(Engine engine, int size, Backend backend,
+                                                int game, boolean spawns) throws IOException {
+
+        return record(engine, size, backend, game, spawns, new ArrayList<Direction>());
+    }
+
+    /**
+     * Play a game with random moves, some of them short or easy to win, and log it.
+     */
+    private static ByteArrayOutputStream record(Engine engine, int size, Backend backend,
+                                                int game, boolean spawns, List<Direction> moves)
+            throws IOException {
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final MoveLogWriter writer = new MoveLogWriter(output, spawns);
+        writer.attach(engine);
+        engine.reset(size, size, game % 3 == 0 ? 64 : 2048, backend, game);
+
+        final Random pick = new Random(game);
+        final Direction[] directions = Direction.values();
+        final int limit = game % 5 == 0 ? 37 : Integer.MAX_VALUE;
+        for (int turn = 0; turn < limit && engine.getState() == State.IDLE; turn++) {
+
+            final Direction direction = directions[pick.nextInt(directions.length)];
+            if (engine.play(direction, false))
+                moves.add(direction);
+        }
+        writer.close();
+        return output;
+    }
+
+    /**
+     * {@link Random} generator ignoring the seed of every game, so the created <i>tiles</i> can
+     * not be told from it.
+     */
+    private static class UnseededRandom extends Random {
+
+        private final boolean mCreated;
+
+        UnseededRandom(long seed) {
+
+            super(seed);
+            mCreated = true;
+        }
+
+        @Override
+        public synchronized void setSeed(long seed) {
+
+            if (!mCreated)
+                super.setSeed(seed);
+        }
+    }
+}
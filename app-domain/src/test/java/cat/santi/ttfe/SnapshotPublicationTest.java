@@ -0,0 +1,83 @@
+package cat.santi.ttfe;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Snapshot;
+import cat.santi.ttfe.Engine.State;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check that the snapshots read from other threads, which only get the published changes of
+ * every turn, are the same ones read by the playing thread, on games of several sizes and
+ * {@link Backend}s played one after another on the same {@link Engine}.
+ */
+public class SnapshotPublicationTest {
+
+    private static final int GAMES = 120;
+
+    @Test
+    public void publishedSnapshotsMatchThePlayedGame() throws Exception {
+
+        final int[] sizes = {4, 5, 4, 8};
+        final Engine engine = Engine.create();
+        final Snapshot played = new Snapshot();
+        final Snapshot published = new Snapshot();
+        final Callable<Snapshot> reader = new Callable<Snapshot>() {
+
+            @Override
+            public Snapshot call() {
+
+                return engine.readSnapshot(published);
+            }
+        };
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+
+            final Random pick = new Random(6);
+            for (int game = 0; game < GAMES; game++) {
+
+                final int size = sizes[game % sizes.length];
+                final Backend backend = game % 3 == 0 ? Backend.BIT_BOARD : Backend.TILES;
+                engine.reset(size, size, game % 5 == 0 ? 64 : 2048, backend, game);
+                assertSameSnapshot(engine.readSnapshot(played), executor.submit(reader).get());
+                while (engine.getState() == State.IDLE) {
+
+                    engine.play(Direction.values()[pick.nextInt(4)], false);
+                    assertSameSnapshot(engine.readSnapshot(played),
+                            executor.submit(reader).get());
+                }
+
+                // A game resumed on the same board is published whole
+                engine.restore(played);
+                assertSameSnapshot(engine.readSnapshot(played), executor.submit(reader).get());
+            }
+        } finally {
+
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameSnapshot(Snapshot expected, Snapshot actual) {
+
+        assertEquals(expected.getRows(), actual.getRows());
+        assertEquals(expected.getColumns(), actual.getColumns());
+        for (int indexR = 0; indexR < expected.getRows(); indexR++)
+            for (int indexC = 0; indexC < expected.getColumns(); indexC++) {
+
+                assertEquals(expected.getValue(indexR, indexC), actual.getValue(indexR, indexC));
+                assertEquals(expected.getFlags(indexR, indexC), actual.getFlags(indexR, indexC));
+            }
+        assertEquals(expected.getScore(), actual.getScore());
+        assertEquals(expected.getMovements(), actual.getMovements());
+        assertEquals(expected.getState(), actual.getState());
+    }
+}
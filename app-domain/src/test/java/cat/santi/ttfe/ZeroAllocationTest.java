@@ -0,0 +1,71 @@
+package cat.santi.ttfe;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check that playing a turn does not allocate, on both {@link Backend}s and without any
+ * {@link Engine.Listener}, as measured by the JVM for the playing thread.
+ */
+public class ZeroAllocationTest {
+
+    private static final int WARM_UP_GAMES = 1000;
+    private static final int MEASURED_GAMES = 300;
+    private static final int MAX_TURNS = 2000;
+
+    @Test
+    public void tilesBackendDoesNotAllocate() {
+
+        assertEquals(0, allocatedByTurns(4, 4, Backend.TILES));
+        assertEquals(0, allocatedByTurns(8, 8, Backend.TILES));
+    }
+
+    @Test
+    public void bitBoardBackendDoesNotAllocate() {
+
+        assertEquals(0, allocatedByTurns(4, 4, Backend.BIT_BOARD));
+    }
+
+    /**
+     * Play some games to warm up, and then measure the bytes allocated by the turns of some
+     * more. The games are reset out of the measure, as a reset may allocate the board.
+     *
+     * @return The bytes allocated.
+     */
+    private static long allocatedByTurns(int rows, int columns, Backend backend) {
+
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final long thread = Thread.currentThread().getId();
+        final Direction[] directions = Direction.values();
+        final Engine engine = Engine.create();
+        int next = 0;
+        long result = 0;
+        for (int game = 0; game < WARM_UP_GAMES + MEASURED_GAMES; game++) {
+
+            engine.reset(rows, columns, 1 << BitBoard.MAX_EXPONENT, backend, game);
+            final boolean measured = game >= WARM_UP_GAMES;
+            for (int turn = 0; turn < MAX_TURNS && engine.getState() == State.IDLE; turn++) {
+
+                final Direction direction = directions[next++ & 3];
+                final long before = threads.getThreadAllocatedBytes(thread);
+                engine.play(direction, false);
+                if (measured)
+                    result += threads.getThreadAllocatedBytes(thread) - before;
+            }
+        }
+        return result;
+    }
+}
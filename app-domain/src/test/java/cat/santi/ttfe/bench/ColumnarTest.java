@@ -0,0 +1,245 @@
+package cat.santi.ttfe.bench;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+import cat.santi.ttfe.bench.Columnar.Column;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that {@link Columnar} blocks decode to the encoded values, down to the extremes of a
+ * <code>long</code>, and that files written by {@link ColumnarWriter} read back the same, with
+ * the turns of every finished game only.
+ */
+public class ColumnarTest {
+
+    @Test
+    public void extremeValuesRoundTrip() {
+
+        check(new long[]{Long.MIN_VALUE});
+        check(new long[]{Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE});
+        check(new long[]{Long.MIN_VALUE, Long.MAX_VALUE});
+        check(new long[]{Long.MAX_VALUE, Long.MIN_VALUE, 0, -1, 1, Long.MAX_VALUE});
+        check(new long[]{0, Long.MIN_VALUE, 0, Long.MIN_VALUE, 0});
+        check(new long[]{-1, 0, Long.MIN_VALUE + 1, Long.MAX_VALUE - 1});
+    }
+
+    @Test
+    public void everyEncodingRoundTrips() {
+
+        final Random random = new Random(1);
+        for (int block = 0; block < 2000; block++) {
+
+            final int count = 1 + random.nextInt(block % 10 == 0 ? Columnar.BLOCK_ROWS : 300);
+            final int bits = 1 + random.nextInt(64);
+            final long[] values = new long[count];
+            long value = random.nextLong();
+            for (int index = 0; index < count; index++) {
+
+                switch (block % 4) {
+
+                    case 0:
+                        // Any value of the given bits, also negative
+                        values[index] = random.nextLong() >> (64 - bits);
+                        break;
+                    case 1:
+                        // Small steps from anywhere, wrapping at the extremes
+                        value += random.nextInt(2 * bits + 1) - bits;
+                        values[index] = value;
+                        break;
+                    case 2:
+                        // Steps of up to 64 bits
+                        value += random.nextLong() >> (64 - bits);
+                        values[index] = value;
+                        break;
+                    default:
+                        values[index] = index % 7 == 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+                        break;
+                }
+            }
+            check(values);
+        }
+    }
+
+    @Test
+    public void encodingIsTheSmallest() {
+
+        final long[] sequence = new long[Columnar.BLOCK_ROWS];
+        for (int index = 0; index < sequence.length; index++)
+            sequence[index] = Long.MIN_VALUE + 3L * index;
+        assertEquals(Columnar.ENCODING_DELTA, check(sequence));
+
+        final long[] constant = new long[100];
+        Arrays.fill(constant, Long.MAX_VALUE);
+        assertEquals(Columnar.ENCODING_CONSTANT, check(constant));
+
+        final long[] flags = new long[100];
+        for (int index = 0; index < flags.length; index++)
+            flags[index] = index % 3 == 0 ? 1 : 0;
+        assertEquals(Columnar.ENCODING_PACKED, check(flags));
+    }
+
+    @Test
+    public void filesReadBackTheWrittenGames() throws IOException {
+
+        final File file = File.createTempFile("columnar", ".ttfc");
+        try {
+
+            final int games = Columnar.BLOCK_ROWS * 2 + 100;
+            final Random random = new Random(2);
+            final long[] seeds = new long[games];
+            long scores = 0;
+            long wins = 0;
+            final ColumnarWriter writer = new ColumnarWriter(new FileOutputStream(file), false);
+            for (int game = 0; game < games; game++) {
+
+                seeds[game] = game == 0 ? Long.MIN_VALUE : random.nextLong();
+                final int score = random.nextInt(100000);
+                final boolean victory = score > 90000;
+                scores += score;
+                wins += victory ? 1 : 0;
+                writer.writeGame(seeds[game], score, score / 10, 2048, 1000, 7, victory);
+            }
+            writer.close();
+
+            final ColumnarReader reader = new ColumnarReader(file);
+            try {
+
+                assertEquals(games, reader.getRows(Column.SEED));
+                assertEquals(0, reader.getRows(Column.TURN_GAME));
+                assertEquals(scores, reader.sum(Column.SCORE));
+                assertEquals(wins, reader.count(Column.VICTORY, 1, 1));
+                assertEquals(games, reader.count(Column.POLICY, 7, 7));
+                assertEquals(Long.MIN_VALUE, reader.getMin(Column.SEED));
+                assertEquals(games * 1000L, reader.sum(Column.DURATION));
+
+                final long[] values = new long[Columnar.BLOCK_ROWS];
+                int game = 0;
+                for (int block = 0; block < reader.getBlockCount(Column.SEED); block++) {
+
+                    final int rows = reader.readBlock(Column.SEED, block, values);
+                    for (int index = 0; index < rows; index++)
+                        assertEquals(seeds[game++], values[index]);
+                }
+                assertEquals(games, game);
+            } finally {
+
+                reader.close();
+            }
+        } finally {
+
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void resetGamesLeaveNoTurns() throws IOException {
+
+        final File file = File.createTempFile("columnar", ".ttfc");
+        try {
+
+            final Engine engine = Engine.create();
+            final ColumnarWriter writer = new ColumnarWriter(new FileOutputStream(file), true);
+            writer.attach(engine);
+            final Random random = new Random(3);
+            final int games = 3;
+            long turns = 0;
+            for (int game = 0; game < games; game++) {
+
+                // Every game is preceded by one reset before finishing
+                engine.reset(4, 4, 2048, Backend.TILES, game);
+                for (int move = 0; move < 30; move++)
+                    engine.play(Direction.values()[random.nextInt(4)], false);
+
+                engine.reset(4, 4, 2048, Backend.TILES, game);
+                while (engine.getState() == State.IDLE)
+                    if (engine.play(Direction.values()[random.nextInt(4)], false))
+                        turns++;
+            }
+            engine.reset(4, 4, 2048, Backend.TILES, games);
+            for (int move = 0; move < 30; move++)
+                engine.play(Direction.values()[random.nextInt(4)], false);
+            writer.close();
+
+            final ColumnarReader reader = new ColumnarReader(file);
+            try {
+
+                assertEquals(games, reader.getRows(Column.SEED));
+                assertEquals(turns, reader.getRows(Column.TURN_GAME));
+
+                // Every game has a single run of turns, numbered from 0
+                final long[] gameValues = new long[Columnar.BLOCK_ROWS];
+                final long[] numberValues = new long[Columnar.BLOCK_ROWS];
+                long previousGame = -1;
+                long previousNumber = -1;
+                for (int block = 0; block < reader.getBlockCount(Column.TURN_GAME); block++) {
+
+                    final int rows = reader.readBlock(Column.TURN_GAME, block, gameValues);
+                    assertEquals(rows, reader.readBlock(Column.TURN_NUMBER, block, numberValues));
+                    for (int index = 0; index < rows; index++) {
+
+                        if (gameValues[index] != previousGame) {
+
+                            assertEquals(previousGame + 1, gameValues[index]);
+                            assertEquals(0, numberValues[index]);
+                        } else {
+
+                            assertEquals(previousNumber + 1, numberValues[index]);
+                        }
+                        previousGame = gameValues[index];
+                        previousNumber = numberValues[index];
+                    }
+                }
+                assertEquals(games - 1, previousGame);
+            } finally {
+
+                reader.close();
+            }
+        } finally {
+
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Encode and decode a block, and check it's values.
+     *
+     * @return The encoding used.
+     */
+    private static int check(long[] values) {
+
+        final int count = values.length;
+        long min = values[0];
+        long max = values[0];
+        for (long value : values) {
+
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        final byte[] output = new byte[9 + 8 * count + 8];
+        final long encoded = Columnar.encode(values.clone(), count, min, max, output);
+        final int length = (int) (encoded >>> 8);
+        assertTrue(length <= 9 + 8 * count);
+
+        // Only the encoded bytes are given back
+        final byte[] input = new byte[length];
+        System.arraycopy(output, 0, input, 0, length);
+        final long[] decoded = new long[count];
+        Columnar.decode(input, (int) (encoded & 0xFF), count, min, decoded);
+        assertArrayEquals(values, decoded);
+        return (int) (encoded & 0xFF);
+    }
+}
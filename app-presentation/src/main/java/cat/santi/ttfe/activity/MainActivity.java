@@ -2,20 +2,40 @@ package cat.santi.ttfe.activity;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Toast;
 
+import java.io.File;
+import java.io.IOException;
+
 import cat.santi.ttfe.Engine;
 import cat.santi.ttfe.R;
 import cat.santi.ttfe.common.Preferences;
 import cat.santi.ttfe.common.SoundManager;
 import cat.santi.ttfe.fragment.MainFragment;
 import cat.santi.ttfe.fragment.MainFragment.MainFragmentCallbacks;
+import cat.santi.ttfe.storage.Journal;
+import cat.santi.ttfe.storage.Leaderboard;
+import cat.santi.ttfe.storage.Storage;
 
 public class MainActivity extends AbstractActivity implements
         MainFragmentCallbacks {
 
+    private static final String TAG = MainActivity.class.getSimpleName();
+    private static final String SAVED_GAME_FILE = "game.ttfs";
+    private static final String LEADERBOARD_FILE = "leaderboard.ttfb";
+
+    /**
+     * Journal of the game, kept for the whole process, as the {@link Engine} is.
+     */
+    private static Journal sJournal = null;
+    /**
+     * Leaderboard of the finished games, kept for the whole process, as the {@link Engine} is.
+     */
+    private static Leaderboard sLeaderboard = null;
+
     private Boolean mSounds = true;
 
     @Override
@@ -53,8 +73,6 @@ public class MainActivity extends AbstractActivity implements
     @Override
     protected void firstInit() {
 
-        Engine.getInstance().reset();
-
         getSupportFragmentManager().beginTransaction()
                 .replace(R.id.ttfe__activity_main__container, MainFragment.newInstance())
                 .commit();
@@ -62,7 +80,8 @@ public class MainActivity extends AbstractActivity implements
 
     @Override
     protected void init() {
-        // Do nothing
+
+        prepareGame();
     }
 
     @Override
@@ -135,4 +154,43 @@ public class MainActivity extends AbstractActivity implements
         if (mSounds)
             SoundManager.getInstance(this).play(SoundManager.Sound.SLIDE);
     }
+
+    /**
+     * Resume the last game if the process was killed while playing it (or start a new one), and
+     * journal every turn from now on, so it survives the process. Every game finished from now on
+     * is ranked on the leaderboard.
+     */
+    private void prepareGame() {
+
+        if (sJournal != null)
+            return;
+
+        final Engine engine = Engine.getInstance();
+        final Storage storage = new Storage(new File(getFilesDir(), SAVED_GAME_FILE));
+        if (engine.getState() == Engine.State.NOT_PREPARED) {
+
+            try {
+
+                storage.recover(engine);
+            } catch (IOException ex) {
+
+                // Keep whatever could be recovered, if anything
+                Log.e(TAG, "Could not restore the saved game", ex);
+            }
+            if (engine.getState() == Engine.State.NOT_PREPARED)
+                engine.reset();
+        }
+
+        // Attached once recovered, so the turns replayed do not rank a game twice
+        try {
+
+            sLeaderboard = new Leaderboard(new File(getFilesDir(), LEADERBOARD_FILE));
+            sLeaderboard.attach(engine);
+        } catch (IOException ex) {
+
+            Log.e(TAG, "Could not open the leaderboard", ex);
+        }
+
+        sJournal = storage.openJournal(engine);
+    }
 }
@@ -12,6 +12,7 @@ import cat.santi.ttfe.Engine;
 import cat.santi.ttfe.Engine.Direction;
 import cat.santi.ttfe.Engine.Listener;
 import cat.santi.ttfe.Engine.State;
+import cat.santi.ttfe.ForwardingListener;
 import cat.santi.ttfe.R;
 import cat.santi.ttfe.adapter.TileAdapter;
 import cat.santi.ttfe.view.TilesGridView;
@@ -78,14 +79,23 @@ public class MainFragment extends AbstractFragment implements
     public void onResume() {
         super.onResume();
 
-        Engine.getInstance().setListener(this);
+        // Listen behind the forwarding listeners (i.e. the game journal), instead of replacing them
+        final ForwardingListener last = getLastForwardingListener();
+        if (last != null)
+            last.setDelegate(this);
+        else
+            Engine.getInstance().setListener(this);
     }
 
     @Override
     public void onPause() {
         super.onPause();
 
-        Engine.getInstance().removeListener();
+        final ForwardingListener last = getLastForwardingListener();
+        if (last != null)
+            last.setDelegate(null);
+        else
+            Engine.getInstance().removeListener();
     }
 
     @Override
@@ -232,12 +242,33 @@ public class MainFragment extends AbstractFragment implements
         void onUserPlay(Direction direction);
     }
 
+    /**
+     * Get the last {@link ForwardingListener} of the chain settled on the {@link Engine}.
+     *
+     * @return The last one, or <code>null</code> if the {@link Engine} has none.
+     */
+    private ForwardingListener getLastForwardingListener() {
+
+        ForwardingListener result = null;
+        Listener listener = Engine.getInstance().getListener();
+        while (listener instanceof ForwardingListener) {
+
+            result = (ForwardingListener) listener;
+            listener = result.getDelegate();
+        }
+        return result;
+    }
+
     private void initViews() {
 
+        // The game may have been restored from storage, so start from the engine's counters
+        final Engine engine = Engine.getInstance();
         mTVMoves.setText(auxMovesText != null ?
-                auxMovesText : getString(R.string.ttfe__main__moves, 0));
+                auxMovesText : getString(R.string.ttfe__main__moves,
+                Math.max(0, engine.getMovements())));
         mTVScore.setText(auxScoreText != null ?
-                auxScoreText : getString(R.string.ttfe__main__score, 0));
+                auxScoreText : getString(R.string.ttfe__main__score,
+                Math.max(0, engine.getScore())));
         mTVGameState.setText(auxGameStateText != null ?
                 auxGameStateText : getString(R.string.ttfe__state_waiting));
         mTVStatus.setText(auxStatusText != null ?
@@ -0,0 +1,760 @@
+package cat.santi.ttfe.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import cat.santi.ttfe.MoveLog;
+
+/**
+ * Archive of finished games for offline analysis, with sorted secondary indexes to query them by
+ * range without reading every game.
+ * <p/>
+ * Every game gets a fixed width header on a memory mapped file, addressed by it's number (the
+ * games are numbered from 0, in the order they are appended). It's {@link MoveLog} (if any) goes
+ * to a separate data file. The headers file is laid out as follows (big endian):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * byte   version ({@link #VERSION})
+ * byte   reserved
+ * short  record size ({@link #RECORD_SIZE})
+ * int    games
+ * int    creation id
+ * record every game:
+ *        int    score
+ *        int    moves
+ *        long   seed
+ *        long   finish time, in milliseconds since the epoch
+ *        long   offset of the move log on the data file
+ *        int    length of the move log (0 if none)
+ *        byte   exponent of the greatest tile
+ *        byte   flags ({@link #FLAG_VICTORY})
+ *        short  reserved
+ * </pre>
+ * <i>Figure - Layout of the headers file</i>
+ * <p/>
+ * Every {@link Key} has an index file, with an entry per game sorted by key and then by game
+ * number, laid out as follows:
+ * <pre>
+ * int    magic ({@link #INDEX_MAGIC})
+ * byte   version ({@link #VERSION})
+ * byte   key
+ * short  reserved
+ * int    indexed games (the first ones)
+ * int    creation id of the archive
+ * entry  every indexed game: int key, int game
+ * </pre>
+ * <i>Figure - Layout of an index file</i>
+ * <p/>
+ * The indexes are memory mapped too, so a range query takes two binary searches over the
+ * mapped entries, and then reads just the game numbers on the range. The games appended since
+ * the last {@link #index()} are not indexed yet, and are scanned from the headers instead, so
+ * the queries are always complete: {@link #index()} merges them into the indexes. An index is
+ * only used with the archive it was built for, as told by the creation id: a new archive on the
+ * same file doesn't take the games of a previous one as indexed.
+ * <p/>
+ * The games counter is only updated once the appended games are written, so games appended
+ * after the last {@link #flush()} are lost on a crash, but the archive is not corrupted. Up to
+ * {@link #MAX_GAMES} games fit on an archive.
+ * <p/>
+ * An {@link Archive} is not thread safe.
+ */
+public class Archive implements Closeable {
+
+    /**
+     * The first 4 bytes of every headers file (<i>TTFA</i>).
+     */
+    public static final int MAGIC = 0x54544641;
+    /**
+     * The first 4 bytes of every index file (<i>TTFI</i>).
+     */
+    public static final int INDEX_MAGIC = 0x54544649;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The size of the file headers.
+     */
+    public static final int HEADER_SIZE = 16;
+    /**
+     * The size of every game header.
+     */
+    public static final int RECORD_SIZE = 4 + 4 + 8 + 8 + 8 + 4 + 1 + 1 + 2;
+    /**
+     * The size of every index entry.
+     */
+    public static final int ENTRY_SIZE = 8;
+    /**
+     * Game flag set when the game was won.
+     */
+    public static final int FLAG_VICTORY = 1;
+    /**
+     * The maximum amount of games, so the headers can be mapped at once.
+     */
+    public static final int MAX_GAMES = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    /**
+     * Position of the games counter on the headers file.
+     */
+    private static final int COUNT_OFFSET = 8;
+    /**
+     * Position of the creation id on the headers and index files.
+     */
+    private static final int CREATION_OFFSET = 12;
+    /**
+     * Amount of pending game headers (and bytes of move logs) to write at once.
+     */
+    private static final int BUFFER_RECORDS = 1024;
+    private static final int BUFFER_DATA = 64 * 1024;
+
+    /**
+     * The keys the games are indexed by.
+     */
+    public enum Key {
+
+        /**
+         * The final score.
+         */
+        SCORE("score"),
+        /**
+         * The greatest <i>tile</i> value.
+         */
+        MAX_TILE("tile"),
+        /**
+         * The amount of moves played.
+         */
+        MOVES("moves");
+
+        private final String mExtension;
+
+        Key(String extension) {
+
+            mExtension = extension;
+        }
+    }
+
+    private final File mFile;
+    private final File mDataFile;
+    private final RandomAccessFile mHeaders;
+    private final RandomAccessFile mData;
+    private final Index[] mIndexes;
+    private final int mCreation;
+    private final byte[] mPendingRecords = new byte[BUFFER_RECORDS * RECORD_SIZE];
+    private final byte[] mPendingData = new byte[BUFFER_DATA];
+    private int mGames;
+    private int mPendingGames = 0;
+    private int mPendingDataLength = 0;
+    private long mDataLength;
+    private MappedByteBuffer mMap = null;
+    private int mMappedGames = 0;
+
+    /**
+     * Constructor for {@link Archive}. Opens (or creates) the headers <i>file</i>, a data file
+     * and an index file per {@link Key} next to it, named after it.
+     *
+     * @param file The headers file.
+     * @throws IOException If the files could not be read or created, or are not valid.
+     */
+    public Archive(File file) throws IOException {
+
+        mFile = file;
+        mDataFile = new File(file.getPath() + ".data");
+        mHeaders = new RandomAccessFile(file, "rw");
+        RandomAccessFile data = null;
+        try {
+
+            data = new RandomAccessFile(mDataFile, "rw");
+            final byte[] header = new byte[HEADER_SIZE];
+            if (mHeaders.length() < HEADER_SIZE) {
+
+                // A new archive
+                Storage.putInt(header, 0, MAGIC);
+                header[4] = (byte) VERSION;
+                header[6] = (byte) (RECORD_SIZE >>> 8);
+                header[7] = (byte) RECORD_SIZE;
+                mCreation = new Random().nextInt();
+                Storage.putInt(header, CREATION_OFFSET, mCreation);
+                mHeaders.setLength(0);
+                mHeaders.write(header);
+                data.setLength(0);
+            } else {
+
+                mHeaders.readFully(header);
+                if (Storage.getInt(header, 0) != MAGIC)
+                    throw new IOException("Not an archive: " + file);
+                if (header[4] != VERSION)
+                    throw new IOException("Unsupported archive version: " + header[4]);
+                mGames = Storage.getInt(header, COUNT_OFFSET);
+                mCreation = Storage.getInt(header, CREATION_OFFSET);
+                if (((header[6] & 0xFF) << 8 | header[7] & 0xFF) != RECORD_SIZE
+                        || mGames < 0
+                        || mHeaders.length() < HEADER_SIZE + (long) mGames * RECORD_SIZE)
+                    throw new IOException("Corrupt archive: " + file);
+            }
+
+            // Drop whatever was written after the last counted game
+            mHeaders.setLength(HEADER_SIZE + (long) mGames * RECORD_SIZE);
+            mDataLength = 0;
+            if (mGames > 0) {
+
+                final byte[] record = new byte[RECORD_SIZE];
+                mHeaders.seek(HEADER_SIZE + (long) (mGames - 1) * RECORD_SIZE);
+                mHeaders.readFully(record);
+                mDataLength = getLong(record, 24) + Storage.getInt(record, 32);
+            }
+            if (data.length() < mDataLength)
+                throw new IOException("Corrupt archive data: " + mDataFile);
+            data.setLength(mDataLength);
+
+            mIndexes = new Index[Key.values().length];
+            for (Key key : Key.values())
+                mIndexes[key.ordinal()] = new Index(key);
+        } catch (IOException e) {
+
+            mHeaders.close();
+            if (data != null)
+                data.close();
+            throw e;
+        }
+        mData = data;
+    }
+
+    /**
+     * Append a finished game.
+     *
+     * @param score   The final score.
+     * @param maxTile The greatest <i>tile</i> value.
+     * @param moves   The amount of moves played.
+     * @param victory Whether the game was won or not.
+     * @param seed    The seed of the game.
+     * @param log     The {@link MoveLog} of the game, or <code>null</code> if none.
+     * @return The number of the game.
+     * @throws IOException If the game could not be written.
+     */
+    public int append(int score, int maxTile, int moves, boolean victory, long seed, byte[] log)
+            throws IOException {
+
+        if (score < 0 || maxTile < 0 || moves < 0)
+            throw new IllegalArgumentException("Invalid game: score " + score + ", max tile "
+                    + maxTile + ", moves " + moves);
+        if (mGames + mPendingGames >= MAX_GAMES)
+            throw new IOException("Archive full: " + mFile);
+
+        final int length = log == null ? 0 : log.length;
+        if (mPendingGames == BUFFER_RECORDS || mPendingDataLength + length > BUFFER_DATA)
+            flush();
+
+        // The move log first, as the header points to it
+        final long offset = mDataLength + mPendingDataLength;
+        if (length > BUFFER_DATA) {
+
+            mData.seek(offset);
+            mData.write(log);
+            mDataLength += length;
+        } else if (length > 0) {
+
+            System.arraycopy(log, 0, mPendingData, mPendingDataLength, length);
+            mPendingDataLength += length;
+        }
+
+        final byte[] record = mPendingRecords;
+        final int position = mPendingGames * RECORD_SIZE;
+        Storage.putInt(record, position, score);
+        Storage.putInt(record, position + 4, moves);
+        putLong(record, position + 8, seed);
+        putLong(record, position + 16, System.currentTimeMillis());
+        putLong(record, position + 24, offset);
+        Storage.putInt(record, position + 32, length);
+        record[position + 36] = (byte) (maxTile == 0 ?
+                0 : 31 - Integer.numberOfLeadingZeros(maxTile));
+        record[position + 37] = (byte) (victory ? FLAG_VICTORY : 0);
+        record[position + 38] = 0;
+        record[position + 39] = 0;
+        return mGames + mPendingGames++;
+    }
+
+    /**
+     * Write the appended games, and count them on the headers file.
+     *
+     * @throws IOException If the games could not be written.
+     */
+    public void flush() throws IOException {
+
+        if (mPendingGames == 0 && mPendingDataLength == 0)
+            return;
+
+        mData.seek(mDataLength);
+        mData.write(mPendingData, 0, mPendingDataLength);
+        mDataLength += mPendingDataLength;
+        mPendingDataLength = 0;
+
+        mHeaders.seek(HEADER_SIZE + (long) mGames * RECORD_SIZE);
+        mHeaders.write(mPendingRecords, 0, mPendingGames * RECORD_SIZE);
+        mGames += mPendingGames;
+        mPendingGames = 0;
+
+        mHeaders.seek(COUNT_OFFSET);
+        mHeaders.writeInt(mGames);
+    }
+
+    /**
+     * Flush the appended games, and sync the files to the storage device.
+     *
+     * @throws IOException If the files could not be written or synced.
+     */
+    public void sync() throws IOException {
+
+        flush();
+        mData.getFD().sync();
+        mHeaders.getFD().sync();
+    }
+
+    /**
+     * Merge the games appended since the last call into the indexes. Each index is rewritten
+     * once, merging it's sorted entries with the sorted new ones, so it's linear on the amount
+     * of games (plus sorting the new ones).
+     *
+     * @throws IOException If the indexes could not be written.
+     */
+    public void index() throws IOException {
+
+        flush();
+        for (Index index : mIndexes)
+            index.merge();
+    }
+
+    /**
+     * Get the amount of games.
+     *
+     * @return The games appended, including the ones not flushed yet.
+     */
+    public int getGames() {
+
+        return mGames + mPendingGames;
+    }
+
+    /**
+     * Count the games whose <i>key</i> is in the given range.
+     *
+     * @param key The {@link Key} to query by.
+     * @param min The minimum value, inclusive.
+     * @param max The maximum value, inclusive.
+     * @return The amount of games.
+     * @throws IOException If the archive could not be read.
+     */
+    public int count(Key key, int min, int max) throws IOException {
+
+        prepare();
+        final Index index = mIndexes[key.ordinal()];
+        int result = index.upperBound(max) - index.lowerBound(min);
+        for (int game = index.mIndexed; game < mGames; game++) {
+
+            final int value = getKey(key, game);
+            if (value >= min && value <= max)
+                result++;
+        }
+        return result;
+    }
+
+    /**
+     * Find the games whose <i>key</i> is in the given range.
+     *
+     * @param key The {@link Key} to query by.
+     * @param min The minimum value, inclusive.
+     * @param max The maximum value, inclusive.
+     * @return The numbers of the games, sorted by <i>key</i> (and then by number).
+     * @throws IOException If the archive could not be read.
+     */
+    public int[] find(Key key, int min, int max) throws IOException {
+
+        prepare();
+        final Index index = mIndexes[key.ordinal()];
+        final int from = index.lowerBound(min);
+        final int to = Math.max(from, index.upperBound(max));
+        final long[] tail = getTail(key, min, max);
+
+        // Merge the indexed games with the sorted not indexed ones
+        final int[] result = new int[to - from + tail.length];
+        int indexed = from;
+        int pending = 0;
+        for (int position = 0; position < result.length; position++)
+            if (pending == tail.length
+                    || indexed < to && index.getEntry(indexed) < tail[pending])
+                result[position] = index.getGame(indexed++);
+            else
+                result[position] = (int) tail[pending++];
+        return result;
+    }
+
+    /**
+     * Find the games with the greatest <i>key</i> (i.e. the longest ones, for {@link Key#MOVES}).
+     *
+     * @param key   The {@link Key} to query by.
+     * @param limit The maximum amount of games.
+     * @return The numbers of the games, greatest <i>key</i> first.
+     * @throws IOException If the archive could not be read.
+     */
+    public int[] top(Key key, int limit) throws IOException {
+
+        if (limit < 0)
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+
+        prepare();
+        final Index index = mIndexes[key.ordinal()];
+        final long[] tail = getTail(key, 0, Integer.MAX_VALUE);
+
+        // Merge backwards, from the greatest of both
+        final int[] result = new int[Math.min(limit, index.mIndexed + tail.length)];
+        int indexed = index.mIndexed - 1;
+        int pending = tail.length - 1;
+        for (int position = 0; position < result.length; position++)
+            if (pending < 0 || indexed >= 0 && index.getEntry(indexed) > tail[pending])
+                result[position] = index.getGame(indexed--);
+            else
+                result[position] = (int) tail[pending--];
+        return result;
+    }
+
+    /**
+     * Get the final score of a game.
+     *
+     * @param game The number of the game.
+     * @return The score.
+     * @throws IOException If the archive could not be read.
+     */
+    public int getScore(int game) throws IOException {
+
+        return getRecord(game).getInt(position(game));
+    }
+
+    /**
+     * Get the amount of moves of a game.
+     *
+     * @param game The number of the game.
+     * @return The moves.
+     * @throws IOException If the archive could not be read.
+     */
+    public int getMoves(int game) throws IOException {
+
+        return getRecord(game).getInt(position(game) + 4);
+    }
+
+    /**
+     * Get the seed of a game.
+     *
+     * @param game The number of the game.
+     * @return The seed.
+     * @throws IOException If the archive could not be read.
+     */
+    public long getSeed(int game) throws IOException {
+
+        return getRecord(game).getLong(position(game) + 8);
+    }
+
+    /**
+     * Get the time a game finished.
+     *
+     * @param game The number of the game.
+     * @return The finish time, in milliseconds since the epoch.
+     * @throws IOException If the archive could not be read.
+     */
+    public long getTime(int game) throws IOException {
+
+        return getRecord(game).getLong(position(game) + 16);
+    }
+
+    /**
+     * Get the greatest <i>tile</i> value of a game.
+     *
+     * @param game The number of the game.
+     * @return The greatest value.
+     * @throws IOException If the archive could not be read.
+     */
+    public int getMaxTile(int game) throws IOException {
+
+        final int exponent = getRecord(game).get(position(game) + 36);
+        return exponent == 0 ? 0 : 1 << exponent;
+    }
+
+    /**
+     * Get whether a game was won or not.
+     *
+     * @param game The number of the game.
+     * @return <code>true</code> for a won game.
+     * @throws IOException If the archive could not be read.
+     */
+    public boolean isVictory(int game) throws IOException {
+
+        return (getRecord(game).get(position(game) + 37) & FLAG_VICTORY) != 0;
+    }
+
+    /**
+     * Read the {@link MoveLog} of a game.
+     *
+     * @param game The number of the game.
+     * @return The move log, or <code>null</code> if the game was appended without it.
+     * @throws IOException If the archive could not be read.
+     */
+    public byte[] getMoveLog(int game) throws IOException {
+
+        final MappedByteBuffer map = getRecord(game);
+        final int length = map.getInt(position(game) + 32);
+        if (length == 0)
+            return null;
+
+        final byte[] result = new byte[length];
+        mData.seek(map.getLong(position(game) + 24));
+        mData.readFully(result);
+        return result;
+    }
+
+    /**
+     * Flush the appended games and close the files. The games not indexed yet stay so, until the
+     * next {@link #index()}.
+     *
+     * @throws IOException If the games could not be written or the files closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        try {
+
+            flush();
+        } finally {
+
+            mMap = null;
+            mHeaders.close();
+            mData.close();
+        }
+    }
+
+    /**
+     * Flush the appended games, and map the headers of all of them.
+     */
+    private void prepare() throws IOException {
+
+        flush();
+        if (mMappedGames != mGames || mMap == null) {
+
+            mMap = mHeaders.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    HEADER_SIZE + (long) mGames * RECORD_SIZE);
+            mMappedGames = mGames;
+        }
+    }
+
+    private MappedByteBuffer getRecord(int game) throws IOException {
+
+        if (game < 0 || game >= getGames())
+            throw new IllegalArgumentException("Invalid game: " + game);
+        if (game >= mMappedGames)
+            prepare();
+        return mMap;
+    }
+
+    private static int position(int game) {
+
+        return HEADER_SIZE + game * RECORD_SIZE;
+    }
+
+    /**
+     * Get the value of the <i>key</i> of a mapped game.
+     */
+    private int getKey(Key key, int game) {
+
+        switch (key) {
+
+            case SCORE:
+                return mMap.getInt(position(game));
+            case MOVES:
+                return mMap.getInt(position(game) + 4);
+            default:
+                final int exponent = mMap.get(position(game) + 36);
+                return exponent == 0 ? 0 : 1 << exponent;
+        }
+    }
+
+    /**
+     * Get the games not on the <i>key</i> index yet whose value is in the given range, as sorted
+     * entries (<code>key &lt;&lt; 32 | game</code>).
+     */
+    private long[] getTail(Key key, int min, int max) {
+
+        final int from = mIndexes[key.ordinal()].mIndexed;
+        long[] result = new long[mGames - from];
+        int size = 0;
+        for (int game = from; game < mGames; game++) {
+
+            final int value = getKey(key, game);
+            if (value >= min && value <= max)
+                result[size++] = (long) value << 32 | game;
+        }
+        result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static void putLong(byte[] buffer, int position, long value) {
+
+        Storage.putInt(buffer, position, (int) (value >>> 32));
+        Storage.putInt(buffer, position + 4, (int) value);
+    }
+
+    private static long getLong(byte[] buffer, int position) {
+
+        return (long) Storage.getInt(buffer, position) << 32
+                | Storage.getInt(buffer, position + 4) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * The mapped index file of a {@link Key}.
+     */
+    private class Index {
+
+        private final Key mKey;
+        private final File mIndexFile;
+        private IntBuffer mEntries = null;
+        private int mIndexed = 0;
+
+        Index(Key key) throws IOException {
+
+            mKey = key;
+            mIndexFile = new File(mFile.getPath() + "." + key.mExtension);
+            map();
+        }
+
+        /**
+         * Map the index file, if valid for the current games of this archive. Otherwise, every
+         * game is taken as not indexed, until the next merge.
+         */
+        private void map() throws IOException {
+
+            mEntries = null;
+            mIndexed = 0;
+            if (!mIndexFile.exists())
+                return;
+
+            final RandomAccessFile file = new RandomAccessFile(mIndexFile, "r");
+            try {
+
+                if (file.length() < HEADER_SIZE)
+                    return;
+                final MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        0, file.length());
+                final int games = map.getInt(8);
+                if (map.getInt(0) != INDEX_MAGIC || map.get(4) != VERSION
+                        || map.get(5) != mKey.ordinal() || games < 0
+                        || games > Archive.this.mGames
+                        || map.getInt(CREATION_OFFSET) != mCreation
+                        || file.length() != HEADER_SIZE + (long) games * ENTRY_SIZE)
+                    return;
+
+                map.position(HEADER_SIZE);
+                mEntries = map.slice().asIntBuffer();
+                mIndexed = games;
+            } finally {
+
+                // The mapping stays valid once the file is closed
+                file.close();
+            }
+        }
+
+        /**
+         * Get an entry as <code>key &lt;&lt; 32 | game</code>, sorting as the index does.
+         */
+        long getEntry(int position) {
+
+            return (long) mEntries.get(position * 2) << 32 | mEntries.get(position * 2 + 1);
+        }
+
+        int getGame(int position) {
+
+            return mEntries.get(position * 2 + 1);
+        }
+
+        /**
+         * Find the first entry with a key not lower than <i>value</i>.
+         */
+        int lowerBound(int value) {
+
+            int low = 0;
+            int high = mIndexed;
+            while (low < high) {
+
+                final int middle = (low + high) >>> 1;
+                if (mEntries.get(middle * 2) < value)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Find the first entry with a key greater than <i>value</i>.
+         */
+        int upperBound(int value) {
+
+            int low = 0;
+            int high = mIndexed;
+            while (low < high) {
+
+                final int middle = (low + high) >>> 1;
+                if (mEntries.get(middle * 2) <= value)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Rewrite the index with every game, merging the sorted entries with the sorted new ones.
+         */
+        void merge() throws IOException {
+
+            prepare();
+            if (mIndexed == Archive.this.mGames)
+                return;
+
+            final long[] tail = getTail(mKey, 0, Integer.MAX_VALUE);
+            final File temporary = new File(mIndexFile.getPath() + ".tmp");
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(temporary), 64 * 1024));
+            try {
+
+                output.writeInt(INDEX_MAGIC);
+                output.writeByte(VERSION);
+                output.writeByte(mKey.ordinal());
+                output.writeShort(0);
+                output.writeInt(mIndexed + tail.length);
+                output.writeInt(mCreation);
+
+                int indexed = 0;
+                int pending = 0;
+                while (indexed < mIndexed || pending < tail.length)
+                    if (pending == tail.length
+                            || indexed < mIndexed && getEntry(indexed) < tail[pending])
+                        output.writeLong(getEntry(indexed++));
+                    else
+                        output.writeLong(tail[pending++]);
+            } finally {
+
+                output.close();
+            }
+
+            if (!temporary.renameTo(mIndexFile))
+                throw new IOException("Could not replace " + mIndexFile);
+            map();
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package cat.santi.ttfe.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Listener;
+import cat.santi.ttfe.Engine.Snapshot;
+import cat.santi.ttfe.Engine.State;
+import cat.santi.ttfe.ForwardingListener;
+
+/**
+ * Write-ahead journal of the turns played on an {@link Engine}, appended after the last
+ * snapshot saved by a {@link Storage}.
+ * <p/>
+ * The playing thread only queues every turn on memory, as it's notified to this
+ * {@link Listener}. A background thread writes all the queued turns at once (a <i>group
+ * commit</i>), and syncs them to the storage device every few turns or milliseconds. Every few
+ * turns, and at the start of every game, a new snapshot is saved and the journal starts over,
+ * so it never grows too much.
+ * <p/>
+ * The journal is laid out as follows (big endian):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * byte   version ({@link #VERSION})
+ * int    CRC-32 of the snapshot it follows
+ * frame  one per group commit:
+ *        short  turns
+ *        3 byte every turn: direction (2 bits) | tile created (1 bit) | value index (1 bit)
+ *               | square (20 bits)
+ *        int    CRC-32 of the frame
+ * </pre>
+ * <i>Figure - Layout of a journal</i>
+ * <p/>
+ * A torn or corrupt frame ends the journal, so a crash loses only the turns not yet synced.
+ *
+ * @see Storage#openJournal(Engine)
+ * @see Storage#recover(Engine)
+ */
+public class Journal extends ForwardingListener implements Closeable {
+
+    /**
+     * The first 4 bytes of every journal (<i>TTFJ</i>).
+     */
+    public static final int MAGIC = 0x5454464A;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The size of the journal header.
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 4;
+    /**
+     * Default amount of turns between snapshots.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+    /**
+     * Default amount of written turns that forces a sync.
+     */
+    public static final int DEFAULT_SYNC_BATCH = 16;
+    /**
+     * Default time a written turn waits to be synced, in milliseconds.
+     */
+    public static final long DEFAULT_SYNC_DELAY_MILLIS = 200;
+    /**
+     * The greatest amount of squares a journaled board can have. Games on bigger boards are only
+     * saved on snapshots.
+     */
+    public static final int MAX_SQUARES = 1 << 20;
+
+    /**
+     * The bytes taken by every turn.
+     */
+    private static final int TURN_SIZE = 3;
+    /**
+     * The greatest amount of turns of a frame.
+     */
+    private static final int MAX_FRAME_TURNS = 0xFFFF;
+    /**
+     * Flag of a turn that created a <i>tile</i>.
+     */
+    private static final int FLAG_TILE = 1 << 21;
+    private static final int DIRECTION_SHIFT = 22;
+    private static final int VALUE_SHIFT = 20;
+    private static final int SQUARE_MASK = MAX_SQUARES - 1;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Storage mStorage;
+    private final int mSnapshotInterval;
+    private final int mSyncBatch;
+    private final long mSyncDelayMillis;
+    private final Thread mThread;
+
+    // Playing thread only
+
+    private Engine mEngine = null;
+    private final Snapshot mSnapshot = new Snapshot();
+    private final CRC32 mSnapshotCRC = new CRC32();
+    /**
+     * The last snapshot taken, grown only when a bigger one is taken.
+     */
+    private byte[] mSnapshotData = new byte[64];
+    /**
+     * The direction of the turn being played, or <code>null</code> if none.
+     */
+    private Direction mDirection = null;
+    /**
+     * The <i>tile</i> created by the turn being played, without it's direction.
+     */
+    private int mTile = 0;
+    /**
+     * Flag indicating a new game is being prepared.
+     */
+    private boolean mPreparing = false;
+    /**
+     * Flag indicating the turns of the current game fit on the journal.
+     */
+    private boolean mEnabled = false;
+    private int mTurnsSinceSnapshot = 0;
+
+    // Shared, guarded by this
+
+    private int[] mPending = new int[256];
+    private int mPendingCount = 0;
+    /**
+     * The snapshot to save before the {@link #mPending} turns, copied from
+     * {@link #mSnapshotData} as the playing thread reuses that one.
+     */
+    private byte[] mPendingSnapshot = new byte[64];
+    /**
+     * The size of the {@link #mPendingSnapshot}, or 0 if none.
+     */
+    private int mPendingSnapshotSize = 0;
+    /**
+     * The amount of changes (turns and snapshots) ever queued.
+     */
+    private long mQueued = 0;
+    /**
+     * The amount of changes ever synced to the storage device.
+     */
+    private long mSynced = 0;
+    private boolean mFlushRequested = false;
+    private boolean mClosed = false;
+    private volatile IOException mError = null;
+
+    // Writing thread only
+
+    private RandomAccessFile mFile = null;
+    private int[] mTurns = new int[256];
+    private byte[] mFrame = new byte[2 + 256 * TURN_SIZE + 4];
+    /**
+     * The snapshot being saved, swapped with the {@link #mPendingSnapshot}.
+     */
+    private byte[] mWrittenSnapshot = new byte[64];
+    private final byte[] mHeader = new byte[HEADER_SIZE];
+    private final CRC32 mCRC = new CRC32();
+    /**
+     * Flag indicating the journal follows a saved snapshot, so turns can be appended.
+     */
+    private boolean mBased = false;
+    private int mUnsynced = 0;
+    private long mUnsyncedSince = 0;
+
+    /**
+     * Constructor for {@link Journal}. Use {@link Storage#openJournal(Engine, int, int, long)}
+     * instead.
+     *
+     * @param storage          The {@link Storage} keeping the snapshots.
+     * @param snapshotInterval The amount of turns between snapshots.
+     * @param syncBatch        The amount of written turns that forces a sync, or 0 to never
+     *                         sync by count.
+     * @param syncDelayMillis  The time a written turn waits to be synced, or 0 to never sync by
+     *                         time.
+     */
+    Journal(Storage storage, int snapshotInterval, int syncBatch, long syncDelayMillis) {
+
+        super(null);
+        if (snapshotInterval < 1)
+            throw new IllegalArgumentException("Invalid snapshot interval: " + snapshotInterval);
+
+        mStorage = storage;
+        mSnapshotInterval = snapshotInterval;
+        mSyncBatch = Math.max(0, syncBatch);
+        mSyncDelayMillis = Math.max(0, syncDelayMillis);
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                write();
+            }
+        }, "journal");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Start journaling the given <i>engine</i>, by settling this journal as it's
+     * {@link Listener}. The {@link Listener} it had is kept as the delegate.
+     * <p/>
+     * If the <i>engine</i> has a game, a snapshot of it is saved first.
+     *
+     * @param engine The {@link Engine} to journal.
+     */
+    void attach(Engine engine) {
+
+        setDelegate(engine.getListener());
+        mEngine = engine;
+        engine.setListener(this);
+
+        final State state = engine.getState();
+        if (state == State.IDLE || state == State.VICTORY || state == State.DEFEAT)
+            snapshot();
+    }
+
+    /**
+     * Wait until every turn played so far is synced to the storage device.
+     *
+     * @throws IOException If the journal could not be written.
+     */
+    public void flush() throws IOException {
+
+        synchronized (this) {
+
+            final long target = mQueued;
+            mFlushRequested = true;
+            notifyAll();
+            try {
+
+                while (mSynced < target && mError == null && mThread.isAlive())
+                    wait();
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing the journal");
+            }
+        }
+        if (mError != null)
+            throw mError;
+    }
+
+    /**
+     * Sync every pending turn, stop the writing thread and give the {@link Engine} back it's
+     * previous {@link Listener}.
+     *
+     * @throws IOException If the journal could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (mEngine != null && mEngine.getListener() == this)
+            mEngine.setListener(getDelegate());
+
+        synchronized (this) {
+
+            mClosed = true;
+            notifyAll();
+        }
+        try {
+
+            mThread.join();
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the journal");
+        }
+        if (mError != null)
+            throw mError;
+    }
+
+    @Override
+    public void onStateChange(State state) {
+
+        switch (state) {
+
+            case PREPARING:
+                mPreparing = true;
+                mDirection = null;
+                break;
+            case PLAYING_DOWN:
+                startTurn(Direction.DOWN);
+                break;
+            case PLAYING_LEFT:
+                startTurn(Direction.LEFT);
+                break;
+            case PLAYING_RIGHT:
+                startTurn(Direction.RIGHT);
+                break;
+            case PLAYING_UP:
+                startTurn(Direction.UP);
+                break;
+            case IDLE:
+            case VICTORY:
+            case DEFEAT:
+                if (mDirection != null) {
+
+                    // A turn was played
+                    if (mEnabled)
+                        queue(mDirection.ordinal() << DIRECTION_SHIFT | mTile);
+                    mDirection = null;
+                    if (++mTurnsSinceSnapshot >= mSnapshotInterval)
+                        snapshot();
+                } else if (mPreparing) {
+
+                    // A new game started, so the journal does too
+                    mPreparing = false;
+                    snapshot();
+                }
+                break;
+        }
+
+        super.onStateChange(state);
+    }
+
+    @Override
+    public void onTileCreated(int row, int column, int value) {
+
+        if (mDirection != null && mEngine != null) {
+
+            final int index = value == Engine.DEFAULT_ALLOWED_VALUES[0] ? 0 : 1;
+            mTile = FLAG_TILE | index << VALUE_SHIFT
+                    | (row * mEngine.getBoardColumns() + column) & SQUARE_MASK;
+        }
+
+        super.onTileCreated(row, column, value);
+    }
+
+    @Override
+    public void onDisallowedMove() {
+
+        // Nothing changed, so there is no turn to journal
+        mDirection = null;
+
+        super.onDisallowedMove();
+    }
+
+    /**
+     * Replay the journal <i>file</i> onto the <i>engine</i>, just restored from the snapshot
+     * with the given CRC.
+     *
+     * @param file        The journal file.
+     * @param snapshotCRC The CRC-32 of the restored snapshot.
+     * @param engine      The {@link Engine} to replay the turns on.
+     * @return The amount of replayed turns. 0 if the journal is missing, or does not follow the
+     * snapshot.
+     * @throws IOException If the journal could not be read, or it's turns don't fit the game.
+     */
+    static int replay(File file, int snapshotCRC, Engine engine) throws IOException {
+
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return 0;
+
+        final byte[] data = Storage.readFully(file, null);
+        final int length = (int) file.length();
+        if (Storage.getInt(data, 0) != MAGIC || data[4] != VERSION
+                || Storage.getInt(data, 5) != snapshotCRC)
+            return 0;
+
+        // Listen to the created tiles only, to check them
+        final Listener listener = engine.getListener();
+        final TileCheck check = new TileCheck(engine.getBoardColumns());
+        engine.setListener(check);
+        try {
+
+            final CRC32 crc = new CRC32();
+            int result = 0;
+            int position = HEADER_SIZE;
+            while (position + 2 <= length) {
+
+                // Stop on a torn or corrupt frame, as it was being written on a crash
+                final int turns = (data[position] & 0xFF) << 8 | data[position + 1] & 0xFF;
+                final int end = position + 2 + turns * TURN_SIZE;
+                if (turns == 0 || end + 4 > length)
+                    break;
+                crc.reset();
+                crc.update(data, position, end - position);
+                if (Storage.getInt(data, end) != (int) crc.getValue())
+                    break;
+
+                for (position += 2; position < end; position += TURN_SIZE) {
+
+                    final int turn = (data[position] & 0xFF) << 16
+                            | (data[position + 1] & 0xFF) << 8 | data[position + 2] & 0xFF;
+                    replay(engine, turn, check, result);
+                    result++;
+                }
+                position = end + 4;
+            }
+            return result;
+        } finally {
+
+            engine.setListener(listener);
+        }
+    }
+
+    /**
+     * Replay a single turn onto the <i>engine</i>.
+     */
+    private static void replay(Engine engine, int turn, TileCheck check, int index)
+            throws IOException {
+
+        if (engine.getState() != State.IDLE)
+            throw new IOException("Corrupt journal: turn " + index + " after the game end");
+
+        final Direction direction = DIRECTIONS[turn >>> DIRECTION_SHIFT];
+        final boolean moved;
+        check.square = -1;
+        if ((turn & FLAG_TILE) != 0) {
+
+            final int square = turn & SQUARE_MASK;
+            final int value = Engine.DEFAULT_ALLOWED_VALUES[(turn >>> VALUE_SHIFT) & 1];
+            if (square >= engine.getBoardSize())
+                throw new IOException("Corrupt journal: bad square on turn " + index);
+            moved = engine.play(direction, square, value);
+            if (moved && (check.square != square || check.value != value))
+                throw new IOException("Corrupt journal: tile mismatch on turn " + index);
+        } else {
+
+            moved = engine.play(direction, false);
+            if (moved && check.square >= 0)
+                throw new IOException("Corrupt journal: tile mismatch on turn " + index);
+        }
+        if (!moved)
+            throw new IOException("Corrupt journal: turn " + index + " does not move");
+    }
+
+    private void startTurn(Direction direction) {
+
+        mDirection = direction;
+        mTile = 0;
+    }
+
+    /**
+     * Queue a turn for the writing thread.
+     */
+    private synchronized void queue(int turn) {
+
+        if (mPendingCount == mPending.length) {
+
+            final int[] pending = new int[mPending.length * 2];
+            System.arraycopy(mPending, 0, pending, 0, mPendingCount);
+            mPending = pending;
+        }
+        mPending[mPendingCount++] = turn;
+        mQueued++;
+        notifyAll();
+    }
+
+    /**
+     * Queue a snapshot of the current game for the writing thread. It replaces any turn not yet
+     * written, as it already holds them.
+     */
+    private void snapshot() {
+
+        mTurnsSinceSnapshot = 0;
+        mEngine.readSnapshot(mSnapshot);
+        // Bigger boards are only saved on snapshots
+        mEnabled = mSnapshot.getRows() * mSnapshot.getColumns() <= MAX_SQUARES;
+        final int size = Storage.getSize(mSnapshot);
+        if (mSnapshotData.length < size)
+            mSnapshotData = new byte[size];
+        Storage.write(mSnapshot, mSnapshotData, 0, mSnapshotCRC);
+
+        synchronized (this) {
+
+            if (mPendingSnapshot.length < size)
+                mPendingSnapshot = new byte[size];
+            System.arraycopy(mSnapshotData, 0, mPendingSnapshot, 0, size);
+            mPendingSnapshotSize = size;
+            mPendingCount = 0;
+            mQueued++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Loop of the writing thread: take everything queued, write it at once, and sync it when
+     * due.
+     */
+    private void write() {
+
+        try {
+
+            mFile = new RandomAccessFile(mStorage.getJournalFile(), "rw");
+            while (true) {
+
+                final int snapshot;
+                final int count;
+                final long queued;
+                final boolean flush;
+                final boolean closed;
+                synchronized (this) {
+
+                    while (mPendingCount == 0 && mPendingSnapshotSize == 0 && !mClosed
+                            && !mFlushRequested && !isSyncDue()) {
+
+                        if (mUnsynced > 0 && mSyncDelayMillis > 0)
+                            wait(Math.max(1, mUnsyncedSince + mSyncDelayMillis
+                                    - System.currentTimeMillis()));
+                        else
+                            wait();
+                    }
+
+                    // Swap the queued turns with the ones just written
+                    final int[] turns = mTurns;
+                    mTurns = mPending;
+                    mPending = turns;
+                    count = mPendingCount;
+                    mPendingCount = 0;
+                    snapshot = mPendingSnapshotSize;
+                    mPendingSnapshotSize = 0;
+                    if (snapshot > 0) {
+
+                        // Swap the queued snapshot with the one just saved
+                        final byte[] data = mWrittenSnapshot;
+                        mWrittenSnapshot = mPendingSnapshot;
+                        mPendingSnapshot = data;
+                    }
+                    queued = mQueued;
+                    flush = mFlushRequested;
+                    mFlushRequested = false;
+                    closed = mClosed;
+                }
+
+                if (snapshot > 0)
+                    writeSnapshot(mWrittenSnapshot, snapshot);
+                if (count > 0 && mBased)
+                    writeTurns(mTurns, count);
+
+                if (flush || closed || isSyncDue()) {
+
+                    mFile.getFD().sync();
+                    mUnsynced = 0;
+                    synchronized (this) {
+
+                        mSynced = queued;
+                        notifyAll();
+                    }
+                }
+                if (closed)
+                    break;
+            }
+        } catch (IOException e) {
+
+            mError = e;
+        } catch (InterruptedException e) {
+
+            mError = new IOException("Journal interrupted");
+        } finally {
+
+            try {
+
+                if (mFile != null)
+                    mFile.close();
+            } catch (IOException e) {
+
+                if (mError == null)
+                    mError = e;
+            }
+            synchronized (this) {
+
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Find out whether the written turns must be synced already.
+     */
+    private boolean isSyncDue() {
+
+        return mUnsynced > 0 && ((mSyncBatch > 0 && mUnsynced >= mSyncBatch)
+                || (mSyncDelayMillis > 0
+                && System.currentTimeMillis() - mUnsyncedSince >= mSyncDelayMillis));
+    }
+
+    /**
+     * Save a new snapshot, and start the journal over after it.
+     */
+    private void writeSnapshot(byte[] snapshot, int size) throws IOException {
+
+        // Sync the turns before the snapshot replaces them
+        if (mUnsynced > 0)
+            mFile.getFD().sync();
+        mStorage.commit(snapshot, size);
+
+        Storage.putInt(mHeader, 0, MAGIC);
+        mHeader[4] = (byte) VERSION;
+        System.arraycopy(snapshot, size - 4, mHeader, 5, 4);
+        mFile.setLength(0);
+        mFile.seek(0);
+        mFile.write(mHeader);
+        mBased = true;
+        mUnsynced = 0;
+    }
+
+    /**
+     * Append the given turns, in frames.
+     */
+    private void writeTurns(int[] turns, int count) throws IOException {
+
+        for (int offset = 0; offset < count; offset += MAX_FRAME_TURNS) {
+
+            final int frameTurns = Math.min(MAX_FRAME_TURNS, count - offset);
+            final int size = 2 + frameTurns * TURN_SIZE + 4;
+            if (mFrame.length < size)
+                mFrame = new byte[size];
+
+            mFrame[0] = (byte) (frameTurns >>> 8);
+            mFrame[1] = (byte) frameTurns;
+            int position = 2;
+            for (int index = offset; index < offset + frameTurns; index++) {
+
+                final int turn = turns[index];
+                mFrame[position++] = (byte) (turn >>> 16);
+                mFrame[position++] = (byte) (turn >>> 8);
+                mFrame[position++] = (byte) turn;
+            }
+            mCRC.reset();
+            mCRC.update(mFrame, 0, position);
+            Storage.putInt(mFrame, position, (int) mCRC.getValue());
+            mFile.write(mFrame, 0, size);
+        }
+
+        if (mUnsynced == 0)
+            mUnsyncedSince = System.currentTimeMillis();
+        mUnsynced += count;
+    }
+
+    /**
+     * {@link Listener} keeping the last created <i>tile</i>, to check replayed turns.
+     */
+    private static class TileCheck extends ForwardingListener {
+
+        private final int mColumns;
+        int square = -1;
+        int value;
+
+        TileCheck(int columns) {
+
+            super(null);
+            mColumns = columns;
+        }
+
+        @Override
+        public void onTileCreated(int row, int column, int value) {
+
+            this.square = row * mColumns + column;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,663 @@
+package cat.santi.ttfe.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Listener;
+import cat.santi.ttfe.ForwardingListener;
+
+/**
+ * Local leaderboard: the best finished games, ranked by score and by greatest <i>tile</i>.
+ * <p/>
+ * Every {@link Order} keeps it's best games on memory, as a binary min-heap of primitive arrays
+ * with the worst ranked game on top, so a finished game is ranked in <code>O(log K)</code> and
+ * most of them are discarded with a single comparison. Reading a ranking copies it's
+ * <code>K</code> games and sorts them.
+ * <p/>
+ * The rankings are backed by a file of fixed size records, updated in place: a game entering a
+ * ranking overwrites the slot of the game it evicts, so a finished game costs at most two record
+ * writes and a counter update, whatever the amount of games already played. The file is laid out
+ * as follows (big endian):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * byte   version ({@link #VERSION})
+ * byte   reserved
+ * short  record size ({@link #RECORD_SIZE})
+ * int    capacity (K)
+ * long   finished games
+ * record K slots ranked by score, then K slots ranked by greatest tile:
+ *        int    score
+ *        int    turns
+ *        long   game number
+ *        long   seed
+ *        long   finish time, in milliseconds since the epoch
+ *        byte   exponent of the greatest tile
+ *        byte   flags ({@link #FLAG_USED}, {@link #FLAG_VICTORY})
+ *        short  reserved
+ *        int    CRC-32 of the previous bytes
+ * </pre>
+ * <i>Figure - Layout of a leaderboard file</i>
+ * <p/>
+ * A record with a bad CRC (i.e. torn by a crash) is dropped when the file is opened.
+ * <p/>
+ * A {@link Leaderboard} is not thread safe.
+ */
+public class Leaderboard extends ForwardingListener implements Closeable {
+
+    /**
+     * The first 4 bytes of every leaderboard file (<i>TTFB</i>).
+     */
+    public static final int MAGIC = 0x54544642;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The size of the file header.
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 1 + 2 + 4 + 8;
+    /**
+     * The size of every record.
+     */
+    public static final int RECORD_SIZE = 4 + 4 + 8 + 8 + 8 + 1 + 1 + 2 + 4;
+    /**
+     * Record flag set when the slot holds a game.
+     */
+    public static final int FLAG_USED = 1;
+    /**
+     * Record flag set when the game was won.
+     */
+    public static final int FLAG_VICTORY = 1 << 1;
+    /**
+     * Default amount of games on every ranking.
+     */
+    public static final int DEFAULT_CAPACITY = 100;
+
+    /**
+     * Position of the finished games counter on the file.
+     */
+    private static final int GAMES_OFFSET = 4 + 1 + 1 + 2 + 4;
+
+    /**
+     * The orders the games are ranked by.
+     */
+    public enum Order {
+
+        /**
+         * The final score, ties broken by the earliest game.
+         */
+        SCORE,
+        /**
+         * The greatest <i>tile</i>, ties broken by the final score, and then by the earliest
+         * game.
+         */
+        MAX_TILE
+    }
+
+    private final RandomAccessFile mFile;
+    private final int mCapacity;
+    private final Ranking[] mRankings;
+    private final byte[] mRecord = new byte[RECORD_SIZE];
+    private final CRC32 mCRC = new CRC32();
+    private long mGames;
+    private Engine mEngine = null;
+    private IOException mError = null;
+
+    /**
+     * Constructor for {@link Leaderboard}, with the {@link #DEFAULT_CAPACITY}.
+     *
+     * @param file The backing file. Created if missing.
+     * @throws IOException If the file could not be read or created, or is not valid.
+     */
+    public Leaderboard(File file) throws IOException {
+
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for {@link Leaderboard}.
+     *
+     * @param file     The backing file. Created if missing.
+     * @param capacity The amount of games on every ranking (K). Ignored if the file already
+     *                 exists, as it's own capacity is used.
+     * @throws IOException If the file could not be read or created, or is not valid.
+     */
+    public Leaderboard(File file, int capacity) throws IOException {
+
+        super(null);
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        mFile = new RandomAccessFile(file, "rw");
+        try {
+
+            if (mFile.length() == 0) {
+
+                // A new file, with every slot void
+                mCapacity = capacity;
+                final byte[] header = new byte[HEADER_SIZE];
+                Storage.putInt(header, 0, MAGIC);
+                header[4] = (byte) VERSION;
+                header[6] = (byte) (RECORD_SIZE >>> 8);
+                header[7] = (byte) RECORD_SIZE;
+                Storage.putInt(header, 8, capacity);
+                mFile.write(header);
+                mFile.setLength(HEADER_SIZE + 2L * capacity * RECORD_SIZE);
+            } else {
+
+                final byte[] header = new byte[HEADER_SIZE];
+                mFile.readFully(header);
+                if (Storage.getInt(header, 0) != MAGIC)
+                    throw new IOException("Not a leaderboard: " + file);
+                if (header[4] != VERSION)
+                    throw new IOException("Unsupported leaderboard version: " + header[4]);
+                mCapacity = Storage.getInt(header, 8);
+                if (((header[6] & 0xFF) << 8 | header[7] & 0xFF) != RECORD_SIZE
+                        || mCapacity < 1
+                        || mFile.length() < HEADER_SIZE + 2L * mCapacity * RECORD_SIZE)
+                    throw new IOException("Corrupt leaderboard: " + file);
+                mGames = (long) Storage.getInt(header, GAMES_OFFSET) << 32
+                        | Storage.getInt(header, GAMES_OFFSET + 4) & 0xFFFFFFFFL;
+            }
+
+            mRankings = new Ranking[Order.values().length];
+            for (Order order : Order.values()) {
+
+                mRankings[order.ordinal()] = new Ranking(order, mCapacity);
+                load(mRankings[order.ordinal()]);
+            }
+        } catch (IOException e) {
+
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rank every game finished on the given <i>engine</i>, by settling this leaderboard as it's
+     * {@link Listener}. The {@link Listener} it had is kept as the delegate.
+     *
+     * @param engine The {@link Engine} to listen to.
+     */
+    public void attach(Engine engine) {
+
+        setDelegate(engine.getListener());
+        mEngine = engine;
+        engine.setListener(this);
+    }
+
+    /**
+     * Rank a finished game.
+     *
+     * @param score   The final score.
+     * @param maxTile The greatest <i>tile</i> value.
+     * @param turns   The amount of turns played.
+     * @param victory Whether the game was won or not.
+     * @param seed    The seed of the game.
+     * @return <code>true</code> if the game entered any ranking.
+     * @throws IOException If the file could not be updated.
+     */
+    public boolean add(int score, int maxTile, int turns, boolean victory, long seed)
+            throws IOException {
+
+        final long game = mGames++;
+        final int exponent = maxTile <= 0 ? 0 : 31 - Integer.numberOfLeadingZeros(maxTile);
+        final long time = System.currentTimeMillis();
+
+        boolean result = false;
+        for (Ranking ranking : mRankings) {
+
+            final int slot = ranking.offer(score, exponent, game);
+            if (slot < 0)
+                continue;
+
+            ranking.settle(slot, score, turns, game, seed, time, exponent,
+                    FLAG_USED | (victory ? FLAG_VICTORY : 0));
+            writeRecord(ranking, slot);
+            result = true;
+        }
+
+        // Update the counter in place too
+        final byte[] counter = mRecord;
+        Storage.putInt(counter, 0, (int) (mGames >>> 32));
+        Storage.putInt(counter, 4, (int) mGames);
+        mFile.seek(GAMES_OFFSET);
+        mFile.write(counter, 0, 8);
+        return result;
+    }
+
+    /**
+     * Get the best games on the given <i>order</i>.
+     *
+     * @param order The {@link Order} to rank by.
+     * @return The ranked games, best first. At most {@link #getCapacity()} of them.
+     */
+    public Entry[] getTop(final Order order) {
+
+        final Ranking ranking = mRankings[order.ordinal()];
+        final Entry[] result = new Entry[ranking.size];
+        for (int index = 0; index < ranking.size; index++)
+            result[index] = ranking.entry(ranking.heap[index]);
+
+        // Sort by rank: the heap only knows the worst one
+        Arrays.sort(result, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+
+                return -Ranking.compare(order, lhs.score, lhs.exponent, lhs.game,
+                        rhs.score, rhs.exponent, rhs.game);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get the amount of games on the given <i>order</i>.
+     *
+     * @param order The {@link Order} to rank by.
+     * @return The ranked games, up to {@link #getCapacity()}.
+     */
+    public int getSize(Order order) {
+
+        return mRankings[order.ordinal()].size;
+    }
+
+    /**
+     * Get the amount of games kept on every ranking.
+     *
+     * @return The capacity (K).
+     */
+    public int getCapacity() {
+
+        return mCapacity;
+    }
+
+    /**
+     * Get the amount of games ever finished, ranked or not.
+     *
+     * @return The finished games.
+     */
+    public long getGames() {
+
+        return mGames;
+    }
+
+    /**
+     * Sync the file to the storage device.
+     *
+     * @throws IOException If the file could not be synced, or any previous game could not be
+     *                     ranked.
+     */
+    public void sync() throws IOException {
+
+        if (mError != null)
+            throw mError;
+        mFile.getFD().sync();
+    }
+
+    /**
+     * Give the {@link Engine} back it's previous {@link Listener} (if attached), and close the
+     * file.
+     *
+     * @throws IOException If the file could not be closed, or any previous game could not be
+     *                     ranked.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (mEngine != null && mEngine.getListener() == this)
+            mEngine.setListener(getDelegate());
+        mFile.close();
+        if (mError != null)
+            throw mError;
+    }
+
+    @Override
+    public void onGameFinished(boolean victory, int turns, int score) {
+
+        if (mEngine != null && mError == null) {
+
+            try {
+
+                add(score, mEngine.getGreatestTile(), turns, victory, mEngine.getSeed());
+            } catch (IOException e) {
+
+                mError = e;
+            }
+        }
+
+        super.onGameFinished(victory, turns, score);
+    }
+
+    /**
+     * Read all the slots of the given <i>ranking</i>, and build it's heap.
+     */
+    private void load(Ranking ranking) throws IOException {
+
+        final byte[] data = new byte[mCapacity * RECORD_SIZE];
+        mFile.seek(position(ranking, 0));
+        mFile.readFully(data);
+
+        for (int slot = 0; slot < mCapacity; slot++) {
+
+            final int offset = slot * RECORD_SIZE;
+            mCRC.reset();
+            mCRC.update(data, offset, RECORD_SIZE - 4);
+            final int flags = data[offset + 33];
+            if ((flags & FLAG_USED) == 0
+                    || Storage.getInt(data, offset + RECORD_SIZE - 4) != (int) mCRC.getValue())
+                continue;
+
+            ranking.settle(slot, Storage.getInt(data, offset),
+                    Storage.getInt(data, offset + 4), getLong(data, offset + 8),
+                    getLong(data, offset + 16), getLong(data, offset + 24), data[offset + 32],
+                    flags);
+            ranking.push(slot);
+        }
+        ranking.free();
+    }
+
+    /**
+     * Write the given <i>slot</i> of the <i>ranking</i> in place.
+     */
+    private void writeRecord(Ranking ranking, int slot) throws IOException {
+
+        final byte[] record = mRecord;
+        Storage.putInt(record, 0, ranking.scores[slot]);
+        Storage.putInt(record, 4, ranking.turns[slot]);
+        putLong(record, 8, ranking.games[slot]);
+        putLong(record, 16, ranking.seeds[slot]);
+        putLong(record, 24, ranking.times[slot]);
+        record[32] = ranking.exponents[slot];
+        record[33] = ranking.flags[slot];
+        record[34] = 0;
+        record[35] = 0;
+        mCRC.reset();
+        mCRC.update(record, 0, RECORD_SIZE - 4);
+        Storage.putInt(record, RECORD_SIZE - 4, (int) mCRC.getValue());
+
+        mFile.seek(position(ranking, slot));
+        mFile.write(record);
+    }
+
+    private long position(Ranking ranking, int slot) {
+
+        return HEADER_SIZE + ((long) ranking.order.ordinal() * mCapacity + slot) * RECORD_SIZE;
+    }
+
+    private static void putLong(byte[] buffer, int position, long value) {
+
+        Storage.putInt(buffer, position, (int) (value >>> 32));
+        Storage.putInt(buffer, position + 4, (int) value);
+    }
+
+    private static long getLong(byte[] buffer, int position) {
+
+        return (long) Storage.getInt(buffer, position) << 32
+                | Storage.getInt(buffer, position + 4) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * A ranked game.
+     */
+    public static class Entry {
+
+        final int score;
+        final int turns;
+        final long game;
+        final long seed;
+        final long time;
+        final int exponent;
+        final boolean victory;
+
+        Entry(int score, int turns, long game, long seed, long time, int exponent,
+              boolean victory) {
+
+            this.score = score;
+            this.turns = turns;
+            this.game = game;
+            this.seed = seed;
+            this.time = time;
+            this.exponent = exponent;
+            this.victory = victory;
+        }
+
+        /**
+         * Get the final score.
+         *
+         * @return The score.
+         */
+        public int getScore() {
+
+            return score;
+        }
+
+        /**
+         * Get the greatest <i>tile</i> value.
+         *
+         * @return The greatest value, or {@link Engine#VOID_VALUE} if none.
+         */
+        public int getMaxTile() {
+
+            return exponent == 0 ? Engine.VOID_VALUE : 1 << exponent;
+        }
+
+        /**
+         * Get the amount of turns played.
+         *
+         * @return The turns.
+         */
+        public int getTurns() {
+
+            return turns;
+        }
+
+        /**
+         * Get the number of the game, counting every finished game from 0.
+         *
+         * @return The game number.
+         */
+        public long getGame() {
+
+            return game;
+        }
+
+        /**
+         * Get the seed of the game, to replay it.
+         *
+         * @return The seed.
+         */
+        public long getSeed() {
+
+            return seed;
+        }
+
+        /**
+         * Get the time the game finished.
+         *
+         * @return The finish time, in milliseconds since the epoch.
+         */
+        public long getTime() {
+
+            return time;
+        }
+
+        /**
+         * Get whether the game was won or not.
+         *
+         * @return <code>true</code> for a won game.
+         */
+        public boolean isVictory() {
+
+            return victory;
+        }
+    }
+
+    /**
+     * The best games on an {@link Order}: a slot per game on primitive arrays, and a min-heap
+     * of slots with the worst ranked game on top.
+     */
+    private static class Ranking {
+
+        final Order order;
+        final int[] scores;
+        final int[] turns;
+        final long[] games;
+        final long[] seeds;
+        final long[] times;
+        final byte[] exponents;
+        final byte[] flags;
+        final int[] heap;
+        final int[] voids;
+        int size = 0;
+        int voidCount = 0;
+
+        Ranking(Order order, int capacity) {
+
+            this.order = order;
+            scores = new int[capacity];
+            turns = new int[capacity];
+            games = new long[capacity];
+            seeds = new long[capacity];
+            times = new long[capacity];
+            exponents = new byte[capacity];
+            flags = new byte[capacity];
+            heap = new int[capacity];
+            voids = new int[capacity];
+        }
+
+        /**
+         * Compare two games by the given <i>order</i>.
+         *
+         * @return A positive number if the first game is better, negative if worse.
+         */
+        static int compare(Order order, int score1, int exponent1, long game1,
+                           int score2, int exponent2, long game2) {
+
+            if (order == Order.MAX_TILE && exponent1 != exponent2)
+                return exponent1 < exponent2 ? -1 : 1;
+            if (score1 != score2)
+                return score1 < score2 ? -1 : 1;
+            return game1 == game2 ? 0 : game1 < game2 ? 1 : -1;
+        }
+
+        /**
+         * Find the slot for a new game.
+         *
+         * @return A void slot, the slot of the evicted worst game, or <code>-1</code> if the
+         * game does not enter the ranking.
+         */
+        int offer(int score, int exponent, long game) {
+
+            if (voidCount > 0) {
+
+                // Still room, so take a void slot
+                final int slot = voids[--voidCount];
+                scores[slot] = score;
+                exponents[slot] = (byte) exponent;
+                games[slot] = game;
+                push(slot);
+                return slot;
+            }
+
+            final int worst = heap[0];
+            if (compare(order, score, exponent, game,
+                    scores[worst], exponents[worst], games[worst]) <= 0)
+                return -1;
+
+            scores[worst] = score;
+            exponents[worst] = (byte) exponent;
+            games[worst] = game;
+            siftDown(0);
+            return worst;
+        }
+
+        void settle(int slot, int score, int turns, long game, long seed, long time,
+                    int exponent, int flags) {
+
+            this.scores[slot] = score;
+            this.turns[slot] = turns;
+            this.games[slot] = game;
+            this.seeds[slot] = seed;
+            this.times[slot] = time;
+            this.exponents[slot] = (byte) exponent;
+            this.flags[slot] = (byte) flags;
+        }
+
+        /**
+         * Gather the slots not on the heap as void, once it's loaded. The lowest ones are taken
+         * first.
+         */
+        void free() {
+
+            final boolean[] used = new boolean[heap.length];
+            for (int index = 0; index < size; index++)
+                used[heap[index]] = true;
+            voidCount = 0;
+            for (int slot = heap.length - 1; slot >= 0; slot--)
+                if (!used[slot])
+                    voids[voidCount++] = slot;
+        }
+
+        Entry entry(int slot) {
+
+            return new Entry(scores[slot], turns[slot], games[slot], seeds[slot], times[slot],
+                    exponents[slot], (flags[slot] & FLAG_VICTORY) != 0);
+        }
+
+        /**
+         * Add a slot to the heap.
+         */
+        void push(int slot) {
+
+            int index = size++;
+            heap[index] = slot;
+            while (index > 0) {
+
+                final int parent = (index - 1) / 2;
+                if (!worse(heap[index], heap[parent]))
+                    break;
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        /**
+         * Move the heap item at <i>index</i> down, until it's children are better.
+         */
+        private void siftDown(int index) {
+
+            while (true) {
+
+                final int left = index * 2 + 1;
+                if (left >= size)
+                    return;
+                final int right = left + 1;
+                final int child = right < size && worse(heap[right], heap[left]) ? right : left;
+                if (!worse(heap[child], heap[index]))
+                    return;
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        private boolean worse(int slot1, int slot2) {
+
+            return compare(order, scores[slot1], exponents[slot1], games[slot1],
+                    scores[slot2], exponents[slot2], games[slot2]) < 0;
+        }
+
+        private void swap(int index1, int index2) {
+
+            final int slot = heap[index1];
+            heap[index1] = heap[index2];
+            heap[index2] = slot;
+        }
+    }
+}
@@ -1,7 +1,498 @@
 package cat.santi.ttfe.storage;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Listener;
+import cat.santi.ttfe.Engine.Snapshot;
+import cat.santi.ttfe.Engine.State;
+
 /**
- *
+ * Save and resume the whole game of an {@link Engine}, as a compact and versioned binary
+ * {@link Snapshot}.
+ * <p/>
+ * A snapshot is laid out as follows (big endian):
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * byte   version ({@link #VERSION})
+ * byte   flags ({@link #FLAG_BIT_BOARD}, {@link #FLAG_RANDOM})
+ * byte   state (0 idle, 1 victory, 2 defeat)
+ * short  rows
+ * short  columns
+ * int    tile value to win
+ * int    score
+ * int    movements
+ * long   seed
+ * long   random generator state (only with {@link #FLAG_RANDOM})
+ * byte   square, row by row: exponent (5 bits) | tile flags &lt;&lt; 5
+ * int    CRC-32 of all the previous bytes
+ * </pre>
+ * <i>Figure - Layout of a snapshot</i>
+ * <p/>
+ * A 4 x 4 game takes 59 bytes. Both directions are plain array accesses over a reused buffer,
+ * taking a few microseconds: most of the time goes to the file system.
+ * <p/>
+ * Instead of saving a game every turn, a {@link Journal} can append every turn after the last
+ * snapshot, from a background thread ({@link #openJournal(Engine)}). {@link #recover(Engine)}
+ * restores the snapshot and replays the journal.
+ * <p/>
+ * A {@link Storage} is not thread safe.
  */
 public class Storage {
+
+    /**
+     * The first 4 bytes of every snapshot (<i>TTFS</i>).
+     */
+    public static final int MAGIC = 0x54544653;
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Flag set when the game is played by {@link Backend#BIT_BOARD}.
+     */
+    public static final int FLAG_BIT_BOARD = 1;
+    /**
+     * Flag set when the state of the {@link Engine}'s random generator is stored.
+     */
+    public static final int FLAG_RANDOM = 1 << 1;
+    /**
+     * The size of a snapshot without the squares, the random generator state nor the CRC.
+     */
+    public static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 2 + 2 + 4 + 4 + 4 + 8;
+
+    /**
+     * The states a snapshot can hold, indexed by their stored code.
+     */
+    private static final State[] STATES = {State.IDLE, State.VICTORY, State.DEFEAT};
+    /**
+     * The greatest exponent a square can hold.
+     */
+    private static final int MAX_EXPONENT = 30;
+
+    private final File mFile;
+    private final File mTemporary;
+    private final File mJournal;
+    private final Snapshot mSnapshot = new Snapshot();
+    private final CRC32 mCRC = new CRC32();
+    private byte[] mBuffer = new byte[64];
+
+    /**
+     * Constructor for {@link Storage}.
+     *
+     * @param file The file to save the game to. It's replaced atomically, through a temporary
+     *             file next to it.
+     */
+    public Storage(File file) {
+
+        mFile = file;
+        mTemporary = new File(file.getPath() + ".tmp");
+        mJournal = new File(file.getPath() + ".journal");
+    }
+
+    /**
+     * Save the current game of the <i>engine</i>, replacing the previous one and any
+     * {@link Journal} after it.
+     *
+     * @param engine The {@link Engine} to save.
+     * @throws IOException If the file could not be written.
+     */
+    public void save(Engine engine) throws IOException {
+
+        engine.readSnapshot(mSnapshot);
+        final int size = getSize(mSnapshot);
+        if (mBuffer.length < size)
+            mBuffer = new byte[size];
+        write(mSnapshot, mBuffer, 0, mCRC);
+        commit(mBuffer, size);
+    }
+
+    /**
+     * Resume the game saved by {@link #save(Engine)} on the given <i>engine</i>, without
+     * replaying it's {@link Journal}.
+     *
+     * @param engine The {@link Engine} to restore.
+     * @return <code>true</code> if the game was restored, <code>false</code> if there was no
+     * saved game.
+     * @throws IOException If the file could not be read, or is not valid.
+     * @see #recover(Engine)
+     */
+    public boolean load(Engine engine) throws IOException {
+
+        return restoreSnapshot(engine) >= 0;
+    }
+
+    /**
+     * Resume the last saved game on the given <i>engine</i>, and replay the turns of it's
+     * {@link Journal}, if any.
+     *
+     * @param engine The {@link Engine} to restore.
+     * @return The amount of turns replayed from the journal, or <code>-1</code> if there was no
+     * saved game.
+     * @throws IOException If the files could not be read, or are not valid.
+     */
+    public int recover(Engine engine) throws IOException {
+
+        final int size = restoreSnapshot(engine);
+        if (size < 0)
+            return -1;
+
+        return Journal.replay(getJournalFile(), getInt(mBuffer, size - 4), engine);
+    }
+
+    /**
+     * Start journaling every turn played on the given <i>engine</i>, with the
+     * {@link Journal#DEFAULT_SNAPSHOT_INTERVAL}, {@link Journal#DEFAULT_SYNC_BATCH} and
+     * {@link Journal#DEFAULT_SYNC_DELAY_MILLIS}.
+     *
+     * @param engine The {@link Engine} to journal.
+     * @return The {@link Journal}, already settled as the <i>engine</i>'s {@link Listener}.
+     * @see #openJournal(Engine, int, int, long)
+     */
+    public Journal openJournal(Engine engine) {
+
+        return openJournal(engine, Journal.DEFAULT_SNAPSHOT_INTERVAL, Journal.DEFAULT_SYNC_BATCH,
+                Journal.DEFAULT_SYNC_DELAY_MILLIS);
+    }
+
+    /**
+     * Start journaling every turn played on the given <i>engine</i>. A snapshot of the current
+     * game is saved first.
+     * <p/>
+     * The {@link Journal} becomes the <i>engine</i>'s {@link Listener}, passing every event on
+     * to the previous one. It must be closed to stop journaling.
+     *
+     * @param engine           The {@link Engine} to journal.
+     * @param snapshotInterval The amount of turns between snapshots.
+     * @param syncBatch        The amount of written turns that forces a sync, or 0 to never
+     *                         sync by count.
+     * @param syncDelayMillis  The time a written turn waits to be synced, or 0 to never sync by
+     *                         time.
+     * @return The {@link Journal}.
+     */
+    public Journal openJournal(Engine engine, int snapshotInterval, int syncBatch,
+                               long syncDelayMillis) {
+
+        final Journal result = new Journal(this, snapshotInterval, syncBatch, syncDelayMillis);
+        result.attach(engine);
+        return result;
+    }
+
+    /**
+     * Get the file of the {@link Journal}, next to the saved game.
+     *
+     * @return The journal file.
+     */
+    public File getJournalFile() {
+
+        return mJournal;
+    }
+
+    /**
+     * Remove the saved game, if any.
+     *
+     * @return <code>true</code> if there was a saved game.
+     */
+    public boolean delete() {
+
+        mJournal.delete();
+        return mFile.delete();
+    }
+
+    /**
+     * Replace the saved game with the given snapshot. The snapshot is synced to the storage
+     * device before replacing the previous one, so a crash leaves either of them whole.
+     *
+     * @param data   The buffer holding the snapshot.
+     * @param length The size of the snapshot.
+     * @throws IOException If the file could not be written.
+     */
+    void commit(byte[] data, int length) throws IOException {
+
+        final FileOutputStream output = new FileOutputStream(mTemporary);
+        try {
+
+            output.write(data, 0, length);
+            output.getFD().sync();
+        } finally {
+
+            output.close();
+        }
+        if (!mTemporary.renameTo(mFile))
+            throw new IOException("Could not replace " + mFile);
+    }
+
+    /**
+     * Restore the saved snapshot on the given <i>engine</i>. It's kept on {@link #mBuffer}.
+     *
+     * @return The size of the snapshot, or <code>-1</code> if there was no saved game.
+     */
+    private int restoreSnapshot(Engine engine) throws IOException {
+
+        if (!mFile.isFile())
+            return -1;
+
+        mBuffer = readFully(mFile, mBuffer);
+        final int size = (int) mFile.length();
+        read(mBuffer, 0, size, mSnapshot, mCRC);
+        try {
+
+            engine.restore(mSnapshot);
+        } catch (IllegalArgumentException e) {
+
+            throw new IOException("Corrupt snapshot: " + e.getMessage(), e);
+        }
+        return size;
+    }
+
+    /**
+     * Read the whole <i>file</i>.
+     *
+     * @param file   The file to read.
+     * @param buffer The buffer to read to, if big enough. Can be <code>null</code>.
+     * @return The given <i>buffer</i>, or a new one if too small.
+     * @throws IOException If the file could not be read.
+     */
+    static byte[] readFully(File file, byte[] buffer) throws IOException {
+
+        final long length = file.length();
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("File too big: " + file);
+        final int size = (int) length;
+        if (buffer == null || buffer.length < size)
+            buffer = new byte[size];
+
+        final FileInputStream input = new FileInputStream(file);
+        try {
+
+            int read = 0;
+            while (read < size) {
+
+                final int count = input.read(buffer, read, size - read);
+                if (count < 0)
+                    throw new IOException("Truncated file: " + file);
+                read += count;
+            }
+        } finally {
+
+            input.close();
+        }
+        return buffer;
+    }
+
+    /**
+     * Get the amount of bytes taken by the given <i>snapshot</i>.
+     *
+     * @param snapshot The {@link Snapshot} to write.
+     * @return The size of the snapshot, in bytes.
+     */
+    public static int getSize(Snapshot snapshot) {
+
+        return HEADER_SIZE + (snapshot.isRandomSaved() ? 8 : 0)
+                + snapshot.getRows() * snapshot.getColumns() + 4;
+    }
+
+    /**
+     * Write the given <i>snapshot</i> onto the <i>buffer</i>.
+     *
+     * @param snapshot The {@link Snapshot} to write, taken between turns.
+     * @param buffer   The destination buffer, with at least {@link #getSize(Snapshot)} bytes
+     *                 from <i>offset</i>.
+     * @param offset   The position of the first byte to write.
+     * @return The amount of written bytes.
+     * @throws IllegalArgumentException If the game was not yet initialized or is in the middle
+     *                                  of a play, or the buffer is too small.
+     */
+    public static int write(Snapshot snapshot, byte[] buffer, int offset) {
+
+        return write(snapshot, buffer, offset, new CRC32());
+    }
+
+    /**
+     * Write the given <i>snapshot</i> onto the <i>buffer</i>, checksummed by the given
+     * <i>crc</i> so callers writing often can reuse it.
+     *
+     * @see #write(Snapshot, byte[], int)
+     */
+    static int write(Snapshot snapshot, byte[] buffer, int offset, CRC32 crc) {
+
+        final int code = indexOf(snapshot.getState());
+        if (code < 0)
+            throw new IllegalArgumentException("Can't save a game on " + snapshot.getState());
+        final int size = getSize(snapshot);
+        if (buffer.length - offset < size)
+            throw new IllegalArgumentException("Buffer too small: " + size + " bytes needed");
+
+        int position = offset;
+        position = putInt(buffer, position, MAGIC);
+        buffer[position++] = (byte) VERSION;
+        buffer[position++] = (byte) ((snapshot.getBackend() == Backend.BIT_BOARD
+                ? FLAG_BIT_BOARD : 0) | (snapshot.isRandomSaved() ? FLAG_RANDOM : 0));
+        buffer[position++] = (byte) code;
+        position = putShort(buffer, position, snapshot.getRows());
+        position = putShort(buffer, position, snapshot.getColumns());
+        position = putInt(buffer, position, snapshot.getTileValueToWin());
+        position = putInt(buffer, position, snapshot.getScore());
+        position = putInt(buffer, position, snapshot.getMovements());
+        position = putLong(buffer, position, snapshot.getSeed());
+        if (snapshot.isRandomSaved())
+            position = putLong(buffer, position, snapshot.getRandomState());
+
+        // Squares, as their exponent and flags
+        for (int indexR = 0; indexR < snapshot.getRows(); indexR++)
+            for (int indexC = 0; indexC < snapshot.getColumns(); indexC++) {
+
+                final int value = snapshot.getValue(indexR, indexC);
+                final int exponent = value == Engine.VOID_VALUE
+                        ? 0 : Integer.numberOfTrailingZeros(value);
+                buffer[position++] = (byte) (exponent | snapshot.getFlags(indexR, indexC) << 5);
+            }
+
+        putInt(buffer, position, crc(crc, buffer, offset, position - offset));
+        return size;
+    }
+
+    /**
+     * Read a snapshot written by {@link #write(Snapshot, byte[], int)}.
+     *
+     * @param buffer   The source buffer.
+     * @param offset   The position of the first byte to read.
+     * @param length   The amount of bytes of the snapshot.
+     * @param snapshot The {@link Snapshot} to fill, reusing it's buffers. Can be
+     *                 <code>null</code>.
+     * @return The given <i>snapshot</i>, or a new one if <code>null</code>.
+     * @throws IOException If the snapshot is not valid.
+     */
+    public static Snapshot read(byte[] buffer, int offset, int length, Snapshot snapshot)
+            throws IOException {
+
+        return read(buffer, offset, length, snapshot, new CRC32());
+    }
+
+    /**
+     * Read a snapshot, checking it with the given <i>crc</i> so callers reading often can reuse
+     * it.
+     *
+     * @see #read(byte[], int, int, Snapshot)
+     */
+    static Snapshot read(byte[] buffer, int offset, int length, Snapshot snapshot, CRC32 crc)
+            throws IOException {
+
+        if (length < HEADER_SIZE + 4 || buffer.length - offset < length)
+            throw new IOException("Truncated snapshot");
+        if (getInt(buffer, offset) != MAGIC)
+            throw new IOException("Not a snapshot");
+        if (buffer[offset + 4] != VERSION)
+            throw new IOException("Unsupported snapshot version: " + buffer[offset + 4]);
+        if (getInt(buffer, offset + length - 4) != crc(crc, buffer, offset, length - 4))
+            throw new IOException("Corrupt snapshot: bad CRC");
+
+        if (snapshot == null)
+            snapshot = new Snapshot();
+
+        int position = offset + 5;
+        final int flags = buffer[position++];
+        final int code = buffer[position++];
+        final int rows = getShort(buffer, position);
+        final int columns = getShort(buffer, position + 2);
+        position += 4;
+        if (code < 0 || code >= STATES.length)
+            throw new IOException("Corrupt snapshot: bad state " + code);
+        if (length != HEADER_SIZE + ((flags & FLAG_RANDOM) != 0 ? 8 : 0) + rows * columns + 4)
+            throw new IOException("Corrupt snapshot: bad size " + length);
+
+        snapshot.setSize(rows, columns);
+        snapshot.setState(STATES[code]);
+        snapshot.setBackend((flags & FLAG_BIT_BOARD) != 0 ? Backend.BIT_BOARD : Backend.TILES);
+        snapshot.setTileValueToWin(getInt(buffer, position));
+        snapshot.setScore(getInt(buffer, position + 4));
+        snapshot.setMovements(getInt(buffer, position + 8));
+        snapshot.setSeed(getLong(buffer, position + 12));
+        position += 20;
+        if ((flags & FLAG_RANDOM) != 0) {
+
+            snapshot.setRandomState(getLong(buffer, position));
+            position += 8;
+        } else {
+
+            snapshot.clearRandomState();
+        }
+
+        // Squares, as their exponent and flags
+        for (int indexR = 0; indexR < rows; indexR++)
+            for (int indexC = 0; indexC < columns; indexC++) {
+
+                final int square = buffer[position++] & 0xFF;
+                final int exponent = square & 0x1F;
+                if (exponent > MAX_EXPONENT)
+                    throw new IOException("Corrupt snapshot: bad exponent " + exponent);
+                snapshot.setValue(indexR, indexC, exponent == 0
+                        ? Engine.VOID_VALUE : 1 << exponent);
+                snapshot.setFlags(indexR, indexC, (byte) (square >>> 5));
+            }
+        return snapshot;
+    }
+
+    /**
+     * Get the stored code of the given <i>state</i>.
+     *
+     * @return The index on {@link #STATES}, or <code>-1</code> if it can't be stored.
+     */
+    private static int indexOf(State state) {
+
+        for (int index = 0; index < STATES.length; index++)
+            if (STATES[index] == state)
+                return index;
+        return -1;
+    }
+
+    private static int crc(CRC32 crc, byte[] buffer, int offset, int length) {
+
+        crc.reset();
+        crc.update(buffer, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static int putShort(byte[] buffer, int position, int value) {
+
+        buffer[position] = (byte) (value >>> 8);
+        buffer[position + 1] = (byte) value;
+        return position + 2;
+    }
+
+    static int putInt(byte[] buffer, int position, int value) {
+
+        buffer[position] = (byte) (value >>> 24);
+        buffer[position + 1] = (byte) (value >>> 16);
+        buffer[position + 2] = (byte) (value >>> 8);
+        buffer[position + 3] = (byte) value;
+        return position + 4;
+    }
+
+    private static int putLong(byte[] buffer, int position, long value) {
+
+        putInt(buffer, position, (int) (value >>> 32));
+        return putInt(buffer, position + 4, (int) value);
+    }
+
+    private static int getShort(byte[] buffer, int position) {
+
+        return (buffer[position] & 0xFF) << 8 | buffer[position + 1] & 0xFF;
+    }
+
+    static int getInt(byte[] buffer, int position) {
+
+        return buffer[position] << 24 | (buffer[position + 1] & 0xFF) << 16
+                | (buffer[position + 2] & 0xFF) << 8 | buffer[position + 3] & 0xFF;
+    }
+
+    private static long getLong(byte[] buffer, int position) {
+
+        return (long) getInt(buffer, position) << 32 | getInt(buffer, position + 4) & 0xFFFFFFFFL;
+    }
 }
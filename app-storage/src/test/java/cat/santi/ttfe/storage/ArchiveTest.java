@@ -0,0 +1,279 @@
+package cat.santi.ttfe.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import cat.santi.ttfe.storage.Archive.Key;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the queries of an {@link Archive} against scanning every game, with the indexes
+ * missing, complete or behind the appended games, or left by a previous archive, and after
+ * reopening it.
+ */
+public class ArchiveTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final Random mRandom = new Random(3);
+    private final List<Game> mGames = new ArrayList<>();
+    private File mFile;
+
+    @Before
+    public void setUp() {
+
+        mFile = new File(mFolder.getRoot(), "games.tta");
+    }
+
+    @Test
+    public void queriesMatchScanningEveryGame() throws IOException {
+
+        Archive archive = new Archive(mFile);
+        try {
+
+            // Nothing indexed
+            append(archive, 3000);
+            check(archive);
+
+            // Everything indexed
+            archive.index();
+            check(archive);
+
+            // Partly indexed
+            append(archive, 2000);
+            check(archive);
+        } finally {
+
+            archive.close();
+        }
+
+        // The unindexed games are still found after reopening
+        archive = new Archive(mFile);
+        try {
+
+            assertEquals(mGames.size(), archive.getGames());
+            check(archive);
+            archive.index();
+            append(archive, 10);
+            check(archive);
+        } finally {
+
+            archive.close();
+        }
+    }
+
+    @Test
+    public void tornAppendsAreIgnored() throws IOException {
+
+        Archive archive = new Archive(mFile);
+        try {
+
+            append(archive, 500);
+            archive.index();
+            append(archive, 100);
+        } finally {
+
+            archive.close();
+        }
+
+        // Bytes past the counted games, as left by a crash while appending
+        appendGarbage(mFile, Archive.RECORD_SIZE / 2 + 1);
+        appendGarbage(new File(mFile.getPath() + ".data"), 5);
+
+        archive = new Archive(mFile);
+        try {
+
+            assertEquals(mGames.size(), archive.getGames());
+            check(archive);
+            append(archive, 100);
+            check(archive);
+        } finally {
+
+            archive.close();
+        }
+    }
+
+    @Test
+    public void newArchivesDontUseTheOldIndexes() throws IOException {
+
+        Archive archive = new Archive(mFile);
+        try {
+
+            append(archive, 500);
+            archive.index();
+        } finally {
+
+            archive.close();
+        }
+
+        // A new archive on the same file, with more games than the old indexes
+        assertTrue(mFile.delete());
+        assertTrue(new File(mFile.getPath() + ".data").delete());
+        mGames.clear();
+        archive = new Archive(mFile);
+        try {
+
+            append(archive, 2000);
+            check(archive);
+        } finally {
+
+            archive.close();
+        }
+
+        archive = new Archive(mFile);
+        try {
+
+            check(archive);
+            archive.index();
+            check(archive);
+        } finally {
+
+            archive.close();
+        }
+    }
+
+    @Test
+    public void gamesReadBackAsAppended() throws IOException {
+
+        final Archive archive = new Archive(mFile);
+        try {
+
+            append(archive, 1000);
+            archive.flush();
+            for (Game game : mGames) {
+
+                final int number = game.number;
+                assertEquals(game.score, archive.getScore(number));
+                assertEquals(game.maxTile, archive.getMaxTile(number));
+                assertEquals(game.moves, archive.getMoves(number));
+                assertEquals(game.seed, archive.getSeed(number));
+                assertEquals(game.victory, archive.isVictory(number));
+                if (game.log == null)
+                    assertNull(archive.getMoveLog(number));
+                else
+                    assertArrayEquals(game.log, archive.getMoveLog(number));
+            }
+        } finally {
+
+            archive.close();
+        }
+    }
+
+    /**
+     * Append random games, with plenty of ties and some long move logs.
+     */
+    private void append(Archive archive, int games) throws IOException {
+
+        for (int index = 0; index < games; index++) {
+
+            final Game game = new Game();
+            game.number = mGames.size();
+            game.score = mRandom.nextInt(20000);
+            game.maxTile = mRandom.nextInt(20) == 0 ? 0 : 1 << (1 + mRandom.nextInt(12));
+            game.moves = mRandom.nextInt(1500);
+            game.victory = mRandom.nextBoolean();
+            game.seed = mRandom.nextLong();
+            if (mRandom.nextInt(4) != 0) {
+
+                game.log = new byte[1 + mRandom.nextInt(mRandom.nextInt(50) == 0 ? 100000 : 300)];
+                mRandom.nextBytes(game.log);
+            }
+            assertEquals(game.number, archive.append(game.score, game.maxTile, game.moves,
+                    game.victory, game.seed, game.log));
+            mGames.add(game);
+        }
+    }
+
+    /**
+     * Check random range queries and tops on every {@link Key} against scanning every game.
+     */
+    private void check(Archive archive) throws IOException {
+
+        for (final Key key : Key.values()) {
+
+            final List<Game> sorted = new ArrayList<>(mGames);
+            Collections.sort(sorted, new Comparator<Game>() {
+                @Override
+                public int compare(Game lhs, Game rhs) {
+
+                    final int result = Integer.compare(lhs.get(key), rhs.get(key));
+                    return result != 0 ? result : Integer.compare(lhs.number, rhs.number);
+                }
+            });
+
+            for (int query = 0; query < 30; query++) {
+
+                final int min = mRandom.nextInt(key == Key.MAX_TILE ? 5000 : 20000);
+                final int max = min + mRandom.nextInt(query % 3 == 0 ? 5 : 8000);
+                final List<Integer> expected = new ArrayList<>();
+                for (Game game : sorted)
+                    if (game.get(key) >= min && game.get(key) <= max)
+                        expected.add(game.number);
+                assertEquals(expected.size(), archive.count(key, min, max));
+                assertEquals(expected.toString(),
+                        Arrays.toString(archive.find(key, min, max)));
+
+                // The top is the other way round, the latest game first on ties
+                final int limit = mRandom.nextInt(300);
+                final int[] top = archive.top(key, limit);
+                assertEquals(Math.min(limit, mGames.size()), top.length);
+                for (int index = 0; index < top.length; index++)
+                    assertEquals(sorted.get(sorted.size() - 1 - index).number, top[index]);
+            }
+        }
+    }
+
+    private static void appendGarbage(File file, int length) throws IOException {
+
+        final RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+
+            output.seek(output.length());
+            output.write(new byte[length]);
+        } finally {
+
+            output.close();
+        }
+    }
+
+    private static class Game {
+
+        int number;
+        int score;
+        int maxTile;
+        int moves;
+        boolean victory;
+        long seed;
+        byte[] log;
+
+        int get(Key key) {
+
+            switch (key) {
+
+                case SCORE:
+                    return score;
+                case MAX_TILE:
+                    return maxTile;
+                default:
+                    return moves;
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package cat.santi.ttfe.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+
+import static cat.santi.ttfe.storage.StorageTest.assertSameGame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check that a {@link Journal} recovers every synced turn, and that a torn or corrupt frame
+ * only loses the turns from it on.
+ */
+public class JournalTest {
+
+    private static final int TURNS = 300;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void recoveredGamesGoOnTheSame() throws IOException {
+
+        final Random pick = new Random(9);
+        final File file = mFolder.newFile("game.ttfs");
+        for (int game = 0; game < 100; game++) {
+
+            final Storage storage = new Storage(file);
+            storage.delete();
+            final Backend backend = game % 2 == 0 ? Backend.TILES : Backend.BIT_BOARD;
+            final Engine engine = Engine.create();
+            engine.reset(4, 4, game % 5 == 0 ? 64 : 2048, backend, game);
+            final Journal journal = storage.openJournal(engine, 1 + pick.nextInt(200),
+                    pick.nextInt(4), pick.nextInt(3));
+            play(engine, pick, pick.nextInt(400), null);
+            if (game % 7 == 0) {
+
+                // A new game starts the journal over
+                engine.reset(4, 4, 2048, backend, game + 1000);
+                play(engine, pick, pick.nextInt(100), null);
+            }
+            journal.close();
+
+            final Engine recovered = Engine.create();
+            assertTrue(new Storage(file).recover(recovered) >= 0);
+            assertSameGame(engine, recovered);
+            assertEquals(engine.getBackend(), recovered.getBackend());
+            while (engine.getState() == State.IDLE) {
+
+                final Direction direction = Direction.values()[pick.nextInt(4)];
+                assertEquals(engine.play(direction, false), recovered.play(direction, false));
+                assertSameGame(engine, recovered);
+            }
+        }
+    }
+
+    @Test
+    public void tornFramesLoseOnlyTheTurnsAfterThem() throws IOException {
+
+        final File file = mFolder.newFile("game.ttfs");
+        final Storage storage = new Storage(file);
+        final List<String> boards = new ArrayList<>();
+        final byte[] data = journal(storage, boards);
+
+        // Cut the journal at every length: a prefix of the turns is replayed
+        int previous = 0;
+        for (int length = Journal.HEADER_SIZE; length <= data.length; length++) {
+
+            StorageTest.write(storage.getJournalFile(), data, length);
+            final Engine recovered = Engine.create();
+            final int replayed = storage.recover(recovered);
+            assertTrue(replayed >= previous);
+            assertEquals(boards.get(replayed), recovered.toString());
+            previous = replayed;
+        }
+        assertEquals(TURNS, previous);
+    }
+
+    @Test
+    public void corruptFramesEndTheJournal() throws IOException {
+
+        final File file = mFolder.newFile("game.ttfs");
+        final Storage storage = new Storage(file);
+        final List<String> boards = new ArrayList<>();
+        final byte[] data = journal(storage, boards);
+
+        final Random random = new Random(4);
+        for (int position = Journal.HEADER_SIZE; position < data.length; position++) {
+
+            final byte[] damaged = data.clone();
+            damaged[position] ^= 1 << random.nextInt(8);
+            StorageTest.write(storage.getJournalFile(), damaged, damaged.length);
+            final Engine recovered = Engine.create();
+            final int replayed = storage.recover(recovered);
+            assertTrue(replayed < TURNS);
+            assertEquals(boards.get(replayed), recovered.toString());
+        }
+    }
+
+    @Test
+    public void journalsOfAnotherSnapshotAreIgnored() throws IOException {
+
+        final File file = mFolder.newFile("game.ttfs");
+        final Storage storage = new Storage(file);
+        final List<String> boards = new ArrayList<>();
+        final byte[] data = journal(storage, boards);
+
+        // A damaged header does not tell which snapshot the turns follow
+        for (int position = 0; position < Journal.HEADER_SIZE; position++) {
+
+            final byte[] damaged = data.clone();
+            damaged[position] ^= 0x10;
+            StorageTest.write(storage.getJournalFile(), damaged, damaged.length);
+            final Engine recovered = Engine.create();
+            assertEquals(0, storage.recover(recovered));
+            assertEquals(boards.get(0), recovered.toString());
+        }
+
+        // Neither a missing one
+        assertTrue(storage.getJournalFile().delete());
+        assertEquals(0, storage.recover(Engine.create()));
+    }
+
+    /**
+     * Journal {@link #TURNS} turns after a single snapshot, syncing them in frames of a few
+     * turns.
+     *
+     * @return The journal.
+     */
+    private static byte[] journal(Storage storage, List<String> boards) throws IOException {
+
+        final Engine engine = Engine.create();
+        engine.reset(6, 6, 1 << 20, Backend.TILES, 42);
+        final Journal journal = storage.openJournal(engine, Integer.MAX_VALUE, 0, 0);
+        boards.add(engine.toString());
+        final Random pick = new Random(7);
+        for (int frame = 0; frame < TURNS; frame += 5) {
+
+            play(engine, pick, Math.min(5, TURNS - frame), boards);
+            journal.flush();
+        }
+        journal.close();
+        assertEquals(TURNS + 1, boards.size());
+        return Storage.readFully(storage.getJournalFile(), null);
+    }
+
+    /**
+     * Play up to <i>turns</i> random turns, keeping the board after every one.
+     */
+    private static void play(Engine engine, Random pick, int turns, List<String> boards) {
+
+        int played = 0;
+        while (engine.getState() == State.IDLE && played < turns)
+            if (engine.play(Direction.values()[pick.nextInt(4)], false)) {
+
+                played++;
+                if (boards != null)
+                    boards.add(engine.toString());
+            }
+    }
+}
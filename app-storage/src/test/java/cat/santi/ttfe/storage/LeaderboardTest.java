@@ -0,0 +1,201 @@
+package cat.santi.ttfe.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.State;
+import cat.santi.ttfe.ForwardingListener;
+import cat.santi.ttfe.storage.Leaderboard.Entry;
+import cat.santi.ttfe.storage.Leaderboard.Order;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the rankings of a {@link Leaderboard} against sorting every game, also after reopening
+ * it's file.
+ */
+public class LeaderboardTest {
+
+    private static final int CAPACITY = 50;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void rankingsMatchSortingEveryGame() throws IOException {
+
+        final File file = new File(mFolder.getRoot(), "leaderboard.ttfb");
+        final Random random = new Random(7);
+        final List<Game> games = new ArrayList<>();
+        Leaderboard leaderboard = new Leaderboard(file, CAPACITY);
+        for (int index = 0; index < 20000; index++) {
+
+            // Few distinct values, so there are plenty of ties
+            final Game game = new Game(index, random.nextInt(5000), 1 + random.nextInt(11),
+                    random.nextInt(900), random.nextLong());
+            games.add(game);
+            leaderboard.add(game.score, 1 << game.exponent, game.turns, game.exponent == 11,
+                    game.seed);
+            if (index < 200 || index % 1000 == 0)
+                check(leaderboard, games);
+        }
+        check(leaderboard, games);
+        leaderboard.close();
+
+        // The capacity of the file is kept
+        leaderboard = new Leaderboard(file, 3);
+        assertEquals(CAPACITY, leaderboard.getCapacity());
+        assertEquals(games.size(), leaderboard.getGames());
+        check(leaderboard, games);
+
+        // And it goes on after reopening
+        for (int index = games.size(); index < 25000; index++) {
+
+            final Game game = new Game(index, random.nextInt(6000), 1 + random.nextInt(12), 1,
+                    index);
+            games.add(game);
+            leaderboard.add(game.score, 1 << game.exponent, game.turns, false, game.seed);
+        }
+        leaderboard.close();
+        leaderboard = new Leaderboard(file);
+        check(leaderboard, games);
+        leaderboard.close();
+    }
+
+    @Test
+    public void corruptRecordsAreDropped() throws IOException {
+
+        final File file = new File(mFolder.getRoot(), "leaderboard.ttfb");
+        Leaderboard leaderboard = new Leaderboard(file, 10);
+        for (int index = 0; index < 100; index++)
+            leaderboard.add(index, 2, 1, false, index);
+        leaderboard.close();
+
+        final RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+
+            output.seek(Leaderboard.HEADER_SIZE + 5);
+            output.write(output.read() ^ 1);
+        } finally {
+
+            output.close();
+        }
+
+        leaderboard = new Leaderboard(file);
+        assertEquals(9, leaderboard.getSize(Order.SCORE));
+        assertEquals(10, leaderboard.getSize(Order.MAX_TILE));
+        assertEquals(100, leaderboard.getGames());
+
+        // The void slot is taken again
+        assertTrue(leaderboard.add(1000, 2, 1, false, 0));
+        assertEquals(10, leaderboard.getSize(Order.SCORE));
+        assertEquals(1000, leaderboard.getTop(Order.SCORE)[0].getScore());
+        leaderboard.close();
+    }
+
+    @Test
+    public void gamesFinishedOnAnEngineAreRanked() throws IOException {
+
+        final File file = new File(mFolder.getRoot(), "leaderboard.ttfb");
+        final Leaderboard leaderboard = new Leaderboard(file, 5);
+        final int[] finished = new int[1];
+        final ForwardingListener previous = new ForwardingListener(null) {
+            @Override
+            public void onGameFinished(boolean victory, int turns, int score) {
+
+                finished[0]++;
+            }
+        };
+        final Engine engine = Engine.create();
+        engine.setListener(previous);
+        leaderboard.attach(engine);
+
+        int best = 0;
+        for (int game = 0; game < 20; game++) {
+
+            engine.reset(4, 4, 256, Backend.TILES, game);
+            while (engine.getState() == State.IDLE)
+                for (Direction direction : Direction.values())
+                    engine.play(direction, false);
+            best = Math.max(best, engine.getScore());
+        }
+        leaderboard.close();
+        assertSame(previous, engine.getListener());
+
+        assertEquals(20, finished[0]);
+        assertEquals(20, leaderboard.getGames());
+        final Entry[] top = leaderboard.getTop(Order.SCORE);
+        assertEquals(5, top.length);
+        assertEquals(best, top[0].getScore());
+        assertFalse(top[0].getScore() < top[4].getScore());
+    }
+
+    /**
+     * Check both rankings against sorting every game.
+     */
+    private static void check(Leaderboard leaderboard, List<Game> games) {
+
+        for (final Order order : Order.values()) {
+
+            final List<Game> sorted = new ArrayList<>(games);
+            Collections.sort(sorted, new Comparator<Game>() {
+                @Override
+                public int compare(Game lhs, Game rhs) {
+
+                    if (order == Order.MAX_TILE && lhs.exponent != rhs.exponent)
+                        return rhs.exponent - lhs.exponent;
+                    if (lhs.score != rhs.score)
+                        return rhs.score - lhs.score;
+                    return Long.compare(lhs.game, rhs.game);
+                }
+            });
+
+            final Entry[] top = leaderboard.getTop(order);
+            assertEquals(Math.min(CAPACITY, games.size()), top.length);
+            assertEquals(top.length, leaderboard.getSize(order));
+            for (int index = 0; index < top.length; index++) {
+
+                final Game game = sorted.get(index);
+                assertEquals(game.game, top[index].getGame());
+                assertEquals(game.score, top[index].getScore());
+                assertEquals(1 << game.exponent, top[index].getMaxTile());
+                assertEquals(game.turns, top[index].getTurns());
+                assertEquals(game.seed, top[index].getSeed());
+            }
+        }
+    }
+
+    private static class Game {
+
+        final long game;
+        final int score;
+        final int exponent;
+        final int turns;
+        final long seed;
+
+        Game(long game, int score, int exponent, int turns, long seed) {
+
+            this.game = game;
+            this.score = score;
+            this.exponent = exponent;
+            this.turns = turns;
+            this.seed = seed;
+        }
+    }
+}
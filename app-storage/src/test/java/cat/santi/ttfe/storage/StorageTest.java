@@ -0,0 +1,191 @@
+package cat.santi.ttfe.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import cat.santi.ttfe.Engine;
+import cat.santi.ttfe.Engine.Backend;
+import cat.santi.ttfe.Engine.Direction;
+import cat.santi.ttfe.Engine.Snapshot;
+import cat.santi.ttfe.Engine.State;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Check that games saved by a {@link Storage} are resumed exactly, and that a damaged file is
+ * never resumed.
+ */
+public class StorageTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void savedGamesResumeTheSame() throws IOException {
+
+        final Random pick = new Random(3);
+        final int[][] sizes = {{4, 4}, {5, 5}, {4, 6}};
+        final Storage storage = new Storage(mFolder.newFile("game.ttfs"));
+        for (int game = 0; game < 300; game++) {
+
+            final int[] size = sizes[game % sizes.length];
+            final Backend backend = game % 2 == 0 ? Backend.TILES : Backend.BIT_BOARD;
+            final Engine engine = Engine.create();
+            engine.reset(size[0], size[1], game % 4 == 0 ? 64 : 2048, backend, game);
+            while (engine.getState() == State.IDLE && pick.nextInt(200) != 0)
+                engine.play(Direction.values()[pick.nextInt(4)], false);
+
+            storage.save(engine);
+            final Engine resumed = Engine.create();
+            assertTrue(storage.load(resumed));
+            assertSameGame(engine, resumed);
+            assertEquals(engine.getBackend(), resumed.getBackend());
+            assertEquals(engine.getSeed(), resumed.getSeed());
+            assertEquals(engine.getTileValueToWin(), resumed.getTileValueToWin());
+
+            // The random generator is resumed too, so both games go on the same
+            while (engine.getState() == State.IDLE) {
+
+                final Direction direction = Direction.values()[pick.nextInt(4)];
+                assertEquals(engine.play(direction, false), resumed.play(direction, false));
+                assertSameGame(engine, resumed);
+            }
+        }
+    }
+
+    @Test
+    public void snapshotsRoundTripAtAnyOffset() throws IOException {
+
+        final Engine engine = Engine.create();
+        engine.reset(5, 7, 2048, Backend.TILES, 11);
+        for (int turn = 0; turn < 40; turn++)
+            engine.play(Direction.values()[turn & 3], false);
+
+        final Snapshot snapshot = new Snapshot();
+        engine.readSnapshot(snapshot);
+        final int size = Storage.getSize(snapshot);
+        final byte[] buffer = new byte[size + 13];
+        assertEquals(size, Storage.write(snapshot, buffer, 13));
+
+        final Engine resumed = Engine.create();
+        resumed.restore(Storage.read(buffer, 13, size, null));
+        assertSameGame(engine, resumed);
+    }
+
+    @Test
+    public void missingGamesAreNotLoaded() throws IOException {
+
+        final Storage storage = new Storage(new File(mFolder.getRoot(), "missing.ttfs"));
+        assertFalse(storage.load(Engine.create()));
+        assertEquals(-1, storage.recover(Engine.create()));
+        assertFalse(storage.delete());
+    }
+
+    @Test
+    public void everyDamagedByteIsDetected() throws IOException {
+
+        final File file = mFolder.newFile("game.ttfs");
+        final Storage storage = new Storage(file);
+        final Engine engine = Engine.create();
+        engine.reset(4, 4, 2048, Backend.BIT_BOARD, 1);
+        engine.play(Direction.LEFT, false);
+        storage.save(engine);
+        final byte[] data = Storage.readFully(file, null);
+
+        final Random random = new Random(5);
+        for (int position = 0; position < data.length; position++) {
+
+            final byte[] damaged = data.clone();
+            damaged[position] ^= 1 << random.nextInt(8);
+            write(file, damaged, damaged.length);
+            assertNotLoaded(storage);
+        }
+
+        // Truncated at any length
+        for (int length = 0; length < data.length; length++) {
+
+            write(file, data, length);
+            assertNotLoaded(storage);
+        }
+
+        write(file, data, data.length);
+        assertTrue(storage.load(Engine.create()));
+    }
+
+    @Test
+    public void gamesBeingPlayedAreNotWritten() {
+
+        final Snapshot snapshot = new Snapshot();
+        Engine.create().readSnapshot(snapshot);
+        try {
+
+            Storage.write(snapshot, new byte[1024], 0);
+            fail("A game not yet started was written");
+        } catch (IllegalArgumentException e) {
+
+            // Expected
+        }
+    }
+
+    @Test
+    public void tilesThatCantBeWrittenAreNotRestored() {
+
+        final Engine engine = Engine.create();
+        engine.reset(4, 4, 2048, Backend.TILES, 7);
+        final Snapshot snapshot = new Snapshot();
+        engine.readSnapshot(snapshot);
+
+        // A value of 1 would be written as the exponent 0, read back as a void square
+        snapshot.setValue(0, 0, 1);
+        try {
+
+            Engine.create().restore(snapshot);
+            fail("A tile of value 1 was restored");
+        } catch (IllegalArgumentException e) {
+
+            // Expected
+        }
+    }
+
+    private static void assertNotLoaded(Storage storage) {
+
+        try {
+
+            storage.load(Engine.create());
+            fail("A damaged snapshot was loaded");
+        } catch (IOException e) {
+
+            // Expected
+        }
+    }
+
+    static void assertSameGame(Engine expected, Engine actual) {
+
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getScore(), actual.getScore());
+        assertEquals(expected.getMovements(), actual.getMovements());
+        assertEquals(expected.getState(), actual.getState());
+    }
+
+    static void write(File file, byte[] data, int length) throws IOException {
+
+        final RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+
+            output.setLength(0);
+            output.write(data, 0, length);
+        } finally {
+
+            output.close();
+        }
+    }
+}